@@ -0,0 +1,43 @@
+package vn.edu.demo.caro.bench;
+
+import org.openjdk.jmh.annotations.*;
+import vn.edu.demo.caro.common.ai.MinimaxAI;
+import vn.edu.demo.caro.common.model.Enums.Mark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MinimaxAI.bestMove ở từng độ khó (1..5 như AiViewController) trên thế cờ cố định.
+ * bestMove đánh thử rồi trả lại ô trống => dùng lại cùng 1 bàn giữa các lần gọi.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AiBench {
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int depth;
+
+    @Param({"opening", "midgame"})
+    public String position;
+
+    private MinimaxAI ai;
+    private Mark[][] board;
+    private Mark toMove;
+
+    @Setup
+    public void setup() {
+        Positions p = Positions.of(position);
+        ai = new MinimaxAI(depth);
+        board = p.board();
+        toMove = p.lastMark() == Mark.X ? Mark.O : Mark.X;
+    }
+
+    @Benchmark
+    public MinimaxAI.AiMove bestMove() {
+        return ai.bestMove(board, toMove);
+    }
+}
@@ -0,0 +1,47 @@
+package vn.edu.demo.caro.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Chạy JMH như org.openjdk.jmh.Main (nhận đủ tham số dòng lệnh của JMH), nhưng mặc định
+ * ghi kết quả JSON vào bench/results/jmh-yyyyMMdd-HHmmss.json để so giữa các lần chạy.
+ *
+ *   java -jar bench/target/benchmarks.jar                     # tất cả
+ *   java -jar bench/target/benchmarks.jar RulesBench -p position=win
+ *   java -jar bench/target/benchmarks.jar -rff base.json      # tự đặt file kết quả
+ */
+public final class BenchMain {
+
+    private BenchMain() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp()) {
+            cmd.showHelp();
+            return;
+        }
+        if (cmd.shouldList()) {
+            new Runner(cmd).list();
+            return;
+        }
+
+        ChainedOptionsBuilder opts = new OptionsBuilder().parent(cmd);
+
+        if (!cmd.getResultFormat().hasValue()) opts.resultFormat(ResultFormatType.JSON);
+        if (!cmd.getResult().hasValue()) {
+            File dir = new File(System.getProperty("caro.bench.results", "bench/results"));
+            if (!dir.isDirectory() && !dir.mkdirs()) dir = new File(".");
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            opts.result(new File(dir, "jmh-" + stamp + ".json").getPath());
+        }
+        new Runner(opts.build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+package vn.edu.demo.caro.bench;
+
+import vn.edu.demo.caro.common.model.Enums.Mark;
+import vn.edu.demo.caro.common.model.Enums.RoomStatus;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Bản sao định dạng cũ (Java serialization mặc định) của các DTO đã đổi sang Externalizable / PackedBoard,
+ * cùng field, cùng serialVersionUID => SerializationBench so "trước / sau" trên cùng nội dung.
+ * Tên class dài hơn bản gốc vài byte (vn.edu.demo.caro.bench.LegacyModels$X) - sai lệch không đáng kể.
+ */
+final class LegacyModels {
+
+    private LegacyModels() {}
+
+    static final class Move implements Serializable {
+        final int row;
+        final int col;
+        final int moveNo;
+        final String by;
+
+        Move(int row, int col, int moveNo, String by) {
+            this.row = row;
+            this.col = col;
+            this.moveNo = moveNo;
+            this.by = by;
+        }
+    }
+
+    static final class GameUpdate implements Serializable {
+        final String roomId;
+        final Move move;
+        final Mark mark;
+        final String nextTurnUser;
+        final long seq;
+        final long turnDeadlineMillis;
+
+        GameUpdate(String roomId, Move move, Mark mark, String nextTurnUser, long seq, long turnDeadlineMillis) {
+            this.roomId = roomId;
+            this.move = move;
+            this.mark = mark;
+            this.nextTurnUser = nextTurnUser;
+            this.seq = seq;
+            this.turnDeadlineMillis = turnDeadlineMillis;
+        }
+    }
+
+    static final class RoomInfo implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String id;
+        String name;
+        String owner;
+        int maxPlayers;
+        int currentPlayers;
+        RoomStatus status;
+        Instant createdAt;
+        int boardSize;
+        boolean blockTwoEnds;
+        boolean passwordEnabled;
+        boolean timed;
+        int timeLimitSeconds;
+
+        RoomInfo(String id, String name, String owner, int maxPlayers, int currentPlayers, RoomStatus status,
+                 Instant createdAt, int boardSize, boolean blockTwoEnds, boolean passwordEnabled, boolean timed,
+                 int timeLimitSeconds) {
+            this.id = id;
+            this.name = name;
+            this.owner = owner;
+            this.maxPlayers = maxPlayers;
+            this.currentPlayers = currentPlayers;
+            this.status = status;
+            this.createdAt = createdAt;
+            this.boardSize = boardSize;
+            this.blockTwoEnds = blockTwoEnds;
+            this.passwordEnabled = passwordEnabled;
+            this.timed = timed;
+            this.timeLimitSeconds = timeLimitSeconds;
+        }
+    }
+
+    static final class ChatMessage implements Serializable {
+        final String from;
+        final String scope;
+        final String content;
+        final Instant at;
+        final long seq;
+
+        ChatMessage(String from, String scope, String content, Instant at, long seq) {
+            this.from = from;
+            this.scope = scope;
+            this.content = content;
+            this.at = at;
+            this.seq = seq;
+        }
+    }
+
+    /** GameSnapshot trước khi board được đóng gói 2 bit / ô (serialVersionUID 1): Mark[][] ghi thẳng. */
+    static final class GameSnapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String roomId;
+        int boardSize;
+        Mark[][] board;
+        int moveNo;
+        String turn;
+        long seq;
+        boolean timed;
+        int timeLimitSeconds;
+        long turnDeadlineMillis;
+    }
+}
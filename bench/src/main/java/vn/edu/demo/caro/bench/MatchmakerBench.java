@@ -0,0 +1,55 @@
+package vn.edu.demo.caro.bench;
+
+import org.openjdk.jmh.annotations.*;
+import vn.edu.demo.caro.server.service.Matchmaker;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1 lượt Matchmaker.tick với hàng chờ {@code queued} người (elo ngẫu nhiên cố định seed, 4 bộ luật).
+ * Hàng chờ được nạp lại trước mỗi lượt (tick ghép xong thì xóa khỏi hàng).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatchmakerBench {
+
+    private static final Matchmaker.Prefs[] PREFS = {
+            new Matchmaker.Prefs(15, false, false),
+            new Matchmaker.Prefs(15, true, false),
+            new Matchmaker.Prefs(15, false, true),
+            new Matchmaker.Prefs(19, false, false),
+    };
+
+    @Param({"100", "1000", "10000"})
+    public int queued;
+
+    private Matchmaker matchmaker;
+    private int[] elo;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // thread nội bộ của Matchmaker gần như không bao giờ chạy; bench tự gọi tick
+        matchmaker = new Matchmaker(TimeUnit.DAYS.toMillis(1));
+        Random rnd = new Random(42);
+        elo = new int[queued];
+        for (int i = 0; i < queued; i++) elo[i] = 1000 + (int) (rnd.nextGaussian() * 200);
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        for (int i = 0; i < queued; i++) matchmaker.enqueue("bot" + i, elo[i], PREFS[i & 3]);
+        now = System.currentTimeMillis() + 5_000; // đã chờ ~5s => cửa sổ elo rộng hơn mặc định
+    }
+
+    @Benchmark
+    public List<Matchmaker.Ticket[]> tick() {
+        return matchmaker.tick(now);
+    }
+}
@@ -0,0 +1,101 @@
+package vn.edu.demo.caro.bench;
+
+import vn.edu.demo.caro.common.model.Enums.Mark;
+import vn.edu.demo.caro.common.util.GameRules;
+
+/**
+ * Thế cờ cố định cho benchmark (bàn 15x15) => số đo giữa các lần chạy so được với nhau.
+ * Mỗi thế cờ có "nước vừa đánh" (lastRow, lastCol) để đo kiểm tra thắng tại ô đó.
+ */
+final class Positions {
+
+    final String name;
+    final String[] rows;
+    final int lastRow;
+    final int lastCol;
+
+    private Positions(String name, int lastRow, int lastCol, String... rows) {
+        this.name = name;
+        this.rows = rows;
+        this.lastRow = lastRow;
+        this.lastCol = lastCol;
+    }
+
+    // vài quân giữa bàn
+    static final Positions OPENING = new Positions("opening", 7, 8,
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            "......O........",
+            ".......XX......",
+            "........O......",
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            "...............");
+
+    // giữa ván, nhiều chuỗi 2-3 quân, chưa ai thắng (trường hợp phổ biến nhất của makeMove)
+    static final Positions MIDGAME = new Positions("midgame", 8, 6,
+            "...............",
+            "...............",
+            "...............",
+            "....O..........",
+            ".....XO..X.....",
+            "....OXXOX......",
+            "....XOXXO......",
+            "...OXOOXX......",
+            "....O.XO.O.....",
+            ".....X..X......",
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            "...............");
+
+    // X vừa đánh (7, 9) thành 5 liên tiếp theo hàng ngang
+    static final Positions WIN = new Positions("win", 7, 9,
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            ".....O.........",
+            "......O........",
+            ".......O.O.....",
+            ".....XXXXX.....",
+            "........O......",
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            "...............",
+            "...............");
+
+    static Positions of(String name) {
+        switch (name) {
+            case "opening": return OPENING;
+            case "midgame": return MIDGAME;
+            case "win": return WIN;
+            default: throw new IllegalArgumentException("Không có thế cờ: " + name);
+        }
+    }
+
+    Mark[][] board() {
+        Mark[][] b = new Mark[GameRules.BOARD][GameRules.BOARD];
+        for (int r = 0; r < GameRules.BOARD; r++) {
+            for (int c = 0; c < GameRules.BOARD; c++) {
+                char ch = rows[r].charAt(c);
+                b[r][c] = ch == 'X' ? Mark.X : ch == 'O' ? Mark.O : Mark.EMPTY;
+            }
+        }
+        return b;
+    }
+
+    Mark lastMark() {
+        return rows[lastRow].charAt(lastCol) == 'X' ? Mark.X : Mark.O;
+    }
+}
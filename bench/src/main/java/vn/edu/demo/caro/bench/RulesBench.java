@@ -0,0 +1,51 @@
+package vn.edu.demo.caro.bench;
+
+import org.openjdk.jmh.annotations.*;
+import vn.edu.demo.caro.common.model.Enums.Mark;
+import vn.edu.demo.caro.common.util.GameRules;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kiểm tra thắng sau 1 nước: GameRules.isWin (client / AI) và GameRules.checkWin5 (server, LobbyServiceImpl.makeMove).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RulesBench {
+
+    @Param({"midgame", "win"})
+    public String position;
+
+    private Mark[][] board;
+    private int row;
+    private int col;
+    private Mark mark;
+
+    @Setup
+    public void setup() {
+        Positions p = Positions.of(position);
+        board = p.board();
+        row = p.lastRow;
+        col = p.lastCol;
+        mark = p.lastMark();
+    }
+
+    @Benchmark
+    public boolean isWin() {
+        return GameRules.isWin(board, row, col, mark);
+    }
+
+    @Benchmark
+    public boolean checkWin5() {
+        return GameRules.checkWin5(board, GameRules.BOARD, row, col, mark, false);
+    }
+
+    @Benchmark
+    public boolean checkWin5BlockTwoEnds() {
+        return GameRules.checkWin5(board, GameRules.BOARD, row, col, mark, true);
+    }
+}
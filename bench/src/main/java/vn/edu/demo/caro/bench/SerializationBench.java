@@ -0,0 +1,197 @@
+package vn.edu.demo.caro.bench;
+
+import org.openjdk.jmh.annotations.*;
+import vn.edu.demo.caro.common.model.ChatMessage;
+import vn.edu.demo.caro.common.model.Enums.Mark;
+import vn.edu.demo.caro.common.model.Enums.RoomStatus;
+import vn.edu.demo.caro.common.model.GameSnapshot;
+import vn.edu.demo.caro.common.model.GameUpdate;
+import vn.edu.demo.caro.common.model.Move;
+import vn.edu.demo.caro.common.model.RoomInfo;
+import vn.edu.demo.caro.common.net.GatewayCodec;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java serialization của payload RMI hay gửi nhất (như RMI làm: 1 ObjectOutputStream / lời gọi):
+ * - snapshot: GameSnapshot giữa ván (board qua PackedBoard, 2 bit / ô)
+ * - rooms: List&lt;RoomInfo&gt; 100 phòng (fetchRoomList lần đầu)
+ * - update: GameUpdate 1 nước đi (mỗi makeMove, gửi cho 2 người chơi)
+ * - chat: List&lt;ChatMessage&gt; 20 tin (1 lô onGlobalChatBatch)
+ * Mỗi payload có bản xxxLegacy: cùng nội dung ở định dạng cũ (Java serialization mặc định, xem {@link LegacyModels})
+ * để so trước / sau.
+ * Kèm GatewayCodec (frame EVENT của gateway) để so cùng payload.
+ * Cỡ bàn của 2 payload snapshot: {@code -p boardSize=15,30} (mặc định 15 = thế cờ MIDGAME).
+ * Số byte serialize của mỗi payload được in lúc setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBench {
+
+    @Param({"snapshot", "snapshotLegacy", "rooms", "roomsLegacy", "update", "updateLegacy", "chat", "chatLegacy"})
+    public String payload;
+
+    @Param({"15"})
+    public int boardSize;
+
+    private Object value;
+    private byte[] bytes;
+    private int event;
+
+    @Setup
+    public void setup() throws IOException, NoSuchMethodException {
+        value = build(payload, board(boardSize));
+        bytes = serialize(value);
+        event = GatewayCodec.CALLBACK.idOf(eventMethod(payload));
+        String board = payload.startsWith("snapshot") ? " (bàn " + boardSize + "x" + boardSize + ")" : "";
+        System.out.printf("%n[SerializationBench] %s%s: %d B%n", payload, board, bytes.length);
+    }
+
+    // 15 = thế cờ MIDGAME; cỡ khác: ngẫu nhiên cố định, cùng mật độ quân (~14%)
+    static Mark[][] board(int size) {
+        if (size == 15) return Positions.MIDGAME.board();
+        Random rnd = new Random(42);
+        Mark[][] b = new Mark[size][size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                int v = rnd.nextInt(14);
+                b[r][c] = v == 0 ? Mark.X : v == 1 ? Mark.O : Mark.EMPTY;
+            }
+        }
+        return b;
+    }
+
+    static Object build(String payload, Mark[][] board) {
+        switch (payload) {
+            case "snapshot": {
+                GameSnapshot s = new GameSnapshot();
+                s.setRoomId("R-1f3a9c");
+                s.setBoardSize(board.length);
+                s.setBoard(board);
+                s.setMoveNo(31);
+                s.setTurn("player_0042");
+                s.setSeq(31);
+                s.setTimed(true);
+                s.setTimeLimitSeconds(30);
+                s.setTurnDeadlineMillis(1_700_000_030_000L);
+                return s;
+            }
+            case "snapshotLegacy": {
+                LegacyModels.GameSnapshot s = new LegacyModels.GameSnapshot();
+                s.roomId = "R-1f3a9c";
+                s.boardSize = board.length;
+                s.board = board;
+                s.moveNo = 31;
+                s.turn = "player_0042";
+                s.seq = 31;
+                s.timed = true;
+                s.timeLimitSeconds = 30;
+                s.turnDeadlineMillis = 1_700_000_030_000L;
+                return s;
+            }
+            case "rooms": {
+                List<RoomInfo> rooms = new ArrayList<>();
+                Instant t = Instant.ofEpochSecond(1_700_000_000L);
+                for (int i = 0; i < 100; i++) {
+                    rooms.add(new RoomInfo("R-" + i, "Phòng " + i, "owner_" + i, 2, 1 + i % 2,
+                            i % 3 == 0 ? RoomStatus.PLAYING : RoomStatus.WAITING, t.plusSeconds(i),
+                            15, i % 2 == 0, i % 5 == 0, i % 4 == 0, 30));
+                }
+                return rooms;
+            }
+            case "roomsLegacy": {
+                List<LegacyModels.RoomInfo> rooms = new ArrayList<>();
+                Instant t = Instant.ofEpochSecond(1_700_000_000L);
+                for (int i = 0; i < 100; i++) {
+                    rooms.add(new LegacyModels.RoomInfo("R-" + i, "Phòng " + i, "owner_" + i, 2, 1 + i % 2,
+                            i % 3 == 0 ? RoomStatus.PLAYING : RoomStatus.WAITING, t.plusSeconds(i),
+                            15, i % 2 == 0, i % 5 == 0, i % 4 == 0, 30));
+                }
+                return rooms;
+            }
+            case "update":
+                return new GameUpdate("R-1f3a9c", new Move(8, 6, 31, "player_0041"), Mark.X, "player_0042",
+                        31, 1_700_000_030_000L);
+            case "updateLegacy":
+                return new LegacyModels.GameUpdate("R-1f3a9c", new LegacyModels.Move(8, 6, 31, "player_0041"),
+                        Mark.X, "player_0042", 31, 1_700_000_030_000L);
+            case "chat": {
+                List<ChatMessage> batch = new ArrayList<>();
+                Instant t = Instant.ofEpochSecond(1_700_000_000L, 123_000_000L);
+                for (int i = 0; i < 20; i++) {
+                    batch.add(new ChatMessage("player_" + (1000 + i), "GLOBAL", "Tin nhắn thứ " + i + " gg wp",
+                            t.plusMillis(i * 37L), 5000 + i));
+                }
+                return batch;
+            }
+            case "chatLegacy": {
+                List<LegacyModels.ChatMessage> batch = new ArrayList<>();
+                Instant t = Instant.ofEpochSecond(1_700_000_000L, 123_000_000L);
+                for (int i = 0; i < 20; i++) {
+                    batch.add(new LegacyModels.ChatMessage("player_" + (1000 + i), "GLOBAL",
+                            "Tin nhắn thứ " + i + " gg wp", t.plusMillis(i * 37L), 5000 + i));
+                }
+                return batch;
+            }
+            default:
+                throw new IllegalArgumentException("Không có payload: " + payload);
+        }
+    }
+
+    // callback thật sự mang payload này
+    private static Method eventMethod(String payload) throws NoSuchMethodException {
+        switch (payload) {
+            case "snapshot":
+            case "snapshotLegacy": return ClientCallback.class.getMethod("onBoardReset", GameSnapshot.class);
+            case "rooms":
+            case "roomsLegacy": return ClientCallback.class.getMethod("onRoomListUpdated", List.class);
+            case "chat":
+            case "chatLegacy": return ClientCallback.class.getMethod("onGlobalChatBatch", List.class);
+            default: return ClientCallback.class.getMethod("onGameUpdated", GameUpdate.class);
+        }
+    }
+
+    static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(o);
+        }
+        return bos.toByteArray();
+    }
+
+    static Object deserialize(byte[] b) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(b))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public byte[] javaWrite() throws IOException {
+        return serialize(value);
+    }
+
+    @Benchmark
+    public Object javaRead() throws IOException, ClassNotFoundException {
+        return deserialize(bytes);
+    }
+
+    @Benchmark
+    public byte[] gatewayEncode() throws IOException {
+        return GatewayCodec.encodeEvent(event, new Object[]{value});
+    }
+}
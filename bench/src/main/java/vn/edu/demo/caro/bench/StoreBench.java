@@ -0,0 +1,86 @@
+package vn.edu.demo.caro.bench;
+
+import org.openjdk.jmh.annotations.*;
+import vn.edu.demo.caro.server.dao.MatchDao.MatchRow;
+import vn.edu.demo.caro.server.dao.MatchDao.StatsRow;
+import vn.edu.demo.caro.server.dao.UserDao.UserRecord;
+import vn.edu.demo.caro.server.store.EmbeddedStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EmbeddedStore (thư mục tạm, {@code users} user sẵn, mỗi user 4 bạn): đọc user / bạn bè,
+ * ghi chỉ số, ghi 1 kết quả ván (1 MATCH + 2 USER như MatchResultWriter).
+ * Compact tự động tắt (ngưỡng rất lớn) để số đo chỉ gồm đường ghi / đọc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreBench {
+
+    @Param({"10000", "100000"})
+    public int users;
+
+    private Path dir;
+    private EmbeddedStore store;
+    private int i;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        dir = Files.createTempDirectory("caro-store-bench");
+        store = new EmbeddedStore(dir, 256 << 20, 1000, Long.MAX_VALUE);
+        for (int u = 0; u < users; u++) store.users.create(name(u), "pw");
+        for (int u = 0; u < users; u++) {
+            for (int k = 1; k <= 2; k++) store.friends.addFriendPair(name(u), name((u + k) % users));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static String name(int u) {
+        return "user" + u;
+    }
+
+    private String next() {
+        return name(i++ % users);
+    }
+
+    @Benchmark
+    public UserRecord findUser() {
+        return store.users.find(next()).orElse(null);
+    }
+
+    @Benchmark
+    public List<String> listFriends() {
+        return store.friends.listFriends(next());
+    }
+
+    @Benchmark
+    public void updateStats() throws SQLException {
+        store.users.updateStats(next(), i, 0, 0, 1000 + (i & 255));
+    }
+
+    @Benchmark
+    public void recordResult() throws SQLException {
+        String x = next(), o = next();
+        store.matches.recordResults(
+                List.of(new MatchRow("room" + i, x, o, x, "FIVE_IN_ROW", Instant.now())),
+                List.of(new StatsRow(x, i, 0, 0, 1020), new StatsRow(o, 0, i, 0, 980)));
+    }
+}
@@ -0,0 +1,352 @@
+package vn.edu.demo.caro.bench;
+
+import vn.edu.demo.caro.common.model.ChatMessage;
+import vn.edu.demo.caro.common.model.Enums.Mark;
+import vn.edu.demo.caro.common.model.Enums.RoomStatus;
+import vn.edu.demo.caro.common.model.Enums.UserStatus;
+import vn.edu.demo.caro.common.model.FriendInfo;
+import vn.edu.demo.caro.common.model.GameSnapshot;
+import vn.edu.demo.caro.common.model.GameStart;
+import vn.edu.demo.caro.common.model.GameUpdate;
+import vn.edu.demo.caro.common.model.MatchSummary;
+import vn.edu.demo.caro.common.model.Move;
+import vn.edu.demo.caro.common.model.RoomInfo;
+import vn.edu.demo.caro.common.model.UserProfile;
+import vn.edu.demo.caro.common.net.GatewayCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Kiểm tra định dạng wire của các DTO Externalizable (và bàn cờ PackedBoard trong GameSnapshot).
+ *
+ *   java -cp bench/target/benchmarks.jar vn.edu.demo.caro.bench.WireFormatCheck
+ *
+ * - Round-trip qua Java serialization (đường RMI) và qua GatewayCodec (frame gateway), so từng field
+ *   bằng reflection: field null, chuỗi rỗng, chuỗi unicode 120KB, biên Short / Integer / Long,
+ *   byte không dấu 255, Instant.MIN / MAX, mọi tổ hợp cờ bit; nhiều object trong 1 stream (handle / lệch byte).
+ * - Dữ liệu hỏng phải bị từ chối: version 0 / version mới hơn, ordinal enum ngoài khoảng,
+ *   chuỗi vượt giới hạn, stream bị cắt, frame gateway toàn list lồng nhau (không được tràn stack).
+ * Lỗi đầu tiên của mỗi ca được in ra; có ca sai => exit code 1.
+ */
+public final class WireFormatCheck {
+
+    private static final List<String> failures = new ArrayList<>();
+    private static int checks;
+
+    private WireFormatCheck() {}
+
+    public static void main(String[] args) throws Exception {
+        roundTrips();
+        rejections();
+        System.out.printf("WireFormatCheck: %d ca, %d sai%n", checks, failures.size());
+        for (String f : failures) System.out.println("  SAI: " + f);
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    // ============================================================
+    // Round-trip
+    // ============================================================
+    private static void roundTrips() throws Exception {
+        String big = bigString(120 * 1024);
+        Instant t = Instant.ofEpochSecond(1_700_000_000L, 123_456_789L);
+
+        List<Object> values = new ArrayList<>();
+        values.add(new Move(0, 0, 0, null));
+        values.add(new Move(Short.MAX_VALUE, Short.MIN_VALUE, Integer.MAX_VALUE, ""));
+        values.add(new Move(14, 7, Integer.MIN_VALUE, big));
+
+        values.add(new GameUpdate(null, null, null, null, 0L, 0L));
+        values.add(new GameUpdate("R-1", new Move(3, 4, 5, "a"), Mark.X, "b", Long.MAX_VALUE, Long.MIN_VALUE));
+        values.add(new GameUpdate("", new Move(0, 0, 1, null), Mark.EMPTY, "", -1L, 1L));
+        for (Mark m : Mark.values()) values.add(new GameUpdate("R", null, m, "n", 1L, 2L));
+
+        values.add(new RoomInfo(null, null, null, 0, 0, null, null, 0, false, false, false, 0));
+        values.add(new RoomInfo("R-9", big, "chủ phòng", 255, 255, RoomStatus.PLAYING, Instant.MAX,
+                255, true, true, true, Integer.MAX_VALUE));
+        values.add(new RoomInfo("R-0", "", "", 2, 1, RoomStatus.WAITING, Instant.MIN, 15, false, true, false,
+                Integer.MIN_VALUE));
+        for (int flags = 0; flags < 8; flags++) {
+            values.add(new RoomInfo("R-" + flags, "n", "o", 2, 2, RoomStatus.values()[flags % RoomStatus.values().length],
+                    t, 19, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0, 30));
+        }
+
+        values.add(new ChatMessage(null, null, null, null, 0L));
+        values.add(new ChatMessage("u", "GLOBAL", big, Instant.MAX, Long.MAX_VALUE));
+        values.add(new ChatMessage("", "ROOM:R-1", "", Instant.MIN, Long.MIN_VALUE));
+        values.add(new ChatMessage("u", "GLOBAL", "xin chào 👋", Instant.EPOCH, 1L));
+
+        values.add(new UserProfile(null, 0, 0, 0, 0));
+        values.add(new UserProfile(big, Integer.MAX_VALUE, Integer.MIN_VALUE, -1, Integer.MIN_VALUE));
+
+        values.add(new FriendInfo(null, null));
+        for (UserStatus s : UserStatus.values()) values.add(new FriendInfo("bạn", s));
+
+        values.add(new GameStart(null, null, null, false, 0, false, false, 0));
+        values.add(new GameStart("R", big, Mark.O, true, 255, true, true, Integer.MIN_VALUE));
+        for (int flags = 0; flags < 8; flags++) {
+            values.add(new GameStart("R-" + flags, "op", Mark.X, (flags & 1) != 0, 15, (flags & 2) != 0,
+                    (flags & 4) != 0, Integer.MAX_VALUE));
+        }
+
+        values.add(new MatchSummary(0L, null, null, null, null, null));
+        values.add(new MatchSummary(Long.MIN_VALUE, "x", "o", "", big, Instant.MAX));
+        values.add(new MatchSummary(Long.MAX_VALUE, "x", "o", "x", "FIVE", Instant.MIN));
+
+        values.add(snapshot(null));
+        for (int n : new int[]{1, 3, 15, 31, 32, 33, 64}) values.add(snapshot(board(n)));
+
+        for (int i = 0; i < values.size(); i++) {
+            Object v = values.get(i);
+            String name = v.getClass().getSimpleName() + " #" + i;
+            check("java " + name, () -> compare(v, javaRoundTrip(v)));
+            if (v instanceof Externalizable) check("gateway " + name, () -> compare(v, gatewayRoundTrip(v)));
+        }
+
+        // nhiều object / 1 stream: object sau không lệch byte, cùng instance giữ handle chung
+        check("java cả danh sách", () -> {
+            List<?> copy = (List<?>) javaRoundTrip(new ArrayList<>(values));
+            if (copy.size() != values.size()) return "size " + copy.size() + " != " + values.size();
+            for (int i = 0; i < values.size(); i++) {
+                String diff = compare(values.get(i), copy.get(i));
+                if (diff != null) return "#" + i + " " + diff;
+            }
+            return null;
+        });
+        check("java cùng instance 2 lần", () -> {
+            Move m = new Move(1, 2, 3, "a");
+            Object[] copy = (Object[]) javaRoundTrip(new Object[]{m, m});
+            return copy[0] == copy[1] ? null : "mất handle chung";
+        });
+        check("gateway danh sách DTO", () -> {
+            List<Object> dtos = new ArrayList<>();
+            for (Object v : values) if (v instanceof Externalizable) dtos.add(v);
+            List<?> copy = (List<?>) gatewayRoundTrip(dtos);
+            if (copy.size() != dtos.size()) return "size " + copy.size() + " != " + dtos.size();
+            for (int i = 0; i < dtos.size(); i++) {
+                String diff = compare(dtos.get(i), copy.get(i));
+                if (diff != null) return "#" + i + " " + diff;
+            }
+            return null;
+        });
+    }
+
+    private static GameSnapshot snapshot(Mark[][] board) {
+        GameSnapshot s = new GameSnapshot();
+        s.setRoomId("R-1");
+        s.setBoardSize(board == null ? 0 : board.length);
+        s.setBoard(board);
+        s.setMoveNo(Integer.MAX_VALUE);
+        s.setTurn(null);
+        s.setSeq(Long.MIN_VALUE);
+        s.setTimed(true);
+        s.setTimeLimitSeconds(-1);
+        s.setTurnDeadlineMillis(Long.MAX_VALUE);
+        return s;
+    }
+
+    // đủ 3 loại ô, có ô ở cuối mỗi word 32 ô
+    private static Mark[][] board(int n) {
+        Mark[][] b = new Mark[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) b[r][c] = Mark.values()[(r * 7 + c * 3) % Mark.values().length];
+        }
+        return b;
+    }
+
+    private static String bigString(int chars) {
+        StringBuilder sb = new StringBuilder(chars);
+        String[] parts = {"Caro ", "ván đấu ", "😀", "日本 ", "\u0000", "ß"};
+        for (int i = 0; sb.length() < chars; i++) sb.append(parts[i % parts.length]);
+        return sb.toString();
+    }
+
+    private static Object javaRoundTrip(Object v) throws IOException, ClassNotFoundException {
+        return SerializationBench.deserialize(SerializationBench.serialize(v));
+    }
+
+    private static Object gatewayRoundTrip(Object v) throws IOException {
+        byte[] frame = GatewayCodec.encodeResponse(1, v);
+        return GatewayCodec.decode(Arrays.copyOfRange(frame, 4, frame.length)).value;
+    }
+
+    // null = giống nhau; ngược lại mô tả field đầu tiên khác
+    private static String compare(Object a, Object b) throws IllegalAccessException {
+        if (a == null || b == null) return a == b ? null : "null: " + a + " vs " + b;
+        if (a.getClass() != b.getClass()) return "class " + a.getClass().getSimpleName() + " vs " + b.getClass().getSimpleName();
+        for (Class<?> c = a.getClass(); c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers())) continue;
+                f.setAccessible(true);
+                Object x = f.get(a), y = f.get(b);
+                if (x != null && x.getClass() == Move.class) {
+                    String diff = compare(x, y);
+                    if (diff != null) return f.getName() + "." + diff;
+                } else if (!Arrays.deepEquals(new Object[]{x}, new Object[]{y})) {
+                    return c.getSimpleName() + "." + f.getName() + ": " + abbreviate(x) + " vs " + abbreviate(y);
+                }
+            }
+        }
+        return null;
+    }
+
+    // ============================================================
+    // Dữ liệu hỏng phải bị từ chối
+    // ============================================================
+    private static void rejections() {
+        List<Supplier<Externalizable>> types = List.of(Move::new, GameUpdate::new, RoomInfo::new, ChatMessage::new,
+                UserProfile::new, FriendInfo::new, GameStart::new, MatchSummary::new);
+        for (Supplier<Externalizable> type : types) {
+            String name = type.get().getClass().getSimpleName();
+            for (int version : new int[]{0, 2, 255}) {
+                expect(name + " version " + version, InvalidObjectException.class, type,
+                        out -> out.writeByte(version));
+            }
+        }
+        expect("FriendInfo ordinal enum 99", InvalidObjectException.class, FriendInfo::new, out -> {
+            out.writeByte(1);
+            out.writeByte(0);   // username null
+            out.writeByte(99);  // status
+        });
+        expect("GameUpdate ordinal enum Mark 3", InvalidObjectException.class, GameUpdate::new, out -> {
+            out.writeByte(1);
+            out.writeByte(0);        // roomId null
+            out.writeBoolean(false); // không có move
+            out.writeByte(Mark.values().length);
+        });
+        expect("ChatMessage chuỗi > 1MB", InvalidObjectException.class, ChatMessage::new, out -> {
+            out.writeByte(1);
+            writeVarInt(out, (1 << 20) + 2);
+        });
+        expect("Move varint > 5 byte", InvalidObjectException.class, Move::new, out -> {
+            out.writeByte(1);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeInt(0);
+            for (int i = 0; i < 5; i++) out.writeByte(0x80);
+        });
+        byte[] whole = writeExternal(new RoomInfo("R-1", "phòng", "chủ", 2, 1, RoomStatus.WAITING, Instant.EPOCH,
+                15, true, false, true, 30));
+        for (int cut : new int[]{1, 5, whole.length - 1}) {
+            byte[] part = Arrays.copyOf(whole, cut);
+            expect("RoomInfo bị cắt còn " + cut + "/" + whole.length + " byte", EOFException.class, RoomInfo::new,
+                    out -> out.write(part));
+        }
+        check("Gateway list lồng 10 tầng", () -> {
+            Object v = "lá";
+            for (int i = 0; i < 10; i++) v = List.of(v);
+            byte[] frame = GatewayCodec.encodeResponse(1, v);
+            Object back = GatewayCodec.decode(Arrays.copyOfRange(frame, 4, frame.length)).value;
+            return v.equals(back) ? null : "khác: " + back;
+        });
+        check("Gateway list lồng tới hết frame 4MB", () -> {
+            // RESPONSE ok rồi [T_LIST][n = 1] lặp lại: đọc đệ quy không giới hạn => StackOverflowError
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(GatewayCodec.MAX_FRAME);
+            bos.write(GatewayCodec.RESPONSE);
+            bos.write(new byte[]{0, 0, 0, 1, 1});
+            byte[] nested = {7, 0, 0, 0, 1};
+            while (bos.size() + nested.length <= GatewayCodec.MAX_FRAME) bos.write(nested);
+            try {
+                GatewayCodec.decode(bos.toByteArray());
+                return "không bị từ chối";
+            } catch (StreamCorruptedException expected) {
+                return null;
+            } catch (StackOverflowError e) {
+                return "tràn stack";
+            }
+        });
+        check("GameSnapshot PackedBoard version 2", () -> {
+            // [version 1][size 3][1 long] rồi TC_ENDBLOCKDATA
+            byte[] b = SerializationBench.serialize(snapshot(board(3)));
+            int at = b.length - 11;
+            if (b[at] != 0x01 || b[at + 1] != 0x03 || b[at + 10] != 0x78) return "không tìm thấy header PackedBoard";
+            b[at] = 0x02;
+            try {
+                SerializationBench.deserialize(b);
+                return "không bị từ chối";
+            } catch (InvalidObjectException expected) {
+                return null;
+            }
+        });
+    }
+
+    private interface Writer {
+        void write(ObjectOutputStream out) throws IOException;
+    }
+
+    private interface Check {
+        String run() throws Exception;
+    }
+
+    private static void expect(String name, Class<? extends IOException> error, Supplier<? extends Externalizable> type,
+                               Writer writer) {
+        check(name, () -> {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+                writer.write(out);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+                type.get().readExternal(in);
+                return "không bị từ chối";
+            } catch (IOException e) {
+                return error.isInstance(e) ? null : "ném " + e + ", cần " + error.getSimpleName();
+            }
+        });
+    }
+
+    private static void check(String name, Check c) {
+        checks++;
+        try {
+            String diff = c.run();
+            if (diff != null) failures.add(name + ": " + diff);
+        } catch (Exception e) {
+            failures.add(name + ": " + e);
+        }
+    }
+
+    private static byte[] writeExternal(Externalizable v) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+                v.writeExternal(out);
+            }
+            // bỏ header stream + block data => chỉ còn byte của writeExternal
+            byte[] all = bos.toByteArray();
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(all))) {
+                int b;
+                while ((b = in.read()) >= 0) raw.write(b);
+            }
+            return raw.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeVarInt(ObjectOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static String abbreviate(Object v) {
+        String s = v instanceof Object[] ? Arrays.deepToString((Object[]) v) : String.valueOf(v);
+        return s.length() > 40 ? s.substring(0, 40) + "...(" + s.length() + ")" : s;
+    }
+}
@@ -0,0 +1,265 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.common.model.*;
+import vn.edu.demo.caro.common.model.Enums.Mark;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.common.rmi.LobbyService;
+
+import java.rmi.RemoteException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1 client giả: login -> quickPlay -> đánh (thỉnh thoảng chat / xin undo / đầu hàng) -> hết ván thì rời phòng, quickPlay tiếp.
+ *
+ * - Callback chỉ cập nhật trạng thái rồi xếp việc lên {@link LoadRun#actions} (như client thật đẩy sang thread FX),
+ *   không gọi server ngay trên thread callback.
+ * - Độ trễ đầu-cuối 1 nước = lúc đối thủ nhận onGameUpdated - lúc người đi gọi makeMove (cùng JVM nên cùng đồng hồ).
+ */
+final class Bot implements ClientCallback {
+
+    final String name;
+    private final LoadRun run;
+    private LobbyService lobby;
+
+    // ===== guarded by this =====
+    private String roomId;
+    private Mark[][] board;
+    private int size;
+    private boolean myTurn;
+    private boolean actScheduled;
+    private boolean undoPending;
+    private long seq;
+    private int myMoves;
+
+    // lúc gọi makeMove gần nhất (đối thủ đọc để tính độ trễ)
+    volatile long sentNanos;
+
+    Bot(String name, LoadRun run) {
+        this.name = name;
+        this.run = run;
+    }
+
+    void start(LobbyService lobby, ClientCallback self) {
+        this.lobby = lobby;
+        run.actions.execute(() -> {
+            try {
+                lobby.login(name, "bot", self);
+                lobby.quickPlay(name);
+            } catch (RemoteException e) {
+                run.error("login", e);
+            }
+        });
+    }
+
+    // ============================================================
+    // Hành động (thread của LoadRun.actions)
+    // ============================================================
+    private synchronized void scheduleAct() {
+        if (actScheduled || !myTurn) return;
+        actScheduled = true;
+        run.actions.schedule(this::act, run.thinkDelayMicros(), TimeUnit.MICROSECONDS);
+    }
+
+    private static final int MOVE = 0, UNDO = 1, RESIGN = 2;
+
+    private void act() {
+        String room;
+        int action;
+        int row = 0, col = 0;
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        synchronized (this) {
+            actScheduled = false;
+            if (!myTurn || undoPending || roomId == null) return;
+            room = roomId;
+
+            if (myMoves >= 10 && rnd.nextDouble() < run.resignRate) {
+                action = RESIGN;
+                myTurn = false;
+            } else if (myMoves >= 2 && rnd.nextDouble() < run.undoRate) {
+                action = UNDO;
+                undoPending = true;
+            } else {
+                action = MOVE;
+                int cell = pickCell(rnd);
+                row = cell / size;
+                col = cell % size;
+                myTurn = false;
+                myMoves++;
+            }
+        }
+
+        // gọi server ngoài khóa của bot (callback của chính bot có thể tới cùng lúc)
+        switch (action) {
+            case RESIGN:
+                call("resign", () -> lobby.resign(room, name));
+                break;
+            case UNDO:
+                call("requestUndo", () -> lobby.requestUndo(room, name));
+                break;
+            default:
+                if (rnd.nextDouble() < run.chatRate) {
+                    call("sendGlobalChat", () -> lobby.sendGlobalChat(new ChatMessage(name, "GLOBAL", "gg", Instant.now())));
+                }
+                int r = row, c = col;
+                sentNanos = System.nanoTime();
+                run.movesSent.increment();
+                call("makeMove", () -> lobby.makeMove(room, name, r, c));
+        }
+    }
+
+    // ô trống cạnh 1 quân bất kỳ (ván giống người chơi thật hơn đánh ngẫu nhiên toàn bàn)
+    private int pickCell(ThreadLocalRandom rnd) {
+        for (int i = 0; i < 32; i++) {
+            int r = rnd.nextInt(size), c = rnd.nextInt(size);
+            if (board[r][c] == Mark.EMPTY) continue;
+            int nr = r + rnd.nextInt(3) - 1, nc = c + rnd.nextInt(3) - 1;
+            if (nr >= 0 && nc >= 0 && nr < size && nc < size && board[nr][nc] == Mark.EMPTY) return nr * size + nc;
+        }
+        int center = size / 2;
+        if (board[center][center] == Mark.EMPTY) return center * size + center;
+        for (int i = 0; i < size * size; i++) {
+            if (board[i / size][i % size] == Mark.EMPTY) return i;
+        }
+        return 0;
+    }
+
+    private void afterGame(String room) {
+        run.actions.schedule(() -> {
+            call("leaveRoom", () -> lobby.leaveRoom(name, room));
+            call("quickPlay", () -> lobby.quickPlay(name));
+        }, run.thinkDelayMicros(), TimeUnit.MICROSECONDS);
+    }
+
+    private interface Call {
+        void run() throws RemoteException;
+    }
+
+    private void call(String what, Call c) {
+        try {
+            c.run();
+        } catch (RemoteException e) {
+            run.error(what, e);
+            // nước bị từ chối (lệch trạng thái) => lấy lại snapshot để không kẹt lượt
+            if ("makeMove".equals(what)) resync();
+        }
+    }
+
+    private void resync() {
+        String room;
+        synchronized (this) {
+            room = roomId;
+        }
+        if (room == null) return;
+        try {
+            onBoardReset(lobby.getSnapshot(room, name));
+        } catch (RemoteException ignored) {
+        }
+    }
+
+    // ============================================================
+    // Callback
+    // ============================================================
+    @Override
+    public void onGameStarted(GameStart start) {
+        synchronized (this) {
+            roomId = start.getRoomId();
+            size = start.getBoardSize();
+            board = new Mark[size][size];
+            for (Mark[] row : board) Arrays.fill(row, Mark.EMPTY);
+            myTurn = start.isYourTurn();
+            undoPending = false;
+            seq = 0;
+            myMoves = 0;
+        }
+        run.gamesStarted.increment();
+        scheduleAct();
+    }
+
+    @Override
+    public void onGameUpdated(GameUpdate u) {
+        Move mv = u.getMove();
+        if (!name.equals(mv.getBy())) {
+            Bot mover = run.bots.get(mv.getBy());
+            if (mover != null) run.recordMoveLatency(System.nanoTime() - mover.sentNanos);
+        }
+        synchronized (this) {
+            if (!u.getRoomId().equals(roomId) || u.getSeq() <= seq) return;
+            seq = u.getSeq();
+            board[mv.getRow()][mv.getCol()] = u.getMark();
+            myTurn = name.equals(u.getNextTurnUser());
+        }
+        scheduleAct();
+    }
+
+    @Override
+    public void onBoardReset(GameSnapshot s) {
+        synchronized (this) {
+            if (!s.getRoomId().equals(roomId) || s.getBoard() == null) return;
+            seq = s.getSeq();
+            size = s.getBoardSize();
+            board = new Mark[size][];
+            for (int r = 0; r < size; r++) board[r] = s.getBoard()[r].clone(); // in-JVM: 2 bot nhận chung 1 snapshot
+            myTurn = name.equals(s.getTurn());
+            undoPending = false;
+        }
+        scheduleAct();
+    }
+
+    @Override
+    public void onGameEnded(GameEnd end) {
+        synchronized (this) {
+            if (!end.getRoomId().equals(roomId)) return;
+            roomId = null;
+            myTurn = false;
+        }
+        run.gamesEnded.increment();
+        afterGame(end.getRoomId());
+    }
+
+    @Override
+    public void onUndoRequested(String roomId, String from) {
+        run.actions.execute(() -> call("respondUndo", () -> lobby.respondUndo(roomId, name, true)));
+    }
+
+    @Override
+    public void onUndoResult(String roomId, boolean accepted, String message) {
+        if (accepted) return; // chấp nhận => onBoardReset tới sau
+        synchronized (this) {
+            undoPending = false;
+        }
+        scheduleAct();
+    }
+
+    @Override
+    public void onGlobalChatBatch(List<ChatMessage> msgs) {
+        run.chatReceived.add(msgs.size());
+    }
+
+    @Override
+    public void onGlobalChat(ChatMessage msg) {
+        run.chatReceived.increment();
+    }
+
+    // ===== không cần phản ứng =====
+    @Override public void onAnnouncement(String text) {}
+    @Override public void onWarning(String text) {}
+    @Override public void onBanned(String reason) {}
+    @Override public void onHeartbeat() {}
+    @Override public void onRoomListUpdated(List<RoomInfo> rooms) {}
+    @Override public void onRoomListDelta(RoomListDelta delta) {}
+    @Override public void onOnlineUsersUpdated(List<String> users) {}
+    @Override public void onLeaderboardUpdated(List<UserProfile> leaderboard) {}
+    @Override public void onFriendRequest(FriendRequest req) {}
+    @Override public void onFriendListUpdated(List<FriendInfo> friends) {}
+    @Override public void onFriendStatusChanged(FriendInfo friend) {}
+    @Override public void onRoomChat(String roomId, ChatMessage msg) {}
+    @Override public void onRedoRequested(String roomId, String from) {}
+    @Override public void onRedoResult(String roomId, boolean accepted, String message) {}
+    @Override public void onRematchRequested(String roomId, String from) {}
+    @Override public void onReturnToLobby(String roomId, String message) {}
+    @Override public void onChallengeRequested(String fromUser) {}
+}
@@ -0,0 +1,148 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.common.model.ChatMessage;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+import vn.edu.demo.caro.server.service.CallbackDispatcher;
+import vn.edu.demo.caro.server.service.LobbyServiceImpl;
+import vn.edu.demo.caro.server.state.OnlineSession;
+import vn.edu.demo.caro.server.state.ServerState;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chat global với N user online: tin/s server nhận được và độ trễ gửi -> callback của từng người nhận.
+ *
+ *   java -cp bench/target/benchmarks.jar vn.edu.demo.caro.bench.load.ChatLoad
+ *
+ * Tham số (system property, giá trị mặc định):
+ * - caro.chatload.users (1000): số session online (callback trong JVM, không qua mạng)
+ * - caro.chatload.rate (1000): tin/s gửi vào (0 = gửi nhanh nhất có thể => đo thông lượng tối đa)
+ * - caro.chatload.seconds (10): thời gian gửi mỗi chế độ
+ * - caro.chatload.windows (0,50): các cửa sổ gom của ChatBatcher (caro.chat.batchMs) cần đo
+ * - caro.chatload.perMessage (true): đo thêm cách cũ (sort user, 1 callback onGlobalChat / user / tin)
+ *
+ * Mỗi chế độ dựng ServerState + LobbyServiceImpl mới (DAO trong RAM), session đặt thẳng vào state.online.
+ * Nội dung tin = System.nanoTime() lúc gửi => người nhận ghi độ trễ vào histogram.
+ * In: tin/s gửi, lượt nhận/s, số callback, bị bỏ (mailbox đầy), độ trễ p50/p99/p999/max, CPU process.
+ */
+public final class ChatLoad {
+
+    private ChatLoad() {}
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("caro.chatload.users", 1000);
+        int rate = Integer.getInteger("caro.chatload.rate", 1000);
+        int seconds = Integer.getInteger("caro.chatload.seconds", 10);
+        String windows = System.getProperty("caro.chatload.windows", "0,50");
+        boolean perMessage = Boolean.parseBoolean(System.getProperty("caro.chatload.perMessage", "true"));
+        System.setProperty("caro.heartbeat.timeoutMs", String.valueOf(Long.MAX_VALUE / 4));
+
+        System.out.printf("ChatLoad: %d user online, %s tin/s, %ds mỗi chế độ%n",
+                users, rate == 0 ? "tối đa" : String.valueOf(rate), seconds);
+        if (perMessage) run(users, rate, seconds, -1);
+        for (String w : windows.split(",")) run(users, rate, seconds, Long.parseLong(w.trim()));
+        System.exit(0);
+    }
+
+    // windowMillis < 0: cách cũ, fan-out từng tin ngay trên thread gửi
+    private static void run(int users, int rate, int seconds, long windowMillis) throws Exception {
+        System.setProperty("caro.chat.batchMs", String.valueOf(Math.max(0, windowMillis)));
+        ServerState state = new ServerState(new MemoryDaos.Users(), new MemoryDaos.Matches(), new MemoryDaos.Friends());
+        LobbyServiceImpl lobby = new LobbyServiceImpl(state);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder received = new LongAdder();
+        LongAdder calls = new LongAdder();
+        ClientCallback cb = receiver(latency, received, calls);
+        for (int i = 0; i < users; i++) {
+            String u = String.format("u%05d", i);
+            state.online.put(u, new OnlineSession(u, cb));
+        }
+
+        long proc0 = processCpuNanos();
+        long dropped0 = state.callbacks.getDropped();
+        long sent = 0;
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            ChatMessage msg = new ChatMessage("u00000", "GLOBAL", Long.toString(System.nanoTime()), Instant.now());
+            if (windowMillis < 0) sendPerMessage(state, msg);
+            else lobby.sendGlobalChat(msg);
+            sent++;
+            if (rate > 0) {
+                long wait = start + sent * 1_000_000_000L / rate - System.nanoTime();
+                if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        // chờ mailbox xả hết (tối đa 10s) rồi mới đếm
+        long drainUntil = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < drainUntil
+                && (state.chat.getPending() > 0 || CallbackDispatcher.queuedTotal(state.online.values()) > 0)) {
+            Thread.sleep(10);
+        }
+        long proc = processCpuNanos() - proc0;
+
+        String name = windowMillis < 0 ? "từng tin (cũ)" : "ChatBatcher " + windowMillis + "ms";
+        System.out.printf("%n[%s] gửi %d tin (%.0f/s), nhận %d lượt (%.0f/s, %.1f%% của tin x user), %d callback, bỏ %d%n",
+                name, sent, sent / elapsed, received.sum(), received.sum() / elapsed,
+                100.0 * received.sum() / Math.max(1, sent * (long) users), calls.sum(),
+                state.callbacks.getDropped() - dropped0);
+        System.out.println("  độ trễ gửi -> người nhận: " + latency.summary());
+        System.out.printf("  CPU process: %.0f%% 1 core%n", proc / 1e7 / elapsed);
+
+        state.online.clear();
+        lobby.getTurnTimer().shutdown();
+    }
+
+    // đường cũ trước ChatBatcher: sort danh sách online rồi 1 callback / user / tin
+    private static void sendPerMessage(ServerState state, ChatMessage msg) {
+        List<String> online = new ArrayList<>(state.onlineUsers());
+        online.sort(String::compareToIgnoreCase);
+        for (String u : online) {
+            OnlineSession s = state.online.get(u);
+            if (s != null) state.callbacks.sendDroppable(s, c -> c.onGlobalChat(msg));
+        }
+    }
+
+    private static ClientCallback receiver(LatencyHistogram latency, LongAdder received, LongAdder calls) {
+        return (ClientCallback) Proxy.newProxyInstance(ClientCallback.class.getClassLoader(),
+                new Class<?>[]{ClientCallback.class}, (p, m, a) -> {
+                    switch (m.getName()) {
+                        case "onGlobalChat":
+                            calls.increment();
+                            record((ChatMessage) a[0], latency, received);
+                            return null;
+                        case "onGlobalChatBatch": {
+                            calls.increment();
+                            @SuppressWarnings("unchecked")
+                            List<ChatMessage> batch = (List<ChatMessage>) a[0];
+                            for (ChatMessage msg : batch) record(msg, latency, received);
+                            return null;
+                        }
+                        case "hashCode": return System.identityHashCode(p);
+                        case "equals": return p == a[0];
+                        case "toString": return "chat-receiver";
+                        default: return null;
+                    }
+                });
+    }
+
+    private static void record(ChatMessage msg, LatencyHistogram latency, LongAdder received) {
+        latency.recordNanos(System.nanoTime() - Long.parseLong(msg.getContent()));
+        received.increment();
+    }
+
+    private static long processCpuNanos() {
+        var os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0L;
+    }
+}
@@ -0,0 +1,192 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.common.model.Enums.Mark;
+import vn.edu.demo.caro.common.model.Enums.RoomStatus;
+import vn.edu.demo.caro.common.model.GameSnapshot;
+import vn.edu.demo.caro.common.model.GameUpdate;
+import vn.edu.demo.caro.common.model.Move;
+import vn.edu.demo.caro.common.model.RoomInfo;
+import vn.edu.demo.caro.common.model.UserProfile;
+import vn.edu.demo.caro.common.net.CompressingClientSocketFactory;
+import vn.edu.demo.caro.common.net.CompressingServerSocketFactory;
+import vn.edu.demo.caro.common.net.NetStats;
+import vn.edu.demo.caro.common.net.SocketOptions;
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+
+import java.lang.management.ManagementFactory;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * RMI loopback: cùng payload qua socket RMI mặc định, FramedSocket không nén và FramedSocket nén Deflater
+ * => byte thật sự qua TCP (NetStats) và thời gian mỗi lời gọi.
+ *
+ *   java -cp bench/target/benchmarks.jar vn.edu.demo.caro.bench.load.CompressionLoad
+ *
+ * Tham số (system property, giá trị mặc định):
+ * - caro.compress.calls (2000): số lời gọi đo mỗi (chế độ, payload), sau 500 lời gọi warmup
+ * - caro.compress.payloads (update,snapshot,leaderboard,rooms100,rooms1000): payload trả về từ server
+ * - caro.compress.threshold (1024), caro.compress.level (1): ngưỡng / mức nén của chế độ deflate
+ * - caro.compress.linkMbps (10): băng thông giả định để ước tính thời gian truyền (loopback thì băng thông
+ *   gần như miễn phí nên thời gian đo được chỉ cho thấy chi phí CPU của nén)
+ *
+ * Payload giống dữ liệu thật: danh sách phòng (fetchRoomList), bảng xếp hạng 100 người, GameSnapshot 15x15
+ * giữa ván, GameUpdate 1 nước (dưới ngưỡng => không nén). Server và client cùng JVM nên NetStats đếm
+ * cả 2 chiều (request + response); in số byte / lời gọi theo delta NetStats của từng lần đo.
+ */
+public final class CompressionLoad {
+
+    private static final int WARMUP_CALLS = 500;
+
+    private CompressionLoad() {}
+
+    /** Server trả về payload có sẵn theo tên (chỉ đo đường RMI, không có logic). */
+    public interface PayloadService extends Remote {
+        Object fetch(String payload) throws RemoteException;
+    }
+
+    private static final class PayloadServiceImpl implements PayloadService {
+        final Map<String, Object> payloads;
+
+        PayloadServiceImpl(Map<String, Object> payloads) {
+            this.payloads = payloads;
+        }
+
+        @Override
+        public Object fetch(String payload) {
+            return payloads.get(payload);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int calls = Integer.getInteger("caro.compress.calls", 2000);
+        String[] names = System.getProperty("caro.compress.payloads", "update,snapshot,leaderboard,rooms100,rooms1000").split(",");
+        int threshold = Integer.getInteger("caro.compress.threshold", 1024);
+        int level = Integer.getInteger("caro.compress.level", Deflater.BEST_SPEED);
+        double linkMbps = Double.parseDouble(System.getProperty("caro.compress.linkMbps", "10"));
+
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        for (String n : names) payloads.put(n.trim(), build(n.trim()));
+
+        SocketOptions framed = new SocketOptions(false, threshold, level, true, 64 * 1024);
+        SocketOptions deflate = new SocketOptions(true, threshold, level, true, 64 * 1024);
+        System.out.printf("CompressionLoad: %d lời gọi / payload, deflate: %s, link giả định %.0f Mbit/s%n",
+                calls, deflate, linkMbps);
+        System.out.printf("%-12s %-8s %10s %10s %8s %9s %9s %9s %10s %8s%n",
+                "payload", "mode", "raw B/call", "wire B/call", "wire%", "p50(us)", "p99(us)", "calls/s", "link(ms)", "cpu%");
+
+        for (String name : payloads.keySet()) {
+            run(payloads, name, "plain", null, calls, linkMbps);
+            run(payloads, name, "framed", framed, calls, linkMbps);
+            run(payloads, name, "deflate", deflate, calls, linkMbps);
+        }
+        System.out.println();
+        System.out.println("NetStats tổng: " + NetStats.summary());
+        System.exit(0);
+    }
+
+    // opts == null: socket RMI mặc định (không qua FramedSocket => NetStats không đếm)
+    private static void run(Map<String, Object> payloads, String name, String mode, SocketOptions opts,
+                            int calls, double linkMbps) throws Exception {
+        PayloadServiceImpl impl = new PayloadServiceImpl(payloads);
+        PayloadService stub = opts == null
+                ? (PayloadService) UnicastRemoteObject.exportObject(impl, 0)
+                : (PayloadService) UnicastRemoteObject.exportObject(impl, 0,
+                        new CompressingClientSocketFactory(opts), new CompressingServerSocketFactory(opts));
+        try {
+            for (int i = 0; i < WARMUP_CALLS; i++) stub.fetch(name);
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long rawOut0 = NetStats.getRawBytesOut(), wireOut0 = NetStats.getWireBytesOut();
+            long proc0 = processCpuNanos();
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                long t0 = System.nanoTime();
+                stub.fetch(name);
+                latency.recordNanos(System.nanoTime() - t0);
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            long proc = processCpuNanos() - proc0;
+
+            if (opts == null) {
+                System.out.printf("%-12s %-8s %10s %10s %8s %9d %9d %9.0f %10s %8.0f%n",
+                        name, mode, "-", "-", "-", latency.percentileMicros(0.50), latency.percentileMicros(0.99),
+                        calls / elapsed, "-", proc / 1e7 / elapsed);
+            } else {
+                double raw = (NetStats.getRawBytesOut() - rawOut0) / (double) calls;
+                double wire = (NetStats.getWireBytesOut() - wireOut0) / (double) calls;
+                System.out.printf("%-12s %-8s %10.0f %10.0f %7.1f%% %9d %9d %9.0f %10.3f %8.0f%n",
+                        name, mode, raw, wire, 100 * wire / raw,
+                        latency.percentileMicros(0.50), latency.percentileMicros(0.99), calls / elapsed,
+                        wire * 8 / (linkMbps * 1000), proc / 1e7 / elapsed);
+            }
+        } finally {
+            UnicastRemoteObject.unexportObject(impl, true);
+        }
+    }
+
+    static Object build(String payload) {
+        Random rnd = new Random(42);
+        Instant t = Instant.ofEpochSecond(1_700_000_000L);
+        switch (payload) {
+            case "update":
+                return new GameUpdate("R-1f3a9c", new Move(8, 6, 31, "player_0041"), Mark.X, "player_0042",
+                        31, 1_700_000_030_000L);
+            case "snapshot": {
+                Mark[][] board = new Mark[15][15];
+                for (int r = 0; r < 15; r++) {
+                    for (int c = 0; c < 15; c++) {
+                        int v = rnd.nextInt(7);
+                        board[r][c] = v == 0 ? Mark.X : v == 1 ? Mark.O : Mark.EMPTY;
+                    }
+                }
+                GameSnapshot s = new GameSnapshot();
+                s.setRoomId("R-1f3a9c");
+                s.setBoardSize(15);
+                s.setBoard(board);
+                s.setMoveNo(64);
+                s.setTurn("player_0042");
+                s.setSeq(64);
+                s.setTimed(true);
+                s.setTimeLimitSeconds(30);
+                s.setTurnDeadlineMillis(1_700_000_030_000L);
+                return s;
+            }
+            case "leaderboard": {
+                List<UserProfile> top = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    top.add(new UserProfile(String.format("player_%04d", rnd.nextInt(10_000)),
+                            rnd.nextInt(500), rnd.nextInt(500), rnd.nextInt(50), 2400 - i * 7));
+                }
+                return top;
+            }
+            default: {
+                if (!payload.startsWith("rooms")) throw new IllegalArgumentException("Không có payload: " + payload);
+                int n = Integer.parseInt(payload.substring("rooms".length()));
+                List<RoomInfo> rooms = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    boolean playing = rnd.nextInt(3) == 0;
+                    rooms.add(new RoomInfo(String.format("R-%06x", rnd.nextInt(1 << 24)), "Phòng của player_" + rnd.nextInt(10_000),
+                            String.format("player_%04d", rnd.nextInt(10_000)), 2, playing ? 2 : 1,
+                            playing ? RoomStatus.PLAYING : RoomStatus.WAITING, t.plusSeconds(rnd.nextInt(86_400)),
+                            rnd.nextBoolean() ? 15 : 19, rnd.nextBoolean(), rnd.nextInt(5) == 0, rnd.nextBoolean(), 30));
+                }
+                return rooms;
+            }
+        }
+    }
+
+    private static long processCpuNanos() {
+        var os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0L;
+    }
+}
@@ -0,0 +1,174 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.common.net.GatewayClient;
+import vn.edu.demo.caro.common.net.RmiSockets;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.common.rmi.LobbyService;
+import vn.edu.demo.caro.server.gateway.GatewayServer;
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+import vn.edu.demo.caro.server.service.LobbyServiceImpl;
+import vn.edu.demo.caro.server.state.ServerState;
+import vn.edu.demo.caro.server.store.EmbeddedStore;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test: LobbyServiceImpl thật + DAO trong RAM + hàng nghìn bot (không cần MySQL, không cần JavaFX).
+ *
+ *   java -Dcaro.load.bots=2000 -Dcaro.load.transport=rmi -cp bench/target/benchmarks.jar vn.edu.demo.caro.bench.load.LoadGen
+ *
+ * Tham số (system property, giá trị mặc định):
+ * - caro.load.bots (1000), caro.load.seconds (60), caro.load.rampMs (5000): số bot, thời gian chạy, thời gian đăng nhập dần
+ * - caro.load.transport (inproc): inproc = gọi thẳng trong JVM (qua proxy đo metrics của server),
+ *   rmi = registry loopback + export callback từng bot (đúng đường mạng của client thật, cùng socket nén),
+ *   gateway = GatewayServer NIO loopback + 1 GatewayClient / bot (1 socket cho cả request lẫn callback)
+ * - caro.load.rmiPort (19099), caro.load.gatewayPort (19098), caro.load.gatewayThreads (8)
+ * - caro.load.threads (2 x số core): thread pool hành động của bot
+ * - caro.load.thinkMs (100): nghĩ trung bình trước mỗi nước
+ * - caro.load.chatRate (0.02), caro.load.undoRate (0.01), caro.load.resignRate (0.005): xác suất mỗi lượt
+ * - caro.load.store (memory): memory = DAO trong RAM; embedded = EmbeddedStore thật trong thư mục tạm
+ * - caro.load.reportSeconds (5)
+ *
+ * In mỗi cửa sổ: nước/s, ván/s, độ trễ makeMove -> đối thủ nhận (p50/p99/p999), thread, heap, GC;
+ * cuối cùng in tổng kết, heap / kết nối (heap sau GC lúc kết thúc trừ heap sau GC trước khi có bot, chia số
+ * kết nối => số kết nối / GB heap; client và server cùng JVM nên tính cả 2 phía, như nhau cho mọi transport)
+ * + {@code Metrics.report()} của server. So gateway với RMI: chạy 2 lần cùng tham số, chỉ đổi transport.
+ */
+public final class LoadGen {
+
+    private LoadGen() {}
+
+    public static void main(String[] args) throws Exception {
+        int botCount = Integer.getInteger("caro.load.bots", 1000);
+        int seconds = Integer.getInteger("caro.load.seconds", 60);
+        long rampMillis = Long.getLong("caro.load.rampMs", 5000L);
+        String transport = System.getProperty("caro.load.transport", "inproc");
+        int reportSeconds = Integer.getInteger("caro.load.reportSeconds", 5);
+
+        LoadRun run = new LoadRun(
+                Integer.getInteger("caro.load.threads", 2 * Runtime.getRuntime().availableProcessors()),
+                Long.getLong("caro.load.thinkMs", 100L),
+                Double.parseDouble(System.getProperty("caro.load.chatRate", "0.02")),
+                Double.parseDouble(System.getProperty("caro.load.undoRate", "0.01")),
+                Double.parseDouble(System.getProperty("caro.load.resignRate", "0.005")));
+
+        // ===== Server =====
+        ServerState state;
+        if ("embedded".equalsIgnoreCase(System.getProperty("caro.load.store", "memory"))) {
+            EmbeddedStore store = EmbeddedStore.open(Files.createTempDirectory("caro-load-store"));
+            state = new ServerState(store.users, store.matches, store.friends);
+            store.registerGauges(state.metrics);
+        } else {
+            state = new ServerState(new MemoryDaos.Users(), new MemoryDaos.Matches(), new MemoryDaos.Friends());
+        }
+        LobbyServiceImpl impl = new LobbyServiceImpl(state);
+
+        boolean rmi = "rmi".equalsIgnoreCase(transport);
+        boolean gateway = "gateway".equalsIgnoreCase(transport);
+        LobbyService lobby;
+        GatewayServer gatewayServer = null;
+        if (rmi) {
+            int port = Integer.getInteger("caro.load.rmiPort", 19099);
+            Registry registry = LocateRegistry.createRegistry(port);
+            registry.rebind("CaroLobby", impl.export());
+            lobby = (LobbyService) LocateRegistry.getRegistry("127.0.0.1", port).lookup("CaroLobby");
+        } else if (gateway) {
+            gatewayServer = new GatewayServer(impl.remote, Integer.getInteger("caro.load.gatewayPort", 19098),
+                    Integer.getInteger("caro.load.gatewayThreads", 8));
+            gatewayServer.setDisconnectHandler(impl::onTransportClosed);
+            lobby = null; // mỗi bot 1 GatewayClient
+        } else {
+            lobby = impl.remote;
+        }
+        long heapBefore = usedHeapAfterGc();
+        System.out.printf("Load: %d bot, %s, %ds (ramp %dms), think %dms, chat %.3f, undo %.3f, resign %.3f%n",
+                botCount, rmi ? "rmi loopback" : gateway ? "gateway loopback" : "in-JVM", seconds, rampMillis, run.thinkMicros / 1000,
+                run.chatRate, run.undoRate, run.resignRate);
+
+        // ===== Bot =====
+        for (int i = 0; i < botCount; i++) {
+            Bot bot = new Bot(String.format("bot%05d", i), run);
+            run.bots.put(bot.name, bot);
+            long delay = botCount <= 1 ? 0 : rampMillis * i / (botCount - 1);
+            if (gateway) {
+                // bắt tay trên main thread như exportObject của rmi, không chiếm thread hành động của bot
+                LobbyService own = GatewayClient.connect("127.0.0.1", gatewayServer.getPort()).lobby();
+                run.actions.schedule(() -> bot.start(own, bot), delay, TimeUnit.MILLISECONDS);
+            } else {
+                ClientCallback self = rmi
+                        ? (ClientCallback) UnicastRemoteObject.exportObject(bot, 0, RmiSockets.clientFactory(), RmiSockets.serverFactory())
+                        : bot;
+                run.actions.schedule(() -> bot.start(lobby, self), delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // ===== Report =====
+        System.out.printf("%6s %7s %8s %7s %9s %9s %9s %8s %7s %7s %8s %6s%n",
+                "t(s)", "online", "moves/s", "games/s", "p50(ms)", "p99(ms)", "p999(ms)", "queued", "thread", "heapMB", "gc(ms)", "err");
+        long start = System.nanoTime();
+        long lastMoves = 0, lastGames = 0, lastGcMillis = gcMillis();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(reportSeconds));
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            long moves = run.movesSent.sum();
+            long games = run.gamesEnded.sum() / 2;
+            long gc = gcMillis();
+            LatencyHistogram w = run.swapWindow();
+            System.out.printf("%6.0f %7d %8.0f %7.1f %9.2f %9.2f %9.2f %8d %7d %7d %8d %6d%n",
+                    elapsed, state.online.size(),
+                    (moves - lastMoves) / (double) reportSeconds, (games - lastGames) / (double) reportSeconds,
+                    w.percentileMicros(0.50) / 1000.0, w.percentileMicros(0.99) / 1000.0, w.percentileMicros(0.999) / 1000.0,
+                    state.metrics.gaugeValues().get("callback.queued"),
+                    ManagementFactory.getThreadMXBean().getThreadCount(),
+                    (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20,
+                    gc - lastGcMillis, run.getErrors());
+            lastMoves = moves;
+            lastGames = games;
+            lastGcMillis = gc;
+        }
+
+        // ===== Tổng kết =====
+        double total = (System.nanoTime() - start) / 1e9;
+        run.actions.shutdownNow();
+        int connections = gateway ? gatewayServer.getConnections() : state.online.size();
+        long heapPerConnection = Math.max(0, usedHeapAfterGc() - heapBefore) / Math.max(1, connections);
+        System.out.println();
+        System.out.printf("Tổng: %d nước (%.0f/s), %d ván xong, %d tin chat nhận, %d lỗi%n",
+                run.movesSent.sum(), run.movesSent.sum() / total, run.gamesEnded.sum() / 2,
+                run.chatReceived.sum(), run.getErrors());
+        System.out.println("Độ trễ makeMove -> đối thủ: " + run.moveLatency.summary());
+        System.out.printf("Kết nối: %d, heap / kết nối %.1f KB => %.0f kết nối / GB heap, %d thread%n",
+                connections, heapPerConnection / 1024.0, (1L << 30) / (double) Math.max(1, heapPerConnection),
+                ManagementFactory.getThreadMXBean().getThreadCount());
+        if (gateway) System.out.println("Gateway: " + gatewayServer);
+        System.out.print("Lỗi theo lời gọi:\n" + run.errorSummary());
+        System.out.println();
+        System.out.print(state.metrics.report());
+        System.exit(0);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long gcMillis() {
+        long sum = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sum += Math.max(0, gc.getCollectionTime());
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,85 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Trạng thái chung của 1 lượt load test: cấu hình kịch bản, thread pool của bot, bộ đếm, histogram. */
+final class LoadRun {
+
+    final Map<String, Bot> bots = new ConcurrentHashMap<>();
+    final ScheduledThreadPoolExecutor actions;
+
+    // ===== Kịch bản =====
+    final long thinkMicros;
+    final double chatRate;
+    final double undoRate;
+    final double resignRate;
+
+    // ===== Bộ đếm =====
+    final LongAdder movesSent = new LongAdder();
+    final LongAdder gamesStarted = new LongAdder();
+    final LongAdder gamesEnded = new LongAdder();
+    final LongAdder chatReceived = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, LongAdder> errorsByCall = new ConcurrentHashMap<>();
+    private final Map<String, String> firstError = new ConcurrentHashMap<>();
+
+    // độ trễ makeMove -> đối thủ nhận onGameUpdated: toàn bộ lượt chạy + cửa sổ report hiện tại
+    final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final AtomicReference<LatencyHistogram> window = new AtomicReference<>(new LatencyHistogram());
+
+    LoadRun(int threads, long thinkMillis, double chatRate, double undoRate, double resignRate) {
+        AtomicInteger seq = new AtomicInteger();
+        this.actions = new ScheduledThreadPoolExecutor(threads, r -> {
+            Thread t = new Thread(r, "bot-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.thinkMicros = thinkMillis * 1000;
+        this.chatRate = chatRate;
+        this.undoRate = undoRate;
+        this.resignRate = resignRate;
+    }
+
+    /** Thời gian "suy nghĩ" trước mỗi hành động: think * [0.5, 1.5). */
+    long thinkDelayMicros() {
+        if (thinkMicros <= 0) return 0;
+        return thinkMicros / 2 + ThreadLocalRandom.current().nextLong(thinkMicros);
+    }
+
+    void recordMoveLatency(long nanos) {
+        moveLatency.recordNanos(nanos);
+        window.get().recordNanos(nanos);
+    }
+
+    /** Histogram của cửa sổ vừa qua (thay bằng cái mới). */
+    LatencyHistogram swapWindow() {
+        return window.getAndSet(new LatencyHistogram());
+    }
+
+    void error(String call, Exception e) {
+        errors.increment();
+        errorsByCall.computeIfAbsent(call, k -> new LongAdder()).increment();
+        firstError.putIfAbsent(call, String.valueOf(e.getMessage()));
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    String errorSummary() {
+        if (errorsByCall.isEmpty()) return "  (không có)\n";
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(errorsByCall).forEach((k, n) ->
+                sb.append(String.format("  %-16s %8d  vd: %s%n", k, n.sum(), firstError.get(k))));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.common.model.GameRecord;
+import vn.edu.demo.caro.server.dao.JdbcMatchDao;
+import vn.edu.demo.caro.server.dao.MatchDao;
+import vn.edu.demo.caro.server.dao.MatchDao.MatchRow;
+import vn.edu.demo.caro.server.db.Db;
+import vn.edu.demo.caro.server.db.DbConfig;
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+import vn.edu.demo.caro.server.store.EmbeddedStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import N ván (kèm nước đi) qua MatchDao.recordResults theo lô như MatchResultWriter, đo thông lượng ghi,
+ * rồi đọc ngẫu nhiên getMatchMoves để đo độ trễ giải mã.
+ *
+ *   java -cp bench/target/benchmarks.jar vn.edu.demo.caro.bench.load.MatchImport
+ *
+ * Tham số (system property, giá trị mặc định):
+ * - caro.import.games (1000000), caro.import.batch (200), caro.import.reads (100000)
+ * - caro.import.store (embedded): embedded = EmbeddedStore (caro.import.dir, mặc định thư mục tạm);
+ *   mysql = JdbcMatchDao theo db.url / db.user / db.pass (bảng matches + match_moves phải có sẵn)
+ *
+ * Ván được sinh trước 1 lần (4096 ván, bàn 15x15, 9..80 nước, nước sau gần nước trước, nghĩ 0.3..15s)
+ * rồi dùng lại => số đo chỉ gồm mã hóa sẵn + ghi.
+ */
+public final class MatchImport {
+
+    private static final int POOL = 4096;
+
+    private MatchImport() {}
+
+    public static void main(String[] args) throws Exception {
+        int games = Integer.getInteger("caro.import.games", 1_000_000);
+        int batch = Integer.getInteger("caro.import.batch", 200);
+        int reads = Integer.getInteger("caro.import.reads", 100_000);
+        String kind = System.getProperty("caro.import.store", "embedded");
+
+        EmbeddedStore store = null;
+        Path tempDir = null;
+        MatchDao dao;
+        if ("mysql".equalsIgnoreCase(kind)) {
+            dao = new JdbcMatchDao(new Db(new DbConfig(
+                    System.getProperty("db.url"), System.getProperty("db.user"), System.getProperty("db.pass"))));
+        } else {
+            String dir = System.getProperty("caro.import.dir");
+            tempDir = dir == null ? Files.createTempDirectory("caro-import") : null;
+            store = EmbeddedStore.open(dir != null ? Paths.get(dir) : tempDir);
+            dao = store.matches;
+        }
+
+        // ===== Sinh ván =====
+        Random rnd = new Random(42);
+        byte[][] pool = new byte[POOL][];
+        long poolMoves = 0, poolBytes = 0;
+        for (int i = 0; i < POOL; i++) {
+            GameRecord g = randomGame(rnd, 15, 9 + rnd.nextInt(72));
+            pool[i] = g.encode();
+            poolMoves += g.getMoveCount();
+            poolBytes += pool[i].length;
+        }
+        double movesPerGame = poolMoves / (double) POOL;
+        System.out.printf("Import: %d ván (%s), lô %d; trung bình %.1f nước / ván, %.2f byte / nước (cả header)%n",
+                games, store != null ? "embedded" : "mysql", batch, movesPerGame, poolBytes / (double) poolMoves);
+
+        // ===== Ghi =====
+        long start = System.nanoTime();
+        long lastReport = start;
+        int lastDone = 0;
+        Instant now = Instant.now();
+        for (int done = 0; done < games; ) {
+            int n = Math.min(batch, games - done);
+            List<MatchRow> rows = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int k = done + i;
+                rows.add(new MatchRow("room" + (k % 5000), "user" + (k % 10_000), "user" + ((k + 1) % 10_000),
+                        (k & 1) == 0 ? "user" + (k % 10_000) : null, "WIN", now, pool[k % POOL]));
+            }
+            dao.recordResults(rows, List.of());
+            done += n;
+
+            long t = System.nanoTime();
+            if (t - lastReport >= TimeUnit.SECONDS.toNanos(5)) {
+                double s = (t - lastReport) / 1e9;
+                System.out.printf("%8d ván  %9.0f ván/s  %10.0f nước/s%n", done, (done - lastDone) / s,
+                        (done - lastDone) * movesPerGame / s);
+                lastReport = t;
+                lastDone = done;
+            }
+        }
+        double total = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Ghi: %d ván trong %.1fs = %.0f ván/s, %.0f nước/s%n",
+                games, total, games / total, games * movesPerGame / total);
+        if (store != null) {
+            store.compact(); // không có bản ghi chết: đo chi phí chép lại toàn bộ log
+            System.out.printf("Store: %s%n  %.1f byte / ván trên đĩa%n", store, store.matches.size() == 0 ? 0.0
+                    : store.getBytes() / (double) store.matches.size());
+        }
+
+        // ===== Đọc =====
+        LatencyHistogram h = new LatencyHistogram();
+        long movesRead = 0;
+        for (int i = 0; i < reads; i++) {
+            long id = 1 + ThreadLocalRandom.current().nextLong(games);
+            long t0 = System.nanoTime();
+            GameRecord g = dao.getMatchMoves(id);
+            h.recordNanos(System.nanoTime() - t0);
+            if (g != null) movesRead += g.getMoveCount();
+        }
+        System.out.println("getMatchMoves: " + h.summary() + " (" + movesRead + " nước)");
+        if (store != null) store.close();
+        if (tempDir != null) {
+            try (var files = Files.list(tempDir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(tempDir);
+        }
+        System.exit(0);
+    }
+
+    // giống ván thật: nước sau nằm trong ô 5x5 quanh 1 quân đã có
+    static GameRecord randomGame(Random rnd, int n, int moves) {
+        boolean[] used = new boolean[n * n];
+        int[] cells = new int[moves];
+        int[] think = new int[moves];
+        int count = 0;
+        cells[count++] = (n / 2) * n + n / 2;
+        used[cells[0]] = true;
+        while (count < moves) {
+            int base = cells[rnd.nextInt(count)];
+            int r = base / n + rnd.nextInt(5) - 2, c = base % n + rnd.nextInt(5) - 2;
+            if (r < 0 || c < 0 || r >= n || c >= n || used[r * n + c]) continue;
+            used[r * n + c] = true;
+            cells[count++] = r * n + c;
+        }
+        for (int i = 0; i < moves; i++) think[i] = 300 + (int) (-Math.log(1 - rnd.nextDouble()) * 3000) % 15_000;
+        return new GameRecord(n, cells, think);
+    }
+}
@@ -0,0 +1,158 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.common.model.GameRecord;
+import vn.edu.demo.caro.common.model.MatchSummary;
+import vn.edu.demo.caro.common.model.UserProfile;
+import vn.edu.demo.caro.server.dao.FriendDao;
+import vn.edu.demo.caro.server.dao.MatchDao;
+import vn.edu.demo.caro.server.dao.UserDao;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * DAO trong RAM cho load test (không cần MySQL, không ghi đĩa).
+ */
+final class MemoryDaos {
+
+    private MemoryDaos() {}
+
+    static final class Users implements UserDao {
+        private final Map<String, UserRecord> users = new ConcurrentHashMap<>();
+
+        @Override
+        public void ensureUser(String username, String password) {
+            users.putIfAbsent(username, new UserRecord(username, password, 0, 0, 0, 1000, null, null));
+        }
+
+        @Override
+        public Optional<UserRecord> find(String username) {
+            return Optional.ofNullable(users.get(username));
+        }
+
+        @Override
+        public boolean exists(String username) {
+            return users.containsKey(username);
+        }
+
+        @Override
+        public void create(String username, String password) {
+            users.put(username, new UserRecord(username, password, 0, 0, 0, 1000, null, null));
+        }
+
+        @Override
+        public void updateStats(String username, int wins, int losses, int draws, int elo) {
+            users.computeIfPresent(username, (k, r) -> new UserRecord(k, r.password, wins, losses, draws, elo, r.bannedUntil, r.banReason));
+        }
+
+        @Override
+        public void cacheStats(Collection<MatchDao.StatsRow> rows) {
+            for (MatchDao.StatsRow s : rows) updateStats(s.username, s.wins, s.losses, s.draws, s.elo);
+        }
+
+        @Override
+        public List<UserProfile> topElo(int top) {
+            return allProfiles().stream()
+                    .sorted(Comparator.comparingInt(UserProfile::getElo).reversed())
+                    .limit(Math.max(1, top))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public List<UserProfile> allProfiles() {
+            List<UserProfile> out = new ArrayList<>();
+            for (UserRecord r : users.values()) out.add(new UserProfile(r.username, r.wins, r.losses, r.draws, r.elo));
+            return out;
+        }
+
+        @Override
+        public int countUsersHigherElo(int elo) {
+            return (int) users.values().stream().filter(r -> r.elo > elo).count();
+        }
+
+        @Override
+        public void banUser(String username, String reason, int minutes) {
+            Instant until = Instant.now().plusSeconds(minutes * 60L);
+            users.computeIfPresent(username, (k, r) -> new UserRecord(k, r.password, r.wins, r.losses, r.draws, r.elo, until, reason));
+        }
+    }
+
+    static final class Friends implements FriendDao {
+        private final Map<String, Set<String>> friends = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> incoming = new ConcurrentHashMap<>();
+
+        private static Set<String> set(Map<String, Set<String>> m, String k) {
+            return m.computeIfAbsent(k, x -> ConcurrentHashMap.newKeySet());
+        }
+
+        @Override
+        public List<String> listFriends(String user) {
+            return new ArrayList<>(friends.getOrDefault(user, Set.of()));
+        }
+
+        @Override
+        public boolean areFriends(String u1, String u2) {
+            return friends.getOrDefault(u1, Set.of()).contains(u2);
+        }
+
+        @Override
+        public void createFriendRequest(String from, String to) {
+            set(incoming, to).add(from);
+        }
+
+        @Override
+        public boolean hasPendingRequest(String from, String to) {
+            return incoming.getOrDefault(to, Set.of()).contains(from);
+        }
+
+        @Override
+        public List<String> getIncomingRequests(String username) {
+            return new ArrayList<>(incoming.getOrDefault(username, Set.of()));
+        }
+
+        @Override
+        public void resolveLatestPending(String fromUser, String toUser, boolean accept) {
+            if (set(incoming, toUser).remove(fromUser) && accept) addFriendPair(fromUser, toUser);
+        }
+
+        @Override
+        public void addFriendPair(String u1, String u2) {
+            set(friends, u1).add(u2);
+            set(friends, u2).add(u1);
+        }
+    }
+
+    static final class Matches implements MatchDao {
+        final AtomicLong inserted = new AtomicLong();
+
+        @Override
+        public void insertMatch(String roomId, String playerX, String playerO, String winner, String reason) {
+            inserted.incrementAndGet();
+        }
+
+        @Override
+        public void recordResults(Collection<MatchRow> matches, Collection<StatsRow> stats) {
+            inserted.addAndGet(matches.size());
+        }
+
+        // load test chỉ đếm ván, không giữ nước đi
+        @Override
+        public GameRecord getMatchMoves(long matchId) {
+            return null;
+        }
+
+        @Override
+        public List<MatchSummary> recentMatches(String username, int limit) {
+            return List.of();
+        }
+    }
+}
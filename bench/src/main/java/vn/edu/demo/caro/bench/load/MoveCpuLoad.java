@@ -0,0 +1,239 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.common.model.Enums.RoomStatus;
+import vn.edu.demo.caro.common.model.GameSnapshot;
+import vn.edu.demo.caro.common.model.RoomCreateRequest;
+import vn.edu.demo.caro.common.net.GatewayCodec;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.server.ServerShutdown;
+import vn.edu.demo.caro.server.service.CallbackDispatcher;
+import vn.edu.demo.caro.server.service.LobbyServiceImpl;
+import vn.edu.demo.caro.server.state.OnlineSession;
+import vn.edu.demo.caro.server.state.Room;
+import vn.edu.demo.caro.server.state.ServerState;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CPU mỗi nước đi: đường hiện tại (chỉ GameUpdate có seq) so với đường cũ (GameUpdate + broadcastSnapshot sau mỗi nước).
+ *
+ *   java -cp bench/target/benchmarks.jar vn.edu.demo.caro.bench.load.MoveCpuLoad
+ *
+ * Tham số (system property, giá trị mặc định):
+ * - caro.movecpu.rooms (500): số phòng đang đánh (2 session online / phòng, callback trong JVM)
+ * - caro.movecpu.moves (60): số nước mỗi phòng mỗi lượt (ô ngẫu nhiên không trùng, cùng seed; thắng sớm thì dừng)
+ * - caro.movecpu.boards (15,30): các cỡ bàn cần đo
+ * - caro.movecpu.rounds (5): số lượt mỗi cỡ bàn, 2 đường xen kẽ; lượt đầu chỉ để warmup
+ * - caro.movecpu.codec (rmi): cách callback tuần tự hóa payload nhận được như transport thật -
+ *   rmi (ObjectOutputStream mới mỗi lần gọi) | gateway (GatewayCodec.encodeEvent) | none
+ *
+ * Mỗi lượt dựng ServerState + LobbyServiceImpl mới (DAO trong RAM). Đường cũ dựng lại trong bench như trước
+ * commit bỏ snapshot: sau makeMove lấy snapshot (buildSnapshot, chép bàn) rồi gửi onBoardReset cho cả 2 người
+ * qua sendLatest (cùng key gộp "snapshot:" + phòng). Đo CPU cả process (thread đi nước + thread callback)
+ * từ nước đầu tới khi mailbox xả hết.
+ * In: nước/s, CPU µs / nước, byte tuần tự hóa / nước, số callback bị gộp; tỉ lệ đường mới / đường cũ.
+ */
+public final class MoveCpuLoad {
+
+    private MoveCpuLoad() {}
+
+    public static void main(String[] args) throws Exception {
+        int rooms = Integer.getInteger("caro.movecpu.rooms", 500);
+        int moves = Integer.getInteger("caro.movecpu.moves", 60);
+        String boards = System.getProperty("caro.movecpu.boards", "15,30");
+        int rounds = Math.max(2, Integer.getInteger("caro.movecpu.rounds", 5));
+        String codec = System.getProperty("caro.movecpu.codec", "rmi");
+        System.setProperty("caro.heartbeat.timeoutMs", String.valueOf(Long.MAX_VALUE / 4));
+        System.setProperty("caro.rooms.reclaimMs", String.valueOf(Long.MAX_VALUE / 4));
+
+        System.out.printf("MoveCpuLoad: %d phòng x %d nước, bàn %s, codec %s, %d lượt (bỏ lượt đầu)%n",
+                rooms, moves, boards, codec, rounds);
+        for (String b : boards.split(",")) {
+            int board = Integer.parseInt(b.trim());
+            Totals seq = new Totals(), snap = new Totals();
+            for (int r = 0; r < rounds; r++) {
+                // xen kẽ thứ tự để JIT / GC không nghiêng về 1 đường
+                boolean snapFirst = (r & 1) == 1;
+                Totals first = snapFirst ? snap : seq, second = snapFirst ? seq : snap;
+                Totals a = play(rooms, moves, board, codec, snapFirst);
+                Totals c = play(rooms, moves, board, codec, !snapFirst);
+                if (r == 0) continue;
+                first.add(a);
+                second.add(c);
+            }
+            System.out.printf("%n[bàn %dx%d]%n", board, board);
+            seq.print("chỉ GameUpdate (seq)");
+            snap.print("GameUpdate + snapshot (cũ)");
+            System.out.printf("  đường mới / đường cũ: CPU %.0f%%, byte %.0f%%%n",
+                    100.0 * seq.cpuPerMove() / snap.cpuPerMove(), 100.0 * seq.bytesPerMove() / snap.bytesPerMove());
+        }
+        System.exit(0);
+    }
+
+    private static final class Totals {
+        long moves, cpuNanos, wallNanos, bytes, callbacks, coalesced;
+
+        void add(Totals t) {
+            moves += t.moves;
+            cpuNanos += t.cpuNanos;
+            wallNanos += t.wallNanos;
+            bytes += t.bytes;
+            callbacks += t.callbacks;
+            coalesced += t.coalesced;
+        }
+
+        double cpuPerMove() { return cpuNanos / 1e3 / Math.max(1, moves); }
+        double bytesPerMove() { return bytes / (double) Math.max(1, moves); }
+
+        void print(String name) {
+            System.out.printf("  %-28s %d nước (%.0f/s), CPU %.1f µs / nước, %.0f byte / nước, %.2f callback / nước, gộp %d%n",
+                    name, moves, moves / (wallNanos / 1e9), cpuPerMove(), bytesPerMove(),
+                    callbacks / (double) Math.max(1, moves), coalesced);
+        }
+    }
+
+    private static Totals play(int rooms, int moves, int board, String codec, boolean snapshot) throws Exception {
+        ServerState state = new ServerState(new MemoryDaos.Users(), new MemoryDaos.Matches(), new MemoryDaos.Friends());
+        LobbyServiceImpl lobby = new LobbyServiceImpl(state);
+        LongAdder bytes = new LongAdder(), callbacks = new LongAdder();
+        ClientCallback cb = receiver(codec, bytes, callbacks);
+
+        String[] ids = new String[rooms];
+        for (int i = 0; i < rooms; i++) {
+            String a = "x" + i, b = "o" + i;
+            state.userDao.ensureUser(a, "pw"); // endGame cập nhật chỉ số của cả 2
+            state.userDao.ensureUser(b, "pw");
+            state.online.put(a, new OnlineSession(a, cb));
+            state.online.put(b, new OnlineSession(b, cb));
+            RoomCreateRequest req = new RoomCreateRequest();
+            req.setRoomName("bench " + i);
+            req.setBoardSize(board);
+            ids[i] = lobby.createRoom(a, req);
+            lobby.joinRoom(b, ids[i], null);
+        }
+        int[][] cells = cells(rooms, Math.min(moves, board * board), board);
+        drain(state, callbacks);
+
+        Totals t = new Totals();
+        long bytes0 = bytes.sum(), calls0 = callbacks.sum(), coalesced0 = state.callbacks.getCoalesced();
+        long proc0 = processCpuNanos();
+        long start = System.nanoTime();
+        for (int m = 0; m < cells[0].length; m++) {
+            for (int i = 0; i < rooms; i++) {
+                Room room = state.rooms.get(ids[i]);
+                if (room.status != RoomStatus.PLAYING) continue; // thắng trước khi hết nước
+                String player = room.turn;
+                try {
+                    lobby.makeMove(ids[i], player, cells[i][m] / board, cells[i][m] % board);
+                    t.moves++;
+                    if (snapshot) broadcastSnapshot(state, lobby, room, player);
+                } catch (RemoteException ignored) {
+                }
+            }
+        }
+        drain(state, callbacks);
+        t.wallNanos = System.nanoTime() - start;
+        t.cpuNanos = processCpuNanos() - proc0;
+        t.bytes = bytes.sum() - bytes0;
+        t.callbacks = callbacks.sum() - calls0;
+        t.coalesced = state.callbacks.getCoalesced() - coalesced0;
+
+        ServerShutdown.run(null, lobby, null, state, null, null);
+        return t;
+    }
+
+    // đường cũ: makeMove gọi broadcastSnapshot ngay sau GameUpdate (seq không đổi: chỉ đo chi phí dựng + gửi)
+    private static void broadcastSnapshot(ServerState state, LobbyServiceImpl lobby, Room room, String player)
+            throws RemoteException {
+        GameSnapshot snap = lobby.getSnapshot(room.id, player);
+        for (String u : room.players) {
+            OnlineSession s = state.online.get(u);
+            if (s != null) state.callbacks.sendLatest(s, "snapshot:" + room.id, c -> c.onBoardReset(snap));
+        }
+    }
+
+    // ô ngẫu nhiên không trùng mỗi phòng, cùng seed => 2 đường đi đúng cùng chuỗi nước
+    private static int[][] cells(int rooms, int moves, int board) {
+        Random rnd = new Random(7);
+        int[][] cells = new int[rooms][moves];
+        int[] all = new int[board * board];
+        for (int i = 0; i < rooms; i++) {
+            for (int c = 0; c < all.length; c++) all[c] = c;
+            for (int c = 0; c < moves; c++) {
+                int k = c + rnd.nextInt(all.length - c);
+                int tmp = all[c];
+                all[c] = all[k];
+                all[k] = tmp;
+                cells[i][c] = all[c];
+            }
+        }
+        return cells;
+    }
+
+    // chờ mailbox rỗng và không còn callback đang chạy (số callback đứng yên 2 lần đo liền)
+    private static void drain(ServerState state, LongAdder callbacks) throws InterruptedException {
+        long last = -1;
+        long until = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < until) {
+            long now = callbacks.sum();
+            if (now == last && CallbackDispatcher.queuedTotal(state.online.values()) == 0) return;
+            last = now;
+            Thread.sleep(5);
+        }
+    }
+
+    // callback trong JVM: tuần tự hóa payload game như transport sẽ làm rồi bỏ, đếm byte
+    private static ClientCallback receiver(String codec, LongAdder bytes, LongAdder callbacks) {
+        return (ClientCallback) Proxy.newProxyInstance(ClientCallback.class.getClassLoader(),
+                new Class<?>[]{ClientCallback.class}, (p, m, a) -> {
+                    switch (m.getName()) {
+                        case "onGameUpdated":
+                        case "onBoardReset":
+                            callbacks.increment();
+                            bytes.add(encode(codec, m, a));
+                            return null;
+                        case "hashCode": return System.identityHashCode(p);
+                        case "equals": return p == a[0];
+                        case "toString": return "move-receiver";
+                        default: return null;
+                    }
+                });
+    }
+
+    private static long encode(String codec, Method m, Object[] args) throws IOException {
+        switch (codec) {
+            case "gateway":
+                return GatewayCodec.encodeEvent(GatewayCodec.CALLBACK.idOf(m), args).length;
+            case "none":
+                return 0;
+            default: {
+                Counting out = new Counting();
+                try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                    for (Object o : args) oos.writeObject(o);
+                }
+                return out.count;
+            }
+        }
+    }
+
+    private static final class Counting extends OutputStream {
+        long count;
+
+        @Override public void write(int b) { count++; }
+        @Override public void write(byte[] b, int off, int len) { count += len; }
+    }
+
+    private static long processCpuNanos() {
+        var os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0L;
+    }
+}
@@ -0,0 +1,340 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.common.model.Enums.RoomStatus;
+import vn.edu.demo.caro.common.model.RoomCreateRequest;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.server.ServerShutdown;
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+import vn.edu.demo.caro.server.service.LobbyServiceImpl;
+import vn.edu.demo.caro.server.state.OnlineSession;
+import vn.edu.demo.caro.server.state.Room;
+import vn.edu.demo.caro.server.state.ServerState;
+import vn.edu.demo.caro.server.store.RoomJournal;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Journal phòng: chi phí ghi mỗi nước + thời gian khôi phục N phòng đang đánh sau "crash".
+ *
+ *   java -cp bench/target/benchmarks.jar vn.edu.demo.caro.bench.load.RoomRecovery
+ *
+ * Tham số (system property, giá trị mặc định):
+ * - caro.recovery.rooms (10000), caro.recovery.moves (40): số phòng đang đánh, số nước mỗi phòng (bàn 15x15, có giờ)
+ * - caro.recovery.rounds (3): lặp phần đi nước (tắt / bật journal xen kẽ), lấy lần nhanh nhất
+ *
+ * Mỗi lượt: LobbyServiceImpl thật + DAO trong RAM, N phòng vào đủ 2 người (session chỉ tồn tại lúc tạo / vào phòng
+ * => không đo fan-out callback / room list), đi nước lần lượt qua các phòng. Đo makeMove không journal vs có journal => chênh lệch / nước, byte journal / nước.
+ * Sau lượt cuối: bỏ ngang journal (không close, như process chết), mở lại bằng server mới + recoverRooms,
+ * so từng phòng (bàn cờ, lượt, số nước, deadline) với bản gốc; checkpoint rồi mở lại lần nữa.
+ * Checkpoint dưới tải: thread khác checkpoint liên tục trong lúc appendMove (kèm ghi ảnh lại / xóa phòng)
+ * => độ trễ appendMove khi checkpoint chạy song song, bỏ ngang rồi mở lại phải còn đủ nước mọi phòng.
+ */
+public final class RoomRecovery {
+
+    private static final int BOARD = 15;
+
+    private RoomRecovery() {}
+
+    public static void main(String[] args) throws Exception {
+        int rooms = Integer.getInteger("caro.recovery.rooms", 10_000);
+        int moves = Integer.getInteger("caro.recovery.moves", 40);
+        int rounds = Integer.getInteger("caro.recovery.rounds", 3);
+        System.setProperty("caro.heartbeat.timeoutMs", String.valueOf(Long.MAX_VALUE / 4));
+        System.setProperty("caro.rooms.reclaimMs", String.valueOf(Long.MAX_VALUE / 4));
+
+        System.out.printf("RoomRecovery: %d phòng x %d nước, bàn %dx%d%n", rooms, moves, BOARD, BOARD);
+        long bestOff = Long.MAX_VALUE, bestOn = Long.MAX_VALUE;
+        Run last = null;
+        for (int r = 0; r < rounds; r++) {
+            Run off = play(rooms, moves, null);
+            bestOff = Math.min(bestOff, off.moveNanos);
+            off.shutdown();
+
+            Path dir = Files.createTempDirectory("caro-rooms");
+            Run on = play(rooms, moves, dir);
+            bestOn = Math.min(bestOn, on.moveNanos);
+            System.out.printf("  lượt %d: makeMove %.0f ns (tắt journal) / %.0f ns (bật), journal %.1f MB%n", r + 1,
+                    off.moveNanos / (double) off.moves, on.moveNanos / (double) on.moves, on.journalBytes / 1e6);
+            if (last != null) {
+                last.shutdown();
+                delete(last.dir);
+            }
+            last = on;
+        }
+        System.out.printf("makeMove (tốt nhất): %.0f ns tắt journal, %.0f ns bật => journal %+.0f ns / nước; %.1f byte / nước (cả ảnh phòng lúc tạo / bắt đầu)%n",
+                bestOff / (double) last.moves, bestOn / (double) last.moves, (bestOn - bestOff) / (double) last.moves,
+                last.journalBytes / (double) last.moves);
+        System.out.printf("  riêng bản ghi MOVE: %.1f byte / nước%n", last.moveBytes / (double) last.moves);
+        appendOnly(rooms, moves);
+        checkpointUnderLoad(rooms, Math.min(BOARD * BOARD, 3 * moves));
+
+        // ===== Crash + khôi phục =====
+        Run recovered = recover(last.dir);
+        System.out.printf("Khôi phục: %d phòng trong %d ms (replay journal %d ms, dựng Room + timer %d ms)%n",
+                recovered.state.rooms.size(), (recovered.moveNanos) / 1_000_000, recovered.journal.getRecoveryMillis(),
+                recovered.moveNanos / 1_000_000 - recovered.journal.getRecoveryMillis());
+        int bad = compare(last.state, recovered.state);
+        System.out.printf("  so khớp: %d / %d phòng khác bản gốc%n", bad, last.state.rooms.size());
+
+        long t0 = System.nanoTime();
+        recovered.journal.checkpoint();
+        System.out.printf("Checkpoint: %d ms, journal %.1f MB%n", (System.nanoTime() - t0) / 1_000_000,
+                recovered.journal.getBytes() / 1e6);
+        Run again = recover(last.dir);
+        System.out.printf("Khôi phục sau checkpoint: %d phòng trong %d ms (replay %d ms), %d phòng khác bản gốc%n",
+                again.state.rooms.size(), again.moveNanos / 1_000_000, again.journal.getRecoveryMillis(),
+                compare(last.state, again.state));
+
+        last.shutdown();
+        recovered.shutdown();
+        again.shutdown();
+        delete(last.dir);
+        System.exit(0);
+    }
+
+    private static final class Run {
+        ServerState state;
+        LobbyServiceImpl lobby;
+        RoomJournal journal;
+        Path dir;
+        long moveNanos;
+        long moves;
+        long journalBytes;
+        long moveBytes;
+
+        void shutdown() {
+            ServerShutdown.run(null, lobby, null, state, journal, null);
+        }
+    }
+
+    private static Run newServer(Path dir) throws Exception {
+        Run run = new Run();
+        run.state = new ServerState(new MemoryDaos.Users(), new MemoryDaos.Matches(), new MemoryDaos.Friends());
+        run.lobby = new LobbyServiceImpl(run.state);
+        run.dir = dir;
+        return run;
+    }
+
+    private static RoomJournal openJournal(Path dir) throws Exception {
+        // checkpoint chỉ khi gọi tay => đo đúng log chỉ-ghi-thêm
+        return new RoomJournal(dir, 64 << 20, 1000L, Long.MAX_VALUE / 4, Long.MAX_VALUE / 4);
+    }
+
+    private static Run play(int rooms, int moves, Path dir) throws Exception {
+        Run run = newServer(dir);
+        if (dir != null) {
+            run.journal = openJournal(dir);
+            run.lobby.recoverRooms(run.journal);
+        }
+        ClientCallback idle = (ClientCallback) Proxy.newProxyInstance(ClientCallback.class.getClassLoader(),
+                new Class<?>[]{ClientCallback.class}, (p, m, a) -> {
+                    switch (m.getName()) {
+                        case "hashCode": return System.identityHashCode(p);
+                        case "equals": return p == a[0];
+                        case "toString": return "idle";
+                        default: return null;
+                    }
+                });
+
+        String[] ids = new String[rooms];
+        for (int i = 0; i < rooms; i++) {
+            String a = "x" + i, b = "o" + i;
+            run.state.userDao.ensureUser(a, "pw"); // endGame cập nhật chỉ số của cả 2
+            run.state.userDao.ensureUser(b, "pw");
+            run.state.online.put(a, new OnlineSession(a, idle));
+            run.state.online.put(b, new OnlineSession(b, idle));
+            RoomCreateRequest req = new RoomCreateRequest();
+            req.setRoomName("bench " + i);
+            req.setBoardSize(BOARD);
+            req.setTimed(true);
+            req.setTimeLimitSeconds(600);
+            ids[i] = run.lobby.createRoom(a, req);
+            run.lobby.joinRoom(b, ids[i], null);
+            // bỏ session nhưng không logout (không rời phòng): makeMove không cần online, callback bị bỏ qua
+            run.state.online.remove(a);
+            run.state.online.remove(b);
+        }
+        long before = run.journal == null ? 0 : run.journal.getBytes();
+
+        // nước đi sinh trước (ô ngẫu nhiên không trùng, cùng seed) => chỉ đo makeMove
+        Random rnd = new Random(7);
+        int[][] cells = new int[rooms][];
+        for (int i = 0; i < rooms; i++) {
+            int[] all = new int[BOARD * BOARD];
+            for (int c = 0; c < all.length; c++) all[c] = c;
+            for (int c = 0; c < moves; c++) {
+                int k = c + rnd.nextInt(all.length - c);
+                int t = all[c];
+                all[c] = all[k];
+                all[k] = t;
+            }
+            cells[i] = Arrays.copyOf(all, moves);
+        }
+
+        long start = System.nanoTime();
+        for (int m = 0; m < moves; m++) {
+            for (int i = 0; i < rooms; i++) {
+                Room room = run.state.rooms.get(ids[i]);
+                if (room.status != RoomStatus.PLAYING) continue; // lỡ thắng trước khi hết nước
+                try {
+                    run.lobby.makeMove(ids[i], room.turn, cells[i][m] / BOARD, cells[i][m] % BOARD);
+                    run.moves++;
+                } catch (RemoteException ignored) {
+                }
+            }
+        }
+        run.moveNanos = System.nanoTime() - start;
+        if (run.journal != null) {
+            run.journalBytes = run.journal.getBytes();
+            run.moveBytes = run.journal.getBytes() - before;
+        }
+        return run;
+    }
+
+    // RoomJournal.appendMove trực tiếp (không qua makeMove): chi phí thuần của journal mỗi nước, 1 thread
+    private static void appendOnly(int rooms, int moves) throws Exception {
+        Path dir = Files.createTempDirectory("caro-rooms-append");
+        RoomJournal j = openJournal(dir);
+        String[] ids = new String[rooms];
+        for (int i = 0; i < rooms; i++) {
+            RoomJournal.RoomImage img = new RoomJournal.RoomImage();
+            img.id = ids[i] = UUID.randomUUID().toString();
+            img.name = "bench " + i;
+            img.status = RoomStatus.PLAYING;
+            img.boardSize = BOARD;
+            img.players.add("x" + i);
+            img.players.add("o" + i);
+            j.saveRoom(img);
+        }
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < 3; r++) {
+            long now = System.currentTimeMillis();
+            long start = System.nanoTime();
+            for (int m = 0; m < moves; m++) {
+                for (int i = 0; i < rooms; i++) j.appendMove(ids[i], m, now + m, now + m + 30_000);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  appendMove trực tiếp: %.0f ns / nước%n", best / (double) (rooms * (long) moves));
+        j.close();
+        delete(dir);
+    }
+
+    // checkpoint liên tục ở thread khác trong lúc appendMove; 1% phòng ghi ảnh lại, 1% bị xóa giữa chừng
+    private static void checkpointUnderLoad(int rooms, int moves) throws Exception {
+        Path dir = Files.createTempDirectory("caro-rooms-cp");
+        // segment nhỏ => roll cả trong lúc checkpoint
+        RoomJournal j = new RoomJournal(dir, 4 << 20, 1000L, Long.MAX_VALUE / 4, Long.MAX_VALUE / 4);
+        RoomJournal.RoomImage[] imgs = new RoomJournal.RoomImage[rooms];
+        for (int i = 0; i < rooms; i++) {
+            RoomJournal.RoomImage img = imgs[i] = new RoomJournal.RoomImage();
+            img.id = UUID.randomUUID().toString();
+            img.name = "bench " + i;
+            img.status = RoomStatus.PLAYING;
+            img.boardSize = BOARD;
+            img.players.add("x" + i);
+            img.players.add("o" + i);
+            j.saveRoom(img);
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger checkpoints = new AtomicInteger();
+        Thread cp = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    j.checkpoint();
+                    checkpoints.incrementAndGet();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "checkpoint");
+        LatencyHistogram latency = new LatencyHistogram();
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        cp.start();
+        for (int m = 0; m < moves; m++) {
+            for (int i = 0; i < rooms; i++) {
+                RoomJournal.RoomImage img = imgs[i];
+                if (img == null) continue;
+                if (m == moves / 2 && i % 100 == 0) {
+                    j.removeRoom(img.id);
+                    imgs[i] = null;
+                    removed++;
+                    continue;
+                }
+                long t0 = System.nanoTime();
+                j.appendMove(img.id, m, now + m, now + m + 30_000);
+                latency.recordNanos(System.nanoTime() - t0);
+                img.addMove(m, now + m);
+                if (m == moves / 4 && i % 100 == 1) j.saveRoom(img);
+            }
+        }
+        done.set(true);
+        cp.join();
+        System.out.printf("Checkpoint dưới tải: %d lần checkpoint song song, appendMove p50 %d us, p99 %d us, p999 %d us, max %d us%n",
+                checkpoints.get(), latency.percentileMicros(0.50), latency.percentileMicros(0.99),
+                latency.percentileMicros(0.999), latency.getMaxMicros());
+
+        // bỏ ngang (không close) rồi mở lại
+        Map<String, RoomJournal.RoomImage> back = new HashMap<>();
+        RoomJournal reopened = openJournal(dir);
+        for (RoomJournal.RoomImage img : reopened.takeRecovered()) back.put(img.id, img);
+        int bad = 0;
+        for (RoomJournal.RoomImage img : imgs) {
+            if (img == null) continue;
+            RoomJournal.RoomImage r = back.get(img.id);
+            if (r == null || r.moveCount != img.moveCount
+                    || !Arrays.equals(Arrays.copyOf(r.cells, r.moveCount), Arrays.copyOf(img.cells, img.moveCount))) {
+                bad++;
+            }
+        }
+        System.out.printf("  mở lại: %d phòng (đúng %d), %d phòng sai nước%n", back.size(), rooms - removed, bad);
+        reopened.close();
+        delete(dir);
+    }
+
+    private static Run recover(Path dir) throws Exception {
+        Run run = newServer(dir);
+        long start = System.nanoTime();
+        run.journal = openJournal(dir);
+        run.lobby.recoverRooms(run.journal);
+        run.moveNanos = System.nanoTime() - start;
+        return run;
+    }
+
+    private static int compare(ServerState a, ServerState b) {
+        int bad = 0;
+        List<String> ids = new ArrayList<>(a.rooms.keySet());
+        for (String id : ids) {
+            Room x = a.rooms.get(id), y = b.rooms.get(id);
+            if (y == null || x.status != y.status || x.moveNo != y.moveNo || !Arrays.deepEquals(x.board, y.board)
+                    || !Objects.equals(x.turn, y.turn) || !x.players.equals(y.players)
+                    || x.turnDeadlineMillis != y.turnDeadlineMillis || x.createdAt.toEpochMilli() != y.createdAt.toEpochMilli()) {
+                bad++;
+            }
+        }
+        return bad + Math.max(0, b.rooms.size() - a.rooms.size());
+    }
+
+    private static void delete(Path dir) throws Exception {
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+}
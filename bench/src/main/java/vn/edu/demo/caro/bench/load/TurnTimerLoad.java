@@ -0,0 +1,202 @@
+package vn.edu.demo.caro.bench.load;
+
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+import vn.edu.demo.caro.server.service.TurnTimer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hẹn giờ lượt đi cho N phòng có giờ: {@link TurnTimer} (timing wheel) so với cách cũ (quét mọi phòng mỗi 300ms).
+ *
+ *   java -cp bench/target/benchmarks.jar vn.edu.demo.caro.bench.load.TurnTimerLoad
+ *
+ * Tham số (system property, giá trị mặc định):
+ * - caro.timer.rooms (50000): số phòng, mỗi phòng luôn có 1 deadline đang chờ
+ * - caro.timer.seconds (30): thời gian đo mỗi chế độ
+ * - caro.timer.minMs (1000), caro.timer.maxMs (5000): deadline ngẫu nhiên trong khoảng này kể từ lúc đặt
+ *   (giới hạn thật 15s..300s; ngắn hơn để có đủ lần hết giờ trong thời gian đo, độ trễ không phụ thuộc)
+ * - caro.timer.movesPerSec (20000): số nước/s (hủy deadline cũ + đặt deadline mới như makeMove)
+ * - caro.timer.mode (both): wheel | scan | both
+ *
+ * Hết giờ => ghi độ trễ (lúc xử lý - deadline) rồi đặt deadline lượt kế. Khóa theo phòng như LobbyServiceImpl:
+ * handle cũ (đã bị thay) bị bỏ qua. In: số lần hết giờ, độ trễ p50/p99/p999/max, số lần fire sớm,
+ * chi phí arm + cancel mỗi nước, CPU thread hẹn giờ (% 1 core) và CPU cả process.
+ */
+public final class TurnTimerLoad {
+
+    private static final long SCAN_MILLIS = 300; // chu kỳ quét của bản cũ
+
+    private TurnTimerLoad() {}
+
+    public static void main(String[] args) throws Exception {
+        int rooms = Integer.getInteger("caro.timer.rooms", 50_000);
+        int seconds = Integer.getInteger("caro.timer.seconds", 30);
+        long minMs = Long.getLong("caro.timer.minMs", 1000L);
+        long maxMs = Long.getLong("caro.timer.maxMs", 5000L);
+        int movesPerSec = Integer.getInteger("caro.timer.movesPerSec", 20_000);
+        String mode = System.getProperty("caro.timer.mode", "both");
+
+        System.out.printf("TurnTimerLoad: %d phòng, deadline %d..%d ms, %d nước/s, %ds mỗi chế độ%n",
+                rooms, minMs, maxMs, movesPerSec, seconds);
+        if (!"scan".equals(mode)) new Run(rooms, minMs, maxMs, false).measure(seconds, movesPerSec);
+        if (!"wheel".equals(mode)) new Run(rooms, minMs, maxMs, true).measure(seconds, movesPerSec);
+        System.exit(0);
+    }
+
+    private static final class Run {
+        final int rooms;
+        final long minMs, maxMs;
+        final boolean scan;
+        final Object[] locks;
+
+        // ===== guarded by locks[i] =====
+        final TurnTimer.Timeout[] handles; // wheel
+        final long[] deadlines;            // scan (0 = không có)
+
+        final TurnTimer timer;
+        volatile LatencyHistogram lateness = new LatencyHistogram();
+        final AtomicLong early = new AtomicLong();
+        volatile boolean running = true;
+        long timerThreadId = -1;
+
+        Run(int rooms, long minMs, long maxMs, boolean scan) {
+            this.rooms = rooms;
+            this.minMs = minMs;
+            this.maxMs = maxMs;
+            this.scan = scan;
+            this.locks = new Object[rooms];
+            for (int i = 0; i < rooms; i++) locks[i] = new Object();
+            this.handles = scan ? null : new TurnTimer.Timeout[rooms];
+            this.deadlines = scan ? new long[rooms] : null;
+            // cùng tham số với LobbyServiceImpl
+            this.timer = scan ? null : new TurnTimer(20, 1024, this::onExpired);
+        }
+
+        long nextDeadline() {
+            return System.currentTimeMillis() + ThreadLocalRandom.current().nextLong(minMs, maxMs + 1);
+        }
+
+        void onExpired(TurnTimer.Timeout t) {
+            int i = Integer.parseInt(t.roomId);
+            synchronized (locks[i]) {
+                if (handles[i] != t) return; // đã có nước mới
+                record(t.deadlineMillis);
+                handles[i] = timer.arm(t.roomId, nextDeadline());
+            }
+        }
+
+        void record(long deadline) {
+            long late = System.currentTimeMillis() - deadline;
+            if (late < 0) early.incrementAndGet();
+            lateness.recordNanos(Math.max(0, late) * 1_000_000);
+        }
+
+        // 1 nước: deadline mới thay deadline cũ
+        void move(int i) {
+            synchronized (locks[i]) {
+                if (scan) {
+                    deadlines[i] = nextDeadline();
+                } else {
+                    TurnTimer.Timeout old = handles[i];
+                    handles[i] = timer.arm(Integer.toString(i), nextDeadline());
+                    timer.cancel(old);
+                }
+            }
+        }
+
+        // bản cũ: 1 thread quét toàn bộ phòng mỗi 300ms
+        void scanLoop() {
+            long next = System.currentTimeMillis() + SCAN_MILLIS;
+            while (running) {
+                try {
+                    long sleep = next - System.currentTimeMillis();
+                    if (sleep > 0) Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                next += SCAN_MILLIS;
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < rooms; i++) {
+                    synchronized (locks[i]) {
+                        long d = deadlines[i];
+                        if (d == 0 || now < d) continue;
+                        record(d);
+                        deadlines[i] = nextDeadline();
+                    }
+                }
+            }
+        }
+
+        void measure(int seconds, int movesPerSec) throws Exception {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            for (int i = 0; i < rooms; i++) {
+                if (scan) {
+                    deadlines[i] = nextDeadline();
+                } else {
+                    String id = Integer.toString(i);
+                    synchronized (locks[i]) {
+                        handles[i] = timer.arm(id, nextDeadline());
+                    }
+                }
+            }
+            Thread scanner = null;
+            if (scan) {
+                scanner = new Thread(this::scanLoop, "turn-scan");
+                scanner.setDaemon(true);
+                scanner.start();
+                timerThreadId = scanner.getId();
+            } else {
+                for (Thread t : Thread.getAllStackTraces().keySet()) {
+                    if ("turn-timer".equals(t.getName()) && t.isAlive()) timerThreadId = Math.max(timerThreadId, t.getId());
+                }
+            }
+            // bỏ đợt deadline đầu (đặt cùng lúc) khỏi số đo: chỉ đo trạng thái ổn định
+            Thread.sleep(maxMs);
+            lateness = new LatencyHistogram();
+            early.set(0);
+
+            long cpu0 = threads.getThreadCpuTime(timerThreadId);
+            long proc0 = processCpuNanos();
+            long moveNanos = 0, moves = 0;
+            long start = System.nanoTime();
+            long end = start + seconds * 1_000_000_000L;
+            long batch = Math.max(1, movesPerSec / 1000); // mỗi ms 1 lô
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            while (System.nanoTime() < end) {
+                long t0 = System.nanoTime();
+                for (int k = 0; k < batch; k++) move(rnd.nextInt(rooms));
+                moveNanos += System.nanoTime() - t0;
+                moves += batch;
+                long due = start + moves * 1_000_000_000L / movesPerSec;
+                long wait = due - System.nanoTime();
+                if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            long cpu = threads.getThreadCpuTime(timerThreadId) - cpu0;
+            long proc = processCpuNanos() - proc0;
+
+            running = false;
+            if (scanner != null) scanner.interrupt();
+            if (timer != null) timer.shutdown();
+
+            System.out.printf("%n[%s] %d nước (%.0f/s), arm+cancel %.0f ns / nước (gồm khóa phòng)%n",
+                    scan ? "scan 300ms" : "wheel 20ms x 1024", moves, moves / elapsed, moveNanos / (double) moves);
+            System.out.printf("  hết giờ: %d (%.0f/s), fire sớm: %d%n",
+                    lateness.getCount(), lateness.getCount() / elapsed, early.get());
+            System.out.printf("  độ trễ so với deadline: p50=%d p99=%d p999=%d max=%d ms%n",
+                    lateness.percentileMicros(0.50) / 1000, lateness.percentileMicros(0.99) / 1000,
+                    lateness.percentileMicros(0.999) / 1000, lateness.getMaxMicros() / 1000);
+            System.out.printf("  CPU thread hẹn giờ: %.1f ms/s (%.2f%% 1 core); cả process: %.1f%% 1 core%n",
+                    cpu / 1e6 / elapsed, cpu / 1e7 / elapsed, proc / 1e7 / elapsed);
+        }
+    }
+
+    private static long processCpuNanos() {
+        var os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean
+                ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0L;
+    }
+}
@@ -50,6 +50,11 @@ public class GameController implements WithContext {
 
     @FXML private Label lbTimer;
 @FXML private Button btnSound;
+
+    @FXML private HBox replayBar;
+    @FXML private Button btnReplayPlay;
+    @FXML private Slider sliderReplay;
+    @FXML private Label lbReplay;
     
     private MinimaxAI aiEngine;
     private Mark aiMark; 
@@ -72,6 +77,10 @@ public class GameController implements WithContext {
     private String opponent = "?";
     private boolean finished = false;
 
+    // seq GameUpdate/GameSnapshot cuối cùng đã áp dụng (-1 = chưa có snapshot). Chỉ dùng trên FX thread.
+    private long lastSeq = -1;
+    private boolean snapshotRequested = false;
+
     private boolean aiEnabled = false;
 
     // ===== Post-game / Rematch =====
@@ -82,6 +91,19 @@ public class GameController implements WithContext {
     private Stage rematchStage;
     private volatile boolean suppressPostGameChoice = false;
 
+    // ===== Replay (xem lại ván đã lưu) - chỉ dùng trên FX thread =====
+    // Tải theo đoạn REPLAY_CHUNK nước (bội số keyframe 16 của server); seek = keyframe gần nhất + <= 15 nước
+    private static final int REPLAY_CHUNK = 64;
+    private static final int REPLAY_PREFETCH = 16;
+    private boolean replayMode = false;
+    private MatchSummary replayMatch;
+    private final java.util.TreeMap<Integer, ReplayChunk> replayChunks = new java.util.TreeMap<>(); // fromMove -> đoạn
+    private final java.util.Set<Integer> replayLoading = new java.util.HashSet<>();
+    private int replayTotal = -1;  // -1 = chưa tải đoạn nào
+    private int replayPos = 0;     // số nước đang hiển thị
+    private int replayWanted = -1; // vị trí đang chờ tải đoạn
+    private javafx.animation.Timeline replayTimeline;
+
     // ---------------- FX helper ----------------
     private void fx(Runnable r) {
         if (r == null) return;
@@ -108,6 +130,12 @@ public class GameController implements WithContext {
     public void init(AppContext ctx) {
         this.ctx = ctx;
 updateSoundButton();
+        Object replay = ctx.stage.getProperties().remove("replay.match");
+        if (replay instanceof MatchSummary) {
+            initReplay((MatchSummary) replay);
+            return;
+        }
+
         // Lấy cấu hình AI từ AiViewController
         aiEnabled = (boolean) ctx.stage.getProperties().getOrDefault("ai.enabled", false);
 
@@ -392,6 +420,8 @@ updateSoundButton();
             closeEndGameAlertIfAny();
             closeRematchStageIfAny();
 
+            // seq là theo phòng => sang phòng khác thì bắt đầu lại
+            if (!java.util.Objects.equals(ctx.currentRoomId, start.getRoomId())) lastSeq = -1;
             ctx.currentRoomId = start.getRoomId();
             opponent = start.getOpponent();
             myMark = start.getYourMark();
@@ -426,13 +456,40 @@ updateSoundButton();
         if (update == null || finished) return;
 
         fx(() -> {
+            if (lastSeq >= 0 && update.getSeq() <= lastSeq) return; // đã có trong snapshot
+            if (lastSeq < 0 || update.getSeq() != lastSeq + 1) {
+                // hở seq (chưa có snapshot / lỡ update) => xin lại snapshot
+                requestSnapshot(update.getRoomId());
+                return;
+            }
+            lastSeq = update.getSeq();
+
             applyMoveIfPossible(update.getMove(), update.getMark());
             myTurn = ctx.username != null && ctx.username.equals(update.getNextTurnUser());
             setBoardEnabled(myTurn);
+
+            turnDeadlineMillis = update.getTurnDeadlineMillis();
+            startOrStopCountdown();
             refreshHeader();
         });
     }
 
+    // chỉ gọi trên FX thread
+    private void requestSnapshot(String roomId) {
+        if (snapshotRequested || roomId == null) return;
+        snapshotRequested = true;
+        ctx.io().execute(() -> {
+            try {
+                GameSnapshot snap = ctx.lobby.getSnapshot(roomId, ctx.username);
+                applySnapshot(snap);
+            } catch (Exception e) {
+                System.err.println("[GameController] getSnapshot: " + e.getMessage());
+            } finally {
+                fx(() -> snapshotRequested = false);
+            }
+        });
+    }
+
     public void onGameEnd(GameEnd end) {
         if (end == null) return;
         if (finished) return;
@@ -499,6 +556,9 @@ updateSoundButton();
         if (snap == null) return;
 
         fx(() -> {
+            if (snap.getSeq() < lastSeq) return; // snapshot cũ hơn trạng thái đang có
+            lastSeq = snap.getSeq();
+
             int snapSize = snap.getBoardSize();
             if (snapSize <= 0) snapSize = 15;
 
@@ -586,7 +646,7 @@ updateSoundButton();
 
     @FXML
     private void onUndo() {
-        if (aiEnabled || finished) return;
+        if (aiEnabled || finished || replayMode) return;
         final String roomId = ctx.currentRoomId;
         final String user = ctx.username;
         runRemote("requestUndo", () -> ctx.lobby.requestUndo(roomId, user));
@@ -594,7 +654,7 @@ updateSoundButton();
 
     @FXML
     private void onRedo() {
-        if (aiEnabled || finished) return;
+        if (aiEnabled || finished || replayMode) return;
         final String roomId = ctx.currentRoomId;
         final String user = ctx.username;
         runRemote("requestRedo", () -> ctx.lobby.requestRedo(roomId, user));
@@ -602,7 +662,7 @@ updateSoundButton();
 
     @FXML
     private void onResign() {
-        if (finished || aiEnabled) return;
+        if (finished || aiEnabled || replayMode) return;
         final String roomId = ctx.currentRoomId;
         final String user = ctx.username;
         runRemote("resign", () -> ctx.lobby.resign(roomId, user));
@@ -611,6 +671,7 @@ updateSoundButton();
     @FXML
     private void onBackToMain() {
         stopCountdown();
+        stopReplayTimeline();
 
         final String roomId = ctx.currentRoomId;
         final String user = ctx.username;
@@ -819,6 +880,151 @@ private void endGameLocal(String msg) {
         }
     }
 
+    // ============================================================
+    // Replay
+    // ============================================================
+
+    private void initReplay(MatchSummary m) {
+        replayMode = true;
+        replayMatch = m;
+        finished = true; // không nhận click ô cờ
+        opponent = m.getPlayerX().equals(ctx.username) ? m.getPlayerO() : m.getPlayerX();
+
+        initChatUI();
+        if (btnUndo != null) btnUndo.setDisable(true);
+        if (btnRedo != null) btnRedo.setDisable(true);
+        if (tfChat != null) tfChat.setDisable(true);
+        if (lbTimer != null) lbTimer.setText("");
+        if (replayBar != null) {
+            replayBar.setVisible(true);
+            replayBar.setManaged(true);
+        }
+        if (sliderReplay != null) {
+            sliderReplay.valueProperty().addListener((obs, o, v) -> {
+                int pos = (int) Math.round(v.doubleValue());
+                if (pos != replayPos) seekReplay(pos);
+            });
+        }
+
+        setupBoard(15);
+        if (gridBoard != null) gridBoard.setMouseTransparent(true);
+        appendChat(new ChatMessage("SYSTEM", "REPLAY", "Xem lại ván " + m, Instant.now()));
+        refreshHeader();
+        seekReplay(0);
+    }
+
+    /** Hiện bàn cờ sau pos nước; đoạn chứa pos chưa có thì tải rồi hiện sau. */
+    private void seekReplay(int pos) {
+        if (replayTotal >= 0) pos = Math.max(0, Math.min(pos, replayTotal));
+        java.util.Map.Entry<Integer, ReplayChunk> e = replayChunks.floorEntry(pos);
+        ReplayChunk ch = (e != null && e.getValue().covers(pos)) ? e.getValue() : null;
+        if (ch == null) {
+            replayWanted = pos;
+            loadReplayChunk(pos / REPLAY_CHUNK * REPLAY_CHUNK);
+            return;
+        }
+        replayWanted = -1;
+
+        if (board == null || boardSize != ch.getBoardSize()) setupBoard(ch.getBoardSize());
+        renderReplayBoard(ch.boardAt(pos));
+        replayPos = pos;
+        if (sliderReplay != null) sliderReplay.setValue(pos);
+        if (lbReplay != null) {
+            if (pos == 0) {
+                lbReplay.setText("0 / " + replayTotal);
+            } else {
+                int last = pos - 1;
+                lbReplay.setText(pos + " / " + replayTotal + "  •  " + ch.getMark(last)
+                        + " (" + ch.getRow(last) + "," + ch.getCol(last) + ")  •  nghĩ "
+                        + String.format("%.1fs", ch.getThinkMillis(last) / 1000.0));
+            }
+        }
+        refreshHeader();
+
+        // gần hết đoạn => tải trước đoạn sau (tự chạy / bấm tiếp không phải chờ mạng)
+        int next = ch.getToMove();
+        if (next < replayTotal && pos + REPLAY_PREFETCH >= next) loadReplayChunk(next);
+    }
+
+    private void loadReplayChunk(int from) {
+        if (replayChunks.containsKey(from) || !replayLoading.add(from)) return;
+        final long matchId = replayMatch.getMatchId();
+        final String user = ctx.username;
+        ctx.io().execute(() -> {
+            try {
+                ReplayChunk ch = ctx.lobby.fetchReplay(user, matchId, from, REPLAY_CHUNK);
+                fx(() -> {
+                    replayLoading.remove(from);
+                    if (ch == null) {
+                        stopReplayTimeline();
+                        showInfo("Xem lại", "Ván này không có dữ liệu nước đi.");
+                        return;
+                    }
+                    replayChunks.put(ch.getFromMove(), ch);
+                    if (replayTotal != ch.getTotalMoves()) {
+                        replayTotal = ch.getTotalMoves();
+                        if (sliderReplay != null) sliderReplay.setMax(replayTotal);
+                    }
+                    if (replayWanted >= 0) seekReplay(replayWanted);
+                });
+            } catch (Exception e) {
+                fx(() -> {
+                    replayLoading.remove(from);
+                    replayWanted = -1;
+                    stopReplayTimeline();
+                    showInfo("Lỗi", "Tải ván: " + e.getMessage());
+                });
+            }
+        });
+    }
+
+    // chỉ vẽ lại ô khác với bàn đang hiện
+    private void renderReplayBoard(Mark[][] b) {
+        for (int r = 0; r < boardSize; r++) {
+            for (int c = 0; c < boardSize; c++) {
+                Mark m = b[r][c];
+                if (board[r][c] == m) continue;
+                board[r][c] = m;
+                Label lb = cellMarks[r][c];
+                if (lb == null) continue;
+                lb.setText(m == Mark.EMPTY ? "" : (m == Mark.X ? "X" : "O"));
+                lb.getStyleClass().removeAll("mark-x", "mark-o");
+                if (m == Mark.X) lb.getStyleClass().add("mark-x");
+                if (m == Mark.O) lb.getStyleClass().add("mark-o");
+            }
+        }
+    }
+
+    @FXML private void onReplayFirst() { if (replayMode) seekReplay(0); }
+    @FXML private void onReplayPrev() { if (replayMode) seekReplay(replayPos - 1); }
+    @FXML private void onReplayNext() { if (replayMode) seekReplay(replayPos + 1); }
+    @FXML private void onReplayLast() { if (replayMode) seekReplay(replayTotal < 0 ? 0 : replayTotal); }
+
+    @FXML
+    private void onReplayPlay() {
+        if (!replayMode) return;
+        if (replayTimeline != null) {
+            stopReplayTimeline();
+            return;
+        }
+        if (replayTotal >= 0 && replayPos >= replayTotal) seekReplay(0);
+        replayTimeline = new javafx.animation.Timeline(new javafx.animation.KeyFrame(Duration.millis(600), e -> {
+            if (replayTotal >= 0 && replayPos >= replayTotal) stopReplayTimeline();
+            else seekReplay(replayPos + 1);
+        }));
+        replayTimeline.setCycleCount(javafx.animation.Animation.INDEFINITE);
+        replayTimeline.play();
+        if (btnReplayPlay != null) btnReplayPlay.setText("⏸ Dừng");
+    }
+
+    private void stopReplayTimeline() {
+        if (replayTimeline != null) {
+            replayTimeline.stop();
+            replayTimeline = null;
+        }
+        if (btnReplayPlay != null) btnReplayPlay.setText("▶ Tự chạy");
+    }
+
     // ============================================================
     // Post-game popups
     // ============================================================
@@ -999,6 +1205,19 @@ private void endGameLocal(String msg) {
     }
 
     private void refreshHeader() {
+        if (replayMode) {
+            if (lbTitle != null) lbTitle.setText("Caro • XEM LẠI");
+            if (lbMe != null) lbMe.setText("X: " + replayMatch.getPlayerX());
+            if (lbOpponent != null) lbOpponent.setText("O: " + replayMatch.getPlayerO());
+            if (lbSub != null) {
+                lbSub.setText("Ván #" + replayMatch.getMatchId()
+                        + " | " + (replayMatch.getWinner() == null ? "Hòa" : replayMatch.getWinner() + " thắng")
+                        + " (" + replayMatch.getReason() + ")"
+                        + " | Nước " + replayPos + "/" + (replayTotal < 0 ? "?" : replayTotal)
+                        + " | Board=" + boardSize);
+            }
+            return;
+        }
         String mode = aiEnabled ? "OFFLINE vs AI" : "ONLINE PvP";
         String room = (ctx.currentRoomId == null) ? "-" : ctx.currentRoomId;
 
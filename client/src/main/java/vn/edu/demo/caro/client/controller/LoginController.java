@@ -5,7 +5,7 @@ import javafx.scene.control.*;
 import vn.edu.demo.caro.client.core.*;
 import vn.edu.demo.caro.common.rmi.LobbyService;
 
-import java.rmi.registry.LocateRegistry;
+import java.rmi.server.UnicastRemoteObject;
 
 public class LoginController implements WithContext {
 
@@ -41,14 +41,15 @@ public class LoginController implements WithContext {
             int port = Integer.parseInt(tfPort.getText().trim());
             String name = tfName.getText().trim();
 
-            var registry = LocateRegistry.getRegistry(host, port);
-            LobbyService lobby = (LobbyService) registry.lookup(name);
+            LobbyService lobby = ctx.connectLobby(host, port, name);
             ctx.lobby = lobby;
 
             String username = tfUsername.getText().trim();
             String password = tfPassword.getText();
 
             ClientCallbackImpl callback = new ClientCallbackImpl(ctx);
+            // gateway gửi callback qua chính kết nối => không cần mở cổng RMI ở client
+            if (ctx.gateway != null) UnicastRemoteObject.unexportObject(callback, true);
             ctx.stage.getProperties().put("callback", callback);
 
             ctx.username = username;
@@ -74,9 +75,8 @@ public class LoginController implements WithContext {
             int port = Integer.parseInt(tfPort.getText().trim());
             String name = tfName.getText().trim();
 
-            // Kết nối RMI (chỉ để đăng ký)
-            var registry = LocateRegistry.getRegistry(host, port);
-            LobbyService lobby = (LobbyService) registry.lookup(name);
+            // Kết nối (chỉ để đăng ký)
+            LobbyService lobby = ctx.connectLobby(host, port, name);
             
             // Không gán ctx.lobby ở đây vội, để lúc login gán sau cũng được
             // hoặc gán cũng không sao: ctx.lobby = lobby;
@@ -23,6 +23,7 @@ public class MainController implements WithContext {
     @FXML private Button btnChat;
     @FXML private Button btnFriends;
     @FXML private Button btnLeaderboard;
+    @FXML private Button btnHistory;
     @FXML private Button btnAi;
     @FXML private Button btnLogout;
 
@@ -45,6 +46,7 @@ public class MainController implements WithContext {
         btnChat.setOnAction(e -> onNavChat());
         btnFriends.setOnAction(e -> onNavFriends());
         btnLeaderboard.setOnAction(e -> onNavLeaderboard());
+        btnHistory.setOnAction(e -> onNavHistory());
         btnAi.setOnAction(e -> onNavAi());
         btnLogout.setOnAction(e -> onLogout());
        // [THÊM] Bật nhạc nền
@@ -59,10 +61,12 @@ public class MainController implements WithContext {
     @FXML private void onNavChat() { setActive(btnChat); showView("chat", "/vn/edu/demo/caro/client/fxml/views/chat.fxml"); pushStatus("Chat toàn cục."); }
     @FXML private void onNavFriends() { setActive(btnFriends); showView("friends", "/vn/edu/demo/caro/client/fxml/views/friends.fxml"); pushStatus("Bạn bè."); }
     @FXML private void onNavLeaderboard() { setActive(btnLeaderboard); showView("leaderboard", "/vn/edu/demo/caro/client/fxml/views/leaderboard.fxml"); pushStatus("Bảng xếp hạng."); }
+    @FXML private void onNavHistory() { setActive(btnHistory); showView("history", "/vn/edu/demo/caro/client/fxml/views/history.fxml"); pushStatus("Lịch sử ván & xem lại."); }
     @FXML private void onNavAi() { setActive(btnAi); showView("ai", "/vn/edu/demo/caro/client/fxml/views/ai.fxml"); pushStatus("Chơi với máy (offline)."); }
 
     @FXML private void onLogout() {
         try { if (ctx.lobby != null && ctx.username != null) ctx.lobby.logout(ctx.username); } catch (Exception ignored) {}
+        ctx.closeGateway();
         ctx.username = null; ctx.me = null; ctx.currentRoomId = null;
         ctx.sceneManager.showLogin();
     }
@@ -116,7 +120,7 @@ public class MainController implements WithContext {
     }
 
     private void setActive(Button active) {
-        Button[] all = {btnRooms, btnChat, btnFriends, btnLeaderboard, btnAi};
+        Button[] all = {btnRooms, btnChat, btnFriends, btnLeaderboard, btnHistory, btnAi};
         for (Button b : all) {
             if (!b.getStyleClass().contains("nav-btn")) b.getStyleClass().add("nav-btn");
             b.getStyleClass().remove("active");
@@ -3,6 +3,8 @@ package vn.edu.demo.caro.client.controller.view;
 import javafx.application.Platform;
 import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import vn.edu.demo.caro.client.controller.view.cell.GlobalChatCell;
 import vn.edu.demo.caro.client.core.AppContext;
@@ -11,10 +13,15 @@ import vn.edu.demo.caro.client.core.WithContext;
 import vn.edu.demo.caro.common.model.ChatMessage;
 
 import java.time.Instant;
+import java.util.List;
 
 public class ChatViewController implements WithContext {
 
+    private static final int HISTORY_PAGE = 50;
+
     private AppContext ctx;
+    private boolean loadingOlder = false; // FX thread
+    private boolean scrollHooked = false;
 
     @FXML private ListView<ChatMessage> lvGlobalChat;
     @FXML private TextField tf;
@@ -41,6 +48,12 @@ public class ChatViewController implements WithContext {
             boolean added = false;
             while (c.next()) {
                 if (c.wasAdded()) {
+                    // trang lịch sử chèn vào đầu: giữ nguyên vị trí đang xem, không kêu
+                    if (ctx.getGlobalChatStore().isPrepending()) {
+                        int n = c.getList().size() > c.getAddedSize() ? c.getAddedSize() : c.getList().size() - 1;
+                        Platform.runLater(() -> lvGlobalChat.scrollTo(n));
+                        continue;
+                    }
                     added = true;
 
                     // [THÊM] Kiểm tra và phát âm thanh nếu không phải tin nhắn của mình
@@ -55,6 +68,48 @@ public class ChatViewController implements WithContext {
                 Platform.runLater(() -> lvGlobalChat.scrollTo(lvGlobalChat.getItems().size() - 1));
             }
         });
+
+        // cuộn lên đầu => tải trang cũ hơn (scroll bar chỉ có sau khi skin được dựng)
+        lvGlobalChat.skinProperty().addListener((obs, o, n) -> Platform.runLater(this::hookScrollTop));
+        if (lvGlobalChat.getSkin() != null) Platform.runLater(this::hookScrollTop);
+
+        // vào muộn: lấy trang mới nhất
+        if (ctx.getGlobalChatStore().messages().isEmpty()) loadOlder();
+    }
+
+    private void hookScrollTop() {
+        if (scrollHooked) return;
+        for (Node node : lvGlobalChat.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                ScrollBar sb = (ScrollBar) node;
+                scrollHooked = true;
+                sb.valueProperty().addListener((o, ov, nv) -> {
+                    if (nv.doubleValue() <= sb.getMin()) loadOlder();
+                });
+            }
+        }
+    }
+
+    // FX thread
+    private void loadOlder() {
+        var store = ctx.getGlobalChatStore();
+        if (loadingOlder || !store.canLoadOlder() || ctx.lobby == null || ctx.io() == null) return;
+        loadingOlder = true;
+
+        long before = store.oldestSeq();
+        ctx.io().execute(() -> {
+            List<ChatMessage> page = List.of();
+            try {
+                page = ctx.lobby.fetchGlobalChat(before == Long.MAX_VALUE ? 0 : before, HISTORY_PAGE);
+            } catch (Exception e) {
+                System.err.println("[Chat] fetchGlobalChat lỗi: " + e.getMessage());
+            }
+            List<ChatMessage> result = page;
+            Platform.runLater(() -> {
+                store.prependOlder(result, result.size() >= HISTORY_PAGE);
+                loadingOlder = false;
+            });
+        });
     }
 
     @FXML
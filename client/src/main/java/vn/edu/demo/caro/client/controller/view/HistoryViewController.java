@@ -0,0 +1,82 @@
+package vn.edu.demo.caro.client.controller.view;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import vn.edu.demo.caro.client.core.*;
+import vn.edu.demo.caro.common.model.MatchSummary;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public class HistoryViewController implements WithContext {
+
+    private static final int LIMIT = 50;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("dd/MM HH:mm").withZone(ZoneId.systemDefault());
+
+    private AppContext ctx;
+
+    @FXML private ListView<MatchSummary> lvMatches;
+
+    @Override
+    public void init(AppContext ctx) {
+        this.ctx = ctx;
+
+        lvMatches.setCellFactory(list -> new ListCell<MatchSummary>() {
+            @Override
+            protected void updateItem(MatchSummary m, boolean empty) {
+                super.updateItem(m, empty);
+                if (empty || m == null) {
+                    setText(null);
+                    return;
+                }
+                String result = m.getWinner() == null ? "Hòa"
+                        : (m.getWinner().equals(ctx.username) ? "Thắng" : "Thua");
+                setText((m.getEndedAt() == null ? "" : TIME.format(m.getEndedAt()) + "  ")
+                        + m.getPlayerX() + " (X) vs " + m.getPlayerO() + " (O)  •  " + result + " (" + m.getReason() + ")");
+            }
+        });
+        lvMatches.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) onReplay();
+        });
+
+        onRefresh();
+    }
+
+    @FXML
+    private void onRefresh() {
+        if (ctx.io() == null) return;
+        ctx.io().execute(() -> {
+            try {
+                List<MatchSummary> list = ctx.lobby.listRecentMatches(ctx.username, LIMIT);
+                fx(() -> lvMatches.setItems(FXCollections.observableArrayList(list)));
+            } catch (Exception e) {
+                fx(() -> showInfo("Lỗi", "Không lấy được lịch sử ván: " + e.getMessage()));
+            }
+        });
+    }
+
+    @FXML
+    private void onReplay() {
+        MatchSummary m = lvMatches.getSelectionModel().getSelectedItem();
+        if (m == null) return;
+
+        // GameController đọc (và xóa) key này => vào chế độ xem lại thay vì chơi
+        ctx.stage.getProperties().put("replay.match", m);
+        ctx.currentRoomId = null;
+        ctx.sceneManager.showGame();
+    }
+
+    private void fx(Runnable r) {
+        if (Platform.isFxApplicationThread()) r.run();
+        else Platform.runLater(r);
+    }
+
+    private void showInfo(String title, String msg) {
+        Alert a = new Alert(Alert.AlertType.INFORMATION);
+        a.setTitle(title); a.setHeaderText(title); a.setContentText(msg);
+        a.show();
+    }
+}
@@ -184,6 +184,7 @@ private void onJoinSelected() {
             .filter(r -> r != null)
             .filter(r -> r.getStatus() == Enums.RoomStatus.WAITING)
             .filter(r -> r.getCurrentPlayers() < r.getMaxPlayers())
+            .sorted(java.util.Comparator.comparing(RoomInfo::getCreatedAt).reversed())
             .collect(java.util.stream.Collectors.toList());
 
     lvRooms.getItems().setAll(open);
@@ -5,8 +5,10 @@ import vn.edu.demo.caro.client.state.GlobalChatStore;
 import vn.edu.demo.caro.common.model.FriendInfo;
 import vn.edu.demo.caro.common.model.RoomInfo;
 import vn.edu.demo.caro.common.model.UserProfile;
+import vn.edu.demo.caro.common.net.GatewayClient;
 import vn.edu.demo.caro.common.rmi.LobbyService;
 
+import java.rmi.registry.LocateRegistry;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -15,6 +17,8 @@ public class AppContext {
     public SceneManager sceneManager;
 
     public LobbyService lobby;
+    // != null khi dùng transport gateway (đóng khi logout)
+    public GatewayClient gateway;
     public String username;
     public UserProfile me;
 
@@ -36,6 +40,23 @@ public final CopyOnWriteArrayList<FriendInfo> friends = new CopyOnWriteArrayList
 
     public ExecutorService io() { return ioExecutor; }
 
+    /** Lấy LobbyService theo transport đã chọn (RmiConfig.useGateway). */
+    public LobbyService connectLobby(String host, int port, String name) throws Exception {
+        if (RmiConfig.useGateway()) {
+            closeGateway();
+            gateway = GatewayClient.connect(host, RmiConfig.gatewayPort());
+            return gateway.lobby();
+        }
+        return (LobbyService) LocateRegistry.getRegistry(host, port).lookup(name);
+    }
+
+    public void closeGateway() {
+        if (gateway != null) {
+            gateway.close();
+            gateway = null;
+        }
+    }
+
     public AppContext(Stage stage) {
         this.stage = stage;
 
@@ -12,6 +12,7 @@ import vn.edu.demo.caro.client.controller.view.LeaderboardViewController;
 import vn.edu.demo.caro.client.controller.view.RoomsViewController;
 import vn.edu.demo.caro.common.model.*;
 import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.common.net.RmiSockets;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
@@ -109,17 +110,14 @@ public class ClientCallbackImpl extends UnicastRemoteObject implements ClientCal
         });
     }
 
-    // ===== Coalesce game update/snapshot (optional, but good) =====
-    private final AtomicReference<GameUpdate> latestUpdate = new AtomicReference<>();
-    private final AtomicBoolean updateScheduled = new AtomicBoolean(false);
-
+    // ===== Coalesce snapshot (GameUpdate KHÔNG coalesce: mỗi update mang 1 nước + seq) =====
     private final AtomicReference<GameSnapshot> latestSnapshot = new AtomicReference<>();
     private final AtomicBoolean snapshotScheduled = new AtomicBoolean(false);
 
     private final AtomicBoolean switchingToGame = new AtomicBoolean(false);
 
     public ClientCallbackImpl(AppContext ctx) throws RemoteException {
-        super(0); // random port
+        super(0, RmiSockets.clientFactory(), RmiSockets.serverFactory()); // random port, socket nén
         this.ctx = ctx;
     }
 
@@ -131,21 +129,11 @@ public class ClientCallbackImpl extends UnicastRemoteObject implements ClientCal
     public void bindLeaderboard(LeaderboardViewController c) { this.leaderboardController = c; }
     public void bindGame(GameController c) { this.gameController = c; }
 
-    private void scheduleUpdateDrain() {
-        if (updateScheduled.compareAndSet(false, true)) {
-            fx(() -> {
-                try {
-                    GameUpdate u = latestUpdate.getAndSet(null);
-                    if (u != null && gameController != null) {
-                        gameController.onGameUpdate(u); // GameController đã tự fx-safe
-                    }
-                } finally {
-                    updateScheduled.set(false);
-                    if (latestUpdate.get() != null) scheduleUpdateDrain();
-                }
-            });
-        }
+    @Override
+    public void onHeartbeat() throws RemoteException {
+        // chỉ để server biết client còn sống
     }
+
     // [THÊM VÀO ClientCallbackImpl]
     @Override
     public void onChallengeRequested(String fromUser) throws RemoteException {
@@ -230,6 +218,12 @@ public class ClientCallbackImpl extends UnicastRemoteObject implements ClientCal
         fx(() -> ctx.getGlobalChatStore().add(msg));
     }
 
+    @Override
+    public void onGlobalChatBatch(List<ChatMessage> msgs) throws RemoteException {
+        if (msgs == null || msgs.isEmpty()) return;
+        fx(() -> ctx.getGlobalChatStore().addAll(msgs));
+    }
+
     // @Override
     // public void onAnnouncement(String text) throws RemoteException {
     //     fx(() -> {
@@ -257,6 +251,53 @@ public class ClientCallbackImpl extends UnicastRemoteObject implements ClientCal
         });
     }
 
+    // ===== Room list version (chỉ đọc/ghi trên FX thread) =====
+    private long roomListVersion = -1; // -1 = chưa có bản full nào
+    private boolean roomListResyncing = false;
+
+    @Override
+    public void onRoomListDelta(RoomListDelta delta) throws RemoteException {
+        if (delta == null) return;
+        fx(() -> applyRoomListDelta(delta));
+    }
+
+    private void applyRoomListDelta(RoomListDelta delta) {
+        if (delta.isFull()) {
+            roomListResyncing = false;
+            if (delta.getToVersion() < roomListVersion) return; // bản full cũ hơn cái đang có
+            ctx.rooms.clear();
+            ctx.rooms.addAll(delta.getUpserts());
+        } else {
+            if (roomListVersion < 0 || delta.getToVersion() <= roomListVersion) return; // cũ / chờ bản full
+            if (delta.getFromVersion() != roomListVersion) {
+                resyncRoomList();
+                return;
+            }
+            java.util.Map<String, RoomInfo> byId = new java.util.LinkedHashMap<>();
+            for (RoomInfo r : ctx.rooms) byId.put(r.getId(), r);
+            for (String id : delta.getRemovedIds()) byId.remove(id);
+            for (RoomInfo r : delta.getUpserts()) byId.put(r.getId(), r);
+            ctx.rooms.clear();
+            ctx.rooms.addAll(byId.values());
+        }
+        roomListVersion = delta.getToVersion();
+        if (roomsController != null) roomsController.refreshRooms();
+    }
+
+    // hở version (delta bị bỏ / đến sai thứ tự) => lấy lại toàn bộ danh sách
+    private void resyncRoomList() {
+        if (roomListResyncing) return;
+        roomListResyncing = true;
+        ctx.io().submit(() -> {
+            try {
+                RoomListDelta full = ctx.lobby.fetchRoomList();
+                fx(() -> applyRoomListDelta(full));
+            } catch (Exception e) {
+                fx(() -> roomListResyncing = false);
+            }
+        });
+    }
+
     @Override
     public void onOnlineUsersUpdated(List<String> users) throws RemoteException {
         fx(() -> {
@@ -289,6 +330,24 @@ public class ClientCallbackImpl extends UnicastRemoteObject implements ClientCal
         });
     }
 
+    @Override
+    public void onFriendStatusChanged(FriendInfo friend) throws RemoteException {
+        if (friend == null) return;
+        fx(() -> {
+            // chỉ thay đúng 1 dòng; bạn mới (chưa có trong list) thì thêm vào
+            boolean found = false;
+            for (int i = 0; i < ctx.friends.size(); i++) {
+                if (ctx.friends.get(i).getUsername().equals(friend.getUsername())) {
+                    ctx.friends.set(i, friend);
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) ctx.friends.add(friend);
+            if (friendsController != null) friendsController.refresh();
+        });
+    }
+
    @Override
     public void onFriendRequest(FriendRequest req) throws RemoteException {
         fx(() -> { 
@@ -345,8 +404,8 @@ public class ClientCallbackImpl extends UnicastRemoteObject implements ClientCal
     @Override
     public void onGameUpdated(GameUpdate update) throws RemoteException {
         if (update == null) return;
-        latestUpdate.set(update);
-        scheduleUpdateDrain();
+        // giữ đúng thứ tự qua fx queue; GameController tự kiểm tra seq
+        fx(() -> { if (gameController != null) gameController.onGameUpdate(update); });
     }
 
     @Override
@@ -5,4 +5,7 @@ public final class RmiConfig {
     public static String host() { return System.getProperty("rmi.host", "127.0.0.1"); }
     public static int port() { return Integer.parseInt(System.getProperty("rmi.port", "1099")); }
     public static String name() { return System.getProperty("rmi.name", "CaroLobby"); }
+    // "rmi" (mặc định) hoặc "gateway" (1 kết nối TCP tới gateway NIO của server)
+    public static boolean useGateway() { return "gateway".equalsIgnoreCase(System.getProperty("caro.transport", "rmi")); }
+    public static int gatewayPort() { return Integer.parseInt(System.getProperty("caro.gateway.port", "1199")); }
 }
@@ -5,10 +5,26 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import vn.edu.demo.caro.common.model.ChatMessage;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chat global phía client, giới hạn {@link #MAX_MESSAGES} tin (bộ nhớ không tăng theo thời gian).
+ *
+ * - Tin mới: thêm cuối (theo seq), vượt giới hạn thì bỏ tin cũ nhất.
+ * - Tin cũ (cuộn lên đầu): {@link #prependOlder} chèn trang lấy từ LobbyService.fetchGlobalChat,
+ *   chỉ nhận tới khi đầy => muốn xem xa hơn nữa thì phải bỏ tin mới (không làm).
+ * - ListView đã ảo hóa cell, nên chỉ cần giữ list gọn.
+ * Mọi thao tác list chạy trên FX thread.
+ */
 public final class GlobalChatStore {
+    public static final int MAX_MESSAGES = 500;
+
     private static final GlobalChatStore INSTANCE = new GlobalChatStore();
 
     private final ObservableList<ChatMessage> messages = FXCollections.observableArrayList();
+    private boolean hasOlder = true; // FX thread
+    private boolean prepending = false;
 
     private GlobalChatStore() {}
 
@@ -22,20 +38,111 @@ public final class GlobalChatStore {
 
     public void add(ChatMessage msg) {
         if (msg == null) return;
+        addAll(List.of(msg));
+    }
+
+    // 1 lần cập nhật list cho cả lô (ListView chỉ render lại 1 lần)
+    public void addAll(List<ChatMessage> msgs) {
+        if (msgs == null || msgs.isEmpty()) return;
 
         // luôn chạy trên FX thread để UI cập nhật ngay
         if (Platform.isFxApplicationThread()) {
-            messages.add(msg);
+            appendNow(msgs);
+        } else {
+            Platform.runLater(() -> appendNow(msgs));
+        }
+    }
+
+    /** Trang tin cũ hơn tin đầu list (thứ tự cũ -> mới); {@code more} = server còn tin cũ hơn. FX thread. */
+    public void prependOlder(List<ChatMessage> older, boolean more) {
+        long first = oldestSeq();
+        List<ChatMessage> page = new ArrayList<>();
+        for (ChatMessage m : older) {
+            if (m.getSeq() > 0 && m.getSeq() < first) page.add(m);
+        }
+        int room = MAX_MESSAGES - messages.size();
+        if (page.size() > room) {
+            page = page.subList(page.size() - Math.max(0, room), page.size());
+            more = true;
+        }
+        hasOlder = more && messages.size() + page.size() < MAX_MESSAGES;
+        if (page.isEmpty()) return;
+        prepending = true;
+        try {
+            messages.addAll(0, page);
+        } finally {
+            prepending = false;
+        }
+    }
+
+    /** true trong lúc listener của list nhận thay đổi do {@link #prependOlder} (tin lịch sử). */
+    public boolean isPrepending() {
+        return prepending;
+    }
+
+    /** seq của tin cũ nhất đang giữ (Long.MAX_VALUE nếu chưa có tin nào có seq). FX thread. */
+    public long oldestSeq() {
+        for (ChatMessage m : messages) {
+            if (m.getSeq() > 0) return m.getSeq();
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /** Còn nên tải thêm tin cũ không (server còn + store chưa đầy). FX thread. */
+    public boolean canLoadOlder() {
+        return hasOlder && messages.size() < MAX_MESSAGES;
+    }
+
+    private void appendNow(List<ChatMessage> msgs) {
+        List<ChatMessage> tail = new ArrayList<>(msgs.size());
+        for (ChatMessage m : msgs) {
+            // bỏ trùng (tin đã có nhờ tải trang trước đó)
+            if (m.getSeq() > 0 && m.getSeq() <= newestSeq() && containsSeq(m.getSeq())) continue;
+            tail.add(m);
+        }
+        if (tail.isEmpty()) return;
+
+        // thường đã đúng thứ tự seq; lệch (2 người gửi cùng lúc) thì chèn đúng chỗ từ cuối lên
+        long last = newestSeq();
+        if (tail.get(0).getSeq() == 0 || tail.get(0).getSeq() > last) {
+            messages.addAll(tail);
         } else {
-            Platform.runLater(() -> messages.add(msg));
+            for (ChatMessage m : tail) {
+                int i = messages.size();
+                while (i > 0 && messages.get(i - 1).getSeq() > m.getSeq()) i--;
+                messages.add(i, m);
+            }
+        }
+
+        int over = messages.size() - MAX_MESSAGES;
+        if (over > 0) {
+            messages.remove(0, over);
+            hasOlder = true;
+        }
+    }
+
+    private long newestSeq() {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getSeq() > 0) return messages.get(i).getSeq();
+        }
+        return 0;
+    }
+
+    private boolean containsSeq(long seq) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            long s = messages.get(i).getSeq();
+            if (s == seq) return true;
+            if (s > 0 && s < seq) return false;
         }
+        return false;
     }
 
     public void clear() {
         if (Platform.isFxApplicationThread()) {
             messages.clear();
+            hasOlder = true;
         } else {
-            Platform.runLater(messages::clear);
+            Platform.runLater(this::clear);
         }
     }
 }
@@ -1,19 +1,39 @@
 package vn.edu.demo.caro.common.model;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.time.Instant;
 
-public class ChatMessage implements Serializable {
-    private final String from;  // Đây là biến chứa tên người gửi
-    private final String scope; // GLOBAL or ROOM:<id>
-    private final String content;
-    private final Instant at;
+public class ChatMessage implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+
+    private String from;  // Đây là biến chứa tên người gửi
+    private String scope; // GLOBAL or ROOM:<id>
+    private String content;
+    private Instant at;
+    private long seq;     // số thứ tự chat global do server gán (0 = chưa gán / chat phòng)
+
+    // chỉ dùng cho Externalizable
+    public ChatMessage() {}
 
     public ChatMessage(String from, String scope, String content, Instant at) {
+        this(from, scope, content, at, 0L);
+    }
+
+    public ChatMessage(String from, String scope, String content, Instant at, long seq) {
         this.from = from;
         this.scope = scope;
         this.content = content;
         this.at = at;
+        this.seq = seq;
+    }
+
+    /** Bản sao có seq (server gán khi đưa vào lịch sử chat global). */
+    public ChatMessage withSeq(long seq) {
+        return new ChatMessage(from, scope, content, at, seq);
     }
 
     // --- Getter chuẩn ---
@@ -40,6 +60,30 @@ public class ChatMessage implements Serializable {
         return at;
     }
 
+    public long getSeq() {
+        return seq;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        Wire.writeString(out, from);
+        Wire.writeString(out, scope);
+        Wire.writeString(out, content);
+        Wire.writeInstant(out, at);
+        out.writeLong(seq);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, ChatMessage.class);
+        from = Wire.readString(in);
+        scope = Wire.readString(in);
+        content = Wire.readString(in);
+        at = Wire.readInstant(in);
+        seq = in.readLong();
+    }
+
     @Override
     public String toString() {
         return "[" + at + "] " + from + ": " + content;
@@ -1,12 +1,21 @@
 package vn.edu.demo.caro.common.model;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import vn.edu.demo.caro.common.model.Enums.UserStatus; // Đảm bảo import đúng Enum
 
-public class FriendInfo implements Serializable {
+public class FriendInfo implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+
     private String username;
     private UserStatus status;
 
+    // chỉ dùng cho Externalizable
+    public FriendInfo() {}
+
     public FriendInfo(String username, UserStatus status) {
         this.username = username;
         this.status = status;
@@ -14,4 +23,18 @@ public class FriendInfo implements Serializable {
 
     public String getUsername() { return username; }
     public UserStatus getStatus() { return status; }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        Wire.writeString(out, username);
+        Wire.writeEnum(out, status);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, FriendInfo.class);
+        username = Wire.readString(in);
+        status = Wire.readEnum(in, UserStatus.values());
+    }
 }
\ No newline at end of file
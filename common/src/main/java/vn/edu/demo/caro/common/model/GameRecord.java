@@ -0,0 +1,112 @@
+package vn.edu.demo.caro.common.model;
+
+import vn.edu.demo.caro.common.model.Enums.Mark;
+
+import java.io.InvalidObjectException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * Toàn bộ nước đi của 1 ván đã xong: ô (row * n + col) + thời gian nghĩ của từng nước.
+ * X luôn đi trước, 2 bên xen kẽ (undo chỉ bỏ nước cuối) => không cần lưu quân / người đi.
+ *
+ * Mã hóa ({@link #encode} / {@link #decode}):
+ *   [version:1][boardSize:1][count:varint] rồi mỗi nước [zigzag varint(ô - ô trước)][varint(nghĩ, đơn vị 10ms)]
+ * Nước sau thường sát nước trước nên hiệu số ô gần như luôn vừa 1 byte; nghĩ < 1.28s = 1 byte,
+ * < 164s = 2 byte => khoảng 2-3 byte / nước.
+ */
+public final class GameRecord {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_SIZE = 64;
+    private static final int TICK_MILLIS = 10;
+
+    private final int boardSize;
+    private final int[] cells;
+    private final int[] thinkMillis;
+
+    public GameRecord(int boardSize, int[] cells, int[] thinkMillis) {
+        if (boardSize < 1 || boardSize > MAX_SIZE) throw new IllegalArgumentException("boardSize: " + boardSize);
+        if (cells.length != thinkMillis.length) throw new IllegalArgumentException("cells / thinkMillis khác độ dài");
+        this.boardSize = boardSize;
+        this.cells = cells;
+        this.thinkMillis = thinkMillis;
+    }
+
+    public int getBoardSize() { return boardSize; }
+    public int getMoveCount() { return cells.length; }
+    public int getCell(int i) { return cells[i]; }
+    public int getRow(int i) { return cells[i] / boardSize; }
+    public int getCol(int i) { return cells[i] % boardSize; }
+    public Mark getMark(int i) { return (i & 1) == 0 ? Mark.X : Mark.O; }
+    /** Thời gian từ nước trước (nước 0: từ lúc bắt đầu ván), làm tròn 10ms. */
+    public int getThinkMillis(int i) { return thinkMillis[i]; }
+
+    // ============================================================
+    // Mã hóa
+    // ============================================================
+    public byte[] encode() {
+        byte[] out = new byte[2 + 5 + cells.length * 10];
+        int p = 0;
+        out[p++] = FORMAT_VERSION;
+        out[p++] = (byte) boardSize;
+        p = putVarint(out, p, cells.length);
+        int prev = center(boardSize);
+        for (int i = 0; i < cells.length; i++) {
+            int d = cells[i] - prev;
+            p = putVarint(out, p, (d << 1) ^ (d >> 31));
+            p = putVarint(out, p, (int) ((Math.max(0L, thinkMillis[i]) + TICK_MILLIS / 2) / TICK_MILLIS));
+            prev = cells[i];
+        }
+        return Arrays.copyOf(out, p);
+    }
+
+    public static GameRecord decode(byte[] b) throws InvalidObjectException {
+        try {
+            if (b[0] != FORMAT_VERSION) throw new InvalidObjectException("GameRecord version không hỗ trợ: " + b[0]);
+            int n = b[1] & 0xff;
+            if (n < 1 || n > MAX_SIZE) throw new InvalidObjectException("Bàn cờ không hợp lệ: " + n);
+            int[] pos = {2};
+            int count = getVarint(b, pos);
+            if (count < 0 || count > n * n) throw new InvalidObjectException("Số nước không hợp lệ: " + count);
+
+            int[] cells = new int[count];
+            int[] think = new int[count];
+            int prev = center(n);
+            for (int i = 0; i < count; i++) {
+                int z = getVarint(b, pos);
+                int cell = prev + ((z >>> 1) ^ -(z & 1));
+                if (cell < 0 || cell >= n * n) throw new InvalidObjectException("Ô ngoài bàn cờ: " + cell);
+                cells[i] = cell;
+                think[i] = (int) Math.min(Integer.MAX_VALUE, (getVarint(b, pos) & 0xffffffffL) * TICK_MILLIS);
+                prev = cell;
+            }
+            return new GameRecord(n, cells, think);
+        } catch (ArrayIndexOutOfBoundsException | StreamCorruptedException e) {
+            throw new InvalidObjectException("GameRecord bị cắt cụt / hỏng");
+        }
+    }
+
+    private static int center(int n) {
+        return (n / 2) * n + n / 2;
+    }
+
+    private static int putVarint(byte[] b, int p, int v) {
+        while ((v & ~0x7f) != 0) {
+            b[p++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        b[p++] = (byte) v;
+        return p;
+    }
+
+    private static int getVarint(byte[] b, int[] pos) throws StreamCorruptedException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte x = b[pos[0]++];
+            v |= (x & 0x7f) << shift;
+            if (x >= 0) return v;
+        }
+        throw new StreamCorruptedException("varint quá dài");
+    }
+}
@@ -2,16 +2,21 @@ package vn.edu.demo.caro.common.model;
 
 import vn.edu.demo.caro.common.model.Enums.Mark;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 public class GameSnapshot implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     private String roomId;
     private int boardSize;
-    private Mark[][] board;
+    // không để Java serialization ghi Mark[][] (mảng lồng + enum từng ô): ghi 2 bit / ô qua PackedBoard
+    private transient Mark[][] board;
     private int moveNo;
     private String turn;
+    private long seq; // seq của GameUpdate cuối cùng đã tính vào snapshot này
 
     // ===== Timer fields =====
     private boolean timed;
@@ -25,6 +30,7 @@ public class GameSnapshot implements Serializable {
     public Mark[][] getBoard() { return board; }
     public int getMoveNo() { return moveNo; }
     public String getTurn() { return turn; }
+    public long getSeq() { return seq; }
 
     public boolean isTimed() { return timed; }
     public int getTimeLimitSeconds() { return timeLimitSeconds; }
@@ -35,8 +41,19 @@ public class GameSnapshot implements Serializable {
     public void setBoard(Mark[][] board) { this.board = board; }
     public void setMoveNo(int moveNo) { this.moveNo = moveNo; }
     public void setTurn(String turn) { this.turn = turn; }
+    public void setSeq(long seq) { this.seq = seq; }
 
     public void setTimed(boolean timed) { this.timed = timed; }
     public void setTimeLimitSeconds(int timeLimitSeconds) { this.timeLimitSeconds = timeLimitSeconds; }
     public void setTurnDeadlineMillis(long turnDeadlineMillis) { this.turnDeadlineMillis = turnDeadlineMillis; }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        PackedBoard.write(out, board);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        board = PackedBoard.read(in);
+    }
 }
@@ -2,22 +2,29 @@ package vn.edu.demo.caro.common.model;
 
 import vn.edu.demo.caro.common.model.Enums.Mark;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
-public class GameStart implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class GameStart implements Externalizable {
+    private static final long serialVersionUID = 2L;
+    private static final int FORMAT_VERSION = 1;
 
-    private final String roomId;
-    private final String opponent;
-    private final Mark yourMark;
-    private final boolean yourTurn;
+    private String roomId;
+    private String opponent;
+    private Mark yourMark;
+    private boolean yourTurn;
 
     // --- room rules/options (so client can build board correctly) ---
-    private final int boardSize;
-    private final boolean blockTwoEnds;
+    private int boardSize;
+    private boolean blockTwoEnds;
 
-    private final boolean timed;
-    private final int timeLimitSeconds;
+    private boolean timed;
+    private int timeLimitSeconds;
+
+    // chỉ dùng cho Externalizable
+    public GameStart() {}
 
     public GameStart(String roomId,
                      String opponent,
@@ -47,4 +54,30 @@ public class GameStart implements Serializable {
 
     public boolean isTimed() { return timed; }
     public int getTimeLimitSeconds() { return timeLimitSeconds; }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        Wire.writeString(out, roomId);
+        Wire.writeString(out, opponent);
+        Wire.writeEnum(out, yourMark);
+        out.writeByte(boardSize);
+        // 3 cờ boolean gộp 1 byte
+        out.writeByte((yourTurn ? 1 : 0) | (blockTwoEnds ? 2 : 0) | (timed ? 4 : 0));
+        out.writeInt(timeLimitSeconds);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, GameStart.class);
+        roomId = Wire.readString(in);
+        opponent = Wire.readString(in);
+        yourMark = Wire.readEnum(in, Mark.values());
+        boardSize = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        yourTurn = (flags & 1) != 0;
+        blockTwoEnds = (flags & 2) != 0;
+        timed = (flags & 4) != 0;
+        timeLimitSeconds = in.readInt();
+    }
 }
@@ -1,23 +1,71 @@
 package vn.edu.demo.caro.common.model;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import static vn.edu.demo.caro.common.model.Enums.Mark;
 
-public class GameUpdate implements Serializable {
-    private final String roomId;
-    private final Move move;
-    private final Mark mark;
-    private final String nextTurnUser;
+public class GameUpdate implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+
+    private String roomId;
+    private Move move;
+    private Mark mark;
+    private String nextTurnUser;
+
+    // seq tăng dần theo phòng (chung với GameSnapshot): client thấy hở seq thì xin snapshot
+    private long seq;
+    private long turnDeadlineMillis;
+
+    // chỉ dùng cho Externalizable
+    public GameUpdate() {}
 
     public GameUpdate(String roomId, Move move, Mark mark, String nextTurnUser) {
+        this(roomId, move, mark, nextTurnUser, 0L, 0L);
+    }
+
+    public GameUpdate(String roomId, Move move, Mark mark, String nextTurnUser,
+                      long seq, long turnDeadlineMillis) {
         this.roomId = roomId;
         this.move = move;
         this.mark = mark;
         this.nextTurnUser = nextTurnUser;
+        this.seq = seq;
+        this.turnDeadlineMillis = turnDeadlineMillis;
     }
 
     public String getRoomId() { return roomId; }
     public Move getMove() { return move; }
     public Mark getMark() { return mark; }
     public String getNextTurnUser() { return nextTurnUser; }
+    public long getSeq() { return seq; }
+    public long getTurnDeadlineMillis() { return turnDeadlineMillis; }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        Wire.writeString(out, roomId);
+        out.writeBoolean(move != null);
+        if (move != null) move.writeExternal(out); // ghi thẳng, không kèm header object
+        Wire.writeEnum(out, mark);
+        Wire.writeString(out, nextTurnUser);
+        out.writeLong(seq);
+        out.writeLong(turnDeadlineMillis);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, GameUpdate.class);
+        roomId = Wire.readString(in);
+        if (in.readBoolean()) {
+            move = new Move();
+            move.readExternal(in);
+        }
+        mark = Wire.readEnum(in, Mark.values());
+        nextTurnUser = Wire.readString(in);
+        seq = in.readLong();
+        turnDeadlineMillis = in.readLong();
+    }
 }
@@ -0,0 +1,67 @@
+package vn.edu.demo.caro.common.model;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.time.Instant;
+
+/** 1 dòng lịch sử ván (danh sách ván để chọn xem lại). */
+public class MatchSummary implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+
+    private long matchId;
+    private String playerX;
+    private String playerO;
+    private String winner; // null = hòa / hủy
+    private String reason;
+    private Instant endedAt;
+
+    // chỉ dùng cho Externalizable
+    public MatchSummary() {}
+
+    public MatchSummary(long matchId, String playerX, String playerO, String winner, String reason, Instant endedAt) {
+        this.matchId = matchId;
+        this.playerX = playerX;
+        this.playerO = playerO;
+        this.winner = winner;
+        this.reason = reason;
+        this.endedAt = endedAt;
+    }
+
+    public long getMatchId() { return matchId; }
+    public String getPlayerX() { return playerX; }
+    public String getPlayerO() { return playerO; }
+    public String getWinner() { return winner; }
+    public String getReason() { return reason; }
+    public Instant getEndedAt() { return endedAt; }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        out.writeLong(matchId);
+        Wire.writeString(out, playerX);
+        Wire.writeString(out, playerO);
+        Wire.writeString(out, winner);
+        Wire.writeString(out, reason);
+        Wire.writeInstant(out, endedAt);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, MatchSummary.class);
+        matchId = in.readLong();
+        playerX = Wire.readString(in);
+        playerO = Wire.readString(in);
+        winner = Wire.readString(in);
+        reason = Wire.readString(in);
+        endedAt = Wire.readInstant(in);
+    }
+
+    @Override
+    public String toString() {
+        return "#" + matchId + " " + playerX + " (X) vs " + playerO + " (O) - "
+                + (winner == null ? "Hòa" : winner + " thắng") + " [" + reason + "]";
+    }
+}
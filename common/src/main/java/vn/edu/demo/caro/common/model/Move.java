@@ -1,12 +1,21 @@
 package vn.edu.demo.caro.common.model;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
-public class Move implements Serializable {
-    private final int row;
-    private final int col;
-    private final int moveNo;
-    private final String by;
+public class Move implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+
+    private int row;
+    private int col;
+    private int moveNo;
+    private String by;
+
+    // chỉ dùng cho Externalizable
+    public Move() {}
 
     public Move(int row, int col, int moveNo, String by) {
         this.row = row;
@@ -19,4 +28,22 @@ public class Move implements Serializable {
     public int getCol() { return col; }
     public int getMoveNo() { return moveNo; }
     public String getBy() { return by; }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        out.writeShort(row);
+        out.writeShort(col);
+        out.writeInt(moveNo);
+        Wire.writeString(out, by);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, Move.class);
+        row = in.readShort();
+        col = in.readShort();
+        moveNo = in.readInt();
+        by = Wire.readString(in);
+    }
 }
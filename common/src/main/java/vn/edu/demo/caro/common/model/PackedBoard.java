@@ -0,0 +1,92 @@
+package vn.edu.demo.caro.common.model;
+
+import vn.edu.demo.caro.common.model.Enums.Mark;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Mã hóa bàn cờ gọn: 2 bit / ô (EMPTY=0, X=1, O=2), 32 ô / long, duyệt theo hàng.
+ *
+ * Bàn 30x30 = 900 ô => 29 long (232 byte) thay cho Mark[][] (mảng lồng + tham chiếu enum từng ô).
+ * Dùng trong writeObject / readObject (hoặc writeExternal) của DTO có bàn cờ.
+ */
+public final class PackedBoard {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_SIZE = 64;
+    private static final Mark[] MARKS = {Mark.EMPTY, Mark.X, Mark.O};
+
+    private PackedBoard() {}
+
+    public static long[] pack(Mark[][] board) {
+        int n = board.length;
+        long[] words = new long[wordCount(n)];
+        int i = 0;
+        for (Mark[] row : board) {
+            for (int c = 0; c < n; c++, i++) {
+                long code = code(row[c]);
+                if (code != 0) words[i >>> 5] |= code << ((i & 31) << 1);
+            }
+        }
+        return words;
+    }
+
+    public static Mark[][] unpack(long[] words, int n) {
+        Mark[][] board = new Mark[n][n];
+        int i = 0;
+        for (int r = 0; r < n; r++) {
+            Mark[] row = board[r];
+            for (int c = 0; c < n; c++, i++) {
+                int code = (int) (words[i >>> 5] >>> ((i & 31) << 1)) & 3;
+                row[c] = code < 3 ? MARKS[code] : Mark.EMPTY;
+            }
+        }
+        return board;
+    }
+
+    /** Mảng pack của bàn n x n trống. */
+    public static long[] empty(int n) {
+        return new long[wordCount(n)];
+    }
+
+    /** Đặt quân vào ô cell (row * n + col) đang trống của mảng pack (không cần unpack / pack lại). */
+    public static void place(long[] words, int cell, Mark m) {
+        words[cell >>> 5] |= code(m) << ((cell & 31) << 1);
+    }
+
+    /** [version:1][size:1][words...]; size 0 = không có bàn cờ (null). */
+    public static void write(ObjectOutput out, Mark[][] board) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        if (board == null) {
+            out.writeByte(0);
+            return;
+        }
+        if (board.length > MAX_SIZE) throw new IOException("Bàn cờ quá lớn: " + board.length);
+        out.writeByte(board.length);
+        for (long w : pack(board)) out.writeLong(w);
+    }
+
+    public static Mark[][] read(ObjectInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) throw new InvalidObjectException("PackedBoard version không hỗ trợ: " + version);
+        int n = in.readUnsignedByte();
+        if (n == 0) return null;
+        if (n > MAX_SIZE) throw new InvalidObjectException("Bàn cờ quá lớn: " + n);
+        long[] words = new long[wordCount(n)];
+        for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+        return unpack(words, n);
+    }
+
+    static int wordCount(int n) {
+        return (n * n + 31) >>> 5;
+    }
+
+    private static long code(Mark m) {
+        if (m == Mark.X) return 1;
+        if (m == Mark.O) return 2;
+        return 0;
+    }
+}
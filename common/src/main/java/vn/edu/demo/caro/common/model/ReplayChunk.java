@@ -0,0 +1,126 @@
+package vn.edu.demo.caro.common.model;
+
+import vn.edu.demo.caro.common.model.Enums.Mark;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * 1 đoạn của ván đã lưu để xem lại: nước [fromMove, toMove) + keyframe (bàn cờ pack 2 bit / ô)
+ * ở mỗi vị trí fromMove + k * keyframeInterval trong đoạn. fromMove luôn là bội số của keyframeInterval.
+ *
+ * Dựng bàn cờ ở vị trí bất kỳ trong đoạn ({@link #boardAt}) = unpack keyframe gần nhất phía trước
+ * + tối đa keyframeInterval - 1 nước => không phải đi lại từ nước 0.
+ */
+public class ReplayChunk implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_SIZE = 64;
+
+    private long matchId;
+    private int boardSize;
+    private int totalMoves;
+    private int keyframeInterval;
+    private int fromMove;
+    private int[] cells;         // [move - fromMove] = row * boardSize + col
+    private int[] thinkMillis;   // [move - fromMove]
+    private long[][] keyframes;  // [k] = bàn cờ sau fromMove + k * keyframeInterval nước (PackedBoard.pack)
+
+    // chỉ dùng cho Externalizable
+    public ReplayChunk() {}
+
+    public ReplayChunk(long matchId, int boardSize, int totalMoves, int keyframeInterval, int fromMove,
+                       int[] cells, int[] thinkMillis, long[][] keyframes) {
+        this.matchId = matchId;
+        this.boardSize = boardSize;
+        this.totalMoves = totalMoves;
+        this.keyframeInterval = keyframeInterval;
+        this.fromMove = fromMove;
+        this.cells = cells;
+        this.thinkMillis = thinkMillis;
+        this.keyframes = keyframes;
+    }
+
+    public long getMatchId() { return matchId; }
+    public int getBoardSize() { return boardSize; }
+    /** Tổng số nước của cả ván. */
+    public int getTotalMoves() { return totalMoves; }
+    public int getKeyframeInterval() { return keyframeInterval; }
+    public int getFromMove() { return fromMove; }
+    public int getToMove() { return fromMove + cells.length; }
+
+    /** Ô của nước thứ move (0-based, fromMove <= move < toMove). */
+    public int getCell(int move) { return cells[move - fromMove]; }
+    public int getRow(int move) { return getCell(move) / boardSize; }
+    public int getCol(int move) { return getCell(move) % boardSize; }
+    public Mark getMark(int move) { return (move & 1) == 0 ? Mark.X : Mark.O; }
+    public int getThinkMillis(int move) { return thinkMillis[move - fromMove]; }
+
+    /** Dựng được bàn cờ sau {@code position} nước từ đoạn này không. */
+    public boolean covers(int position) {
+        return position >= fromMove && position <= getToMove();
+    }
+
+    /** Bàn cờ sau {@code position} nước (covers(position) phải đúng). */
+    public Mark[][] boardAt(int position) {
+        if (!covers(position)) throw new IllegalArgumentException("Vị trí " + position + " ngoài đoạn " + fromMove + ".." + getToMove());
+        int k = Math.min((position - fromMove) / keyframeInterval, keyframes.length - 1);
+        Mark[][] board = PackedBoard.unpack(keyframes[k], boardSize);
+        for (int m = fromMove + k * keyframeInterval; m < position; m++) {
+            board[getRow(m)][getCol(m)] = getMark(m);
+        }
+        return board;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        out.writeLong(matchId);
+        out.writeByte(boardSize);
+        Wire.writeVarInt(out, totalMoves);
+        Wire.writeVarInt(out, keyframeInterval);
+        Wire.writeVarInt(out, fromMove);
+        Wire.writeVarInt(out, cells.length);
+        for (int i = 0; i < cells.length; i++) {
+            Wire.writeVarInt(out, cells[i]);
+            Wire.writeVarInt(out, thinkMillis[i]);
+        }
+        Wire.writeVarInt(out, keyframes.length);
+        for (long[] kf : keyframes) {
+            for (long w : kf) out.writeLong(w);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, ReplayChunk.class);
+        matchId = in.readLong();
+        boardSize = in.readUnsignedByte();
+        if (boardSize < 1 || boardSize > MAX_SIZE) throw new InvalidObjectException("ReplayChunk: bàn cờ không hợp lệ " + boardSize);
+        int area = boardSize * boardSize;
+        totalMoves = Wire.readVarInt(in);
+        keyframeInterval = Wire.readVarInt(in);
+        fromMove = Wire.readVarInt(in);
+        int n = Wire.readVarInt(in);
+        if (totalMoves > area || keyframeInterval < 1 || fromMove % keyframeInterval != 0
+                || n < 0 || fromMove + n > totalMoves) {
+            throw new InvalidObjectException("ReplayChunk: đoạn không hợp lệ " + fromMove + "+" + n + "/" + totalMoves);
+        }
+        cells = new int[n];
+        thinkMillis = new int[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = Wire.readVarInt(in);
+            if (cells[i] < 0 || cells[i] >= area) throw new InvalidObjectException("ReplayChunk: ô ngoài bàn cờ " + cells[i]);
+            thinkMillis[i] = Wire.readVarInt(in);
+        }
+        int k = Wire.readVarInt(in);
+        if (k < 1 || k > n / keyframeInterval + 1) throw new InvalidObjectException("ReplayChunk: số keyframe không hợp lệ " + k);
+        keyframes = new long[k][PackedBoard.wordCount(boardSize)];
+        for (long[] kf : keyframes) {
+            for (int i = 0; i < kf.length; i++) kf[i] = in.readLong();
+        }
+    }
+}
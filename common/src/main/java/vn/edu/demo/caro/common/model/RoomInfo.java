@@ -2,11 +2,16 @@ package vn.edu.demo.caro.common.model;
 
 import vn.edu.demo.caro.common.model.Enums.RoomStatus;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.time.Instant;
+import java.util.Objects;
 
-public class RoomInfo implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class RoomInfo implements Externalizable {
+    private static final long serialVersionUID = 2L;
+    private static final int FORMAT_VERSION = 1;
     private String id;
     private String name;
     private String owner;
@@ -93,6 +98,65 @@ public void setRoomId(String id) { this.id = id; }
     public int getTimeLimitSeconds() { return timeLimitSeconds; }
     public void setTimeLimitSeconds(int timeLimitSeconds) { this.timeLimitSeconds = timeLimitSeconds; }
 
+    // so sánh để server chỉ gửi delta khi phòng thực sự đổi
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RoomInfo)) return false;
+        RoomInfo r = (RoomInfo) o;
+        return maxPlayers == r.maxPlayers
+                && currentPlayers == r.currentPlayers
+                && boardSize == r.boardSize
+                && blockTwoEnds == r.blockTwoEnds
+                && passwordEnabled == r.passwordEnabled
+                && timed == r.timed
+                && timeLimitSeconds == r.timeLimitSeconds
+                && status == r.status
+                && Objects.equals(id, r.id)
+                && Objects.equals(name, r.name)
+                && Objects.equals(owner, r.owner)
+                && Objects.equals(createdAt, r.createdAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, owner, currentPlayers, status);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        Wire.writeString(out, id);
+        Wire.writeString(out, name);
+        Wire.writeString(out, owner);
+        out.writeByte(maxPlayers);
+        out.writeByte(currentPlayers);
+        Wire.writeEnum(out, status);
+        Wire.writeInstant(out, createdAt);
+        out.writeByte(boardSize);
+        // 3 cờ boolean gộp 1 byte
+        out.writeByte((blockTwoEnds ? 1 : 0) | (passwordEnabled ? 2 : 0) | (timed ? 4 : 0));
+        out.writeInt(timeLimitSeconds);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, RoomInfo.class);
+        id = Wire.readString(in);
+        name = Wire.readString(in);
+        owner = Wire.readString(in);
+        maxPlayers = in.readUnsignedByte();
+        currentPlayers = in.readUnsignedByte();
+        status = Wire.readEnum(in, RoomStatus.values());
+        createdAt = Wire.readInstant(in);
+        boardSize = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        blockTwoEnds = (flags & 1) != 0;
+        passwordEnabled = (flags & 2) != 0;
+        timed = (flags & 4) != 0;
+        timeLimitSeconds = in.readInt();
+    }
+
     @Override
 public String toString() {
     String rules = "Bàn " + boardSize + " | " +
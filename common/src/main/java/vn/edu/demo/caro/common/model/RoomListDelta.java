@@ -0,0 +1,33 @@
+package vn.edu.demo.caro.common.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Thay đổi danh sách phòng từ version {@code fromVersion} lên {@code toVersion}.
+ * full = true: {@code upserts} là toàn bộ danh sách (dùng khi login / resync).
+ */
+public class RoomListDelta implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long fromVersion;
+    private final long toVersion;
+    private final boolean full;
+    private final List<RoomInfo> upserts;
+    private final List<String> removedIds;
+
+    public RoomListDelta(long fromVersion, long toVersion, boolean full,
+                         List<RoomInfo> upserts, List<String> removedIds) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.full = full;
+        this.upserts = upserts;
+        this.removedIds = removedIds;
+    }
+
+    public long getFromVersion() { return fromVersion; }
+    public long getToVersion() { return toVersion; }
+    public boolean isFull() { return full; }
+    public List<RoomInfo> getUpserts() { return upserts; }
+    public List<String> getRemovedIds() { return removedIds; }
+}
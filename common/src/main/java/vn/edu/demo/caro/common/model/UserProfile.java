@@ -1,13 +1,22 @@
 package vn.edu.demo.caro.common.model;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
-public class UserProfile implements Serializable {
-    private final String username;
-    private final int wins;
-    private final int losses;
-    private final int draws;
-    private final int elo;
+public class UserProfile implements Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+
+    private String username;
+    private int wins;
+    private int losses;
+    private int draws;
+    private int elo;
+
+    // chỉ dùng cho Externalizable
+    public UserProfile() {}
 
     public UserProfile(String username, int wins, int losses, int draws, int elo) {
         this.username = username;
@@ -23,6 +32,26 @@ public class UserProfile implements Serializable {
     public int getDraws() { return draws; }
     public int getElo() { return elo; }
 
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeVersion(out, FORMAT_VERSION);
+        Wire.writeString(out, username);
+        out.writeInt(wins);
+        out.writeInt(losses);
+        out.writeInt(draws);
+        out.writeInt(elo);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        Wire.readVersion(in, FORMAT_VERSION, UserProfile.class);
+        username = Wire.readString(in);
+        wins = in.readInt();
+        losses = in.readInt();
+        draws = in.readInt();
+        elo = in.readInt();
+    }
+
     @Override public String toString() {
         return username + " | ELO=" + elo + " (W" + wins + " L" + losses + " D" + draws + ")";
     }
@@ -0,0 +1,99 @@
+package vn.edu.demo.caro.common.model;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Helper ghi/đọc field cho các DTO Externalizable trong package này.
+ *
+ * Mỗi DTO ghi 1 byte version đầu tiên; bản đọc nhận mọi version <= version của nó
+ * (thêm field mới thì tăng version và chỉ đọc field đó khi version đủ mới).
+ */
+final class Wire {
+
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    private Wire() {}
+
+    static void writeVersion(ObjectOutput out, int version) throws IOException {
+        out.writeByte(version);
+    }
+
+    static int readVersion(ObjectInput in, int maxSupported, Class<?> type) throws IOException {
+        int v = in.readUnsignedByte();
+        if (v < 1 || v > maxSupported) {
+            throw new InvalidObjectException(type.getSimpleName() + ": format version không hỗ trợ " + v);
+        }
+        return v;
+    }
+
+    // UTF-8 + độ dài varint (0 = null, n+1 = n byte); không dùng writeUTF vì giới hạn 64KB
+    static void writeString(ObjectOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeByte(0);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, b.length + 1);
+        out.write(b);
+    }
+
+    static String readString(ObjectInput in) throws IOException {
+        int n = readVarInt(in) - 1;
+        if (n < 0) return null;
+        if (n > MAX_STRING_BYTES) throw new InvalidObjectException("Chuỗi quá dài: " + n);
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // 7 bit / byte, bit cao = còn byte sau (tên user, tên phòng < 127 byte => 1 byte độ dài)
+    static void writeVarInt(ObjectOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(ObjectInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new InvalidObjectException("VarInt không hợp lệ");
+    }
+
+    static void writeInstant(ObjectOutput out, Instant t) throws IOException {
+        out.writeBoolean(t != null);
+        if (t != null) {
+            out.writeLong(t.getEpochSecond());
+            out.writeInt(t.getNano());
+        }
+    }
+
+    static Instant readInstant(ObjectInput in) throws IOException {
+        if (!in.readBoolean()) return null;
+        long sec = in.readLong();
+        int nano = in.readInt();
+        return Instant.ofEpochSecond(sec, nano);
+    }
+
+    // enum theo ordinal (-1 = null); thêm hằng mới chỉ được thêm vào cuối enum
+    static void writeEnum(ObjectOutput out, Enum<?> e) throws IOException {
+        out.writeByte(e == null ? -1 : e.ordinal());
+    }
+
+    static <E extends Enum<E>> E readEnum(ObjectInput in, E[] values) throws IOException {
+        int i = in.readByte();
+        if (i < 0) return null;
+        if (i >= values.length) throw new InvalidObjectException("Enum ordinal không hợp lệ: " + i);
+        return values[i];
+    }
+}
@@ -0,0 +1,32 @@
+package vn.edu.demo.caro.common.net;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+
+/** Phía gọi (được serialize kèm stub): mở {@link FramedSocket} tới object đã export. */
+public final class CompressingClientSocketFactory implements RMIClientSocketFactory, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final SocketOptions opts;
+
+    public CompressingClientSocketFactory(SocketOptions opts) {
+        this.opts = opts;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return new FramedSocket(host, port, opts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompressingClientSocketFactory && opts.equals(((CompressingClientSocketFactory) o).opts);
+    }
+
+    @Override
+    public int hashCode() {
+        return opts.hashCode();
+    }
+}
@@ -0,0 +1,39 @@
+package vn.edu.demo.caro.common.net;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIServerSocketFactory;
+
+/** Phía export: ServerSocket trả về {@link FramedSocket} khi accept. */
+public final class CompressingServerSocketFactory implements RMIServerSocketFactory {
+
+    private final SocketOptions opts;
+
+    public CompressingServerSocketFactory(SocketOptions opts) {
+        this.opts = opts;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return new ServerSocket(port) {
+            @Override
+            public Socket accept() throws IOException {
+                FramedSocket s = new FramedSocket(opts);
+                implAccept(s);
+                s.configure();
+                return s;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompressingServerSocketFactory && opts.equals(((CompressingServerSocketFactory) o).opts);
+    }
+
+    @Override
+    public int hashCode() {
+        return opts.hashCode();
+    }
+}
@@ -0,0 +1,19 @@
+package vn.edu.demo.caro.common.net;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+
+/** Cặp với {@link DataObjectOutput}: gọi readExternal trên dòng byte thô. */
+final class DataObjectInput extends DataInputStream implements ObjectInput {
+
+    DataObjectInput(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public Object readObject() throws InvalidObjectException {
+        throw new InvalidObjectException("Gateway: readObject không hỗ trợ trong readExternal");
+    }
+}
@@ -0,0 +1,19 @@
+package vn.edu.demo.caro.common.net;
+
+import java.io.DataOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+
+/** ObjectOutput tối giản để gọi writeExternal của DTO mà không cần ObjectOutputStream (không có header / handle). */
+final class DataObjectOutput extends DataOutputStream implements ObjectOutput {
+
+    DataObjectOutput(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void writeObject(Object obj) throws NotSerializableException {
+        throw new NotSerializableException("Gateway: writeObject không hỗ trợ trong writeExternal");
+    }
+}
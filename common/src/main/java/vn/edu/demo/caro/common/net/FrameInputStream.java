@@ -0,0 +1,127 @@
+package vn.edu.demo.caro.common.net;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/** Đọc frame do {@link FrameOutputStream} ghi, trả lại dòng byte RMI ban đầu. */
+final class FrameInputStream extends FilterInputStream {
+
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+    private byte[] buf = new byte[0];
+    private byte[] zbuf = new byte[0];
+    private int pos = 0;
+    private int limit = 0;
+
+    FrameInputStream(InputStream in) {
+        super(in);
+        // header đọc qua buffer: readInt trên socket trần = 4 lần read 1 byte
+        this.in = new DataInputStream(new BufferedInputStream(in, 8192));
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !nextFrame()) return -1;
+        return buf[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (pos == limit && !nextFrame()) return -1;
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - pos;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long done = 0;
+        while (done < n) {
+            if (pos == limit && !nextFrame()) break;
+            int k = (int) Math.min(n - done, limit - pos);
+            pos += k;
+            done += k;
+        }
+        return done;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // false = hết stream đúng ranh giới frame
+    private boolean nextFrame() throws IOException {
+        do {
+            int type = in.read();
+            if (type < 0) return false;
+
+            int n = in.readInt();
+            checkLength(n);
+            if (buf.length < n) buf = new byte[n];
+
+            if (type == FrameOutputStream.RAW) {
+                in.readFully(buf, 0, n);
+                NetStats.wireIn.addAndGet(5 + n);
+            } else if (type == FrameOutputStream.DEFLATE) {
+                int z = in.readInt();
+                checkLength(z);
+                if (zbuf.length < z) zbuf = new byte[z];
+                in.readFully(zbuf, 0, z);
+                inflate(z, n);
+                NetStats.wireIn.addAndGet(9 + z);
+            } else {
+                throw new StreamCorruptedException("Frame không hợp lệ: " + type);
+            }
+            NetStats.rawIn.addAndGet(n);
+            pos = 0;
+            limit = n;
+        } while (limit == 0);
+        return true;
+    }
+
+    private void inflate(int z, int n) throws IOException {
+        inflater.reset();
+        inflater.setInput(zbuf, 0, z);
+        try {
+            int got = 0;
+            while (got < n && !inflater.finished()) {
+                int k = inflater.inflate(buf, got, n - got);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                got += k;
+            }
+            if (got != n) throw new EOFException("Frame nén bị thiếu: " + got + "/" + n);
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("Frame nén hỏng: " + e.getMessage());
+        }
+    }
+
+    private static void checkLength(int n) throws IOException {
+        if (n < 0 || n > MAX_FRAME) throw new StreamCorruptedException("Độ dài frame không hợp lệ: " + n);
+    }
+}
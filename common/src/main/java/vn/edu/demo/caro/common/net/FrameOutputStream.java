@@ -0,0 +1,130 @@
+package vn.edu.demo.caro.common.net;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Gom byte RMI ghi vào, tới flush() (hoặc đầy frame) thì gửi 1 frame:
+ * - [0][len:int][byte thô]
+ * - [1][rawLen:int][len:int][byte deflate]   (chỉ khi frame >= ngưỡng và nén ra nhỏ hơn)
+ *
+ * Thích ứng: nén mà tiết kiệm < 10% thì bỏ qua nén {@link #BACKOFF_FRAMES} frame lớn tiếp theo
+ * (dữ liệu kiểu đó thường đến liên tiếp, đỡ tốn CPU vô ích).
+ */
+final class FrameOutputStream extends FilterOutputStream {
+
+    static final int RAW = 0;
+    static final int DEFLATE = 1;
+    private static final int BACKOFF_FRAMES = 8;
+
+    // header (tối đa 9 byte) ghi ngay trước dữ liệu trong cùng mảng => mỗi frame chỉ 1 lần write xuống socket
+    private static final int HEADER = 9;
+
+    private final byte[] buf;
+    private final int frameSize;
+    private int count = 0;
+
+    private final boolean compress;
+    private final int threshold;
+    private final Deflater deflater;
+    private byte[] zbuf = new byte[0];
+    private int skip = 0;
+
+    FrameOutputStream(OutputStream out, SocketOptions opts) {
+        super(out);
+        this.frameSize = opts.frameSize();
+        this.buf = new byte[HEADER + frameSize];
+        this.compress = opts.isCompress();
+        this.threshold = opts.getCompressThreshold();
+        this.deflater = compress ? new Deflater(opts.getCompressLevel()) : null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == frameSize) writeFrame();
+        buf[HEADER + count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == frameSize) writeFrame();
+            int n = Math.min(len, frameSize - count);
+            System.arraycopy(b, off, buf, HEADER + count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) writeFrame();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (deflater != null) deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        int n = count;
+        count = 0;
+        NetStats.rawOut.addAndGet(n);
+
+        if (compress && n >= threshold) {
+            if (skip > 0) {
+                skip--;
+                NetStats.framesSkipped.incrementAndGet();
+            } else {
+                int z = deflate(n);
+                if (z > 0 && z < n - 5) {
+                    if (z > n * 9 / 10) skip = BACKOFF_FRAMES;
+                    zbuf[0] = DEFLATE;
+                    putInt(zbuf, 1, n);
+                    putInt(zbuf, 5, z);
+                    out.write(zbuf, 0, HEADER + z);
+                    NetStats.wireOut.addAndGet(9 + z);
+                    NetStats.framesCompressed.incrementAndGet();
+                    return;
+                }
+                skip = BACKOFF_FRAMES;
+                NetStats.framesSkipped.incrementAndGet();
+            }
+        }
+
+        buf[HEADER - 5] = RAW;
+        putInt(buf, HEADER - 4, n);
+        out.write(buf, HEADER - 5, 5 + n);
+        NetStats.wireOut.addAndGet(5 + n);
+        NetStats.framesRaw.incrementAndGet();
+    }
+
+    // trả về số byte nén, hoặc -1 nếu không nhỏ hơn bản thô
+    private int deflate(int n) {
+        if (zbuf.length < HEADER + n) zbuf = new byte[HEADER + n];
+        deflater.reset();
+        deflater.setInput(buf, HEADER, n);
+        deflater.finish();
+        int z = 0;
+        while (!deflater.finished() && z < n) {
+            z += deflater.deflate(zbuf, HEADER + z, n - z);
+        }
+        return deflater.finished() ? z : -1;
+    }
+
+    private static void putInt(byte[] b, int at, int v) {
+        b[at] = (byte) (v >>> 24);
+        b[at + 1] = (byte) (v >>> 16);
+        b[at + 2] = (byte) (v >>> 8);
+        b[at + 3] = (byte) v;
+    }
+}
@@ -0,0 +1,54 @@
+package vn.edu.demo.caro.common.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+
+/** Socket bọc stream bằng frame (có thể nén); dùng cho cả 2 chiều kết nối RMI. */
+final class FramedSocket extends Socket {
+
+    private final SocketOptions opts;
+    private FrameInputStream in;
+    private FrameOutputStream out;
+
+    // phía server: socket rỗng, ServerSocket.implAccept sẽ gắn kết nối vào
+    FramedSocket(SocketOptions opts) {
+        this.opts = opts;
+    }
+
+    // phía client
+    FramedSocket(String host, int port, SocketOptions opts) throws IOException {
+        this.opts = opts;
+        try {
+            connect(new InetSocketAddress(host, port), opts.getConnectTimeoutMillis());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        configure();
+    }
+
+    void configure() throws SocketException {
+        setTcpNoDelay(opts.isTcpNoDelay());
+        if (opts.getBufferSize() > 0) {
+            setSendBufferSize(opts.getBufferSize());
+            setReceiveBufferSize(opts.getBufferSize());
+        }
+        NetStats.socketsOpened.incrementAndGet();
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (in == null) in = new FrameInputStream(super.getInputStream());
+        return in;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+        if (out == null) out = new FrameOutputStream(super.getOutputStream(), opts);
+        return out;
+    }
+}
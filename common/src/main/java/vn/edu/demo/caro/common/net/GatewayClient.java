@@ -0,0 +1,203 @@
+package vn.edu.demo.caro.common.net;
+
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.common.rmi.LobbyService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client của gateway NIO: 1 socket TCP cho cả request lẫn callback (không export object RMI nào).
+ *
+ * - {@link #lobby()} trả về LobbyService (proxy): mỗi lời gọi gửi REQUEST rồi chờ RESPONSE cùng reqId,
+ *   lỗi server ném lại dạng RemoteException như RMI.
+ * - EVENT từ server được gọi lên ClientCallback đã truyền vào login, trên 1 thread riêng theo đúng thứ tự nhận.
+ */
+public final class GatewayClient implements Closeable {
+
+    private static final long TIMEOUT_MILLIS = Long.getLong("caro.gateway.timeoutMs", 15_000L);
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Map<Integer, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+    private final ExecutorService events;
+    private final LobbyService lobby;
+
+    private volatile ClientCallback callback;
+    private volatile boolean closed = false;
+
+    private GatewayClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 8192));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 8192));
+        this.events = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "gateway-events");
+            t.setDaemon(true);
+            return t;
+        });
+        this.lobby = (LobbyService) Proxy.newProxyInstance(
+                LobbyService.class.getClassLoader(), new Class<?>[]{LobbyService.class}, this::invoke);
+    }
+
+    public static GatewayClient connect(String host, int port) throws IOException {
+        Socket s = new Socket();
+        s.setTcpNoDelay(true);
+        s.connect(new InetSocketAddress(host, port), (int) TIMEOUT_MILLIS);
+        GatewayClient c = new GatewayClient(s);
+
+        Thread reader = new Thread(c::readLoop, "gateway-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        // bắt tay: server kiểm tra version + bảng method (reqId 0)
+        CompletableFuture<Object> hello = new CompletableFuture<>();
+        c.pending.put(0, hello);
+        try {
+            c.send(GatewayCodec.encodeHello());
+            hello.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            c.close();
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new IOException("Gateway: bắt tay thất bại - " + cause.getMessage(), cause);
+        } finally {
+            c.pending.remove(0);
+        }
+        return c;
+    }
+
+    public LobbyService lobby() {
+        return lobby;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        events.shutdown();
+        failPending("Gateway: kết nối đã đóng");
+    }
+
+    // ============================================================
+    // LobbyService proxy
+    // ============================================================
+    private Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+        if (m.getDeclaringClass() == Object.class) {
+            switch (m.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                default: return "GatewayLobby[" + socket.getRemoteSocketAddress() + "]";
+            }
+        }
+        if (closed) throw new RemoteException("Gateway: kết nối đã đóng");
+
+        Object[] a = args == null ? new Object[0] : args;
+        for (Object x : a) {
+            if (x instanceof ClientCallback) callback = (ClientCallback) x;
+        }
+
+        int id = nextId.getAndIncrement();
+        if (id == 0) id = nextId.getAndIncrement(); // 0 dành cho HELLO
+        CompletableFuture<Object> f = new CompletableFuture<>();
+        pending.put(id, f);
+        try {
+            send(GatewayCodec.encodeRequest(id, GatewayCodec.LOBBY.idOf(m), a));
+            Object result = f.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            if (result == null && m.getReturnType().isPrimitive() && m.getReturnType() != void.class) {
+                throw new RemoteException("Gateway: thiếu kết quả cho " + m.getName());
+            }
+            return result;
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            throw new RemoteException("Gateway: hết thời gian chờ " + m.getName());
+        } catch (IOException e) {
+            throw new RemoteException("Gateway: " + e.getMessage(), e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    private void send(byte[] frame) throws IOException {
+        synchronized (out) {
+            out.write(frame);
+            out.flush();
+        }
+    }
+
+    // ============================================================
+    // Reader
+    // ============================================================
+    private void readLoop() {
+        try {
+            while (!closed) {
+                int len = in.readInt();
+                if (len < 1 || len > GatewayCodec.MAX_FRAME) throw new StreamCorruptedException("Gateway: độ dài frame " + len);
+                byte[] payload = new byte[len];
+                in.readFully(payload);
+
+                GatewayCodec.Frame f = GatewayCodec.decode(payload);
+                if (f.type == GatewayCodec.RESPONSE) {
+                    CompletableFuture<Object> fut = pending.get(f.reqId);
+                    if (fut == null) continue; // đã timeout
+                    if (f.ok) fut.complete(f.value);
+                    else fut.completeExceptionally(new RemoteException(f.error));
+                } else if (f.type == GatewayCodec.EVENT) {
+                    events.execute(() -> dispatch(f));
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) System.err.println("[Gateway] mất kết nối: " + e.getMessage());
+        } finally {
+            close();
+        }
+    }
+
+    private void dispatch(GatewayCodec.Frame f) {
+        ClientCallback cb = callback;
+        Method m = GatewayCodec.CALLBACK.byId(f.methodId);
+        if (cb == null || m == null) return;
+        try {
+            m.invoke(cb, f.args);
+        } catch (InvocationTargetException e) {
+            System.err.println("[Gateway] callback " + m.getName() + " lỗi: " + e.getCause());
+        } catch (Exception e) {
+            System.err.println("[Gateway] callback " + m.getName() + " lỗi: " + e);
+        }
+    }
+
+    private void failPending(String message) {
+        for (CompletableFuture<Object> f : pending.values()) {
+            f.completeExceptionally(new RemoteException(message));
+        }
+    }
+}
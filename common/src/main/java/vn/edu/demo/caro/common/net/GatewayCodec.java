@@ -0,0 +1,332 @@
+package vn.edu.demo.caro.common.net;
+
+import vn.edu.demo.caro.common.model.ChatMessage;
+import vn.edu.demo.caro.common.model.FriendInfo;
+import vn.edu.demo.caro.common.model.GameStart;
+import vn.edu.demo.caro.common.model.GameUpdate;
+import vn.edu.demo.caro.common.model.MatchSummary;
+import vn.edu.demo.caro.common.model.Move;
+import vn.edu.demo.caro.common.model.ReplayChunk;
+import vn.edu.demo.caro.common.model.RoomInfo;
+import vn.edu.demo.caro.common.model.UserProfile;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.common.rmi.LobbyService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Giao thức nhị phân của gateway NIO (thay cho RMI, cùng LobbyService / ClientCallback).
+ *
+ * Frame: [len:int][type:1][...]
+ * - HELLO    [version:short][fingerprint LobbyService:int][fingerprint ClientCallback:int]
+ * - REQUEST  [reqId:int][methodId:short][argc:1][value...]      client -> server, method của LobbyService
+ * - RESPONSE [reqId:int][ok:1][value | message]                  server -> client (reqId 0 = trả lời HELLO)
+ * - EVENT    [methodId:short][argc:1][value...]                  server -> client, method của ClientCallback
+ *
+ * Value có tag 1 byte: null / boolean / int / long / String / enum / List / DTO Externalizable (ghi thẳng
+ * writeExternal, không header ObjectOutputStream) / còn lại Java serialization (có ObjectInputFilter).
+ * Tham số kiểu ClientCallback gửi dạng placeholder: server thay bằng callback của chính kết nối.
+ */
+public final class GatewayCodec {
+
+    public static final int VERSION = 1;
+    public static final int MAX_FRAME = 4 * 1024 * 1024;
+    // list lồng nhau tối đa (đọc đệ quy: frame toàn list lồng nhau không được làm tràn stack worker)
+    static final int MAX_DEPTH = 16;
+
+    public static final int HELLO = 1;
+    public static final int REQUEST = 2;
+    public static final int RESPONSE = 3;
+    public static final int EVENT = 4;
+
+    public static final MethodTable LOBBY = new MethodTable(LobbyService.class);
+    public static final MethodTable CALLBACK = new MethodTable(ClientCallback.class);
+
+    private static final int T_NULL = 0;
+    private static final int T_TRUE = 1;
+    private static final int T_FALSE = 2;
+    private static final int T_INT = 3;
+    private static final int T_LONG = 4;
+    private static final int T_STRING = 5;
+    private static final int T_ENUM = 6;
+    private static final int T_LIST = 7;
+    private static final int T_EXTERNAL = 8;
+    private static final int T_SERIAL = 9;
+    private static final int T_CALLBACK = 10;
+
+    // id = vị trí trong list; chỉ thêm vào cuối
+    private static final List<Class<? extends Externalizable>> EXTERNAL = List.of(
+            Move.class, GameUpdate.class, RoomInfo.class, ChatMessage.class,
+            UserProfile.class, FriendInfo.class, GameStart.class, MatchSummary.class, ReplayChunk.class);
+
+    private static final ObjectInputFilter SERIAL_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=20;vn.edu.demo.caro.common.model.**;java.util.*;java.time.*;java.lang.*;!*");
+
+    private GatewayCodec() {}
+
+    /** 1 frame đã giải mã (field nào dùng tùy type). */
+    public static final class Frame {
+        public int type;
+        public int reqId;
+        public int methodId;
+        public boolean ok;
+        public Object value;
+        public String error;
+        public Object[] args;
+        public int version;
+        public int lobbyFingerprint;
+        public int callbackFingerprint;
+    }
+
+    // ============================================================
+    // Encode
+    // ============================================================
+    public static byte[] encodeHello() throws IOException {
+        Builder b = new Builder(HELLO);
+        b.out.writeShort(VERSION);
+        b.out.writeInt(LOBBY.fingerprint());
+        b.out.writeInt(CALLBACK.fingerprint());
+        return b.finish();
+    }
+
+    public static byte[] encodeRequest(int reqId, int methodId, Object[] args) throws IOException {
+        Builder b = new Builder(REQUEST);
+        b.out.writeInt(reqId);
+        b.out.writeShort(methodId);
+        writeArgs(b.out, args);
+        return b.finish();
+    }
+
+    public static byte[] encodeResponse(int reqId, Object value) throws IOException {
+        Builder b = new Builder(RESPONSE);
+        b.out.writeInt(reqId);
+        b.out.writeBoolean(true);
+        writeValue(b.out, value);
+        return b.finish();
+    }
+
+    public static byte[] encodeError(int reqId, String message) throws IOException {
+        Builder b = new Builder(RESPONSE);
+        b.out.writeInt(reqId);
+        b.out.writeBoolean(false);
+        writeString(b.out, message == null ? "Lỗi server" : message);
+        return b.finish();
+    }
+
+    public static byte[] encodeEvent(int methodId, Object[] args) throws IOException {
+        Builder b = new Builder(EVENT);
+        b.out.writeShort(methodId);
+        writeArgs(b.out, args);
+        return b.finish();
+    }
+
+    // ============================================================
+    // Decode (payload = frame bỏ 4 byte độ dài)
+    // ============================================================
+    public static Frame decode(byte[] payload) throws IOException {
+        DataObjectInput in = new DataObjectInput(new ByteArrayInputStream(payload));
+        Frame f = new Frame();
+        f.type = in.readUnsignedByte();
+        switch (f.type) {
+            case HELLO:
+                f.version = in.readUnsignedShort();
+                f.lobbyFingerprint = in.readInt();
+                f.callbackFingerprint = in.readInt();
+                break;
+            case REQUEST:
+                f.reqId = in.readInt();
+                f.methodId = in.readUnsignedShort();
+                f.args = readArgs(in);
+                break;
+            case RESPONSE:
+                f.reqId = in.readInt();
+                f.ok = in.readBoolean();
+                if (f.ok) f.value = readValue(in);
+                else f.error = readString(in);
+                break;
+            case EVENT:
+                f.methodId = in.readUnsignedShort();
+                f.args = readArgs(in);
+                break;
+            default:
+                throw new StreamCorruptedException("Gateway: loại frame không hợp lệ " + f.type);
+        }
+        return f;
+    }
+
+    // ============================================================
+    // Values
+    // ============================================================
+    private static void writeArgs(DataObjectOutput out, Object[] args) throws IOException {
+        int n = args == null ? 0 : args.length;
+        out.writeByte(n);
+        for (int i = 0; i < n; i++) writeValue(out, args[i]);
+    }
+
+    private static Object[] readArgs(DataObjectInput in) throws IOException {
+        Object[] args = new Object[in.readUnsignedByte()];
+        for (int i = 0; i < args.length; i++) args[i] = readValue(in);
+        return args;
+    }
+
+    static void writeValue(DataObjectOutput out, Object v) throws IOException {
+        if (v == null) {
+            out.writeByte(T_NULL);
+        } else if (v instanceof Boolean) {
+            out.writeByte((Boolean) v ? T_TRUE : T_FALSE);
+        } else if (v instanceof Integer) {
+            out.writeByte(T_INT);
+            out.writeInt((Integer) v);
+        } else if (v instanceof Long) {
+            out.writeByte(T_LONG);
+            out.writeLong((Long) v);
+        } else if (v instanceof String) {
+            out.writeByte(T_STRING);
+            writeString(out, (String) v);
+        } else if (v instanceof Enum) {
+            Enum<?> e = (Enum<?>) v;
+            out.writeByte(T_ENUM);
+            writeString(out, e.getDeclaringClass().getName());
+            writeString(out, e.name());
+        } else if (v instanceof List) {
+            List<?> list = (List<?>) v;
+            out.writeByte(T_LIST);
+            out.writeInt(list.size());
+            for (Object o : list) writeValue(out, o);
+        } else if (v instanceof ClientCallback) {
+            out.writeByte(T_CALLBACK);
+        } else if (EXTERNAL.contains(v.getClass())) {
+            out.writeByte(T_EXTERNAL);
+            out.writeByte(EXTERNAL.indexOf(v.getClass()));
+            ((Externalizable) v).writeExternal(out);
+        } else {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+                oos.writeObject(v);
+            }
+            out.writeByte(T_SERIAL);
+            out.writeInt(bos.size());
+            bos.writeTo(out);
+        }
+    }
+
+    static Object readValue(DataObjectInput in) throws IOException {
+        return readValue(in, 0);
+    }
+
+    private static Object readValue(DataObjectInput in, int depth) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case T_NULL:
+            case T_CALLBACK: // server tự thay bằng callback của kết nối
+                return null;
+            case T_TRUE:
+                return Boolean.TRUE;
+            case T_FALSE:
+                return Boolean.FALSE;
+            case T_INT:
+                return in.readInt();
+            case T_LONG:
+                return in.readLong();
+            case T_STRING:
+                return readString(in);
+            case T_ENUM:
+                return readEnum(readString(in), readString(in));
+            case T_LIST: {
+                int n = in.readInt();
+                if (n < 0 || n > MAX_FRAME) throw new StreamCorruptedException("Gateway: list quá lớn " + n);
+                if (depth >= MAX_DEPTH) throw new StreamCorruptedException("Gateway: list lồng quá sâu");
+                List<Object> list = new ArrayList<>(Math.min(n, 1024));
+                for (int i = 0; i < n; i++) list.add(readValue(in, depth + 1));
+                return list;
+            }
+            case T_EXTERNAL: {
+                int id = in.readUnsignedByte();
+                if (id >= EXTERNAL.size()) throw new InvalidObjectException("Gateway: DTO id không hợp lệ " + id);
+                try {
+                    Externalizable e = EXTERNAL.get(id).getConstructor().newInstance();
+                    e.readExternal(in);
+                    return e;
+                } catch (ReflectiveOperationException ex) {
+                    throw new InvalidObjectException("Gateway: không tạo được DTO " + ex.getMessage());
+                }
+            }
+            case T_SERIAL: {
+                int n = in.readInt();
+                if (n < 0 || n > MAX_FRAME) throw new StreamCorruptedException("Gateway: object quá lớn " + n);
+                byte[] b = new byte[n];
+                in.readFully(b);
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(b))) {
+                    ois.setObjectInputFilter(SERIAL_FILTER);
+                    return ois.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new InvalidObjectException("Gateway: " + e.getMessage());
+                }
+            }
+            default:
+                throw new StreamCorruptedException("Gateway: tag không hợp lệ " + tag);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(String type, String name) throws IOException {
+        if (!type.startsWith("vn.edu.demo.caro.common.model.")) {
+            throw new InvalidObjectException("Gateway: enum không cho phép " + type);
+        }
+        try {
+            Class<?> c = Class.forName(type, false, GatewayCodec.class.getClassLoader());
+            if (!c.isEnum()) throw new InvalidObjectException("Gateway: không phải enum " + type);
+            return Enum.valueOf((Class) c, name);
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            throw new InvalidObjectException("Gateway: enum không hợp lệ " + type + "." + name);
+        }
+    }
+
+    private static void writeString(DataObjectOutput out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataObjectInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > MAX_FRAME) throw new StreamCorruptedException("Gateway: chuỗi quá dài " + n);
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // ghi [len][type]..., cuối cùng điền len
+    private static final class Builder {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+        final DataObjectOutput out = new DataObjectOutput(bos);
+
+        Builder(int type) throws IOException {
+            out.writeInt(0);
+            out.writeByte(type);
+        }
+
+        byte[] finish() throws IOException {
+            out.flush();
+            byte[] b = bos.toByteArray();
+            int len = b.length - 4;
+            if (len > MAX_FRAME) throw new IOException("Gateway: frame quá lớn " + len);
+            b[0] = (byte) (len >>> 24);
+            b[1] = (byte) (len >>> 16);
+            b[2] = (byte) (len >>> 8);
+            b[3] = (byte) len;
+            return b;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package vn.edu.demo.caro.common.net;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Đánh số các method của 1 interface remote (sắp theo tên + kiểu tham số) để gateway gửi id thay cho tên.
+ * 2 phía dùng cùng bản jar common nên id khớp nhau; {@link #fingerprint()} để kiểm tra lúc bắt tay.
+ */
+public final class MethodTable {
+
+    private final Method[] methods;
+    private final Map<Method, Integer> ids = new HashMap<>();
+    private final int fingerprint;
+
+    public MethodTable(Class<?> iface) {
+        this.methods = iface.getMethods();
+        Arrays.sort(methods, Comparator.comparing(MethodTable::signature));
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < methods.length; i++) {
+            ids.put(methods[i], i);
+            all.append(signature(methods[i])).append(';');
+        }
+        this.fingerprint = all.toString().hashCode();
+    }
+
+    /** null nếu id không có. */
+    public Method byId(int id) {
+        return id >= 0 && id < methods.length ? methods[id] : null;
+    }
+
+    public int idOf(Method m) {
+        Integer id = ids.get(m);
+        if (id == null) throw new IllegalArgumentException("Method không thuộc bảng: " + m);
+        return id;
+    }
+
+    public int size() {
+        return methods.length;
+    }
+
+    public int fingerprint() {
+        return fingerprint;
+    }
+
+    private static String signature(Method m) {
+        StringBuilder sb = new StringBuilder(m.getName()).append('(');
+        for (Class<?> p : m.getParameterTypes()) sb.append(p.getName()).append(',');
+        return sb.append(')').toString();
+    }
+}
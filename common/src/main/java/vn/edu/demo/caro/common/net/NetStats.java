@@ -0,0 +1,44 @@
+package vn.edu.demo.caro.common.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đếm byte của các socket RMI trong JVM này (socket do RMI tạo nên không có chỗ nào giữ instance => static).
+ *
+ * raw = byte RMI ghi/đọc (trước nén), wire = byte thật sự đi qua TCP (sau nén + header frame).
+ */
+public final class NetStats {
+
+    static final AtomicLong rawOut = new AtomicLong();
+    static final AtomicLong wireOut = new AtomicLong();
+    static final AtomicLong rawIn = new AtomicLong();
+    static final AtomicLong wireIn = new AtomicLong();
+    static final AtomicLong framesCompressed = new AtomicLong();
+    static final AtomicLong framesRaw = new AtomicLong();
+    static final AtomicLong framesSkipped = new AtomicLong(); // đủ ngưỡng nhưng bỏ qua nén (nén không lợi)
+    static final AtomicLong socketsOpened = new AtomicLong();
+
+    private NetStats() {}
+
+    public static long getRawBytesOut() { return rawOut.get(); }
+    public static long getWireBytesOut() { return wireOut.get(); }
+    public static long getRawBytesIn() { return rawIn.get(); }
+    public static long getWireBytesIn() { return wireIn.get(); }
+    public static long getFramesCompressed() { return framesCompressed.get(); }
+    public static long getFramesRaw() { return framesRaw.get(); }
+    public static long getFramesSkipped() { return framesSkipped.get(); }
+    public static long getSocketsOpened() { return socketsOpened.get(); }
+
+    /** wire / raw của chiều gửi (1.0 = không tiết kiệm gì). */
+    public static double getOutRatio() {
+        long raw = rawOut.get();
+        return raw == 0 ? 1.0 : (double) wireOut.get() / raw;
+    }
+
+    public static String summary() {
+        return String.format("out raw=%d wire=%d (%.1f%%), in raw=%d wire=%d, frames compressed=%d raw=%d skipped=%d, sockets=%d",
+                rawOut.get(), wireOut.get(), getOutRatio() * 100,
+                rawIn.get(), wireIn.get(),
+                framesCompressed.get(), framesRaw.get(), framesSkipped.get(), socketsOpened.get());
+    }
+}
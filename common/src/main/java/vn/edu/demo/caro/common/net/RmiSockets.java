@@ -0,0 +1,30 @@
+package vn.edu.demo.caro.common.net;
+
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+
+/**
+ * Factory dùng chung khi export object RMI (LobbyServiceImpl, AdminServiceImpl, ClientCallbackImpl):
+ * {@code super(0, RmiSockets.clientFactory(), RmiSockets.serverFactory())}.
+ *
+ * Bên gọi luôn dùng client factory nằm trong stub (tức là cấu hình của bên export), nên 2 phía
+ * không cần cấu hình giống nhau; chỉ cần cùng bản jar common.
+ */
+public final class RmiSockets {
+
+    private static final SocketOptions OPTIONS = SocketOptions.fromSystemProperties();
+
+    private RmiSockets() {}
+
+    public static SocketOptions options() {
+        return OPTIONS;
+    }
+
+    public static RMIClientSocketFactory clientFactory() {
+        return new CompressingClientSocketFactory(OPTIONS);
+    }
+
+    public static RMIServerSocketFactory serverFactory() {
+        return new CompressingServerSocketFactory(OPTIONS);
+    }
+}
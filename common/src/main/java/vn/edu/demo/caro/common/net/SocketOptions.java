@@ -0,0 +1,88 @@
+package vn.edu.demo.caro.common.net;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * Tùy chọn socket RMI của game (đi kèm stub sang phía bên kia nên phải Serializable + equals/hashCode:
+ * RMI so sánh factory để dùng chung kết nối / cổng lắng nghe).
+ *
+ * System property (mặc định trong ngoặc):
+ * - caro.rmi.compress (true): nén Deflater các gói >= ngưỡng
+ * - caro.rmi.compressThreshold (1024): ngưỡng byte để thử nén
+ * - caro.rmi.compressLevel (1 = BEST_SPEED)
+ * - caro.rmi.tcpNoDelay (true)
+ * - caro.rmi.bufferSize (65536): kích thước frame tối đa + buffer gửi/nhận của socket (0 = để OS quyết)
+ * - caro.rmi.connectTimeoutMs (5000): client chết / mất mạng không làm caller chờ connect theo mặc định OS
+ */
+public final class SocketOptions implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean compress;
+    private final int compressThreshold;
+    private final int compressLevel;
+    private final boolean tcpNoDelay;
+    private final int bufferSize;
+    private final int connectTimeoutMillis;
+
+    public SocketOptions(boolean compress, int compressThreshold, int compressLevel, boolean tcpNoDelay, int bufferSize) {
+        this(compress, compressThreshold, compressLevel, tcpNoDelay, bufferSize, 5000);
+    }
+
+    public SocketOptions(boolean compress, int compressThreshold, int compressLevel, boolean tcpNoDelay, int bufferSize,
+                         int connectTimeoutMillis) {
+        this.compress = compress;
+        this.compressThreshold = Math.max(64, compressThreshold);
+        this.compressLevel = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, compressLevel));
+        this.tcpNoDelay = tcpNoDelay;
+        this.bufferSize = Math.max(0, bufferSize);
+        this.connectTimeoutMillis = Math.max(0, connectTimeoutMillis);
+    }
+
+    public static SocketOptions fromSystemProperties() {
+        return new SocketOptions(
+                Boolean.parseBoolean(System.getProperty("caro.rmi.compress", "true")),
+                Integer.getInteger("caro.rmi.compressThreshold", 1024),
+                Integer.getInteger("caro.rmi.compressLevel", Deflater.BEST_SPEED),
+                Boolean.parseBoolean(System.getProperty("caro.rmi.tcpNoDelay", "true")),
+                Integer.getInteger("caro.rmi.bufferSize", 64 * 1024),
+                Integer.getInteger("caro.rmi.connectTimeoutMs", 5000));
+    }
+
+    public boolean isCompress() { return compress; }
+    public int getCompressThreshold() { return compressThreshold; }
+    public int getCompressLevel() { return compressLevel; }
+    public boolean isTcpNoDelay() { return tcpNoDelay; }
+    public int getBufferSize() { return bufferSize; }
+    public int getConnectTimeoutMillis() { return connectTimeoutMillis; }
+
+    // frame tối thiểu 4KB để gói nhỏ không bị cắt vụn khi bufferSize = 0
+    int frameSize() {
+        return Math.max(4096, bufferSize == 0 ? 64 * 1024 : bufferSize);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SocketOptions)) return false;
+        SocketOptions that = (SocketOptions) o;
+        return compress == that.compress
+                && compressThreshold == that.compressThreshold
+                && compressLevel == that.compressLevel
+                && tcpNoDelay == that.tcpNoDelay
+                && bufferSize == that.bufferSize
+                && connectTimeoutMillis == that.connectTimeoutMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(compress, compressThreshold, compressLevel, tcpNoDelay, bufferSize, connectTimeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "compress=" + compress + (compress ? " (>=" + compressThreshold + "B, level " + compressLevel + ")" : "")
+                + ", tcpNoDelay=" + tcpNoDelay + ", bufferSize=" + bufferSize + ", connectTimeout=" + connectTimeoutMillis + "ms";
+    }
+}
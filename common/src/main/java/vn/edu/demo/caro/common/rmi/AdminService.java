@@ -13,4 +13,13 @@ public interface AdminService extends Remote {
     void broadcast(String message) throws RemoteException;
     void warnUser(String username, String message) throws RemoteException;
     void banUser(String username, String reason, int minutes) throws RemoteException;
+
+    // Trạng thái ghi DB kết quả ván (write-behind)
+    String getPersistenceStatus() throws RemoteException;
+
+    // Hàng chờ ghép trận (số người chờ, thời gian chờ p50/p90/p99)
+    String getMatchmakingStatus() throws RemoteException;
+
+    // Metrics server: gauge + độ trễ p50/p99/p999 từng method RMI / DAO
+    String getMetrics() throws RemoteException;
 }
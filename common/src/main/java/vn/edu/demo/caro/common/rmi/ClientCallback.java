@@ -11,17 +11,25 @@ public interface ClientCallback extends Remote {
 
     // -------- Global events --------
     void onGlobalChat(ChatMessage msg) throws RemoteException;
+    // nhiều tin chat global gom trong 1 lần gọi (thứ tự gửi)
+    void onGlobalChatBatch(List<ChatMessage> msgs) throws RemoteException;
     void onAnnouncement(String text) throws RemoteException;
     void onWarning(String text) throws RemoteException;
     void onBanned(String reason) throws RemoteException;
+    // server kiểm tra client còn sống (không có event nào khác trong 1 khoảng); client không cần làm gì
+    void onHeartbeat() throws RemoteException;
 
     void onRoomListUpdated(List<RoomInfo> rooms) throws RemoteException;
+    // danh sách phòng theo version: chỉ gửi phòng thêm/đổi/xóa
+    void onRoomListDelta(RoomListDelta delta) throws RemoteException;
     void onOnlineUsersUpdated(List<String> users) throws RemoteException;
     void onLeaderboardUpdated(List<UserProfile> leaderboard) throws RemoteException;
 
     // -------- Friends (Đã sửa) --------
     void onFriendRequest(FriendRequest req) throws RemoteException;
     void onFriendListUpdated(List<FriendInfo> friends) throws RemoteException;
+    // 1 người bạn đổi trạng thái (online / offline / đang đánh) - không gửi lại cả danh sách
+    void onFriendStatusChanged(FriendInfo friend) throws RemoteException;
 
     // -------- Room chat --------
     void onRoomChat(String roomId, ChatMessage msg) throws RemoteException;
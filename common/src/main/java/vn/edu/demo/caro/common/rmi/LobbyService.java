@@ -23,6 +23,8 @@ public interface LobbyService extends Remote {
     // Rooms
     String createRoom(String owner, RoomCreateRequest req) throws RemoteException;
     List<RoomInfo> listOpenRooms() throws RemoteException;
+    /** Toàn bộ danh sách phòng kèm version hiện tại (client resync khi hở version). */
+    RoomListDelta fetchRoomList() throws RemoteException;
 
     /**
      * Join room. password can be null/blank if room doesn't require password.
@@ -31,19 +33,37 @@ public interface LobbyService extends Remote {
 
     void leaveRoom(String username, String roomId) throws RemoteException;
     void quickPlay(String username) throws RemoteException;
+    /** Vào hàng chờ ghép trận theo elo với luật mong muốn (kết quả báo qua onGameStarted). */
+    void quickPlay(String username, int boardSize, boolean timed, boolean blockTwoEnds) throws RemoteException;
+    void cancelQuickPlay(String username) throws RemoteException;
 
     // Chat
     void sendGlobalChat(ChatMessage msg) throws RemoteException;
+    /** Lịch sử chat global: tối đa limit tin có seq < beforeSeq (<= 0 = mới nhất), thứ tự cũ -> mới. */
+    List<ChatMessage> fetchGlobalChat(long beforeSeq, int limit) throws RemoteException;
     void sendRoomChat(String roomId, ChatMessage msg) throws RemoteException;
 
     // Gameplay (server authoritative)
     void makeMove(String roomId, String username, int row, int col) throws RemoteException;
     void resign(String roomId, String username) throws RemoteException;
+    /** Snapshot hiện tại của phòng (client gọi khi hở seq GameUpdate / vào lại phòng). */
+    GameSnapshot getSnapshot(String roomId, String username) throws RemoteException;
 
     void sendChallenge(String fromUser, String toUser) throws RemoteException;
     void respondChallenge(String fromUser, String toUser, boolean accept) throws RemoteException;
     // Ranking
     List<UserProfile> getLeaderboard(int top) throws RemoteException;
+    // các user xếp hạng quanh username (radius người mỗi phía)
+    List<UserProfile> getLeaderboardAround(String username, int radius) throws RemoteException;
+
+    // Replay (ván đã lưu)
+    /** Tối đa limit ván gần nhất của username, mới -> cũ (ván vừa xong có thể trễ vài chục ms do ghi sau). */
+    List<MatchSummary> listRecentMatches(String username, int limit) throws RemoteException;
+    /**
+     * Đoạn nước [fromMove, fromMove + maxMoves) của ván matchId kèm keyframe (fromMove làm tròn xuống
+     * bội số keyframe); null nếu ván không có / không lưu nước.
+     */
+    ReplayChunk fetchReplay(String username, long matchId, int fromMove, int maxMoves) throws RemoteException;
 
     // Friends
     void sendFriendRequest(FriendRequest req) throws RemoteException;
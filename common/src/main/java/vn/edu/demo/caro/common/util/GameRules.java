@@ -21,6 +21,46 @@ public final class GameRules {
                count(b, r, c, 1, -1, m) + count(b, r, c, -1, 1, m) - 1 >= WIN;
     }
 
+    /**
+     * Luật server (bàn n x n, không cố định 15): >= 5 liên tiếp qua (row, col).
+     * blockTwoEnds=true: cần ít nhất 1 đầu "mở"; biên được coi là mở.
+     */
+    public static boolean checkWin5(Mark[][] b, int n, int row, int col, Mark mark, boolean blockTwoEnds) {
+        for (int[] d : DIRS) {
+            int count = 1;
+            int openEnds = 0;
+
+            int r = row + d[0], c = col + d[1];
+            while (in(n, r, c) && b[r][c] == mark) {
+                count++;
+                r += d[0];
+                c += d[1];
+            }
+            if (!in(n, r, c) || b[r][c] == Mark.EMPTY) openEnds++;
+
+            r = row - d[0];
+            c = col - d[1];
+            while (in(n, r, c) && b[r][c] == mark) {
+                count++;
+                r -= d[0];
+                c -= d[1];
+            }
+            if (!in(n, r, c) || b[r][c] == Mark.EMPTY) openEnds++;
+
+            if (count >= WIN) {
+                if (!blockTwoEnds) return true;
+                return openEnds >= 1;
+            }
+        }
+        return false;
+    }
+
+    private static final int[][] DIRS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+
+    private static boolean in(int n, int r, int c) {
+        return r >= 0 && c >= 0 && r < n && c < n;
+    }
+
     private static int count(Mark[][] b, int r, int c, int dr, int dc, Mark m) {
         int cnt = 0;
         int rr = r, cc = c;
@@ -1,42 +1,55 @@
 package vn.edu.demo.caro.server;
 
-import vn.edu.demo.caro.common.rmi.AdminService;
-import vn.edu.demo.caro.common.rmi.LobbyService;
 import vn.edu.demo.caro.server.admin.AdminConsole;
-import vn.edu.demo.caro.server.dao.FriendDao;
-import vn.edu.demo.caro.server.dao.MatchDao;
-import vn.edu.demo.caro.server.dao.UserDao;
+import vn.edu.demo.caro.server.dao.JdbcFriendDao;
+import vn.edu.demo.caro.server.dao.JdbcMatchDao;
+import vn.edu.demo.caro.server.dao.JdbcUserDao;
 import vn.edu.demo.caro.server.db.Db;
 import vn.edu.demo.caro.server.db.DbConfig;
+import vn.edu.demo.caro.server.gateway.GatewayServer;
 import vn.edu.demo.caro.server.service.AdminServiceImpl;
 import vn.edu.demo.caro.server.service.LobbyServiceImpl;
 import vn.edu.demo.caro.server.state.ServerState;
+import vn.edu.demo.caro.server.store.EmbeddedStore;
+import vn.edu.demo.caro.server.store.RoomJournal;
 
+import java.nio.file.Paths;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 
 public class ServerMain {
     public static void main(String[] args) throws Exception {
-        // 1. Cấu hình DB
-        // Bạn có thể sửa user/pass trực tiếp ở đây nếu muốn chạy bản Console này
-        DbConfig config = new DbConfig(
-            "jdbc:mysql://127.0.0.1:3306/caro_1?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC",
-            "root",
-            "@Trankimquyen123"
-        );
-        Db db = new Db(config);
-
-        // 2. Khởi tạo các DAO
-        UserDao userDao = new UserDao(db);
-        MatchDao matchDao = new MatchDao(db);
-        FriendDao friendDao = new FriendDao(db);
-
-        // 3. Khởi tạo ServerState (Phiên bản mới yêu cầu tham số)
-        ServerState state = new ServerState(userDao, matchDao, friendDao);
+        // 1-3. Lưu trữ: MySQL (mặc định) hoặc -Dcaro.store=embedded (file log, không cần MySQL)
+        ServerState state;
+        EmbeddedStore store = null;
+        if ("embedded".equals(System.getProperty("caro.store"))) {
+            store = EmbeddedStore.open(Paths.get(System.getProperty("caro.store.dir", "caro-data")));
+            state = new ServerState(store.users, store.matches, store.friends);
+            store.registerGauges(state.metrics);
+        } else {
+            // Bạn có thể sửa user/pass trực tiếp ở đây nếu muốn chạy bản Console này
+            DbConfig config = new DbConfig(
+                "jdbc:mysql://127.0.0.1:3306/caro_1?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC",
+                "root",
+                "@Trankimquyen123"
+            );
+            Db db = new Db(config);
+            state = new ServerState(db, new JdbcUserDao(db), new JdbcMatchDao(db), new JdbcFriendDao(db));
+        }
 
         // 4. Khởi tạo Services
-        LobbyService lobby = new LobbyServiceImpl(state);
-        AdminService admin = new AdminServiceImpl(state);
+        LobbyServiceImpl lobby = new LobbyServiceImpl(state);
+        AdminServiceImpl admin = new AdminServiceImpl(state);
+
+        // 4b. Journal phòng (tùy chọn): dựng lại ván đang đánh trước khi nhận client
+        String journalDir = System.getProperty("caro.rooms.journal");
+        RoomJournal journal = null;
+        if (journalDir != null) {
+            journal = RoomJournal.open(Paths.get(journalDir));
+            int rooms = lobby.recoverRooms(journal);
+            journal.registerGauges(state.metrics);
+            System.out.println("Rooms journal: " + journal + " (" + rooms + " phòng dựng lại)");
+        }
 
         // 5. Mở cổng RMI
         int port = Integer.parseInt(System.getProperty("rmi.port", "1099"));
@@ -51,10 +64,30 @@ public class ServerMain {
             System.out.println("Using existing RMI registry on port " + port);
         }
 
-        registry.rebind(lobbyName, lobby);
+        registry.rebind(lobbyName, lobby.export());
         registry.rebind("CaroAdmin", admin);
 
         System.out.println("Server ready. Bound names: " + lobbyName + ", CaroAdmin");
+
+        // 6. Gateway NIO (tùy chọn, chạy song song RMI, cùng LobbyServiceImpl)
+        int gatewayPort = Integer.getInteger("caro.gateway.port", 0);
+        GatewayServer gateway = null;
+        if (gatewayPort > 0) {
+            gateway = new GatewayServer(lobby.remote, gatewayPort, Integer.getInteger("caro.gateway.threads", 8));
+            gateway.setDisconnectHandler(lobby::onTransportClosed);
+            state.metrics.gauge("gateway.connections", gateway::getConnections);
+            state.metrics.gauge("gateway.requests", gateway::getRequests);
+            state.metrics.gauge("gateway.rejectedEvents", gateway::getRejectedEvents);
+            System.out.println("Gateway listening on port " + gatewayPort);
+        }
+
+        // 7. Tắt (AdminConsole "exit", Ctrl+C): 1 hook duy nhất, đúng thứ tự ngừng nhận -> ghi nốt -> đóng file
+        GatewayServer g = gateway;
+        RoomJournal j = journal;
+        EmbeddedStore st = store;
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> ServerShutdown.run(g, lobby, admin, state, j, st), "server-shutdown"));
+
         System.out.println("Admin console: type 'help' then Enter");
         
         // Chạy Console Admin
@@ -0,0 +1,56 @@
+package vn.edu.demo.caro.server;
+
+import vn.edu.demo.caro.server.gateway.GatewayServer;
+import vn.edu.demo.caro.server.service.LobbyServiceImpl;
+import vn.edu.demo.caro.server.state.ServerState;
+import vn.edu.demo.caro.server.store.EmbeddedStore;
+import vn.edu.demo.caro.server.store.RoomJournal;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * Thứ tự tắt server, dùng chung cho ServerMain (shutdown hook duy nhất) và ServerController (nút STOP):
+ * 1. ngừng nhận lời gọi (gateway, RMI lobby / admin) + dừng thread của LobbyServiceImpl
+ * 2. ServerState: dừng thread nền, ghi nốt kết quả ván (write-behind)
+ * 3. đóng journal phòng
+ * 4. đóng store nhúng (hoặc pool MySQL)
+ * Bước lỗi được log rồi làm tiếp bước sau. Tham số null = không dùng thành phần đó.
+ */
+public final class ServerShutdown {
+
+    private ServerShutdown() {}
+
+    public static void run(GatewayServer gateway, LobbyServiceImpl lobby, Remote admin, ServerState state,
+                           RoomJournal journal, EmbeddedStore store) {
+        long start = System.currentTimeMillis();
+        if (gateway != null) step("gateway", gateway::close);
+        if (lobby != null) step("lobby", lobby::shutdown);
+        if (admin != null) step("admin", () -> {
+            try {
+                UnicastRemoteObject.unexportObject(admin, true);
+            } catch (NoSuchObjectException ignored) {
+            }
+        });
+        if (state != null) step("state", () -> {
+            if (!state.shutdown()) System.err.println("[Shutdown] còn kết quả ván chưa ghi được (xem log MatchWriter)");
+        });
+        if (journal != null) step("journal", journal::close);
+        if (store != null) step("store", store::close);
+        else if (state != null && state.db != null) step("db", state.db::close);
+        System.out.println("[Shutdown] xong trong " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private static void step(String name, Step step) {
+        try {
+            step.run();
+        } catch (Exception e) {
+            System.err.println("[Shutdown] " + name + ": " + e);
+        }
+    }
+}
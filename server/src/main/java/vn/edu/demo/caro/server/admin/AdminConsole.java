@@ -43,6 +43,9 @@ public class AdminConsole {
                 System.out.println("  broadcast <message>");
                 System.out.println("  warn <user> <message>");
                 System.out.println("  ban <user> <minutes> <reason>");
+                System.out.println("  persist");
+                System.out.println("  mm");
+                System.out.println("  stats");
                 System.out.println("  exit");
                 break;
             case "online": {
@@ -75,6 +78,15 @@ public class AdminConsole {
                 System.out.println("OK");
                 break;
             }
+            case "persist":
+                System.out.println("Persistence: " + admin.getPersistenceStatus());
+                break;
+            case "mm":
+                System.out.println("Matchmaking: " + admin.getMatchmakingStatus());
+                break;
+            case "stats":
+                System.out.print(admin.getMetrics());
+                break;
             case "exit":
                 System.exit(0);
                 break;
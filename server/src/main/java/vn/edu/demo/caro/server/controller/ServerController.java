@@ -7,17 +7,21 @@ import javafx.scene.control.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import vn.edu.demo.caro.common.model.Enums;
-import vn.edu.demo.caro.server.dao.FriendDao;
-import vn.edu.demo.caro.server.dao.MatchDao;
-import vn.edu.demo.caro.server.dao.UserDao;
+import vn.edu.demo.caro.server.ServerShutdown;
+import vn.edu.demo.caro.server.dao.JdbcFriendDao;
+import vn.edu.demo.caro.server.dao.JdbcMatchDao;
+import vn.edu.demo.caro.server.dao.JdbcUserDao;
 import vn.edu.demo.caro.server.db.Db;
 import vn.edu.demo.caro.server.db.DbConfig;
 import vn.edu.demo.caro.server.service.LobbyServiceImpl;
+import vn.edu.demo.caro.server.store.EmbeddedStore;
+import vn.edu.demo.caro.server.store.RoomJournal;
 import vn.edu.demo.caro.server.state.Room;
 import vn.edu.demo.caro.server.state.ServerState;
 
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Paths;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
@@ -61,6 +65,9 @@ public class ServerController {
     private boolean isRunning = false;
     private Registry registry;
     private ServerState state;
+    private LobbyServiceImpl lobbyService;
+    private EmbeddedStore store; // null = MySQL
+    private RoomJournal journal; // null = không journal phòng
     private ScheduledExecutorService monitor;
 
     @FXML
@@ -89,22 +96,43 @@ public class ServerController {
     }
 
     private void startServer() {
+        // ServerState cũ chưa tắt xong => không mở store / journal lần 2 trên cùng file
+        if (state != null) {
+            log("Server cũ chưa tắt xong.");
+            return;
+        }
+        btnToggle.setDisable(true);
         new Thread(() -> {
             try {
                 log("--- Starting Server ---");
-                // Cấu hình DB (Hardcode hoặc lấy từ env)
-                System.setProperty("db.url", "jdbc:mysql://127.0.0.1:3306/caro_1?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC");
-                System.setProperty("db.user", "root");
-                System.setProperty("db.pass", "@Trankimquyen123");
-
-                DbConfig dbConfig = new DbConfig(
-                        System.getProperty("db.url"), System.getProperty("db.user"), System.getProperty("db.pass"));
-                Db db = new Db(dbConfig);
-                state = new ServerState(new UserDao(db), new MatchDao(db), new FriendDao(db));
-
-                LobbyServiceImpl lobbyService = new LobbyServiceImpl(state);
+                if ("embedded".equals(System.getProperty("caro.store"))) {
+                    // Lưu trữ nhúng (file log), không cần MySQL
+                    store = EmbeddedStore.open(Paths.get(System.getProperty("caro.store.dir", "caro-data")));
+                    state = new ServerState(store.users, store.matches, store.friends);
+                    store.registerGauges(state.metrics);
+                    log("Store: " + store);
+                } else {
+                    // Cấu hình DB (Hardcode hoặc lấy từ env)
+                    System.setProperty("db.url", "jdbc:mysql://127.0.0.1:3306/caro_1?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC");
+                    System.setProperty("db.user", "root");
+                    System.setProperty("db.pass", "@Trankimquyen123");
+
+                    DbConfig dbConfig = new DbConfig(
+                            System.getProperty("db.url"), System.getProperty("db.user"), System.getProperty("db.pass"));
+                    Db db = new Db(dbConfig);
+                    state = new ServerState(db, new JdbcUserDao(db), new JdbcMatchDao(db), new JdbcFriendDao(db));
+                }
+
+                lobbyService = new LobbyServiceImpl(state);
+                String journalDir = System.getProperty("caro.rooms.journal");
+                if (journalDir != null) {
+                    journal = RoomJournal.open(Paths.get(journalDir));
+                    int rooms = lobbyService.recoverRooms(journal);
+                    journal.registerGauges(state.metrics);
+                    log("Rooms journal: " + journal + " (" + rooms + " phòng dựng lại)");
+                }
                 registry = LocateRegistry.createRegistry(1099);
-                registry.rebind("CaroLobby", lobbyService);
+                registry.rebind("CaroLobby", lobbyService.export());
 
                 isRunning = true;
                 Platform.runLater(() -> {
@@ -112,6 +140,7 @@ public class ServerController {
                     lbStatus.setText("RUNNING (Port 1099)");
                     btnToggle.setText("STOP SERVER");
                     btnToggle.getStyleClass().add("btn-stop");
+                    btnToggle.setDisable(false);
                     log(">>> Server Started Successfully!");
                 });
 
@@ -120,23 +149,46 @@ public class ServerController {
             } catch (Exception e) {
                 log("Error: " + e.getMessage());
                 e.printStackTrace();
+                // khởi động dở: trả lại cổng / file đã mở
+                teardown();
+                Platform.runLater(() -> btnToggle.setDisable(false));
             }
-        }).start();
+        }, "server-start").start();
     }
 
     private void stopServer() {
+        btnToggle.setDisable(true);
+        isRunning = false;
+        log("--- Stopping Server ---");
+        // ghi nốt kết quả ván có thể mất vài giây => không chạy trên thread FX
+        new Thread(() -> {
+            teardown();
+            Platform.runLater(() -> {
+                statusDot.setFill(Color.GRAY);
+                lbStatus.setText("STOPPED");
+                btnToggle.setText("START SERVER");
+                btnToggle.getStyleClass().remove("btn-stop");
+                btnToggle.setDisable(false);
+                log(">>> Server Stopped.");
+            });
+        }, "server-stop").start();
+    }
+
+    // cùng thứ tự với ServerMain: ngừng nhận -> dừng thread + ghi nốt -> đóng journal -> đóng store
+    private void teardown() {
+        if (monitor != null) monitor.shutdown();
+        monitor = null;
         try {
             if (registry != null) UnicastRemoteObject.unexportObject(registry, true);
-            if (monitor != null) monitor.shutdown();
-            isRunning = false;
-            statusDot.setFill(Color.GRAY);
-            lbStatus.setText("STOPPED");
-            btnToggle.setText("START SERVER");
-            btnToggle.getStyleClass().remove("btn-stop");
-            log(">>> Server Stopped.");
         } catch (Exception e) {
-            log("Error stopping: " + e.getMessage());
+            log("Error stopping registry: " + e.getMessage());
         }
+        registry = null;
+        ServerShutdown.run(null, lobbyService, null, state, journal, store);
+        lobbyService = null;
+        journal = null;
+        store = null;
+        state = null;
     }
 
     // --- ACTIONS ---
@@ -232,9 +284,8 @@ public class ServerController {
     private void sendCallback(String username, CallbackAction action) {
         var s = state.online.get(username);
         if (s != null && s.callback != null) {
-            new Thread(() -> {
-                try { action.run(s.callback); } catch (Exception e) { e.printStackTrace(); }
-            }).start();
+            // đi chung mailbox với LobbyService để giữ thứ tự event của user
+            state.callbacks.send(s, action::run);
         }
     }
 
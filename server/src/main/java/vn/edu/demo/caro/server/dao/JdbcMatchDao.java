@@ -0,0 +1,143 @@
+package vn.edu.demo.caro.server.dao;
+
+import vn.edu.demo.caro.common.model.GameRecord;
+import vn.edu.demo.caro.common.model.MatchSummary;
+import vn.edu.demo.caro.server.db.Db;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/** MatchDao trên MySQL (bảng matches + match_moves, chỉ số ghi vào users). */
+public class JdbcMatchDao implements MatchDao {
+    private final Db db;
+
+    // Constructor nhận Db
+    public JdbcMatchDao(Db db) {
+        this.db = db;
+    }
+
+    @Override
+    public void insertMatch(String roomId, String playerX, String playerO, String winner, String reason) throws SQLException {
+        // Dùng db.connect() thay vì Db.getConnection()
+        try (Connection c = db.connect();
+             PreparedStatement ps = c.prepareStatement(
+                     "INSERT INTO matches(room_id, player_x, player_o, winner, reason) VALUES(?,?,?,?,?)")) {
+            ps.setString(1, roomId);
+            ps.setString(2, playerX);
+            ps.setString(3, playerO);
+            ps.setString(4, winner);
+            ps.setString(5, reason);
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public void recordResults(Collection<MatchRow> matches, Collection<StatsRow> stats) throws SQLException {
+        try (Connection c = db.connect()) {
+            c.setAutoCommit(false);
+            try {
+                if (!matches.isEmpty()) {
+                    List<Long> ids = new ArrayList<>(matches.size());
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "INSERT INTO matches(room_id, player_x, player_o, winner, reason, created_at) VALUES(?,?,?,?,?,?)",
+                            Statement.RETURN_GENERATED_KEYS)) {
+                        for (MatchRow m : matches) {
+                            ps.setString(1, m.roomId);
+                            ps.setString(2, m.playerX);
+                            ps.setString(3, m.playerO);
+                            ps.setString(4, m.winner);
+                            ps.setString(5, m.reason);
+                            ps.setTimestamp(6, Timestamp.from(m.endedAt));
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                        try (ResultSet keys = ps.getGeneratedKeys()) {
+                            while (keys.next()) ids.add(keys.getLong(1));
+                        }
+                    }
+                    // nước đi: bảng riêng, cùng transaction, khóa = id ván vừa sinh
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "INSERT INTO match_moves(match_id, moves) VALUES(?,?)")) {
+                        int i = 0, n = 0;
+                        for (MatchRow m : matches) {
+                            long id = i < ids.size() ? ids.get(i) : -1;
+                            i++;
+                            if (m.moves == null || id < 0) continue;
+                            ps.setLong(1, id);
+                            ps.setBytes(2, m.moves);
+                            ps.addBatch();
+                            n++;
+                        }
+                        if (n > 0) ps.executeBatch();
+                    }
+                }
+                if (!stats.isEmpty()) {
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "UPDATE users SET wins=?, losses=?, draws=?, elo=? WHERE username=?")) {
+                        for (StatsRow st : stats) {
+                            ps.setInt(1, st.wins);
+                            ps.setInt(2, st.losses);
+                            ps.setInt(3, st.draws);
+                            ps.setInt(4, st.elo);
+                            ps.setString(5, st.username);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                c.commit();
+            } catch (SQLException e) {
+                try { c.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public GameRecord getMatchMoves(long matchId) throws SQLException {
+        try (Connection c = db.connect();
+             PreparedStatement ps = c.prepareStatement("SELECT moves FROM match_moves WHERE match_id=?")) {
+            ps.setLong(1, matchId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                try {
+                    return GameRecord.decode(rs.getBytes(1));
+                } catch (IOException e) {
+                    throw new SQLException("Nước đi của ván " + matchId + " bị hỏng: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<MatchSummary> recentMatches(String username, int limit) throws SQLException {
+        // 2 nhánh UNION để mỗi nhánh đi theo index (player_x, id) / (player_o, id) thay vì quét bảng vì OR
+        String cols = "SELECT id, player_x, player_o, winner, reason, created_at FROM matches";
+        try (Connection c = db.connect();
+             PreparedStatement ps = c.prepareStatement(
+                     "(" + cols + " WHERE player_x=? ORDER BY id DESC LIMIT ?) UNION ALL "
+                             + "(" + cols + " WHERE player_o=? ORDER BY id DESC LIMIT ?) ORDER BY id DESC LIMIT ?")) {
+            ps.setString(1, username);
+            ps.setInt(2, limit);
+            ps.setString(3, username);
+            ps.setInt(4, limit);
+            ps.setInt(5, limit);
+            List<MatchSummary> out = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp t = rs.getTimestamp(6);
+                    out.add(new MatchSummary(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                            rs.getString(5), t == null ? null : t.toInstant()));
+                }
+            }
+            return out;
+        }
+    }
+}
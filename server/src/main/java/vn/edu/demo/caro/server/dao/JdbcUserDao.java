@@ -0,0 +1,199 @@
+package vn.edu.demo.caro.server.dao;
+
+import vn.edu.demo.caro.common.model.UserProfile;
+import vn.edu.demo.caro.server.db.Db;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/** UserDao trên MySQL (qua {@link Db}), có cache UserRecord ghi xuyên. */
+public class JdbcUserDao implements UserDao {
+    
+    private final Db db; // [QUAN TRỌNG] Biến instance để kết nối DB
+
+    // Cache UserRecord (ghi xuyên) - login / profile / refresh admin của user online không cần query DB
+    private final UserRecordCache cache =
+            new UserRecordCache(Integer.getInteger("caro.userCache.size", 10_000));
+
+    public JdbcUserDao(Db db) {
+        this.db = db;
+    }
+
+    @Override
+    public UserRecordCache getCache() {
+        return cache;
+    }
+
+    // [QUAN TRỌNG] Thay Db.getConnection() bằng db.connect()
+    
+    @Override
+    public void ensureUser(String username, String password) throws SQLException {
+        if (cache.contains(username)) return; // có trong cache => chắc chắn đã có trong DB
+        try (Connection c = db.connect()) { // Sửa ở đây
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT IGNORE INTO users(username,password) VALUES(?,?)")) {
+                ps.setString(1, username);
+                ps.setString(2, password);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    @Override
+    public Optional<UserRecord> find(String username) throws SQLException {
+        UserRecord cached = cache.get(username);
+        if (cached != null) return Optional.of(cached);
+
+        long stamp = cache.stamp(username);
+        try (Connection c = db.connect(); // Sửa ở đây
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT username,password,wins,losses,draws,elo,banned_until,ban_reason FROM users WHERE username=?")) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return Optional.empty();
+                Timestamp bannedUntil = rs.getTimestamp("banned_until");
+                UserRecord r = new UserRecord(
+                        rs.getString("username"),
+                        rs.getString("password"),
+                        rs.getInt("wins"),
+                        rs.getInt("losses"),
+                        rs.getInt("draws"),
+                        rs.getInt("elo"),
+                        bannedUntil == null ? null : bannedUntil.toInstant(),
+                        rs.getString("ban_reason")
+                );
+                cache.putIfUnchanged(r, stamp);
+                return Optional.of(r);
+            }
+        } finally {
+            cache.endLoad(username, stamp);
+        }
+    }
+
+    @Override
+    public boolean exists(String username) throws SQLException {
+        if (cache.contains(username)) return true;
+        String sql = "SELECT 1 FROM users WHERE username=? LIMIT 1";
+        try (var c = db.connect(); // Sửa ở đây
+             var ps = c.prepareStatement(sql)) {
+            ps.setString(1, username);
+            try (var rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    @Override
+    public void create(String username, String password) throws SQLException {
+        String sql = "INSERT INTO users(username,password,wins,losses,draws,elo) VALUES(?,?,?,?,?,?)";
+        try (Connection c = db.connect(); // Sửa ở đây
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, username);
+            ps.setString(2, password);
+            ps.setInt(3, 0);
+            ps.setInt(4, 0);
+            ps.setInt(5, 0);
+            ps.setInt(6, 1000);
+            ps.executeUpdate();
+        }
+        cache.put(new UserRecord(username, password, 0, 0, 0, 1000, null, null));
+    }
+
+    @Override
+    public void updateStats(String username, int wins, int losses, int draws, int elo) throws SQLException {
+        try (Connection c = db.connect(); // Sửa ở đây
+             PreparedStatement ps = c.prepareStatement(
+                     "UPDATE users SET wins=?, losses=?, draws=?, elo=? WHERE username=?")) {
+            ps.setInt(1, wins);
+            ps.setInt(2, losses);
+            ps.setInt(3, draws);
+            ps.setInt(4, elo);
+            ps.setString(5, username);
+            ps.executeUpdate();
+        }
+        cache.update(username, r -> new UserRecord(r.username, r.password, wins, losses, draws, elo, r.bannedUntil, r.banReason));
+    }
+
+    // MatchDao.recordResults ghi chỉ số theo lô (không qua updateStats) => ghi xuyên vào cache ở đây
+    @Override
+    public void cacheStats(Collection<MatchDao.StatsRow> rows) {
+        for (MatchDao.StatsRow s : rows) {
+            cache.update(s.username, r -> new UserRecord(r.username, r.password, s.wins, s.losses, s.draws, s.elo, r.bannedUntil, r.banReason));
+        }
+    }
+
+    @Override
+    public List<UserProfile> topElo(int top) throws SQLException {
+        try (Connection c = db.connect(); // Sửa ở đây
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT username,wins,losses,draws,elo FROM users ORDER BY elo DESC LIMIT ?")) {
+            ps.setInt(1, Math.max(1, top));
+            try (ResultSet rs = ps.executeQuery()) {
+                List<UserProfile> out = new ArrayList<>();
+                while (rs.next()) {
+                    out.add(new UserProfile(
+                            rs.getString("username"),
+                            rs.getInt("wins"),
+                            rs.getInt("losses"),
+                            rs.getInt("draws"),
+                            rs.getInt("elo")
+                    ));
+                }
+                return out;
+            }
+        }
+    }
+
+    // Nạp toàn bộ chỉ số 1 lần lúc khởi động (LeaderboardIndex)
+    @Override
+    public List<UserProfile> allProfiles() throws SQLException {
+        try (Connection c = db.connect();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT username,wins,losses,draws,elo FROM users")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                List<UserProfile> out = new ArrayList<>();
+                while (rs.next()) {
+                    out.add(new UserProfile(
+                            rs.getString("username"),
+                            rs.getInt("wins"),
+                            rs.getInt("losses"),
+                            rs.getInt("draws"),
+                            rs.getInt("elo")
+                    ));
+                }
+                return out;
+            }
+        }
+    }
+
+    @Override
+    public int countUsersHigherElo(int elo) throws SQLException {
+        String sql = "SELECT COUNT(*) AS c FROM users WHERE elo > ?";
+        try (Connection c = db.connect(); // Sửa ở đây
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, elo);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return 0;
+                return rs.getInt("c");
+            }
+        }
+    }
+
+    // Cấm tài khoản (Ban)
+    @Override
+    public void banUser(String username, String reason, int minutes) throws SQLException {
+        String sql = "UPDATE users SET banned_until = ?, ban_reason = ? WHERE username = ?";
+        java.sql.Timestamp until = new java.sql.Timestamp(System.currentTimeMillis() + minutes * 60 * 1000L);
+        try (var conn = db.connect(); // Sửa ở đây
+             var ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, until);
+            ps.setString(2, reason);
+            ps.setString(3, username);
+            ps.executeUpdate();
+        }
+        cache.update(username, r -> new UserRecord(r.username, r.password, r.wins, r.losses, r.draws, r.elo, until.toInstant(), reason));
+    }
+}
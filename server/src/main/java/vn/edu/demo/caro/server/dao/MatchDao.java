@@ -1,29 +1,67 @@
 package vn.edu.demo.caro.server.dao;
 
-import vn.edu.demo.caro.server.db.Db;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
+import vn.edu.demo.caro.common.model.GameRecord;
+import vn.edu.demo.caro.common.model.MatchSummary;
+
 import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lịch sử ván + ghi chỉ số theo lô.
+ *
+ * Bản cài đặt: {@link JdbcMatchDao} (MySQL) hoặc EmbeddedMatchDao (server.store).
+ */
+public interface MatchDao {
+
+    void insertMatch(String roomId, String playerX, String playerO, String winner, String reason) throws SQLException;
+
+    /**
+     * Ghi 1 lô kết quả ván + chỉ số mới nhất của người chơi (dùng bởi MatchResultWriter).
+     * Lỗi => cả lô coi như chưa ghi (MatchResultWriter retry).
+     */
+    void recordResults(Collection<MatchRow> matches, Collection<StatsRow> stats) throws SQLException;
+
+    /** Nước đi của ván {@code matchId}; null nếu không có ván / ván không lưu nước. */
+    GameRecord getMatchMoves(long matchId) throws SQLException;
 
-public class MatchDao {
-    private final Db db;
+    /** Tối đa limit ván gần nhất có username (cầm X hoặc O), mới -> cũ. */
+    List<MatchSummary> recentMatches(String username, int limit) throws SQLException;
 
-    // Constructor nhận Db
-    public MatchDao(Db db) {
-        this.db = db;
+    class MatchRow {
+        public final String roomId;
+        public final String playerX, playerO;
+        public final String winner; // null = hòa / hủy
+        public final String reason;
+        public final Instant endedAt;
+        public final byte[] moves; // GameRecord.encode(), null = không lưu nước
+
+        public MatchRow(String roomId, String playerX, String playerO, String winner, String reason, Instant endedAt) {
+            this(roomId, playerX, playerO, winner, reason, endedAt, null);
+        }
+
+        public MatchRow(String roomId, String playerX, String playerO, String winner, String reason, Instant endedAt, byte[] moves) {
+            this.roomId = roomId;
+            this.playerX = playerX;
+            this.playerO = playerO;
+            this.winner = winner;
+            this.reason = reason;
+            this.endedAt = endedAt;
+            this.moves = moves;
+        }
     }
 
-    public void insertMatch(String roomId, String playerX, String playerO, String winner, String reason) throws SQLException {
-        // Dùng db.connect() thay vì Db.getConnection()
-        try (Connection c = db.connect();
-             PreparedStatement ps = c.prepareStatement(
-                     "INSERT INTO matches(room_id, player_x, player_o, winner, reason) VALUES(?,?,?,?,?)")) {
-            ps.setString(1, roomId);
-            ps.setString(2, playerX);
-            ps.setString(3, playerO);
-            ps.setString(4, winner);
-            ps.setString(5, reason);
-            ps.executeUpdate();
+    class StatsRow {
+        public final String username;
+        public final int wins, losses, draws, elo;
+
+        public StatsRow(String username, int wins, int losses, int draws, int elo) {
+            this.username = username;
+            this.wins = wins;
+            this.losses = losses;
+            this.draws = draws;
+            this.elo = elo;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+package vn.edu.demo.caro.server.dao;
+
+import vn.edu.demo.caro.server.dao.UserDao.UserRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache UserRecord theo username (LRU, giới hạn số phần tử), dùng bên trong {@link JdbcUserDao}.
+ *
+ * - Ghi xuyên (write-through): JdbcUserDao ghi DB xong mới cập nhật cache => cache không bao giờ mới hơn DB.
+ * - Vượt {@code capacity} thì bỏ user ít dùng nhất, TRỪ user đang được ghim (đang online);
+ *   mỗi lần chỉ xét tối đa {@code EVICT_SCAN} phần tử đầu LRU, user ghim gặp phải được chuyển xuống cuối.
+ * - Chống ghi đè bản cũ: find() lấy {@link #stamp(String)} trước khi đọc DB, chỉ put nếu trong lúc đó
+ *   không có lần ghi nào vào CHÍNH user đó ({@link #putIfUnchanged}); ghi user khác không ảnh hưởng.
+ */
+public class UserRecordCache {
+
+    private static final int EVICT_SCAN = 64;
+
+    private final int capacity;
+    private volatile Predicate<String> pinned = u -> false;
+
+    // ===== guarded by this =====
+    private final LinkedHashMap<String, UserRecord> map = new LinkedHashMap<>(256, 0.75f, true); // access-order
+    private final Map<String, Long> loads = new HashMap<>(); // username -> stamp của lần đọc DB mới nhất đang chạy
+    private long stamps = 0;
+
+    // ===== Metrics (guarded by this) =====
+    private long hits, misses, evictions;
+
+    public UserRecordCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /** User thỏa predicate không bị bỏ khỏi cache (ServerState ghim user đang online). */
+    public void setPinned(Predicate<String> pinned) {
+        this.pinned = pinned;
+    }
+
+    public synchronized UserRecord get(String username) {
+        UserRecord r = map.get(username);
+        if (r != null) hits++;
+        else misses++;
+        return r;
+    }
+
+    public synchronized boolean contains(String username) {
+        return map.containsKey(username);
+    }
+
+    /** Bắt đầu đọc DB cho {@code username}; luôn kết thúc bằng {@link #endLoad} (finally). */
+    public synchronized long stamp(String username) {
+        long s = ++stamps;
+        loads.put(username, s); // 2 lần đọc cùng user chạy song song: chỉ lần sau được put
+        return s;
+    }
+
+    /** Bản đọc từ DB: chỉ nhận nếu user này không bị ghi kể từ {@code stamp}. */
+    public synchronized void putIfUnchanged(UserRecord r, long stamp) {
+        if (!loads.remove(r.username, stamp)) return;
+        map.put(r.username, r);
+        evict();
+    }
+
+    public synchronized void endLoad(String username, long stamp) {
+        loads.remove(username, stamp);
+    }
+
+    /** Ghi xuyên sau khi DB đã có bản mới. */
+    public synchronized void put(UserRecord r) {
+        loads.remove(r.username);
+        map.put(r.username, r);
+        evict();
+    }
+
+    /** Ghi xuyên 1 phần (chỉ khi user đang có trong cache). */
+    public synchronized void update(String username, UnaryOperator<UserRecord> f) {
+        loads.remove(username);
+        map.computeIfPresent(username, (k, r) -> f.apply(r));
+    }
+
+    public synchronized void invalidate(String username) {
+        loads.remove(username);
+        map.remove(username);
+    }
+
+    // bỏ từ đầu LRU, bỏ qua user đang ghim (chuyển xuống cuối để lần sau không quét lại);
+    // mỗi lần xét tối đa EVICT_SCAN phần tử => ghim nhiều hơn capacity thì cho vượt, không quét cả map
+    private void evict() {
+        if (map.size() <= capacity) return;
+        Predicate<String> p = pinned;
+        List<String> skipped = new ArrayList<>();
+        Iterator<Map.Entry<String, UserRecord>> it = map.entrySet().iterator();
+        for (int n = 0; n < EVICT_SCAN && map.size() > capacity && it.hasNext(); n++) {
+            String u = it.next().getKey();
+            if (p.test(u)) {
+                skipped.add(u);
+                continue;
+            }
+            it.remove();
+            evictions++;
+        }
+        for (String u : skipped) map.get(u); // access-order => xuống cuối LRU
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public synchronized int size() { return map.size(); }
+    public int getCapacity() { return capacity; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    public synchronized double getHitRate() {
+        long n = hits + misses;
+        return n == 0 ? 0.0 : (double) hits / n;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("size=%d/%d, hits=%d, misses=%d, hit rate=%.1f%%, evictions=%d",
+                map.size(), capacity, hits, misses, getHitRate() * 100, evictions);
+    }
+}
@@ -0,0 +1,326 @@
+package vn.edu.demo.caro.server.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool connection JDBC tự viết (không thêm thư viện), dùng bên trong {@link Db}.
+ *
+ * - Tối đa {@code maxSize} connection vật lý; hết thì chờ tối đa {@code borrowTimeoutMs}.
+ * - Connection trả ra là proxy: close() = trả về pool, DAO không cần sửa gì.
+ * - Validate (isValid) khi mượn nếu connection đã nằm idle lâu hơn {@link #VALIDATE_AFTER_IDLE_MS}.
+ * - Thread "db-pool-housekeeper" đóng connection idle quá lâu / quá tuổi và log connection bị giữ quá lâu (leak).
+ *
+ * Cấu hình qua system property: db.pool.max, db.pool.borrowTimeoutMs, db.pool.idleTimeoutMs,
+ * db.pool.maxLifetimeMs, db.pool.leakThresholdMs (0 = tắt).
+ */
+public class ConnectionPool {
+
+    private static final long VALIDATE_AFTER_IDLE_MS = 500;
+    private static final int VALIDATE_TIMEOUT_SEC = 2;
+    private static final long HOUSEKEEPING_MS = 30_000;
+
+    private final DbConfig config;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long leakThresholdMs;
+
+    // ===== guarded by this =====
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>(); // đầu = vừa trả (LIFO)
+    private final Set<PooledConnection> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int total = 0;   // connection vật lý đang mở + đang mở dở
+    private int waiting = 0;
+    private boolean closed = false;
+
+    // ===== Metrics =====
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ConnectionPool(DbConfig config) {
+        this.config = config;
+        this.maxSize = Math.max(1, Integer.getInteger("db.pool.max", 10));
+        this.borrowTimeoutMs = Long.getLong("db.pool.borrowTimeoutMs", 5_000L);
+        this.idleTimeoutMs = Long.getLong("db.pool.idleTimeoutMs", 10 * 60_000L);
+        this.maxLifetimeMs = Long.getLong("db.pool.maxLifetimeMs", 30 * 60_000L);
+        this.leakThresholdMs = Long.getLong("db.pool.leakThresholdMs", 30_000L);
+
+        Thread t = new Thread(this::housekeepingLoop, "db-pool-housekeeper");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // ============================================================
+    // Borrow / release
+    // ============================================================
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + borrowTimeoutMs * 1_000_000L;
+
+        while (true) {
+            PooledConnection pc = null;
+            boolean create = false;
+
+            synchronized (this) {
+                if (closed) throw new SQLException("Connection pool đã đóng.");
+
+                while (idle.isEmpty() && total >= maxSize) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        timeouts.incrementAndGet();
+                        throw new SQLTransientConnectionException(
+                                "Hết thời gian chờ connection (" + borrowTimeoutMs + "ms, pool=" + maxSize + ").");
+                    }
+                    waiting++;
+                    try {
+                        wait(Math.max(1, left / 1_000_000L));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Bị ngắt khi chờ connection.", e);
+                    } finally {
+                        waiting--;
+                    }
+                    if (closed) throw new SQLException("Connection pool đã đóng.");
+                }
+
+                if (!idle.isEmpty()) {
+                    pc = idle.pollFirst();
+                } else {
+                    total++;
+                    create = true;
+                }
+            }
+
+            if (create) {
+                try {
+                    pc = new PooledConnection(DriverManager.getConnection(
+                            config.getUrl(), config.getUser(), config.getPassword()));
+                    created.incrementAndGet();
+                } catch (SQLException e) {
+                    synchronized (this) {
+                        total--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+            } else if (!isUsable(pc)) {
+                destroy(pc);
+                continue;
+            }
+
+            long waited = System.nanoTime() - start;
+            borrows.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            pc.borrowedAt = System.currentTimeMillis();
+            pc.borrowTrace = leakThresholdMs > 0 ? new Exception("Connection mượn tại") : null;
+            pc.leakReported = false;
+            synchronized (this) {
+                inUse.add(pc);
+            }
+            return pc.newHandle();
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        boolean keep;
+        try {
+            // DAO có thể để autoCommit=false (transaction) => trả về trạng thái mặc định
+            if (!pc.raw.getAutoCommit()) {
+                pc.raw.rollback();
+                pc.raw.setAutoCommit(true);
+            }
+            keep = !pc.raw.isClosed() && !pc.expired(System.currentTimeMillis());
+        } catch (SQLException e) {
+            keep = false;
+        }
+
+        synchronized (this) {
+            inUse.remove(pc);
+            if (keep && !closed) {
+                pc.lastUsedAt = System.currentTimeMillis();
+                idle.addFirst(pc);
+                notifyAll();
+                return;
+            }
+        }
+        destroy(pc);
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        long now = System.currentTimeMillis();
+        if (pc.expired(now)) return false;
+        if (now - pc.lastUsedAt < VALIDATE_AFTER_IDLE_MS) return true;
+        try {
+            return pc.raw.isValid(VALIDATE_TIMEOUT_SEC);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pc) {
+        try {
+            pc.raw.close();
+        } catch (SQLException ignored) {
+        }
+        destroyed.incrementAndGet();
+        synchronized (this) {
+            total--;
+            notifyAll();
+        }
+    }
+
+    public void close() {
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (PooledConnection pc : toClose) destroy(pc);
+    }
+
+    // ============================================================
+    // Housekeeping
+    // ============================================================
+    private void housekeepingLoop() {
+        while (true) {
+            try {
+                Thread.sleep(HOUSEKEEPING_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            List<PooledConnection> evict = new ArrayList<>();
+            List<PooledConnection> leaked = new ArrayList<>();
+
+            synchronized (this) {
+                if (closed) return;
+                idle.removeIf(pc -> {
+                    boolean old = pc.expired(now) || now - pc.lastUsedAt > idleTimeoutMs;
+                    if (old) evict.add(pc);
+                    return old;
+                });
+                if (leakThresholdMs > 0) {
+                    for (PooledConnection pc : inUse) {
+                        if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMs) {
+                            pc.leakReported = true;
+                            leaked.add(pc);
+                        }
+                    }
+                }
+            }
+
+            for (PooledConnection pc : evict) destroy(pc);
+            for (PooledConnection pc : leaked) {
+                leaks.incrementAndGet();
+                System.err.println("[DbPool] Connection chưa được trả sau " + (now - pc.borrowedAt) + "ms (có thể leak)");
+                if (pc.borrowTrace != null) pc.borrowTrace.printStackTrace();
+            }
+        }
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public synchronized int getActive() { return inUse.size(); }
+    public synchronized int getIdle() { return idle.size(); }
+    public synchronized int getTotal() { return total; }
+    public synchronized int getWaiting() { return waiting; }
+    public int getMaxSize() { return maxSize; }
+    public long getBorrows() { return borrows.get(); }
+    public long getCreated() { return created.get(); }
+    public long getDestroyed() { return destroyed.get(); }
+    public long getTimeouts() { return timeouts.get(); }
+    public long getLeaks() { return leaks.get(); }
+    public double getMaxWaitMillis() { return maxWaitNanos.get() / 1_000_000.0; }
+
+    public double getAvgWaitMillis() {
+        long n = borrows.get();
+        return n == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / n;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d, idle=%d, total=%d/%d, waiting=%d, borrows=%d, avg wait=%.2fms, max wait=%.2fms, timeouts=%d, leaks=%d",
+                getActive(), getIdle(), getTotal(), maxSize, getWaiting(), getBorrows(),
+                getAvgWaitMillis(), getMaxWaitMillis(), getTimeouts(), getLeaks());
+    }
+
+    // ============================================================
+    // Pooled connection + proxy
+    // ============================================================
+    private final class PooledConnection {
+        final Connection raw;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastUsedAt = createdAt;
+        volatile long borrowedAt;
+        volatile Exception borrowTrace;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        boolean expired(long now) {
+            return maxLifetimeMs > 0 && now - createdAt > maxLifetimeMs;
+        }
+
+        // mỗi lần mượn 1 handle mới => handle cũ đã close() không dùng lại được connection
+        Connection newHandle() {
+            InvocationHandler h = new InvocationHandler() {
+                private boolean handleClosed = false;
+
+                @Override
+                public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                    switch (m.getName()) {
+                        case "close":
+                            if (!handleClosed) {
+                                handleClosed = true;
+                                release(PooledConnection.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return handleClosed || raw.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled[" + raw + "]";
+                        default:
+                            if (handleClosed) throw new SQLException("Connection đã được trả về pool.");
+                            try {
+                                return m.invoke(raw, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, h);
+        }
+    }
+}
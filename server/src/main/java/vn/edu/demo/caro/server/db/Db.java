@@ -1,11 +1,23 @@
 package vn.edu.demo.caro.server.db;
 
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+import vn.edu.demo.caro.server.metrics.Metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class Db {
     private final DbConfig config;
+    // Mọi DAO mượn connection từ pool; close() trên connection = trả lại pool
+    private final ConnectionPool pool;
+    // null = không đo; có thì mỗi connection được tính giờ từ lúc mượn tới lúc close (theo method DAO gọi)
+    private volatile Metrics metrics;
+
+    private static final String DAO_PACKAGE = "vn.edu.demo.caro.server.dao.";
+    private static final StackWalker WALKER = StackWalker.getInstance();
 
     static {
         try {
@@ -16,16 +28,67 @@ public class Db {
     // Constructor
     public Db(DbConfig config) {
         this.config = config;
+        this.pool = new ConnectionPool(config);
     }
 
     // Hàm connect() thay cho static getConnection()
     public Connection connect() throws SQLException {
-        return DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+        Metrics m = metrics;
+        if (m == null) return pool.borrow();
+
+        long start = System.nanoTime();
+        Connection c = pool.borrow();
+        return timed(c, m.timer(callerName()), start);
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // "dao.JdbcUserDao.find": frame đầu tiên thuộc package dao (chờ pool + query + đọc kết quả)
+    private static String callerName() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(DAO_PACKAGE))
+                .findFirst()
+                .map(f -> "dao." + f.getClassName().substring(DAO_PACKAGE.length()) + "." + f.getMethodName())
+                .orElse("dao.other"));
+    }
+
+    private static Connection timed(Connection c, LatencyHistogram h, long start) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "close":
+                            if (!c.isClosed()) h.recordNanos(System.nanoTime() - start);
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return m.invoke(c, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public void close() {
+        pool.close();
     }
     
     // (Optional) Giữ static để hỗ trợ code cũ chưa kịp sửa hết (chỉ dùng nếu DbConfig rỗng)
     @Deprecated
     public static Connection getConnection() throws SQLException {
-        return new Db(new DbConfig()).connect();
+        // không qua pool (tạo Db mới mỗi lần sẽ đẻ ra pool mới)
+        DbConfig c = new DbConfig();
+        return DriverManager.getConnection(c.getUrl(), c.getUser(), c.getPassword());
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package vn.edu.demo.caro.server.gateway;
+
+import vn.edu.demo.caro.common.net.GatewayCodec;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 1 client nối vào gateway.
+ *
+ * - {@link #in}: buffer đọc, chỉ thread selector đụng tới; bắt đầu nhỏ (4KB) để giữ được nhiều kết nối rảnh.
+ * - Hàng gửi: worker thêm frame, selector ghi dần (guarded by this).
+ * - {@link #inFlight} / {@link #readPaused}: backpressure phía đọc (xem GatewayServer).
+ * - {@link #callback}: ClientCallback giả (proxy) đặt vào OnlineSession; mỗi lời gọi thành 1 frame EVENT,
+ *   không chặn. Kết nối đã đóng / client không đọc kịp => ném RemoteException như stub RMI chết,
+ *   CallbackDispatcher tự đếm lỗi và evict.
+ */
+final class GatewayConnection implements InvocationHandler {
+
+    static final int INITIAL_BUFFER = 4096;
+
+    final GatewayServer server;
+    final SocketChannel channel;
+    final ClientCallback callback;
+    SelectionKey key;
+    ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER);
+    boolean writePending = false; // selector: đang chờ OP_WRITE
+
+    final AtomicInteger inFlight = new AtomicInteger(); // request đã đọc, chưa trả lời
+    volatile boolean readPaused = false; // selector đặt; worker đọc để biết có cần báo đọc tiếp
+
+    volatile boolean helloOk = false;
+    volatile String username;       // sau login thành công
+    volatile boolean closed = false;
+
+    // ===== guarded by this =====
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    private long outBytes = 0;
+    private boolean writeRequested = false;
+
+    GatewayConnection(GatewayServer server, SocketChannel channel) {
+        this.server = server;
+        this.channel = channel;
+        this.callback = (ClientCallback) Proxy.newProxyInstance(
+                ClientCallback.class.getClassLoader(), new Class<?>[]{ClientCallback.class}, this);
+    }
+
+    /**
+     * Xếp frame vào hàng gửi. Frame event bị từ chối khi hàng đã quá {@code maxOutbound} byte;
+     * response luôn nhận (client đang chờ) - byte response bị chặn ở phía đọc: hàng quá {@code maxOutbound}
+     * thì selector ngừng đọc request mới. Trả về false nếu không nhận.
+     */
+    boolean enqueue(byte[] frame, boolean event, long maxOutbound) {
+        synchronized (this) {
+            if (closed) return false;
+            if (event && outBytes > maxOutbound) return false;
+            out.addLast(ByteBuffer.wrap(frame));
+            outBytes += frame.length;
+            if (writeRequested) return true;
+            writeRequested = true;
+        }
+        server.requestWrite(this);
+        return true;
+    }
+
+    /** Ghi hết mức có thể (thread selector). true = đã ghi hết hàng. */
+    synchronized boolean flushSome() throws IOException {
+        while (!out.isEmpty()) {
+            ByteBuffer b = out.peekFirst();
+            long n = channel.write(b);
+            server.bytesOut.addAndGet(n);
+            if (b.hasRemaining()) return false; // socket đầy, chờ OP_WRITE
+            outBytes -= b.capacity();
+            out.pollFirst();
+        }
+        writeRequested = false;
+        return true;
+    }
+
+    synchronized void clearQueue() {
+        out.clear();
+        outBytes = 0;
+    }
+
+    synchronized long queuedBytes() {
+        return outBytes;
+    }
+
+    // ============================================================
+    // ClientCallback proxy
+    // ============================================================
+    @Override
+    public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+        if (m.getDeclaringClass() == Object.class) {
+            switch (m.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                default: return "GatewayCallback[" + username + "]";
+            }
+        }
+        byte[] frame = GatewayCodec.encodeEvent(GatewayCodec.CALLBACK.idOf(m), args);
+        if (!server.sendEvent(this, frame)) {
+            throw new RemoteException(closed ? "Gateway: kết nối đã đóng" : "Gateway: client không nhận kịp");
+        }
+        return null;
+    }
+}
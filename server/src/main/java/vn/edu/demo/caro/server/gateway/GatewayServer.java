@@ -0,0 +1,426 @@
+package vn.edu.demo.caro.server.gateway;
+
+import vn.edu.demo.caro.common.net.GatewayCodec;
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.common.rmi.LobbyService;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Gateway TCP không chặn, chạy song song với RMI (giao thức: {@link GatewayCodec}).
+ *
+ * - 1 thread "gateway-selector" lo accept / đọc / ghi cho mọi kết nối (không có thread nào / client).
+ * - Frame REQUEST đọc đủ thì đẩy sang pool worker, gọi đúng method LobbyService như RMI
+ *   => cùng logic, cùng khóa phòng; tham số ClientCallback được thay bằng callback của kết nối.
+ * - Kết nối đóng sau khi login => disconnectHandler (LobbyServiceImpl.onTransportClosed) dọn session.
+ * - Backpressure: mỗi kết nối tối đa {@code caro.gateway.maxInFlight} request đang xử lý; đủ số đó, hoặc hàng gửi
+ *   (event + response) quá {@code caro.gateway.maxOutbound} byte => ngừng đọc (bỏ OP_READ) tới khi bớt.
+ *   Hàng của pool worker có giới hạn {@code caro.gateway.queue}; đầy thì request nhận lỗi "server bận".
+ *
+ * Bật bằng -Dcaro.gateway.port=... (0 / không đặt = tắt).
+ */
+public class GatewayServer {
+
+    // byte chờ gửi tối đa / kết nối; quá thì callback báo lỗi (client chậm) và ngừng đọc request mới
+    private static final long MAX_OUTBOUND = Long.getLong("caro.gateway.maxOutbound", 1L << 20);
+    // request đã đọc nhưng chưa trả lời tối đa / kết nối
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("caro.gateway.maxInFlight", 16);
+    // request chờ worker tối đa (mọi kết nối)
+    private static final int MAX_QUEUED = Integer.getInteger("caro.gateway.queue", 10_000);
+
+    private final LobbyService lobby;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ExecutorService workers;
+    private final Queue<GatewayConnection> writeRequests = new ConcurrentLinkedQueue<>();
+    private final Queue<GatewayConnection> resumeRequests = new ConcurrentLinkedQueue<>();
+    private final Set<GatewayConnection> connections = ConcurrentHashMap.newKeySet();
+    private volatile BiConsumer<String, ClientCallback> disconnectHandler = (u, cb) -> {};
+    private volatile boolean running = true;
+
+    // ===== Metrics =====
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong closedCount = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong rejectedEvents = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private final AtomicLong readPauses = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    final AtomicLong bytesOut = new AtomicLong();
+
+    public GatewayServer(LobbyService lobby, int port, int threads) throws IOException {
+        this.lobby = lobby;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+            Thread t = new Thread(r, "gateway-worker-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Thread t = new Thread(this::selectLoop, "gateway-selector");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Được gọi (trên worker) khi kết nối của 1 user đã login bị đóng. */
+    public void setDisconnectHandler(BiConsumer<String, ClientCallback> handler) {
+        this.disconnectHandler = handler;
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public void close() {
+        running = false;
+        selector.wakeup();
+        for (GatewayConnection c : connections) close(c);
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        workers.shutdown();
+    }
+
+    // ============================================================
+    // Selector thread
+    // ============================================================
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+
+                GatewayConnection c;
+                while ((c = writeRequests.poll()) != null) {
+                    c.writePending = true;
+                    updateInterest(c);
+                }
+                while ((c = resumeRequests.poll()) != null) {
+                    try {
+                        resume(c);
+                    } catch (IOException e) {
+                        close(c);
+                    }
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    GatewayConnection conn = (GatewayConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) read(conn);
+                        if (key.isValid() && key.isWritable()) {
+                            if (conn.flushSome()) conn.writePending = false;
+                            resume(conn); // hàng gửi vừa bớt => có thể đọc tiếp
+                            updateInterest(conn);
+                        }
+                    } catch (IOException e) {
+                        close(conn);
+                    }
+                }
+            } catch (Exception e) {
+                if (running) System.err.println("[Gateway] selector lỗi: " + e);
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch;
+        while ((ch = server.accept()) != null) {
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            ch.socket().setKeepAlive(true); // peer mất mạng không gửi FIN
+            GatewayConnection conn = new GatewayConnection(this, ch);
+            conn.key = ch.register(selector, SelectionKey.OP_READ, conn);
+            connections.add(conn);
+            accepted.incrementAndGet();
+        }
+    }
+
+    private void read(GatewayConnection conn) throws IOException {
+        int n = conn.channel.read(conn.in);
+        if (n < 0) {
+            close(conn);
+            return;
+        }
+        bytesIn.addAndGet(n);
+        parseFrames(conn);
+        if (conn.readPaused) updateInterest(conn);
+    }
+
+    // tách frame đủ trong buffer đọc và đẩy cho worker; dừng (readPaused) khi kết nối hết hạn mức
+    private void parseFrames(GatewayConnection conn) throws IOException {
+        ByteBuffer in = conn.in;
+        in.flip();
+        int need = 0;
+        while (in.remaining() >= 4) {
+            if (!canRead(conn)) {
+                conn.readPaused = true;
+                // worker trả lời xong ngay trước khi readPaused được đặt thì không gửi resume => kiểm tra lại
+                if (!canRead(conn)) {
+                    readPauses.incrementAndGet();
+                    break;
+                }
+                conn.readPaused = false;
+            }
+            int len = in.getInt(in.position());
+            if (len < 1 || len > GatewayCodec.MAX_FRAME) throw new IOException("Gateway: độ dài frame " + len);
+            if (in.remaining() < 4 + len) {
+                need = 4 + len;
+                break;
+            }
+            in.getInt();
+            byte[] payload = new byte[len];
+            in.get(payload);
+            conn.inFlight.incrementAndGet();
+            dispatch(conn, payload);
+        }
+
+        if (need > in.capacity()) {
+            // frame lớn hơn buffer: nới buffer cho riêng frame này
+            ByteBuffer bigger = ByteBuffer.allocate(need);
+            bigger.put(in);
+            conn.in = bigger;
+        } else if (!in.hasRemaining() && in.capacity() > GatewayConnection.INITIAL_BUFFER) {
+            // xong frame lớn thì trả buffer về cỡ nhỏ
+            conn.in = ByteBuffer.allocate(GatewayConnection.INITIAL_BUFFER);
+        } else {
+            in.compact();
+        }
+    }
+
+    private boolean canRead(GatewayConnection conn) {
+        return conn.inFlight.get() < MAX_IN_FLIGHT && conn.queuedBytes() <= MAX_OUTBOUND;
+    }
+
+    // selector: kết nối đang ngừng đọc mà đã đủ hạn mức => xử lý frame còn trong buffer rồi đọc tiếp
+    private void resume(GatewayConnection conn) throws IOException {
+        if (conn.closed || !conn.readPaused || !canRead(conn)) return;
+        conn.readPaused = false;
+        parseFrames(conn);
+        updateInterest(conn);
+    }
+
+    private void updateInterest(GatewayConnection conn) {
+        SelectionKey k = conn.key;
+        if (k == null || !k.isValid()) return;
+        k.interestOps((conn.readPaused ? 0 : SelectionKey.OP_READ) | (conn.writePending ? SelectionKey.OP_WRITE : 0));
+    }
+
+    private void dispatch(GatewayConnection conn, byte[] payload) {
+        try {
+            workers.execute(() -> handle(conn, payload));
+        } catch (RejectedExecutionException e) {
+            conn.inFlight.decrementAndGet();
+            if (!running) return;
+            rejectedRequests.incrementAndGet();
+            // hàng worker đầy: trả lỗi ngay cho request (client không treo chờ), frame khác thì đóng kết nối
+            if (payload[0] == GatewayCodec.REQUEST && payload.length >= 5) {
+                int reqId = ByteBuffer.wrap(payload, 1, 4).getInt();
+                try {
+                    conn.enqueue(GatewayCodec.encodeError(reqId, "Server đang bận, thử lại sau"), false, MAX_OUTBOUND);
+                    return;
+                } catch (IOException ignored) {
+                }
+            }
+            close(conn);
+        }
+    }
+
+    void requestWrite(GatewayConnection conn) {
+        writeRequests.add(conn);
+        selector.wakeup();
+    }
+
+    // worker: 1 request xong; selector đọc tiếp nếu kết nối đang ngừng đọc vì đủ hạn mức
+    private void done(GatewayConnection conn) {
+        conn.inFlight.decrementAndGet();
+        if (conn.readPaused && !conn.closed) {
+            resumeRequests.add(conn);
+            selector.wakeup();
+        }
+    }
+
+    boolean sendEvent(GatewayConnection conn, byte[] frame) {
+        if (conn.enqueue(frame, true, MAX_OUTBOUND)) {
+            events.incrementAndGet();
+            return true;
+        }
+        rejectedEvents.incrementAndGet();
+        return false;
+    }
+
+    private void close(GatewayConnection conn) {
+        if (conn.closed) return;
+        conn.closed = true;
+        connections.remove(conn);
+        closedCount.incrementAndGet();
+        if (conn.key != null) conn.key.cancel();
+        try {
+            conn.channel.close();
+        } catch (IOException ignored) {
+        }
+        conn.clearQueue();
+
+        String user = conn.username;
+        if (user != null) {
+            Runnable cleanup = () -> disconnectHandler.accept(user, conn.callback);
+            try {
+                workers.execute(cleanup);
+            } catch (RejectedExecutionException e) {
+                // hàng worker đầy: dọn session vẫn phải chạy (không thì user kẹt online)
+                if (running) new Thread(cleanup, "gateway-disconnect").start();
+            }
+        }
+    }
+
+    // ============================================================
+    // Worker
+    // ============================================================
+    private void handle(GatewayConnection conn, byte[] payload) {
+        try {
+            handleFrame(conn, payload);
+        } finally {
+            done(conn);
+        }
+    }
+
+    private void handleFrame(GatewayConnection conn, byte[] payload) {
+        if (conn.closed) return;
+        GatewayCodec.Frame f;
+        try {
+            f = GatewayCodec.decode(payload);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[Gateway] frame hỏng: " + e.getMessage());
+            close(conn);
+            return;
+        }
+
+        try {
+            if (f.type == GatewayCodec.HELLO) {
+                hello(conn, f);
+                return;
+            }
+            if (f.type != GatewayCodec.REQUEST || !conn.helloOk) {
+                close(conn);
+                return;
+            }
+            requests.incrementAndGet();
+            conn.enqueue(call(conn, f), false, MAX_OUTBOUND);
+        } catch (IOException e) {
+            System.err.println("[Gateway] không ghi được trả lời: " + e.getMessage());
+            close(conn);
+        }
+    }
+
+    private void hello(GatewayConnection conn, GatewayCodec.Frame f) throws IOException {
+        if (f.version != GatewayCodec.VERSION
+                || f.lobbyFingerprint != GatewayCodec.LOBBY.fingerprint()
+                || f.callbackFingerprint != GatewayCodec.CALLBACK.fingerprint()) {
+            conn.enqueue(GatewayCodec.encodeError(0, "Phiên bản client không khớp server"), false, MAX_OUTBOUND);
+            return;
+        }
+        conn.helloOk = true;
+        conn.enqueue(GatewayCodec.encodeResponse(0, null), false, MAX_OUTBOUND);
+    }
+
+    private byte[] call(GatewayConnection conn, GatewayCodec.Frame f) throws IOException {
+        Method m = GatewayCodec.LOBBY.byId(f.methodId);
+        if (m == null) return GatewayCodec.encodeError(f.reqId, "Phương thức không hỗ trợ: " + f.methodId);
+
+        Class<?>[] types = m.getParameterTypes();
+        Object[] args = f.args;
+        if (args.length != types.length) return GatewayCodec.encodeError(f.reqId, "Sai số tham số: " + m.getName());
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == ClientCallback.class) args[i] = conn.callback;
+            else if (types[i].isPrimitive() && args[i] == null) {
+                return GatewayCodec.encodeError(f.reqId, "Thiếu tham số: " + m.getName());
+            }
+        }
+
+        try {
+            Object result = m.invoke(lobby, args);
+            if (result != null && "login".equals(m.getName())) {
+                conn.username = ((String) args[0]).trim();
+            }
+            return GatewayCodec.encodeResponse(f.reqId, result);
+        } catch (InvocationTargetException e) {
+            errors.incrementAndGet();
+            Throwable cause = e.getCause();
+            return GatewayCodec.encodeError(f.reqId, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            errors.incrementAndGet();
+            return GatewayCodec.encodeError(f.reqId, "Tham số không hợp lệ: " + m.getName());
+        }
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public int getConnections() { return connections.size(); }
+    public long getAccepted() { return accepted.get(); }
+    public long getClosed() { return closedCount.get(); }
+    public long getRequests() { return requests.get(); }
+    public long getErrors() { return errors.get(); }
+    public long getEvents() { return events.get(); }
+    public long getRejectedEvents() { return rejectedEvents.get(); }
+    public long getRejectedRequests() { return rejectedRequests.get(); }
+    public long getReadPauses() { return readPauses.get(); }
+    public long getBytesIn() { return bytesIn.get(); }
+    public long getBytesOut() { return bytesOut.get(); }
+
+    @Override
+    public String toString() {
+        return "connections=" + getConnections()
+                + ", accepted=" + getAccepted()
+                + ", closed=" + getClosed()
+                + ", requests=" + getRequests()
+                + ", errors=" + getErrors()
+                + ", events=" + getEvents()
+                + ", rejected events=" + getRejectedEvents()
+                + ", rejected requests=" + getRejectedRequests()
+                + ", read pauses=" + getReadPauses()
+                + ", in=" + getBytesIn() + "B, out=" + getBytesOut() + "B";
+    }
+}
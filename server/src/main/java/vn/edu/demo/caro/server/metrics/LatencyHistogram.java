@@ -0,0 +1,76 @@
+package vn.edu.demo.caro.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram độ trễ không khóa, bucket log-tuyến tính theo micro giây (kiểu HdrHistogram thu gọn).
+ *
+ * - < 8us: mỗi us 1 bucket; từ 8us: mỗi lũy thừa 2 chia 8 bucket => sai số percentile <= 12.5%.
+ * - record = vài phép bit + 1 incrementAndGet, không cấp phát => gọi được trên mọi đường nóng.
+ * - Giữ tới ~2^40us (12 ngày); lớn hơn dồn vào bucket cuối.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXP = 40;
+    private static final int BUCKETS = (MAX_EXP - SUB_BITS + 2) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long us = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(index(us));
+        count.incrementAndGet();
+        totalMicros.addAndGet(us);
+        if (us > maxMicros.get()) maxMicros.accumulateAndGet(us, Math::max);
+    }
+
+    public long getCount() { return count.get(); }
+    public long getMaxMicros() { return maxMicros.get(); }
+
+    public double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0.0 : (double) totalMicros.get() / n;
+    }
+
+    /** Giá trị (us, cận trên của bucket) tại phân vị {@code p} trong [0, 1]. */
+    public long percentileMicros(double p) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    static int index(long us) {
+        if (us < SUB) return (int) us;
+        int exp = 63 - Long.numberOfLeadingZeros(us);
+        if (exp > MAX_EXP) return BUCKETS - 1;
+        int sub = (int) (us >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB) return index;
+        int exp = index / SUB + SUB_BITS - 1;
+        int sub = index % SUB;
+        long lower = (long) (SUB + sub) << (exp - SUB_BITS);
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    /** "n=.. p50=.. p99=.. p999=.. max=.." (ms). */
+    public String summary() {
+        return String.format("n=%d p50=%.2f p99=%.2f p999=%.2f max=%.2f ms",
+                getCount(), percentileMicros(0.50) / 1000.0, percentileMicros(0.99) / 1000.0,
+                percentileMicros(0.999) / 1000.0, getMaxMicros() / 1000.0);
+    }
+}
@@ -0,0 +1,78 @@
+package vn.edu.demo.caro.server.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tổng thời gian các thread bị chặn khi chờ monitor (synchronized: khóa phòng, roomList, mailbox...).
+ *
+ * Bật thread contention monitoring của JVM rồi mỗi {@code periodMillis} cộng phần tăng BlockedTime
+ * của từng thread (thread đã chết thì bỏ) => không phải sửa từng chỗ synchronized.
+ * Thread chết giữa 2 lần lấy mẫu mất phần chờ cuối cùng (tối đa 1 chu kỳ).
+ */
+final class LockWaitSampler {
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean supported;
+    private final Map<Long, long[]> last = new HashMap<>(); // id -> {blockedTime ms, blockedCount}; chỉ thread sampler
+
+    private final AtomicLong blockedMillis = new AtomicLong();
+    private final AtomicLong blockedCount = new AtomicLong();
+    private Thread thread; // null = không hỗ trợ
+
+    LockWaitSampler(long periodMillis) {
+        boolean ok = threads.isThreadContentionMonitoringSupported();
+        if (ok) {
+            try {
+                threads.setThreadContentionMonitoringEnabled(true);
+            } catch (UnsupportedOperationException | SecurityException e) {
+                ok = false;
+            }
+        }
+        this.supported = ok;
+        if (!supported) return;
+
+        thread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(periodMillis);
+                    sample();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    System.err.println("[Metrics] lock sampler: " + e);
+                }
+            }
+        }, "metrics-lock-sampler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // thread chỉ đọc ThreadMXBean => interrupt an toàn
+    void shutdown() {
+        if (thread != null) thread.interrupt();
+    }
+
+    private void sample() {
+        Map<Long, long[]> seen = new HashMap<>();
+        for (ThreadInfo ti : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (ti == null) continue;
+            long time = Math.max(0, ti.getBlockedTime());
+            long n = ti.getBlockedCount();
+            long[] prev = last.get(ti.getThreadId());
+            blockedMillis.addAndGet(prev == null ? time : Math.max(0, time - prev[0]));
+            blockedCount.addAndGet(prev == null ? n : Math.max(0, n - prev[1]));
+            seen.put(ti.getThreadId(), new long[]{time, n});
+        }
+        last.clear();
+        last.putAll(seen);
+    }
+
+    boolean isSupported() { return supported; }
+    long getBlockedMillis() { return blockedMillis.get(); }
+    long getBlockedCount() { return blockedCount.get(); }
+}
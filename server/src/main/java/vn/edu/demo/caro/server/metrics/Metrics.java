@@ -0,0 +1,90 @@
+package vn.edu.demo.caro.server.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Sổ metrics của server: histogram độ trễ (timer) + gauge (giá trị đọc lúc xem).
+ *
+ * - Timer: "lobby.<method>" (mọi lời gọi RMI / gateway qua Instrumented), "dao.<Dao>.<method>" (Db),
+ *   "game.*" (đoạn nội bộ như endGame).
+ * - Gauge: component tự đăng ký getter của mình (online, phòng, mailbox, pool, cache...), không copy số liệu.
+ * - Xem qua AdminService.getMetrics / lệnh "stats" của AdminConsole / JMX (vn.edu.demo.caro:type=ServerMetrics).
+ */
+public class Metrics {
+
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final LockWaitSampler locks = new LockWaitSampler(Long.getLong("caro.metrics.lockSampleMs", 1000L));
+
+    public Metrics() {
+        MemoryMXBean mem = ManagementFactory.getMemoryMXBean();
+        gauge("jvm.heapUsedMB", () -> mem.getHeapMemoryUsage().getUsed() >> 20);
+        gauge("jvm.threads", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        if (locks.isSupported()) {
+            gauge("lock.blockedMillis", locks::getBlockedMillis);
+            gauge("lock.blockedCount", locks::getBlockedCount);
+        }
+    }
+
+    /** Dừng thread lấy mẫu khóa (tắt server / dựng lại ServerState). */
+    public void shutdown() {
+        locks.shutdown();
+    }
+
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public void record(String name, long nanos) {
+        timer(name).recordNanos(nanos);
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /** Giá trị gauge hiện tại (sắp theo tên); gauge lỗi thì -1. */
+    public Map<String, Long> gaugeValues() {
+        Map<String, Long> out = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            long v;
+            try {
+                v = e.getValue().getAsLong();
+            } catch (RuntimeException ex) {
+                v = -1;
+            }
+            out.put(e.getKey(), v);
+        }
+        return out;
+    }
+
+    /** Timer đã có ít nhất 1 lần ghi (sắp theo tên). */
+    public Map<String, LatencyHistogram> activeTimers() {
+        Map<String, LatencyHistogram> out = new TreeMap<>();
+        timers.forEach((k, h) -> {
+            if (h.getCount() > 0) out.put(k, h);
+        });
+        return out;
+    }
+
+    public LatencyHistogram getTimer(String name) {
+        return timers.get(name);
+    }
+
+    /** Bảng text cho admin: gauge rồi tới timer (p50 / p99 / p999 / max theo ms). */
+    public String report() {
+        StringBuilder sb = new StringBuilder("== Gauges ==\n");
+        gaugeValues().forEach((k, v) -> sb.append(String.format("  %-32s %d%n", k, v)));
+        sb.append("== Latency (ms) ==\n");
+        sb.append(String.format("  %-40s %9s %8s %8s %8s %8s%n", "", "count", "p50", "p99", "p999", "max"));
+        activeTimers().forEach((k, h) -> sb.append(String.format("  %-40s %9d %8.2f %8.2f %8.2f %8.2f%n",
+                k, h.getCount(), h.percentileMicros(0.50) / 1000.0, h.percentileMicros(0.99) / 1000.0,
+                h.percentileMicros(0.999) / 1000.0, h.getMaxMicros() / 1000.0)));
+        return sb.toString();
+    }
+}
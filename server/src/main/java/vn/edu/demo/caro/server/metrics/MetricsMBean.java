@@ -0,0 +1,112 @@
+package vn.edu.demo.caro.server.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đưa {@link Metrics} lên JMX (jconsole / VisualVM): mỗi gauge là 1 attribute,
+ * mỗi timer có "<tên>.count / .p50Micros / .p99Micros / .p999Micros / .maxMicros"; operation "report".
+ * Danh sách attribute dựng lại mỗi lần getMBeanInfo vì timer xuất hiện dần.
+ */
+public class MetricsMBean implements DynamicMBean {
+
+    public static final String OBJECT_NAME = "vn.edu.demo.caro:type=ServerMetrics";
+    private static final String[] TIMER_FIELDS = {"count", "p50Micros", "p99Micros", "p999Micros", "maxMicros"};
+
+    private final Metrics metrics;
+
+    public MetricsMBean(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Đăng ký vào platform MBeanServer; lỗi (đã đăng ký, không có JMX) chỉ log. */
+    public static void register(Metrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(new MetricsMBean(metrics), name);
+        } catch (Exception e) {
+            System.err.println("[Metrics] Không đăng ký được JMX: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long g = metrics.gaugeValues().get(attribute);
+        if (g != null) return g;
+
+        int dot = attribute.lastIndexOf('.');
+        if (dot > 0) {
+            LatencyHistogram h = metrics.getTimer(attribute.substring(0, dot));
+            if (h != null) {
+                switch (attribute.substring(dot + 1)) {
+                    case "count": return h.getCount();
+                    case "p50Micros": return h.percentileMicros(0.50);
+                    case "p99Micros": return h.percentileMicros(0.99);
+                    case "p999Micros": return h.percentileMicros(0.999);
+                    case "maxMicros": return h.getMaxMicros();
+                    default: break;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String a : attributes) {
+            try {
+                list.add(new Attribute(a, getAttribute(a)));
+            } catch (AttributeNotFoundException ignored) {
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics chỉ đọc: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("report".equals(actionName)) return metrics.report();
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        for (String g : metrics.gaugeValues().keySet()) {
+            attrs.add(new MBeanAttributeInfo(g, "long", "gauge", true, false, false));
+        }
+        for (Map.Entry<String, LatencyHistogram> e : metrics.activeTimers().entrySet()) {
+            for (String f : TIMER_FIELDS) {
+                attrs.add(new MBeanAttributeInfo(e.getKey() + "." + f, "long", "latency", true, false, false));
+            }
+        }
+        MBeanOperationInfo report = new MBeanOperationInfo(
+                "report", "Bảng metrics dạng text", null, "java.lang.String", MBeanOperationInfo.INFO);
+        return new MBeanInfo(getClass().getName(), "Caro server metrics",
+                attrs.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[]{report}, null);
+    }
+}
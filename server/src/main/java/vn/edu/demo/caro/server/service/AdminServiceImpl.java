@@ -2,6 +2,7 @@ package vn.edu.demo.caro.server.service;
 
 import vn.edu.demo.caro.common.model.RoomInfo;
 import vn.edu.demo.caro.common.rmi.AdminService;
+import vn.edu.demo.caro.common.net.RmiSockets;
 import vn.edu.demo.caro.server.state.Room;
 import vn.edu.demo.caro.server.state.ServerState;
 
@@ -16,7 +17,7 @@ public class AdminServiceImpl extends UnicastRemoteObject implements AdminServic
     private final ServerState state;
 
     public AdminServiceImpl(ServerState state) throws RemoteException {
-        super(0);
+        super(0, RmiSockets.clientFactory(), RmiSockets.serverFactory());
         this.state = state;
     }
 
@@ -36,15 +37,15 @@ public class AdminServiceImpl extends UnicastRemoteObject implements AdminServic
     @Override
     public void broadcast(String message) throws RemoteException {
         for (var s : state.online.values()) {
-            try { s.callback.onAnnouncement("[SERVER] " + message); } catch (Exception ignored) {}
+            state.callbacks.send(s, cb -> cb.onAnnouncement("[SERVER] " + message));
         }
     }
 
     @Override
     public void warnUser(String username, String message) throws RemoteException {
         var s = state.online.get(username);
-        if (s != null && s.callback != null) {
-            try { s.callback.onWarning(message); } catch (Exception ignored) {}
+        if (s != null) {
+            state.callbacks.send(s, cb -> cb.onWarning(message));
         }
     }
 
@@ -55,14 +56,39 @@ public class AdminServiceImpl extends UnicastRemoteObject implements AdminServic
             state.userDao.banUser(username, reason, minutes);
 
             var s = state.online.remove(username);
-            if (s != null && s.callback != null) {
-                try { s.callback.onBanned("Bạn bị ban " + minutes + " phút. Lý do: " + reason); } catch (Exception ignored) {}
+            if (s != null) {
+                state.callbacks.send(s, cb -> cb.onBanned("Bạn bị ban " + minutes + " phút. Lý do: " + reason));
             }
         } catch (SQLException e) {
             throw new RemoteException("DB error: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public String getPersistenceStatus() throws RemoteException {
+        var w = state.results;
+        return "pending matches=" + w.getPendingMatches()
+                + ", pending stats=" + w.getPendingStats()
+                + ", flushed batches=" + w.getFlushedBatches()
+                + ", flushed matches=" + w.getFlushedMatches()
+                + ", failed flushes=" + w.getFailedFlushes()
+                + ", dropped matches=" + w.getDroppedMatches()
+                + ", last flush=" + w.getLastFlushMillis() + "ms"
+                + (w.getLastError() == null ? "" : ", last error=" + w.getLastError())
+                + (state.db == null ? "" : "\nDB pool: " + state.db.getPool())
+                + (state.userDao.getCache() == null ? "" : "\nUser cache: " + state.userDao.getCache());
+    }
+
+    @Override
+    public String getMatchmakingStatus() throws RemoteException {
+        return state.matchmaker.toString();
+    }
+
+    @Override
+    public String getMetrics() throws RemoteException {
+        return state.metrics.report();
+    }
+
     private RoomInfo toInfo(Room r) {
         return new RoomInfo(
             r.id, r.name, r.owner,
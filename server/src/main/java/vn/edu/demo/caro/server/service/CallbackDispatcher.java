@@ -0,0 +1,203 @@
+package vn.edu.demo.caro.server.service;
+
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.server.state.Mailbox;
+import vn.edu.demo.caro.server.state.OnlineSession;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Gửi callback tới client qua Mailbox của từng session.
+ *
+ * - Số thread cố định (không còn newCachedThreadPool đẻ thread vô hạn khi burst).
+ * - Mỗi mailbox tại 1 thời điểm chỉ có 1 worker drain => event của cùng 1 user giữ đúng thứ tự.
+ * - Drain theo lô rồi trả worker lại pool, để 1 client chậm không chiếm worker mãi.
+ * - Client làm mailbox tràn hoặc lỗi liên tiếp quá nhiều lần bị ngắt (evictionHandler);
+ *   LivenessMonitor ngắt thêm client im lặng quá lâu qua {@link #evict}.
+ */
+public class CallbackDispatcher {
+
+    public static final int MAILBOX_CAPACITY = Integer.getInteger("caro.callback.mailbox", 256);
+    private static final int BATCH = 32;
+    private static final int MAX_CONSECUTIVE_FAILURES = Integer.getInteger("caro.callback.maxFailures", 3);
+
+    private final ExecutorService workers;
+    private volatile Consumer<OnlineSession> evictionHandler = s -> {};
+
+    // ===== Metrics =====
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong(); // tin chưa gửi bị bỏ khi client bị ngắt
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong evictedOverflow = new AtomicLong();
+    private final AtomicLong evictedFailures = new AtomicLong();
+    private final AtomicLong evictedTimeout = new AtomicLong();
+    private final AtomicLong failedCallNanos = new AtomicLong();   // thời gian worker kẹt trong các lời gọi lỗi
+    private final AtomicLong deadDetectMillis = new AtomicLong();  // tổng (lúc ngắt - lần gửi thành công cuối)
+    private final AtomicLong maxDeadDetectMillis = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public CallbackDispatcher(int threads) {
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "callback-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Dừng worker sau khi giao xong việc đã xếp; gửi thêm sau đó bị bỏ qua (không ném lỗi cho bên gửi). */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /** Được gọi (trên worker, không giữ khóa nào) khi 1 session bị ngắt vì không theo kịp. */
+    public void setEvictionHandler(Consumer<OnlineSession> handler) {
+        this.evictionHandler = handler;
+    }
+
+    public void send(OnlineSession s, Mailbox.Call call) {
+        offer(s, new Mailbox.Envelope(Mailbox.Kind.NORMAL, null, call));
+    }
+
+    /** Chỉ giữ bản mới nhất theo key nếu client chưa nhận kịp bản trước. */
+    public void sendLatest(OnlineSession s, String key, Mailbox.Call call) {
+        offer(s, new Mailbox.Envelope(Mailbox.Kind.LATEST, key, call));
+    }
+
+    /** Có thể bị bỏ khi mailbox đầy (chat). */
+    public void sendDroppable(OnlineSession s, Mailbox.Call call) {
+        offer(s, new Mailbox.Envelope(Mailbox.Kind.DROPPABLE, null, call));
+    }
+
+    private void offer(OnlineSession s, Mailbox.Envelope e) {
+        switch (s.mailbox.offer(e)) {
+            case SCHEDULE:
+                schedule(s);
+                break;
+            case COALESCED:
+                coalesced.incrementAndGet();
+                break;
+            case DROPPED:
+                dropped.incrementAndGet();
+                break;
+            case OVERFLOW:
+                onEvicted(s, "mailbox đầy", evictedOverflow);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void schedule(OnlineSession s) {
+        try {
+            workers.execute(() -> drain(s));
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    private void drain(OnlineSession s) {
+        List<Mailbox.Envelope> batch = s.mailbox.pollBatch(BATCH);
+        if (batch.isEmpty()) return;
+
+        for (int i = 0; i < batch.size(); i++) {
+            Mailbox.Envelope e = batch.get(i);
+            ClientCallback cb = s.callback;
+            // session không có callback thì không bao giờ gửi được => ngắt như client chết
+            if (cb == null && s.mailbox.close()) onEvicted(s, "không có callback", evictedFailures);
+            if (cb == null || s.mailbox.isClosed()) {
+                // mailbox đã đóng (close nhả cờ scheduled, tin còn trong hàng đã đếm): bỏ nốt phần còn lại của lô
+                discarded.addAndGet(batch.size() - i);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                e.call.run(cb);
+                delivered.incrementAndGet();
+                s.mailbox.consecutiveFailures = 0;
+                s.lastDeliveryMillis = System.currentTimeMillis();
+            } catch (Exception ex) {
+                failed.incrementAndGet();
+                failedCallNanos.addAndGet(System.nanoTime() - start);
+                System.err.println("[Callback error] user=" + s.username + " - " + ex.getMessage());
+                if (++s.mailbox.consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                    if (s.mailbox.close()) onEvicted(s, "lỗi callback liên tiếp", evictedFailures);
+                    discarded.addAndGet(batch.size() - i - 1);
+                    return;
+                }
+            }
+            long lat = System.nanoTime() - e.enqueuedNanos;
+            totalLatencyNanos.addAndGet(lat);
+            maxLatencyNanos.accumulateAndGet(lat, Math::max);
+        }
+
+        // còn tin => xếp lại cuối pool cho công bằng giữa các client
+        schedule(s);
+    }
+
+    /** Ngắt session từ bên ngoài (client không phản hồi heartbeat). false nếu đã bị ngắt trước đó. */
+    public boolean evict(OnlineSession s, String why) {
+        if (!s.mailbox.close()) return false;
+        onEvicted(s, why, evictedTimeout);
+        return true;
+    }
+
+    private void onEvicted(OnlineSession s, String why, AtomicLong reason) {
+        evicted.incrementAndGet();
+        reason.incrementAndGet();
+        discarded.addAndGet(s.mailbox.getDiscarded());
+        long silent = Math.max(0, System.currentTimeMillis() - s.lastDeliveryMillis);
+        deadDetectMillis.addAndGet(silent);
+        maxDeadDetectMillis.accumulateAndGet(silent, Math::max);
+        System.err.println("[Callback] ngắt client user=" + s.username + " (" + why + ", im lặng " + silent + "ms)");
+        try {
+            workers.execute(() -> evictionHandler.accept(s));
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public long getDelivered() { return delivered.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getCoalesced() { return coalesced.get(); }
+    public long getDropped() { return dropped.get(); }
+    /** Tin chưa gửi bị bỏ vì client bị ngắt (còn trong mailbox lúc đóng + phần còn lại của lô đang drain). */
+    public long getDiscarded() { return discarded.get(); }
+    public long getEvicted() { return evicted.get(); }
+    public long getEvictedOverflow() { return evictedOverflow.get(); }
+    public long getEvictedFailures() { return evictedFailures.get(); }
+    public long getEvictedTimeout() { return evictedTimeout.get(); }
+    /** Tổng thời gian worker chờ các lời gọi lỗi (chủ yếu là client đã chết). */
+    public long getFailedCallMillis() { return failedCallNanos.get() / 1_000_000; }
+    public long getMaxDeadDetectMillis() { return maxDeadDetectMillis.get(); }
+
+    /** Trung bình từ lần gửi thành công cuối tới lúc ngắt. */
+    public double getAvgDeadDetectMillis() {
+        long n = evicted.get();
+        return n == 0 ? 0.0 : (double) deadDetectMillis.get() / n;
+    }
+    public double getMaxLatencyMillis() { return maxLatencyNanos.get() / 1_000_000.0; }
+
+    public double getAvgLatencyMillis() {
+        long n = delivered.get() + failed.get();
+        return n == 0 ? 0.0 : totalLatencyNanos.get() / 1_000_000.0 / n;
+    }
+
+    /** Tổng số tin đang chờ gửi của các session. */
+    public static int queuedTotal(Iterable<OnlineSession> sessions) {
+        int n = 0;
+        for (OnlineSession s : sessions) n += s.mailbox.size();
+        return n;
+    }
+}
@@ -0,0 +1,134 @@
+package vn.edu.demo.caro.server.service;
+
+import vn.edu.demo.caro.common.model.ChatMessage;
+import vn.edu.demo.caro.server.state.OnlineSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gom chat global theo cửa sổ ngắn rồi gửi 1 lô / client.
+ *
+ * - sendGlobalChat chỉ thêm vào hàng (không duyệt user, không sort).
+ * - Thread "chat-batcher": có tin thì chờ thêm {@code windowMillis}, lấy hết rồi gửi
+ *   1 onGlobalChatBatch cho mỗi session => số callback = số lô x số user, không phải số tin x số user.
+ * - Người nhận: duyệt thẳng view của state.online (ConcurrentHashMap), không copy / sort.
+ * - Lô gửi dạng droppable: client chậm bị bỏ chat cũ chứ không bị ngắt.
+ */
+public class ChatBatcher {
+
+    private static final int MAX_BATCH = 100;
+
+    private final CallbackDispatcher callbacks;
+    private final Iterable<OnlineSession> recipients;
+    private final long windowMillis;
+
+    // ===== guarded by this =====
+    private List<ChatMessage> pending = new ArrayList<>();
+    private long oldestPendingNanos = 0;
+    private boolean running = true;
+
+    // ===== Metrics =====
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong deliveries = new AtomicLong();
+    private final AtomicLong totalDelayNanos = new AtomicLong();
+    private final AtomicLong maxDelayNanos = new AtomicLong();
+
+    public ChatBatcher(CallbackDispatcher callbacks, Iterable<OnlineSession> recipients, long windowMillis) {
+        this.callbacks = callbacks;
+        this.recipients = recipients;
+        this.windowMillis = windowMillis;
+
+        Thread t = new Thread(this::runLoop, "chat-batcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public synchronized void submit(ChatMessage msg) {
+        if (pending.isEmpty()) {
+            oldestPendingNanos = System.nanoTime();
+            notifyAll();
+        }
+        pending.add(msg);
+        messages.incrementAndGet();
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        notifyAll();
+    }
+
+    private void runLoop() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (running && pending.isEmpty()) wait();
+                    if (!running) return;
+                }
+                if (windowMillis > 0) Thread.sleep(windowMillis);
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("[ChatBatcher] " + e.getMessage());
+            }
+        }
+    }
+
+    // public để bench gọi trực tiếp (windowMillis = 0 vẫn chạy bình thường)
+    public void flush() {
+        List<ChatMessage> all;
+        long since;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            all = pending;
+            since = oldestPendingNanos;
+            pending = new ArrayList<>();
+        }
+
+        // burst rất lớn => chia nhiều lô để 1 callback không quá nặng
+        for (int i = 0; i < all.size(); i += MAX_BATCH) {
+            List<ChatMessage> batch = Collections.unmodifiableList(
+                    new ArrayList<>(all.subList(i, Math.min(all.size(), i + MAX_BATCH))));
+            long n = 0;
+            for (OnlineSession s : recipients) {
+                if (s.callback == null) continue;
+                callbacks.sendDroppable(s, cb -> cb.onGlobalChatBatch(batch));
+                n++;
+            }
+            batches.incrementAndGet();
+            deliveries.addAndGet(n);
+        }
+
+        long delay = System.nanoTime() - since;
+        flushes.incrementAndGet();
+        totalDelayNanos.addAndGet(delay);
+        maxDelayNanos.accumulateAndGet(delay, Math::max);
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public synchronized int getPending() { return pending.size(); }
+    public long getMessages() { return messages.get(); }
+    public long getBatches() { return batches.get(); }
+    public long getDeliveries() { return deliveries.get(); }
+    public double getMaxDelayMillis() { return maxDelayNanos.get() / 1_000_000.0; }
+
+    /** Thời gian tin cũ nhất của lô nằm chờ trước khi được xếp vào mailbox. */
+    public double getAvgDelayMillis() {
+        long n = flushes.get();
+        return n == 0 ? 0.0 : totalDelayNanos.get() / 1_000_000.0 / n;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("messages=%d, batches=%d, deliveries=%d, avg delay=%.2fms, max delay=%.2fms",
+                getMessages(), getBatches(), getDeliveries(), getAvgDelayMillis(), getMaxDelayMillis());
+    }
+}
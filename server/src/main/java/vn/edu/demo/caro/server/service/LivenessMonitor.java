@@ -0,0 +1,108 @@
+package vn.edu.demo.caro.server.service;
+
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.server.state.OnlineSession;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phát hiện client chết trong thời gian có giới hạn.
+ *
+ * - Mỗi session có lastDeliveryMillis (CallbackDispatcher cập nhật khi callback thành công).
+ * - Thread "liveness" quét mỗi {@code intervalMillis}: im lặng >= interval thì gửi onHeartbeat
+ *   (LATEST theo key nên không bao giờ chồng nhiều heartbeat); im lặng >= {@code timeoutMillis}
+ *   thì ngắt qua {@link CallbackDispatcher#evict} => evictionHandler xử lý như logout (rời phòng, báo bạn bè).
+ * - Lời gọi RMI ra client bị giới hạn timeoutMillis/2 (sun.rmi.transport.tcp.responseTimeout, nếu chưa đặt)
+ *   để worker không kẹt vô hạn với client đã mất mạng.
+ *
+ * => client chết bị ngắt chậm nhất sau khoảng timeoutMillis + intervalMillis.
+ */
+public class LivenessMonitor {
+
+    private static final String RMI_RESPONSE_TIMEOUT = "sun.rmi.transport.tcp.responseTimeout";
+    private static final String HEARTBEAT_KEY = "heartbeat";
+
+    private final CallbackDispatcher callbacks;
+    private final Iterable<OnlineSession> sessions;
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private boolean running = true; // guarded by this
+
+    // ===== Metrics =====
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong maxTickNanos = new AtomicLong();
+
+    public LivenessMonitor(CallbackDispatcher callbacks, Iterable<OnlineSession> sessions,
+                           long intervalMillis, long timeoutMillis) {
+        if (intervalMillis <= 0 || timeoutMillis <= intervalMillis)
+            throw new IllegalArgumentException("cần 0 < intervalMillis < timeoutMillis");
+        this.callbacks = callbacks;
+        this.sessions = sessions;
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+
+        if (System.getProperty(RMI_RESPONSE_TIMEOUT) == null) {
+            System.setProperty(RMI_RESPONSE_TIMEOUT, String.valueOf(timeoutMillis / 2));
+        }
+
+        Thread t = new Thread(this::runLoop, "liveness");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        notifyAll();
+    }
+
+    private void runLoop() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    if (running) wait(intervalMillis);
+                    if (!running) return;
+                }
+                tick(System.currentTimeMillis());
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("[Liveness] " + e);
+            }
+        }
+    }
+
+    /** 1 lượt quét (public để test / bench gọi trực tiếp). */
+    public void tick(long nowMillis) {
+        long start = System.nanoTime();
+        for (OnlineSession s : sessions) {
+            if (s.mailbox.isClosed()) continue;
+            long silent = nowMillis - s.lastDeliveryMillis;
+            if (silent >= timeoutMillis) {
+                if (callbacks.evict(s, "không phản hồi heartbeat")) timeouts.incrementAndGet();
+            } else if (silent >= intervalMillis) {
+                callbacks.sendLatest(s, HEARTBEAT_KEY, ClientCallback::onHeartbeat);
+                heartbeats.incrementAndGet();
+            }
+        }
+        ticks.incrementAndGet();
+        maxTickNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public long getIntervalMillis() { return intervalMillis; }
+    public long getTimeoutMillis() { return timeoutMillis; }
+    public long getTicks() { return ticks.get(); }
+    public long getHeartbeats() { return heartbeats.get(); }
+    public long getTimeouts() { return timeouts.get(); }
+    public double getMaxTickMillis() { return maxTickNanos.get() / 1_000_000.0; }
+
+    @Override
+    public String toString() {
+        return String.format("interval=%dms, timeout=%dms, heartbeats=%d, timeouts=%d, max tick=%.2fms",
+                intervalMillis, timeoutMillis, getHeartbeats(), getTimeouts(), getMaxTickMillis());
+    }
+}
@@ -8,111 +8,361 @@ import vn.edu.demo.caro.common.model.Enums.RoomStatus;
 import vn.edu.demo.caro.common.model.Enums.UserStatus;
 import vn.edu.demo.caro.common.rmi.ClientCallback;
 import vn.edu.demo.caro.common.rmi.LobbyService;
+import vn.edu.demo.caro.common.util.GameRules;
+import vn.edu.demo.caro.server.dao.MatchDao;
 import vn.edu.demo.caro.server.dao.UserDao;
+import vn.edu.demo.caro.server.metrics.Instrumented;
+import vn.edu.demo.caro.server.metrics.LatencyHistogram;
+import vn.edu.demo.caro.server.state.ChatRingBuffer;
+import vn.edu.demo.caro.server.state.Mailbox;
+import vn.edu.demo.caro.server.state.OnlineSession;
 import vn.edu.demo.caro.server.state.Room;
 import vn.edu.demo.caro.server.state.ServerState;
+import vn.edu.demo.caro.server.store.RoomJournal;
 import vn.edu.demo.caro.common.model.UserPublicProfile.FriendStatus;
+import vn.edu.demo.caro.common.net.RmiSockets;
 
+import java.io.IOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-public class LobbyServiceImpl extends UnicastRemoteObject implements LobbyService {
+public class LobbyServiceImpl implements LobbyService {
 
     private final ServerState state;
 
-    
-    private final ExecutorService callbackExecutor = Executors.newCachedThreadPool();
+    // Mặt ngoài của service (RMI + gateway): proxy đo thời gian từng method vào "lobby.<method>".
+    // Chỉ export / đưa cho gateway cái này, không export chính LobbyServiceImpl.
+    public final LobbyService remote;
+    private final LatencyHistogram endGameTimer;
+
+
+    // ===== Locking =====
+    // Không còn khóa toàn cục (synchronized trên service) nữa.
+    // - Mọi trạng thái của 1 phòng (Room + các map theo roomId bên dưới) chỉ được đọc/ghi
+    //   khi đang giữ synchronized (room).
+    // - Các cấu trúc toàn cục (state.rooms, state.online) là ConcurrentHashMap.
+    // - Gọi DB (login/register/friends) không cần khóa gì cả.
+    // - Không bao giờ giữ khóa 2 phòng cùng lúc => không deadlock.
+
     // ===== Pending decisions (approval-based) =====
-    private final Map<String, PendingDecision> pendingUndo = new HashMap<>();
+    private final Map<String, PendingDecision> pendingUndo = new ConcurrentHashMap<>();
     // "Redo" giờ là "đề nghị hòa" nhưng vẫn dùng pendingRedo để không phải đổi interface
-    private final Map<String, PendingDecision> pendingRedo = new HashMap<>();
-    private final Map<String, PendingDecision> pendingRematch = new HashMap<>();
+    private final Map<String, PendingDecision> pendingRedo = new ConcurrentHashMap<>();
+    private final Map<String, PendingDecision> pendingRematch = new ConcurrentHashMap<>();
 // private boolean waitingRematchDecision = false;
 
-// ===== Global chat history =====
-private static final int GLOBAL_CHAT_MAX = 200;
-private final Deque<ChatMessage> globalChatHistory = new ArrayDeque<>();
+// ===== Global chat history (ring buffer không khóa, client phân trang qua fetchGlobalChat) =====
+private static final int GLOBAL_CHAT_MAX = 1024;
+private static final int GLOBAL_CHAT_PAGE_MAX = 100;
+private final ChatRingBuffer globalChatHistory = new ChatRingBuffer(GLOBAL_CHAT_MAX);
 
     // ===== Move history =====
     // NOTE: redoStack không còn dùng cho "Redo=Draw offer", nhưng giữ lại để không vỡ code cũ
-    private final Map<String, Deque<MoveRecord>> moveHistory = new HashMap<>();
-    private final Map<String, Deque<MoveRecord>> redoStack = new HashMap<>();
+    private final Map<String, Deque<MoveRecord>> moveHistory = new ConcurrentHashMap<>();
+    private final Map<String, Deque<MoveRecord>> redoStack = new ConcurrentHashMap<>();
 
     // post-game choice: roomId -> (username -> choice)
-    private final Map<String, Map<String, PostGameChoice>> postGameChoices = new HashMap<>();
+    private final Map<String, Map<String, PostGameChoice>> postGameChoices = new ConcurrentHashMap<>();
+
+    private static final int LEADERBOARD_TOP = 50;
+
+    // ===== Room list (delta + version) =====
+    private final RoomListTracker roomList = new RoomListTracker();
+    private final RoomListBroadcaster roomListOut;
+
+    // Bạn bè của user đang online (nạp khi login / getFriends) => báo đổi trạng thái không cần query DB
+    private final Map<String, Set<String>> friendsOf = new ConcurrentHashMap<>();
 
-    // ===== Turn timeout checker =====
-    private final ScheduledExecutorService timeoutExec =
-            Executors.newSingleThreadScheduledExecutor(r -> {
-                Thread t = new Thread(r, "turn-timeout-checker");
-                t.setDaemon(true);
-                return t;
-            });
+    // ===== Turn timeout (timing wheel) =====
+    // roomId -> handle của deadline lượt hiện tại; chỉ đổi khi giữ synchronized (room)
+    private final Map<String, TurnTimer.Timeout> turnTimeouts = new ConcurrentHashMap<>();
+    private final TurnTimer turnTimer = new TurnTimer(20, 1024, this::onTurnExpired);
+
+    // ===== Journal phòng (null = tắt) =====
+    // Ghi sau mỗi thay đổi, khi đang giữ synchronized (room): khóa phòng -> khóa journal, không bao giờ ngược lại
+    private volatile RoomJournal journal;
+    // Phòng dựng lại mà người chơi chưa đăng nhập lại sau khoảng này thì xử lý như họ đã rời phòng
+    private static final long RECLAIM_MILLIS = Long.getLong("caro.rooms.reclaimMs", 120_000L);
+    // Deadline đã qua (server tắt lâu hơn 1 lượt) => cho lại ít nhất chừng này (không quá thời gian 1 lượt)
+    private static final int RECOVERY_GRACE_SECONDS = Integer.getInteger("caro.rooms.graceSeconds", 30);
+    // shutdown() => thread "rooms-reclaim" thôi chờ (không interrupt: nó có thể đang ghi journal)
+    private final CountDownLatch stopped = new CountDownLatch(1);
 
     public LobbyServiceImpl(ServerState state) throws RemoteException {
-        super(0);
         this.state = state;
-        startTimeoutChecker();
+        this.remote = Instrumented.wrap(LobbyService.class, this, state.metrics, "lobby.");
+        this.endGameTimer = state.metrics.timer("game.endGame");
+        state.metrics.gauge("turnTimer.pending", turnTimer::getPending);
+        state.metrics.gauge("turnTimer.maxLateMillis", turnTimer::getMaxLateMillis);
+        this.roomListOut = new RoomListBroadcaster(state.callbacks, state.online.values());
+        state.metrics.gauge("roomList.pending", roomListOut::getPending);
+        state.metrics.gauge("roomList.deltas", roomListOut::getDeltas);
+        state.metrics.gauge("roomList.batches", roomListOut::getBatches);
+        state.callbacks.setEvictionHandler(this::evictSession);
+        state.matchmaker.setMatchHandler(this::onMatched);
+        // chỉ số đổi => cập nhật bảng xếp hạng RAM, chỉ đẩy khi top hiển thị thực sự đổi
+        state.results.setStatsListener(st -> {
+            UserProfile p = new UserProfile(st.username, st.wins, st.losses, st.draws, st.elo);
+            if (state.leaderboard.put(p, LEADERBOARD_TOP)) broadcastLeaderboard();
+        });
     }
 
     // ============================================================
     // Timeout
     // ============================================================
-    private void startTimeoutChecker() {
-        timeoutExec.scheduleAtFixedRate(() -> {
+    // Gọi từ thread "turn-timer" khi 1 deadline đến hạn (không giữ khóa của wheel).
+    private void onTurnExpired(TurnTimer.Timeout t) {
+        Room room = state.rooms.get(t.roomId);
+        if (room == null) return;
+
+        boolean changed = false;
+        synchronized (room) {
+            // handle cũ (đã bị thay bởi nước đi mới / hủy) => bỏ qua
+            if (!turnTimeouts.remove(room.id, t)) return;
+            room.turnDeadlineMillis = 0L; // chặn gọi nhiều lần
+
+            if (room.status != RoomStatus.PLAYING) return;
+
+            String loser = room.turn;
+            if (loser == null || loser.isBlank()) return;
+
             try {
-                checkAllRoomsForTimeout();
-            } catch (Exception ignored) {
+                endGame(room, opponentOf(room, loser), GameEndReason.TIMEOUT);
+            } catch (RemoteException e) {
+                System.err.println("[Timeout] room=" + room.id + " - " + e.getMessage());
             }
-        }, 300, 300, TimeUnit.MILLISECONDS);
+            changed = true;
+        }
+
+        if (changed) broadcastRoom(room);
     }
 
-    private void checkAllRoomsForTimeout() throws RemoteException {
-        synchronized (this) {
-            long now = System.currentTimeMillis();
+    public TurnTimer getTurnTimer() {
+        return turnTimer;
+    }
 
-            for (Room room : state.rooms.values()) {
-                if (room == null) continue;
-                if (room.status != RoomStatus.PLAYING) continue;
-                if (!room.timed) continue;
+    /** Export {@link #remote} qua RMI (socket nén của RmiSockets); trả về stub để bind vào registry. */
+    public Remote export() throws RemoteException {
+        return UnicastRemoteObject.exportObject(remote, 0, RmiSockets.clientFactory(), RmiSockets.serverFactory());
+    }
 
-                String turnUser = room.turn;
-                if (turnUser == null || turnUser.isBlank()) continue;
+    /**
+     * Tắt server, bước 1: ngừng nhận lời gọi RMI và dừng các thread của service (turn-timer, room-list,
+     * rooms-reclaim). Từ đây không ghi journal nữa; journal do bên mở đóng (sau khi ServerState đã ghi xong).
+     */
+    public void shutdown() {
+        try {
+            UnicastRemoteObject.unexportObject(remote, true);
+        } catch (NoSuchObjectException ignored) {
+            // chưa export (chạy trong JVM / chỉ qua gateway)
+        }
+        stopped.countDown();
+        turnTimer.shutdown();
+        roomListOut.shutdown();
+        journal = null;
+    }
 
-                long deadline = room.turnDeadlineMillis;
-                if (deadline <= 0) continue;
+    // ============================================================
+    // Journal phòng: khôi phục sau restart
+    // ============================================================
+    /**
+     * Dựng lại các phòng từ journal (gọi 1 lần lúc khởi động, trước khi export), từ đó mọi thay đổi phòng
+     * được ghi vào journal. Trả về số phòng dựng lại.
+     */
+    public int recoverRooms(RoomJournal journal) {
+        long now = System.currentTimeMillis();
+        List<String> restored = new ArrayList<>();
+        for (RoomJournal.RoomImage img : journal.takeRecovered()) {
+            Room room = restoreRoom(img, now);
+            state.rooms.put(room.id, room);
+            broadcastRoom(room); // presence + room list
+            restored.add(room.id);
+        }
+        this.journal = journal;
+
+        if (!restored.isEmpty()) {
+            Thread t = new Thread(() -> reclaimRooms(restored), "rooms-reclaim");
+            t.setDaemon(true);
+            t.start();
+        }
+        return restored.size();
+    }
 
-                if (now > deadline) {
-                    String loser = turnUser;
-                    String winner = opponentOf(room, loser);
+    private Room restoreRoom(RoomJournal.RoomImage img, long now) {
+        RoomCreateRequest req = new RoomCreateRequest();
+        req.setRoomName(img.name);
+        req.setBoardSize(img.boardSize);
+        req.setBlockTwoEnds(img.blockTwoEnds);
+        req.setPasswordEnabled(img.hasPassword);
+        req.setPassword(img.password);
+        req.setTimed(img.timed);
+        req.setTimeLimitSeconds(img.timeLimitSeconds);
+
+        Room room = new Room(img.id, img.owner, req, Instant.ofEpochMilli(img.createdAtMillis));
+        synchronized (room) {
+            room.players.clear();
+            room.players.addAll(img.players);
+            room.status = img.status;
+            room.playerX = img.playerX;
+            room.playerO = img.playerO;
+            room.turn = img.turn;
+            room.gameStartMillis = img.gameStartMillis;
+            room.seq = img.seq;
+
+            Deque<MoveRecord> hist = new ArrayDeque<>();
+            for (int i = 0; i < img.moveCount; i++) {
+                int row = img.cells[i] / img.boardSize, col = img.cells[i] % img.boardSize;
+                Mark mark = (i & 1) == 0 ? Mark.X : Mark.O;
+                room.board[row][col] = mark;
+                hist.push(new MoveRecord(row, col, mark, mark == Mark.X ? room.playerX : room.playerO, i + 1, img.moveMillis[i]));
+            }
+            room.moveNo = img.moveCount;
+            moveHistory.put(room.id, hist);
+            redoStack.put(room.id, new ArrayDeque<>());
+
+            if (img.undoFrom != null) pendingUndo.put(room.id, new PendingDecision(img.undoFrom, img.undoTo));
+            if (img.drawFrom != null) pendingRedo.put(room.id, new PendingDecision(img.drawFrom, img.drawTo));
+            if (!img.postGameChoices.isEmpty()) postGameChoices.put(room.id, new HashMap<>(img.postGameChoices));
+
+            // giữ deadline tuyệt đối; đã qua / sắp hết (server tắt lâu) thì cho thêm để người chơi kịp đăng nhập lại
+            if (room.status == RoomStatus.PLAYING && room.timed && room.turn != null) {
+                int grace = Math.min(room.timeLimitSeconds, RECOVERY_GRACE_SECONDS);
+                room.turnDeadlineMillis = Math.max(img.turnDeadlineMillis, now + grace * 1000L);
+                turnTimeouts.put(room.id, turnTimer.arm(room.id, room.turnDeadlineMillis));
+            }
+        }
+        return room;
+    }
 
-                    room.turnDeadlineMillis = 0L; // chặn gọi nhiều lần
-                    endGame(room, winner, GameEndReason.TIMEOUT);
-                    broadcastRooms();
+    // Thread "rooms-reclaim": ai chưa quay lại sau RECLAIM_MILLIS thì rời phòng như bị ngắt kết nối
+    // (ván đang đánh => đối thủ nhận ABORT, phòng hết người => xóa)
+    private void reclaimRooms(List<String> roomIds) {
+        try {
+            if (stopped.await(RECLAIM_MILLIS, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException e) {
+            return;
+        }
+        for (String roomId : roomIds) {
+            if (stopped.getCount() == 0) return;
+            Room room = state.rooms.get(roomId);
+            if (room == null) continue;
+            for (String u : room.players) {
+                if (state.online.containsKey(u)) continue;
+                try {
+                    leaveRoom(u, roomId);
+                } catch (RemoteException e) {
+                    System.err.println("[Rooms] reclaim room=" + roomId + " user=" + u + " - " + e.getMessage());
                 }
             }
         }
     }
 
+    // Đăng nhập lại khi ván của mình vẫn còn (phòng dựng lại sau restart, client mở lại): đưa về bàn cờ
+    private void resumeGame(String username) {
+        String roomId = state.presence.roomOf(username);
+        Room room = roomId == null ? null : state.rooms.get(roomId);
+        if (room == null) return;
+
+        synchronized (room) {
+            if (room.status != RoomStatus.PLAYING || !room.players.contains(username)) return;
+            Mark mark = username.equals(room.playerX) ? Mark.X : Mark.O;
+            pushGameStart(room, username, mark, username.equals(room.turn));
+            GameSnapshot snap = buildSnapshot(room);
+            safeCallbackLatest(username, "snapshot:" + room.id, cb -> cb.onBoardReset(snap));
+        }
+    }
+
+    // caller phải giữ synchronized (room) (hoặc phòng chưa nằm trong state.rooms)
+    private void journalRoom(Room room) {
+        RoomJournal j = journal;
+        if (j == null) return;
+        try {
+            if (room.status == RoomStatus.CLOSED) j.removeRoom(room.id);
+            else j.saveRoom(imageOf(room));
+        } catch (IOException e) {
+            // không chặn ván đang đánh: restart sau đó chỉ mất thay đổi chưa ghi được
+            System.err.println("[Journal] room=" + room.id + " - " + e.getMessage());
+        }
+    }
+
+    // caller phải giữ synchronized (room); gọi sau khi đã đổi lượt + resetDeadline
+    private void journalMove(Room room, MoveRecord m) {
+        RoomJournal j = journal;
+        if (j == null) return;
+        try {
+            j.appendMove(room.id, m.row * room.boardSize + m.col, m.atMillis, room.timed ? room.turnDeadlineMillis : 0L);
+        } catch (IOException e) {
+            System.err.println("[Journal] room=" + room.id + " - " + e.getMessage());
+        }
+    }
+
+    // caller phải giữ synchronized (room)
+    private RoomJournal.RoomImage imageOf(Room room) {
+        RoomJournal.RoomImage img = new RoomJournal.RoomImage();
+        img.id = room.id;
+        img.name = room.name;
+        img.owner = room.owner;
+        img.createdAtMillis = room.createdAt.toEpochMilli();
+        img.status = room.status;
+        img.players.addAll(room.players);
+
+        img.boardSize = room.boardSize;
+        img.blockTwoEnds = room.blockTwoEnds;
+        img.hasPassword = room.hasPassword;
+        img.password = room.password;
+        img.timed = room.timed;
+        img.timeLimitSeconds = room.timeLimitSeconds;
+        img.turnDeadlineMillis = room.turnDeadlineMillis;
+
+        img.playerX = room.playerX;
+        img.playerO = room.playerO;
+        img.turn = room.turn;
+        img.gameStartMillis = room.gameStartMillis;
+        img.seq = room.seq;
+
+        Deque<MoveRecord> hist = moveHistory.get(room.id);
+        if (hist != null) {
+            for (Iterator<MoveRecord> it = hist.descendingIterator(); it.hasNext(); ) {
+                MoveRecord m = it.next();
+                img.addMove(m.row * room.boardSize + m.col, m.atMillis);
+            }
+        }
+
+        PendingDecision undo = pendingUndo.get(room.id);
+        if (undo != null) {
+            img.undoFrom = undo.from;
+            img.undoTo = undo.to;
+        }
+        PendingDecision draw = pendingRedo.get(room.id);
+        if (draw != null) {
+            img.drawFrom = draw.from;
+            img.drawTo = draw.to;
+        }
+        Map<String, PostGameChoice> choices = postGameChoices.get(room.id);
+        if (choices != null) img.postGameChoices.putAll(choices);
+        return img;
+    }
+
     // ============================================================
     // Rematch / Return to lobby (legacy API)
     // ============================================================
     @Override
-    public synchronized void requestRematch(String roomId, String from) throws RemoteException {
+    public void requestRematch(String roomId, String from) throws RemoteException {
         submitPostGameChoice(roomId, from, Enums.PostGameChoice.REMATCH);
     }
 
     @Override
-    public synchronized void respondRematch(String roomId, String responder, boolean accept) throws RemoteException {
+    public void respondRematch(String roomId, String responder, boolean accept) throws RemoteException {
         submitPostGameChoice(roomId, responder, accept ? Enums.PostGameChoice.REMATCH : Enums.PostGameChoice.RETURN);
     }
 
@@ -123,7 +373,7 @@ private final Deque<ChatMessage> globalChatHistory = new ArrayDeque<>();
 
     // [SỬA] Cập nhật logic hàm register
     @Override
-    public synchronized boolean register(String username, String password) throws RemoteException {
+    public boolean register(String username, String password) throws RemoteException {
         try {
             // 1. Validate dữ liệu đầu vào
             if (username == null || username.trim().isEmpty())
@@ -156,7 +406,7 @@ private final Deque<ChatMessage> globalChatHistory = new ArrayDeque<>();
     // ...
 
  @Override
-    public synchronized UserProfile login(String username, String password, ClientCallback callback) throws RemoteException {
+    public UserProfile login(String username, String password, ClientCallback callback) throws RemoteException {
         try {
             Objects.requireNonNull(username);
             Objects.requireNonNull(password);
@@ -180,7 +430,8 @@ private final Deque<ChatMessage> globalChatHistory = new ArrayDeque<>();
             }
 
             // 2. Lưu Session Online
-            state.online.put(finalUsername, new vn.edu.demo.caro.server.state.OnlineSession(finalUsername, callback));
+            var old = state.online.put(finalUsername, new vn.edu.demo.caro.server.state.OnlineSession(finalUsername, callback));
+            if (old != null) old.mailbox.close(); // session cũ (đăng nhập lại) không nhận thêm callback
 
             // [SỬA QUAN TRỌNG] Dùng finalUsername thay cho username trong các lambda bên dưới
             
@@ -188,19 +439,35 @@ private final Deque<ChatMessage> globalChatHistory = new ArrayDeque<>();
             safeCallback(finalUsername, cb -> cb.onOnlineUsersUpdated(sortedOnlineUsers()));
             
             // Gửi danh sách phòng
-            safeCallback(finalUsername, cb -> cb.onRoomListUpdated(allRoomsInfo()));
+            safeCallback(finalUsername, cb -> cb.onRoomListDelta(roomList.full()));
             
             // Gửi bảng xếp hạng
-            safeCallback(finalUsername, cb -> cb.onLeaderboardUpdated(state.userDao.topElo(50)));
+            safeCallback(finalUsername, cb -> cb.onLeaderboardUpdated(state.leaderboard.top(LEADERBOARD_TOP)));
+
+            // Đang có ván dở (vd. phòng dựng lại từ journal sau restart) => vào lại bàn cờ
+            resumeGame(finalUsername);
             
             // Gửi danh sách bạn bè (Lỗi cũ nằm ở dòng này do dùng username thường)
-            safeCallback(finalUsername, cb -> cb.onFriendListUpdated(getFriends(finalUsername)));
+            // nạp ngay (không để trong lambda) để friendsOf có sẵn cho notifyFriends bên dưới
+            try {
+                List<FriendInfo> friends = getFriends(finalUsername);
+                safeCallback(finalUsername, cb -> cb.onFriendListUpdated(friends));
+            } catch (RemoteException e) {
+                System.err.println("[Login] friends user=" + finalUsername + " - " + e.getMessage());
+            }
 
             // Thông báo cho MỌI NGƯỜI là có người mới online
             broadcastOnlineUsers();
+            notifyFriends(finalUsername);
 
             // 3. Trả về Profile
-            return new UserProfile(rec.username, rec.wins, rec.losses, rec.draws, rec.elo);
+            // chỉ số trong RAM có thể mới hơn DB (write-behind)
+            var st = state.results.seed(rec);
+            // user mới đăng ký (hoặc index chưa nạp được lúc khởi động)
+            if (state.leaderboard.putIfAbsent(new UserProfile(rec.username, st.wins, st.losses, st.draws, st.elo), LEADERBOARD_TOP)) {
+                broadcastLeaderboard();
+            }
+            return new UserProfile(rec.username, st.wins, st.losses, st.draws, st.elo);
 
         } catch (SQLException e) {
             throw new RemoteException("DB error: " + e.getMessage(), e);
@@ -208,20 +475,52 @@ private final Deque<ChatMessage> globalChatHistory = new ArrayDeque<>();
     }
 
     @Override
-    public synchronized void logout(String username) throws RemoteException {
-        state.online.remove(username);
-        for (Room r : new ArrayList<>(state.rooms.values())) {
-            if (r.players.contains(username)) leaveRoom(username, r.id);
+    public void logout(String username) throws RemoteException {
+        var s = state.online.remove(username);
+        if (s != null) s.mailbox.close();
+        state.matchmaker.cancel(username);
+        leaveAllRooms(username);
+        notifyFriends(username);
+        friendsOf.remove(username);
+        state.results.release(username);
+    }
+
+    // Client không theo kịp / chết => xử lý như logout (chạy trên worker của CallbackDispatcher)
+    private void evictSession(OnlineSession s) {
+        // user đã đăng nhập lại bằng session khác => không đụng tới
+        if (!state.online.remove(s.username, s)) return;
+        state.matchmaker.cancel(s.username);
+        try {
+            leaveAllRooms(s.username);
+        } catch (RemoteException e) {
+            System.err.println("[Evict] user=" + s.username + " - " + e.getMessage());
+        }
+        notifyFriends(s.username);
+        friendsOf.remove(s.username);
+        state.results.release(s.username);
+    }
+
+    /** Kết nối (gateway) của user đã đóng: xử lý như evict nếu session vẫn dùng callback của kết nối đó. */
+    public void onTransportClosed(String username, ClientCallback callback) {
+        var s = state.online.get(username);
+        if (s == null || s.callback != callback) return;
+        s.mailbox.close();
+        evictSession(s);
+    }
+
+    private void leaveAllRooms(String username) throws RemoteException {
+        // leaveRoom tự khóa từng phòng, không giữ khóa nào ở đây
+        for (String roomId : state.presence.roomsOf(username)) {
+            leaveRoom(username, roomId);
         }
         broadcastOnlineUsers();
-        broadcastRooms();
     }
 
     // ============================================================
     // Rooms
     // ============================================================
     @Override
-    public synchronized String createRoom(String owner, RoomCreateRequest req) throws RemoteException {
+    public String createRoom(String owner, RoomCreateRequest req) throws RemoteException {
         requireOnline(owner);
         owner = owner.trim();
 
@@ -248,11 +547,12 @@ private final Deque<ChatMessage> globalChatHistory = new ArrayDeque<>();
         if (!room.players.contains(owner)) room.players.add(owner);
         room.status = RoomStatus.WAITING;
 
-        state.rooms.put(id, room);
         moveHistory.put(id, new ArrayDeque<>());
         redoStack.put(id, new ArrayDeque<>());
+        journalRoom(room); // trước khi publish: chưa thread nào khác thấy phòng
+        state.rooms.put(id, room);
 
-        broadcastRooms();
+        broadcastRoom(room);
         return id;
     }
 
@@ -266,92 +566,99 @@ private final Deque<ChatMessage> globalChatHistory = new ArrayDeque<>();
     }
 
     @Override
-    public synchronized boolean joinRoom(String username, String roomId, String password) throws RemoteException {
+    public RoomListDelta fetchRoomList() throws RemoteException {
+        return roomList.full();
+    }
+
+    @Override
+    public boolean joinRoom(String username, String roomId, String password) throws RemoteException {
         requireOnline(username);
         username = username.trim();
 
         Room room = state.rooms.get(roomId);
         if (room == null) throw new RemoteException("Room không tồn tại.");
 
-        if (room.status != RoomStatus.WAITING) return false;
-        if (room.isFull()) return false;
+        synchronized (room) {
+            // CLOSED = phòng vừa bị xóa bởi thread khác sau khi ta lấy ra khỏi map
+            if (room.status != RoomStatus.WAITING) return false;
+            if (room.isFull()) return false;
 
-        if (room.hasPassword) {
-            if (password == null || password.trim().isEmpty()) throw new RemoteException("Phòng yêu cầu mật khẩu.");
-            if (!Objects.equals(room.password, password)) throw new RemoteException("Mật khẩu phòng không đúng.");
-        }
+            if (room.hasPassword) {
+                if (password == null || password.trim().isEmpty()) throw new RemoteException("Phòng yêu cầu mật khẩu.");
+                if (!Objects.equals(room.password, password)) throw new RemoteException("Mật khẩu phòng không đúng.");
+            }
 
-        if (!room.players.contains(username)) room.players.add(username);
+            if (!room.players.contains(username)) room.players.add(username);
 
-        if (room.players.size() == 2) {
-            // ===== START MATCH (AUTHORITATIVE) =====
-            room.status = RoomStatus.PLAYING;
+            if (room.players.size() == 2) {
+                // ===== START MATCH (AUTHORITATIVE) =====
+                room.status = RoomStatus.PLAYING;
 
-            String p1 = room.players.get(0);
-            String p2 = room.players.get(1);
+                String p1 = room.players.get(0);
+                String p2 = room.players.get(1);
 
-            boolean p1IsX = ThreadLocalRandom.current().nextBoolean();
-            room.playerX = p1IsX ? p1 : p2;
-            room.playerO = p1IsX ? p2 : p1;
+                boolean p1IsX = ThreadLocalRandom.current().nextBoolean();
+                room.playerX = p1IsX ? p1 : p2;
+                room.playerO = p1IsX ? p2 : p1;
 
-            room.moveNo = 0;
-            clearBoard(room);
+                room.moveNo = 0;
+                room.gameStartMillis = System.currentTimeMillis();
+                clearBoard(room);
 
-            moveHistory.computeIfAbsent(roomId, k -> new ArrayDeque<>()).clear();
-            redoStack.computeIfAbsent(roomId, k -> new ArrayDeque<>()).clear();
-            pendingUndo.remove(roomId);
-            pendingRedo.remove(roomId);
-            postGameChoices.remove(roomId);
+                moveHistory.computeIfAbsent(roomId, k -> new ArrayDeque<>()).clear();
+                redoStack.computeIfAbsent(roomId, k -> new ArrayDeque<>()).clear();
+                pendingUndo.remove(roomId);
+                pendingRedo.remove(roomId);
+                postGameChoices.remove(roomId);
 
-            room.turn = room.playerX;
-            resetDeadline(room);
+                room.turn = room.playerX;
+                resetDeadline(room);
 
-            pushGameStart(room, room.playerX, Mark.X, true);
-            pushGameStart(room, room.playerO, Mark.O, false);
+                pushGameStart(room, room.playerX, Mark.X, true);
+                pushGameStart(room, room.playerO, Mark.O, false);
 
-            broadcastSnapshot(room);
+                broadcastSnapshot(room);
+            }
+            journalRoom(room);
         }
 
-        broadcastRooms();
+        broadcastRoom(room);
         return true;
     }
 
     @Override
-public synchronized void leaveRoom(String username, String roomId) throws RemoteException {
+public void leaveRoom(String username, String roomId) throws RemoteException {
     Room room = state.rooms.get(roomId);
     if (room == null) return;
 
     final String leaver = (username == null ? null : username.trim());
-    room.players.remove(leaver);
-
-    if (room.status == RoomStatus.PLAYING && room.players.size() == 1) {
-        final String remaining = room.players.get(0);
 
-        safeCallback(remaining, cb -> cb.onGameEnded(new GameEnd(roomId, remaining, GameEndReason.ABORT)));
-        safeCallback(remaining, cb -> cb.onAnnouncement(leaver + " đã rời phòng và về lobby. Đang chờ người chơi khác vào..."));
+    synchronized (room) {
+        room.players.remove(leaver);
 
-        if (Objects.equals(room.owner, leaver)) {
-            room.owner = remaining;
-        }
-
-        resetRoomToWaiting(roomId, room);
-        broadcastRooms();
-        return;
-    }
+        if (room.status == RoomStatus.PLAYING && room.players.size() == 1) {
+            final String remaining = room.players.get(0);
 
+            safeCallback(remaining, cb -> cb.onGameEnded(new GameEnd(roomId, remaining, GameEndReason.ABORT)));
+            safeCallback(remaining, cb -> cb.onAnnouncement(leaver + " đã rời phòng và về lobby. Đang chờ người chơi khác vào..."));
 
+            if (Objects.equals(room.owner, leaver)) {
+                room.owner = remaining;
+            }
 
-    if (room.players.isEmpty()) {
-        cleanupRoom(roomId);
-        state.rooms.remove(roomId);
-        broadcastRooms();
-        return;
+            resetRoomToWaiting(roomId, room);
+        } else if (room.players.isEmpty()) {
+            removeRoom(room);
+        } else if (room.status != RoomStatus.CLOSED) {
+            room.status = RoomStatus.WAITING;
+        }
+        journalRoom(room);
     }
 
-    room.status = RoomStatus.WAITING;
-    broadcastRooms();
+    broadcastRoom(room);
 }
 
+// caller phải giữ synchronized (room)
 private void resetRoomToWaiting(String roomId, Room room) throws RemoteException {
     // clear post-game / pending
     pendingUndo.remove(roomId);
@@ -363,7 +670,7 @@ private void resetRoomToWaiting(String roomId, Room room) throws RemoteException
     room.status = RoomStatus.WAITING;
     room.moveNo = 0;
     room.turn = null;                 // chưa có lượt vì chưa đủ 2 người
-    room.turnDeadlineMillis = 0L;
+    cancelDeadline(room);
 
     clearBoard(room);
 
@@ -375,28 +682,68 @@ private void resetRoomToWaiting(String roomId, Room room) throws RemoteException
 }
 
     @Override
-    public synchronized void quickPlay(String username) throws RemoteException {
+    public void quickPlay(String username) throws RemoteException {
+        quickPlay(username, 15, false, false);
+    }
+
+    @Override
+    public void quickPlay(String username, int boardSize, boolean timed, boolean blockTwoEnds) throws RemoteException {
         requireOnline(username);
+        if (boardSize < 10 || boardSize > 30)
+            throw new RemoteException("Kích thước bàn cờ không hợp lệ (10..30).");
+
+        // đang ở trong phòng rồi (đang chờ hoặc đang đánh) => không vào hàng chờ
+        if (state.presence.roomOf(username) != null) return;
 
-        Optional<Room> waiting = state.rooms.values().stream()
-                .filter(r -> r.status == RoomStatus.WAITING && r.players.size() == 1 && !r.owner.equals(username))
-                .findFirst();
+        // Matchmaker ghép theo elo trên thread riêng, kết quả báo qua onGameStarted
+        state.matchmaker.enqueue(username, eloOf(username), new Matchmaker.Prefs(boardSize, timed, blockTwoEnds));
+    }
 
-        if (waiting.isPresent()) {
-            joinRoom(username, waiting.get().id, null);
+    @Override
+    public void cancelQuickPlay(String username) throws RemoteException {
+        state.matchmaker.cancel(username);
+    }
+
+    // Chạy trên thread "matchmaker", ngoài khóa của hàng chờ
+    private void onMatched(Matchmaker.Ticket a, Matchmaker.Ticket b) {
+        // giữa lúc vào hàng và lúc ghép, 1 bên có thể đã offline / tự vào phòng khác
+        boolean okA = state.online.containsKey(a.username) && state.presence.roomOf(a.username) == null;
+        boolean okB = state.online.containsKey(b.username) && state.presence.roomOf(b.username) == null;
+        if (!okA || !okB) {
+            if (okA) state.matchmaker.requeue(a);
+            if (okB) state.matchmaker.requeue(b);
             return;
         }
 
         RoomCreateRequest req = new RoomCreateRequest();
-        req.setRoomName("QuickPlay-" + username);
-        req.setBoardSize(15);
-        req.setBlockTwoEnds(false);
-        req.setPasswordEnabled(false);
-        req.setPassword(null);
-        req.setTimed(false);
-        req.setTimeLimitSeconds(0);
+        req.setRoomName("QuickPlay: " + a.username + " vs " + b.username);
+        req.setBoardSize(a.prefs.boardSize);
+        req.setBlockTwoEnds(a.prefs.blockTwoEnds);
+        req.setTimed(a.prefs.timed);
+        req.setTimeLimitSeconds(a.prefs.timed ? 30 : 0);
+        req.setPasswordEnabled(true);
+        req.setPassword(UUID.randomUUID().toString()); // người ngoài không chen vào được
+
+        String roomId = null;
+        try {
+            roomId = createRoom(a.username, req);
+            if (!joinRoom(b.username, roomId, req.getPassword())) {
+                leaveRoom(a.username, roomId);
+                state.matchmaker.requeue(a);
+                state.matchmaker.requeue(b);
+            }
+        } catch (RemoteException e) {
+            System.err.println("[QuickPlay] " + a.username + " vs " + b.username + " - " + e.getMessage());
+            try {
+                if (roomId != null) leaveRoom(a.username, roomId);
+            } catch (RemoteException ignored) {
+            }
+        }
+    }
 
-        createRoom(username, req);
+    private int eloOf(String username) {
+        UserProfile p = state.leaderboard.get(username);
+        return p == null ? 1000 : p.getElo();
     }
 
     // ============================================================
@@ -404,30 +751,25 @@ private void resetRoomToWaiting(String roomId, Room room) throws RemoteException
     // ============================================================
 @Override
 public void sendGlobalChat(ChatMessage msg) throws RemoteException {
-    final List<String> users;
-    synchronized (this) {
-        if (msg == null) return;
-
-        globalChatHistory.addLast(msg);
-        while (globalChatHistory.size() > GLOBAL_CHAT_MAX) globalChatHistory.removeFirst();
+    if (msg == null) return;
+    // gán seq + lưu lịch sử, rồi ChatBatcher gom tin gửi theo lô (không sort / duyệt user cho từng tin)
+    state.chat.submit(globalChatHistory.append(msg));
+}
 
-        users = sortedOnlineUsers();
-    }
-    for (String u : users) safeCallback(u, cb -> cb.onGlobalChat(msg));
+@Override
+public List<ChatMessage> fetchGlobalChat(long beforeSeq, int limit) throws RemoteException {
+    if (beforeSeq <= 0) beforeSeq = Long.MAX_VALUE; // trang mới nhất
+    return globalChatHistory.before(beforeSeq, Math.max(1, Math.min(limit, GLOBAL_CHAT_PAGE_MAX)));
 }
 
 
    @Override
 public void sendRoomChat(String roomId, ChatMessage msg) throws RemoteException {
-    final List<String> targets;
-    synchronized (this) {
-        Room room = state.rooms.get(roomId);
-        if (room == null) throw new RemoteException("Room không tồn tại.");
-        targets = new ArrayList<>(room.players);
-    }
-    // callback ngoài synchronized(this)
-    for (String u : targets) {
-        safeCallback(u, cb -> cb.onRoomChat(roomId, msg));
+    Room room = state.rooms.get(roomId);
+    if (room == null) throw new RemoteException("Room không tồn tại.");
+    // room.players là CopyOnWriteArrayList => duyệt không cần khóa
+    for (String u : room.players) {
+        safeCallbackDroppable(u, cb -> cb.onRoomChat(roomId, msg));
     }
 }
 
@@ -435,356 +777,396 @@ public void sendRoomChat(String roomId, ChatMessage msg) throws RemoteException
     // Gameplay
     // ============================================================
     @Override
-    public synchronized void makeMove(String roomId, String username, int row, int col) throws RemoteException {
+    public void makeMove(String roomId, String username, int row, int col) throws RemoteException {
         Room room = state.rooms.get(roomId);
-
-        // có nước mới thì hủy pending (Undo/Draw offer) cũ để tránh trạng thái treo
-        pendingUndo.remove(roomId);
-        pendingRedo.remove(roomId);
-
         if (room == null) throw new RemoteException("Room không tồn tại.");
-        if (room.status != RoomStatus.PLAYING) throw new RemoteException("Room không ở trạng thái PLAYING.");
         if (username == null) throw new RemoteException("User null.");
 
         username = username.trim();
 
-        if (!room.players.contains(username)) throw new RemoteException("Bạn không ở trong phòng.");
-        if (!Objects.equals(room.turn, username)) {
-            throw new RemoteException("Chưa đến lượt bạn. Lượt hiện tại: " + room.turn);
-        }
-
-        if (!inBounds(room, row, col)) throw new RemoteException("Nước đi ngoài bàn cờ.");
-        if (room.board[row][col] != Mark.EMPTY) throw new RemoteException("Ô đã được đánh.");
+        synchronized (room) {
+            // có nước mới thì hủy pending (Undo/Draw offer) cũ để tránh trạng thái treo
+            pendingUndo.remove(roomId);
+            pendingRedo.remove(roomId);
 
-        // new move => clear redoStack legacy
-        redoStack.computeIfAbsent(roomId, k -> new ArrayDeque<>()).clear();
+            if (room.status != RoomStatus.PLAYING) throw new RemoteException("Room không ở trạng thái PLAYING.");
 
-        Mark mark = username.equals(room.playerX) ? Mark.X : Mark.O;
-        room.board[row][col] = mark;
+            if (!room.players.contains(username)) throw new RemoteException("Bạn không ở trong phòng.");
+            if (!Objects.equals(room.turn, username)) {
+                throw new RemoteException("Chưa đến lượt bạn. Lượt hiện tại: " + room.turn);
+            }
 
-        int moveNo = ++room.moveNo;
+            if (!inBounds(room, row, col)) throw new RemoteException("Nước đi ngoài bàn cờ.");
+            if (room.board[row][col] != Mark.EMPTY) throw new RemoteException("Ô đã được đánh.");
 
-        moveHistory.computeIfAbsent(roomId, k -> new ArrayDeque<>())
-                .push(new MoveRecord(row, col, mark, username, moveNo));
+            // new move => clear redoStack legacy
+            redoStack.computeIfAbsent(roomId, k -> new ArrayDeque<>()).clear();
 
-        String next = username.equals(room.playerX) ? room.playerO : room.playerX;
-        room.turn = next;
-        resetDeadline(room);
+            Mark mark = username.equals(room.playerX) ? Mark.X : Mark.O;
+            room.board[row][col] = mark;
 
-        // push update nhanh
-        Move mv = new Move(row, col, moveNo, username);
-        GameUpdate update = new GameUpdate(roomId, mv, mark, next);
-        for (String u : new ArrayList<>(room.players)) safeCallback(u, cb -> cb.onGameUpdated(update));
+            int moveNo = ++room.moveNo;
 
-        // snapshot authoritative
-        broadcastSnapshot(room);
+            MoveRecord rec = new MoveRecord(row, col, mark, username, moveNo, System.currentTimeMillis());
+            moveHistory.computeIfAbsent(roomId, k -> new ArrayDeque<>()).push(rec);
 
-        // win/draw
-        if (isWin(room, row, col, mark)) {
-            endGame(room, username, GameEndReason.WIN);
-        } else if (room.moveNo >= room.boardSize * room.boardSize) {
-            endGame(room, null, GameEndReason.DRAW);
+            String next = username.equals(room.playerX) ? room.playerO : room.playerX;
+            room.turn = next;
+            resetDeadline(room);
+            journalMove(room, rec);
+
+            // chỉ gửi nước vừa đi (kèm seq); client hở seq thì tự gọi getSnapshot
+            Move mv = new Move(row, col, moveNo, username);
+            GameUpdate update = new GameUpdate(roomId, mv, mark, next,
+                    ++room.seq, room.timed ? room.turnDeadlineMillis : 0L);
+            for (String u : room.players) safeCallback(u, cb -> cb.onGameUpdated(update));
+
+            // win/draw
+            if (isWin(room, row, col, mark)) {
+                endGame(room, username, GameEndReason.WIN);
+            } else if (room.moveNo >= room.boardSize * room.boardSize) {
+                endGame(room, null, GameEndReason.DRAW);
+            }
         }
 
-        broadcastRooms();
+        broadcastRoom(room);
+    }
+
+    @Override
+    public GameSnapshot getSnapshot(String roomId, String username) throws RemoteException {
+        Room room = mustRoom(roomId);
+        synchronized (room) {
+            requirePlayer(room, username);
+            return buildSnapshot(room);
+        }
     }
 
     @Override
-    public synchronized void resign(String roomId, String username) throws RemoteException {
+    public void resign(String roomId, String username) throws RemoteException {
         Room room = state.rooms.get(roomId);
         if (room == null) return;
-        if (room.status != RoomStatus.PLAYING) return;
 
-        String winner = room.players.stream().filter(p -> !p.equals(username)).findFirst().orElse(null);
-        endGame(room, winner, GameEndReason.RESIGN);
-        broadcastRooms();
+        synchronized (room) {
+            if (room.status != RoomStatus.PLAYING) return;
+
+            String winner = room.players.stream().filter(p -> !p.equals(username)).findFirst().orElse(null);
+            endGame(room, winner, GameEndReason.RESIGN);
+            broadcastRoom(room);
+        }
     }
 
     // ============================================================
     // Undo (approval): rollback về "nước cuối của người xin"
     // ============================================================
     @Override
-public synchronized void requestUndo(String roomId, String from) throws RemoteException {
-    Room room = mustPlayingRoom(roomId);
+public void requestUndo(String roomId, String from) throws RemoteException {
+    Room room = mustRoom(roomId);
 
-    final String fromUser = (from == null ? null : from.trim());
-    requirePlayer(room, fromUser);
+    synchronized (room) {
+        requirePlaying(room);
 
-    final String opp = opponentOf(room, fromUser);
-    if (opp == null) {
-        safeCallback(fromUser, cb -> cb.onUndoResult(roomId, false, "Không có đối thủ để xin Undo."));
-        return;
-    }
+        final String fromUser = (from == null ? null : from.trim());
+        requirePlayer(room, fromUser);
 
-    if (pendingUndo.get(roomId) != null) {
-        safeCallback(fromUser, cb -> cb.onUndoResult(roomId, false, "Đang có yêu cầu Undo chờ xử lý."));
-        return;
-    }
+        final String opp = opponentOf(room, fromUser);
+        if (opp == null) {
+            safeCallback(fromUser, cb -> cb.onUndoResult(roomId, false, "Không có đối thủ để xin Undo."));
+            return;
+        }
 
-    UndoPlan plan = computeUndoPlan(roomId, room, fromUser, opp);
-    if (!plan.allowed) {
-        safeCallback(fromUser, cb -> cb.onUndoResult(roomId, false, plan.reason));
-        return;
-    }
+        if (pendingUndo.get(roomId) != null) {
+            safeCallback(fromUser, cb -> cb.onUndoResult(roomId, false, "Đang có yêu cầu Undo chờ xử lý."));
+            return;
+        }
+
+        UndoPlan plan = computeUndoPlan(roomId, room, fromUser, opp);
+        if (!plan.allowed) {
+            safeCallback(fromUser, cb -> cb.onUndoResult(roomId, false, plan.reason));
+            return;
+        }
 
-    pendingUndo.put(roomId, new PendingDecision(fromUser, opp));
-    safeCallback(opp, cb -> cb.onUndoRequested(roomId, fromUser));
-    safeCallback(fromUser, cb -> cb.onUndoResult(roomId, true, "Đã gửi yêu cầu Undo. Chờ đối thủ phản hồi..."));
+        pendingUndo.put(roomId, new PendingDecision(fromUser, opp));
+        journalRoom(room);
+        safeCallback(opp, cb -> cb.onUndoRequested(roomId, fromUser));
+        safeCallback(fromUser, cb -> cb.onUndoResult(roomId, true, "Đã gửi yêu cầu Undo. Chờ đối thủ phản hồi..."));
+    }
 }
 
 
   @Override
-public synchronized void respondUndo(String roomId, String responder, boolean accept) throws RemoteException {
+public void respondUndo(String roomId, String responder, boolean accept) throws RemoteException {
     Room room = state.rooms.get(roomId);
     if (room == null) return;
 
-    // Chuẩn hoá responder chỉ 1 lần
-    String responderUser = (responder == null ? null : responder.trim());
-    requirePlayer(room, responderUser);
+    synchronized (room) {
+        // Chuẩn hoá responder chỉ 1 lần
+        String responderUser = (responder == null ? null : responder.trim());
+        requirePlayer(room, responderUser);
 
-    PendingDecision pending = pendingUndo.get(roomId);
-    if (pending == null) {
-        safeCallback(responderUser, cb -> cb.onUndoResult(roomId, false, "Không có yêu cầu Undo nào để phản hồi."));
-        return;
-    }
+        PendingDecision pending = pendingUndo.get(roomId);
+        if (pending == null) {
+            safeCallback(responderUser, cb -> cb.onUndoResult(roomId, false, "Không có yêu cầu Undo nào để phản hồi."));
+            return;
+        }
 
-    // chỉ người nhận request mới được phản hồi
-    if (!Objects.equals(pending.to, responderUser)) {
-        safeCallback(responderUser, cb -> cb.onUndoResult(roomId, false, "Bạn không phải người nhận yêu cầu Undo này."));
-        return;
-    }
+        // chỉ người nhận request mới được phản hồi
+        if (!Objects.equals(pending.to, responderUser)) {
+            safeCallback(responderUser, cb -> cb.onUndoResult(roomId, false, "Bạn không phải người nhận yêu cầu Undo này."));
+            return;
+        }
 
-    String requester = pending.from;
-    pendingUndo.remove(roomId);
+        String requester = pending.from;
+        pendingUndo.remove(roomId);
 
-    // tạo biến final để dùng trong lambda (tránh lỗi effectively final)
-    final String requesterUser = requester;
-    final String responderFinal = responderUser;
-    final String opp = responderFinal; // người đối diện trong flow này chính là responder
+        // tạo biến final để dùng trong lambda (tránh lỗi effectively final)
+        final String requesterUser = requester;
+        final String responderFinal = responderUser;
+        final String opp = responderFinal; // người đối diện trong flow này chính là responder
 
-    if (!accept) {
-        safeCallback(requesterUser, cb -> cb.onUndoResult(roomId, false, responderFinal + " đã từ chối Undo."));
-        safeCallback(responderFinal, cb -> cb.onUndoResult(roomId, true, "Bạn đã từ chối Undo."));
-        return;
-    }
+        if (!accept) {
+            journalRoom(room);
+            safeCallback(requesterUser, cb -> cb.onUndoResult(roomId, false, responderFinal + " đã từ chối Undo."));
+            safeCallback(responderFinal, cb -> cb.onUndoResult(roomId, true, "Bạn đã từ chối Undo."));
+            return;
+        }
 
-    // Tính kế hoạch undo theo rule của bạn (ví dụ: xoá X của đối thủ + O của requester)
-    UndoPlan plan = computeUndoPlan(roomId, room, requesterUser, opp);
-    if (!plan.allowed) {
-        safeCallback(requesterUser, cb -> cb.onUndoResult(roomId, false, "Không thể Undo: " + plan.reason));
-        safeCallback(responderFinal, cb -> cb.onUndoResult(roomId, false, "Không thể Undo: " + plan.reason));
-        return;
-    }
+        // Tính kế hoạch undo theo rule của bạn (ví dụ: xoá X của đối thủ + O của requester)
+        UndoPlan plan = computeUndoPlan(roomId, room, requesterUser, opp);
+        if (!plan.allowed) {
+            journalRoom(room);
+            safeCallback(requesterUser, cb -> cb.onUndoResult(roomId, false, "Không thể Undo: " + plan.reason));
+            safeCallback(responderFinal, cb -> cb.onUndoResult(roomId, false, "Không thể Undo: " + plan.reason));
+            return;
+        }
 
-    List<MoveRecord> removed = applyUndoRollback(roomId, room, requesterUser, plan.rollbackCount);
+        List<MoveRecord> removed = applyUndoRollback(roomId, room, requesterUser, plan.rollbackCount);
+        journalRoom(room);
 
-    String detail = removed.stream()
-            .map(r -> r.by + ":(" + r.row + "," + r.col + ")")
-            .collect(Collectors.joining(", "));
+        String detail = removed.stream()
+                .map(r -> r.by + ":(" + r.row + "," + r.col + ")")
+                .collect(Collectors.joining(", "));
 
-    for (String u : new ArrayList<>(room.players)) {
-        safeCallback(u, cb -> cb.onUndoResult(roomId, true,
-                "Undo được chấp nhận. Đã xóa: " + detail + ". Lượt: " + room.turn));
-    }
+        for (String u : new ArrayList<>(room.players)) {
+            safeCallback(u, cb -> cb.onUndoResult(roomId, true,
+                    "Undo được chấp nhận. Đã xóa: " + detail + ". Lượt: " + room.turn));
+        }
 
-    broadcastRooms();
+        broadcastRoom(room);
+    }
 }
 
     // ============================================================
     // "Redo" (approval): đổi nghĩa thành ĐỀ NGHỊ HÒA (DRAW OFFER)
     // ============================================================
     @Override
-public synchronized void requestRedo(String roomId, String from) throws RemoteException {
-    Room room = mustPlayingRoom(roomId);
+public void requestRedo(String roomId, String from) throws RemoteException {
+    Room room = mustRoom(roomId);
 
-    final String fromUser = (from == null ? null : from.trim());
-    requirePlayer(room, fromUser);
+    synchronized (room) {
+        requirePlaying(room);
 
-    final String opp = opponentOf(room, fromUser);
-    if (opp == null) {
-        safeCallback(fromUser, cb -> cb.onRedoResult(roomId, false, "Không có đối thủ để đề nghị hòa."));
-        return;
-    }
+        final String fromUser = (from == null ? null : from.trim());
+        requirePlayer(room, fromUser);
 
-    if (pendingRedo.get(roomId) != null) {
-        safeCallback(fromUser, cb -> cb.onRedoResult(roomId, false, "Đang có đề nghị hòa chờ xử lý."));
-        return;
-    }
+        final String opp = opponentOf(room, fromUser);
+        if (opp == null) {
+            safeCallback(fromUser, cb -> cb.onRedoResult(roomId, false, "Không có đối thủ để đề nghị hòa."));
+            return;
+        }
+
+        if (pendingRedo.get(roomId) != null) {
+            safeCallback(fromUser, cb -> cb.onRedoResult(roomId, false, "Đang có đề nghị hòa chờ xử lý."));
+            return;
+        }
 
-    pendingRedo.put(roomId, new PendingDecision(fromUser, opp));
-    safeCallback(opp, cb -> cb.onRedoRequested(roomId, fromUser));
-    safeCallback(fromUser, cb -> cb.onRedoResult(roomId, true, "Đã gửi đề nghị hòa. Chờ đối thủ phản hồi..."));
+        pendingRedo.put(roomId, new PendingDecision(fromUser, opp));
+        journalRoom(room);
+        safeCallback(opp, cb -> cb.onRedoRequested(roomId, fromUser));
+        safeCallback(fromUser, cb -> cb.onRedoResult(roomId, true, "Đã gửi đề nghị hòa. Chờ đối thủ phản hồi..."));
+    }
 }
 
 
    @Override
-public synchronized void respondRedo(String roomId, String responder, boolean accept) throws RemoteException {
+public void respondRedo(String roomId, String responder, boolean accept) throws RemoteException {
     Room room = state.rooms.get(roomId);
     if (room == null) return;
 
-    final String responderUser = (responder == null ? null : responder.trim());
-    requirePlayer(room, responderUser);
+    synchronized (room) {
+        final String responderUser = (responder == null ? null : responder.trim());
+        requirePlayer(room, responderUser);
 
-    final PendingDecision pending = pendingRedo.get(roomId);
-    if (pending == null) {
-        safeCallback(responderUser, cb -> cb.onRedoResult(roomId, false, "Không có yêu cầu Redo nào để phản hồi."));
-        return;
-    }
-
-    if (!Objects.equals(pending.to, responderUser)) {
-        safeCallback(responderUser, cb -> cb.onRedoResult(roomId, false, "Bạn không phải người nhận yêu cầu Redo này."));
-        return;
-    }
+        final PendingDecision pending = pendingRedo.get(roomId);
+        if (pending == null) {
+            safeCallback(responderUser, cb -> cb.onRedoResult(roomId, false, "Không có yêu cầu Redo nào để phản hồi."));
+            return;
+        }
 
-    final String requester = pending.from;
-    pendingRedo.remove(roomId);
+        if (!Objects.equals(pending.to, responderUser)) {
+            safeCallback(responderUser, cb -> cb.onRedoResult(roomId, false, "Bạn không phải người nhận yêu cầu Redo này."));
+            return;
+        }
 
-    if (!accept) {
-        safeCallback(requester, cb -> cb.onRedoResult(roomId, false, responderUser + " đã từ chối Redo."));
-        safeCallback(responderUser, cb -> cb.onRedoResult(roomId, true, "Bạn đã từ chối Redo."));
-        return;
-    }
+        final String requester = pending.from;
+        pendingRedo.remove(roomId);
 
-        // Accept => kết thúc ván hòa
-        for (String u : new ArrayList<>(room.players)) {
-            safeCallback(u, cb -> cb.onAnnouncement("Hai bên đồng ý hòa ván."));
+        if (!accept) {
+            journalRoom(room);
+            safeCallback(requester, cb -> cb.onRedoResult(roomId, false, responderUser + " đã từ chối Redo."));
+            safeCallback(responderUser, cb -> cb.onRedoResult(roomId, true, "Bạn đã từ chối Redo."));
+            return;
         }
-        endGame(room, null, GameEndReason.DRAW);
-        broadcastRooms();
+
+            // Accept => kết thúc ván hòa
+            for (String u : new ArrayList<>(room.players)) {
+                safeCallback(u, cb -> cb.onAnnouncement("Hai bên đồng ý hòa ván."));
+            }
+            endGame(room, null, GameEndReason.DRAW);
+            broadcastRoom(room);
+    }
     }
 
     // ============================================================
     // Post-game choice: REMATCH / RETURN
     // ============================================================
  @Override
-public synchronized void submitPostGameChoice(String roomId, String username, Enums.PostGameChoice choice)
+public void submitPostGameChoice(String roomId, String username, Enums.PostGameChoice choice)
         throws RemoteException {
 
     Room room = state.rooms.get(roomId);
     if (room == null) throw new RemoteException("Room không tồn tại.");
 
-    final String user = (username == null ? null : username.trim());
+    synchronized (room) {
+        try {
+            final String user = (username == null ? null : username.trim());
 
-    // dùng helper hậu ván (tự re-attach nếu cần)
-    requirePostGamePlayer(room, user);
+            // dùng helper hậu ván (tự re-attach nếu cần)
+            requirePostGamePlayer(room, user);
 
-    final String opp = opponentOf(room, user);
+            final String opp = opponentOf(room, user);
 
-    // clear các pending kiểu Undo/Draw-offer vì đã qua ván
-    pendingUndo.remove(roomId);
-    pendingRedo.remove(roomId);
-    pendingRematch.remove(roomId);
+            // clear các pending kiểu Undo/Draw-offer vì đã qua ván
+            pendingUndo.remove(roomId);
+            pendingRedo.remove(roomId);
+            pendingRematch.remove(roomId);
 
-    // Lưu choice (KHÔNG remove map ngay tại đây)
-    Map<String, PostGameChoice> choices = postGameChoices.computeIfAbsent(roomId, k -> new HashMap<>());
-    choices.put(user, choice);
+            // Lưu choice (KHÔNG remove map ngay tại đây)
+            Map<String, PostGameChoice> choices = postGameChoices.computeIfAbsent(roomId, k -> new HashMap<>());
+            choices.put(user, choice);
 
-    // ===== 1) RETURN =====
-    if (choice == Enums.PostGameChoice.RETURN) {
-        // remove user khỏi phòng
-        room.players.remove(user);
+            // ===== 1) RETURN =====
+            if (choice == Enums.PostGameChoice.RETURN) {
+                // remove user khỏi phòng
+                room.players.remove(user);
 
-        // callback cho người rời
-        safeCallback(user, cb -> cb.onReturnToLobby(roomId, "Bạn đã rời phòng. Trở về sảnh."));
+                // callback cho người rời
+                safeCallback(user, cb -> cb.onReturnToLobby(roomId, "Bạn đã rời phòng. Trở về sảnh."));
 
-        // dọn choice map vì đã có người rời
-        postGameChoices.remove(roomId);
+                // dọn choice map vì đã có người rời
+                postGameChoices.remove(roomId);
 
-        // còn 1 người => giữ phòng WAITING, reset bàn để chờ người mới
-        if (!room.players.isEmpty()) {
-            String remaining = room.players.get(0);
+                // còn 1 người => giữ phòng WAITING, reset bàn để chờ người mới
+                if (!room.players.isEmpty()) {
+                    String remaining = room.players.get(0);
 
-            safeCallback(remaining, cb -> cb.onAnnouncement(user + " đã về lobby và không chơi nữa. Bạn đang chờ người khác vào..."));
+                    safeCallback(remaining, cb -> cb.onAnnouncement(user + " đã về lobby và không chơi nữa. Bạn đang chờ người khác vào..."));
 
-            // nếu owner rời, chuyển owner
-            if (Objects.equals(room.owner, user)) {
-                room.owner = remaining;
-            }
+                    // nếu owner rời, chuyển owner
+                    if (Objects.equals(room.owner, user)) {
+                        room.owner = remaining;
+                    }
 
-            resetRoomToWaiting(roomId, room);
-            broadcastRooms();
-            return;
-        }
+                    resetRoomToWaiting(roomId, room);
+                    broadcastRoom(room);
+                    return;
+                }
 
-        // không còn ai => xóa phòng
-        cleanupRoom(roomId);
-        state.rooms.remove(roomId);
-        broadcastRooms();
-        return;
-    }
+                // không còn ai => xóa phòng
+                removeRoom(room);
+                broadcastRoom(room);
+                return;
+            }
 
-    // ===== 2) REMATCH =====
-    if (opp == null) {
-        // chỉ còn 1 người trong room => không thể rematch
-        safeCallback(user, cb -> cb.onAnnouncement("Không có đối thủ để rematch. Đang chờ người chơi khác vào..."));
-        return;
-    }
+            // ===== 2) REMATCH =====
+            if (opp == null) {
+                // chỉ còn 1 người trong room => không thể rematch
+                safeCallback(user, cb -> cb.onAnnouncement("Không có đối thủ để rematch. Đang chờ người chơi khác vào..."));
+                return;
+            }
 
-    PostGameChoice oppChoice = choices.get(opp);
+            PostGameChoice oppChoice = choices.get(opp);
 
-    if (oppChoice == null) {
-        // đối thủ chưa chọn => gửi request rematch cho họ
-        safeCallback(opp, cb -> cb.onRematchRequested(roomId, user));
-        safeCallback(user, cb -> cb.onAnnouncement("Đã gửi yêu cầu Rematch. Chờ đối thủ quyết định..."));
-        return;
-    }
+            if (oppChoice == null) {
+                // đối thủ chưa chọn => gửi request rematch cho họ
+                safeCallback(opp, cb -> cb.onRematchRequested(roomId, user));
+                safeCallback(user, cb -> cb.onAnnouncement("Đã gửi yêu cầu Rematch. Chờ đối thủ quyết định..."));
+                return;
+            }
 
-    if (oppChoice == Enums.PostGameChoice.REMATCH) {
-        // cả 2 đồng ý rematch => start match
-        postGameChoices.remove(roomId);
+            if (oppChoice == Enums.PostGameChoice.REMATCH) {
+                // cả 2 đồng ý rematch => start match
+                postGameChoices.remove(roomId);
 
-        resetBoardAndSwap(room);
-        resetDeadline(room);
+                resetBoardAndSwap(room);
+                resetDeadline(room);
 
-        pushGameStart(room, room.playerX, Mark.X, true);
-        pushGameStart(room, room.playerO, Mark.O, false);
+                pushGameStart(room, room.playerX, Mark.X, true);
+                pushGameStart(room, room.playerO, Mark.O, false);
 
-        broadcastSnapshot(room);
+                broadcastSnapshot(room);
 
-        for (String u : new ArrayList<>(room.players)) {
-            safeCallback(u, cb -> cb.onAnnouncement("Rematch bắt đầu. X đi trước."));
+                for (String u : new ArrayList<>(room.players)) {
+                    safeCallback(u, cb -> cb.onAnnouncement("Rematch bắt đầu. X đi trước."));
+                }
+                broadcastRoom(room);
+                return;
+            }
+
+            // oppChoice == RETURN
+            safeCallback(user, cb -> cb.onAnnouncement(opp + " đã chọn Return (từ chối Rematch)."));
+        } finally {
+            // mọi nhánh (chọn / rematch / rời phòng / xóa phòng) đều đổi trạng thái phòng
+            journalRoom(room);
         }
-        broadcastRooms();
-        return;
     }
-
-    // oppChoice == RETURN
-    safeCallback(user, cb -> cb.onAnnouncement(opp + " đã chọn Return (từ chối Rematch)."));
 }
 
 
    @Override
-public synchronized void returnToLobby(String roomId, String from) throws RemoteException {
+public void returnToLobby(String roomId, String from) throws RemoteException {
     Room room = state.rooms.get(roomId);
     if (room == null) return;
 
-    final String actor = (from == null ? null : from.trim());
-    requirePlayer(room, actor);
+    synchronized (room) {
+        final String actor = (from == null ? null : from.trim());
+        requirePlayer(room, actor);
 
-    // actor rời phòng
-    room.players.remove(actor);
+        // actor rời phòng
+        room.players.remove(actor);
 
-    // callback cho actor
-    safeCallback(actor, cb -> cb.onReturnToLobby(roomId, "Bạn đã rời phòng. Trở về sảnh."));
+        // callback cho actor
+        safeCallback(actor, cb -> cb.onReturnToLobby(roomId, "Bạn đã rời phòng. Trở về sảnh."));
 
-    // nếu còn 1 người trong phòng -> thông báo + reset WAITING, không xóa phòng
-    if (!room.players.isEmpty()) {
-        String remaining = room.players.get(0);
+        // nếu còn 1 người trong phòng -> thông báo + reset WAITING, không xóa phòng
+        if (!room.players.isEmpty()) {
+            String remaining = room.players.get(0);
 
-        safeCallback(remaining, cb -> cb.onAnnouncement(actor + " đã về lobby. Bạn đang chờ người khác vào..."));
-        safeCallback(remaining, cb -> cb.onGameEnded(new GameEnd(roomId, remaining, GameEndReason.ABORT)));
+            safeCallback(remaining, cb -> cb.onAnnouncement(actor + " đã về lobby. Bạn đang chờ người khác vào..."));
+            safeCallback(remaining, cb -> cb.onGameEnded(new GameEnd(roomId, remaining, GameEndReason.ABORT)));
 
-        if (Objects.equals(room.owner, actor)) room.owner = remaining;
+            if (Objects.equals(room.owner, actor)) room.owner = remaining;
 
-        resetRoomToWaiting(roomId, room);
-        broadcastRooms();
-        return;
-    }
+            resetRoomToWaiting(roomId, room);
+            journalRoom(room);
+            broadcastRoom(room);
+            return;
+        }
 
-    // không còn ai -> xóa phòng
-    cleanupRoom(roomId);
-    state.rooms.remove(roomId);
-    broadcastRooms();
+        // không còn ai -> xóa phòng
+        removeRoom(room);
+        journalRoom(room);
+        broadcastRoom(room);
+    }
 }
 
     // ============================================================
@@ -792,15 +1174,39 @@ public synchronized void returnToLobby(String roomId, String from) throws Remote
     // ============================================================
     @Override
     public List<UserProfile> getLeaderboard(int top) throws RemoteException {
+        return state.leaderboard.top(Math.max(1, top));
+    }
+
+    @Override
+    public List<UserProfile> getLeaderboardAround(String username, int radius) throws RemoteException {
+        return state.leaderboard.around(username, Math.max(0, Math.min(radius, 50)));
+    }
+
+    // ============================================================
+    // Replay (ván đã lưu) - không giữ khóa phòng nào
+    // ============================================================
+    @Override
+    public List<MatchSummary> listRecentMatches(String username, int limit) throws RemoteException {
+        requireOnline(username);
         try {
-            return state.userDao.topElo(top);
+            return state.replays.recentMatches(username, limit);
         } catch (SQLException e) {
             throw new RemoteException("DB error: " + e.getMessage(), e);
         }
     }
 
     @Override
-    public synchronized void sendFriendRequest(FriendRequest req) throws RemoteException {
+    public ReplayChunk fetchReplay(String username, long matchId, int fromMove, int maxMoves) throws RemoteException {
+        requireOnline(username);
+        try {
+            return state.replays.chunk(matchId, fromMove, maxMoves);
+        } catch (SQLException e) {
+            throw new RemoteException("DB error: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void sendFriendRequest(FriendRequest req) throws RemoteException {
         try {
             state.userDao.ensureUser(req.getTo(), "123");
             state.friendDao.addFriendRequest(req.getFrom(), req.getTo());
@@ -811,10 +1217,16 @@ public synchronized void returnToLobby(String roomId, String from) throws Remote
     }
 
     @Override
-    public synchronized void respondFriendRequest(String from, String to, boolean accept) throws RemoteException {
+    public void respondFriendRequest(String from, String to, boolean accept) throws RemoteException {
         try {
             state.friendDao.resolveLatestPending(from, to, accept);
-            if (accept) state.friendDao.addFriendPair(from, to);
+            if (accept) {
+                state.friendDao.addFriendPair(from, to);
+                var fa = friendsOf.get(from);
+                if (fa != null) fa.add(to);
+                var fb = friendsOf.get(to);
+                if (fb != null) fb.add(from);
+            }
 
            // Lấy danh sách FriendInfo mới nhất rồi gửi về
 List<FriendInfo> friendsOfFrom = getFriends(from);
@@ -835,21 +1247,13 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
             List<FriendInfo> result = new ArrayList<>();
 
             for (String name : friendNames) {
-                UserStatus status = UserStatus.OFFLINE;
-
-                // 1. Check Online
-                if (state.online.containsKey(name)) {
-                    status = UserStatus.ONLINE; // Mặc định là Online rảnh
-
-                    // 2. Check Playing (Duyệt qua các phòng)
-                    for (Room r : state.rooms.values()) {
-                        if (r.status == RoomStatus.PLAYING && r.players.contains(name)) {
-                            status = UserStatus.PLAYING;
-                            break;
-                        }
-                    }
-                }
-                result.add(new FriendInfo(name, status));
+                result.add(new FriendInfo(name, statusOf(name)));
+            }
+            // giữ lại để báo đổi trạng thái sau này (chỉ cho user đang online)
+            if (state.online.containsKey(username)) {
+                Set<String> set = ConcurrentHashMap.newKeySet();
+                set.addAll(friendNames);
+                friendsOf.put(username, set);
             }
             return result;
         } catch (SQLException e) {
@@ -861,7 +1265,7 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
 
     // [THÊM MỚI] Gửi lời thách đấu
     @Override
-    public synchronized void sendChallenge(String from, String to) throws RemoteException {
+    public void sendChallenge(String from, String to) throws RemoteException {
         requireOnline(from);
         
         // 1. Kiểm tra đối thủ có online không
@@ -870,10 +1274,8 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
         }
             
         // 2. Kiểm tra đối thủ có đang bận chơi không
-        for (Room r : state.rooms.values()) {
-            if (r.status == RoomStatus.PLAYING && r.players.contains(to)) {
-                throw new RemoteException("Người chơi " + to + " đang trong trận đấu khác.");
-            }
+        if (state.presence.isPlaying(to)) {
+            throw new RemoteException("Người chơi " + to + " đang trong trận đấu khác.");
         }
 
         // 3. Gửi callback hiển thị popup cho đối thủ
@@ -882,7 +1284,7 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
 
     // [THÊM MỚI] Phản hồi thách đấu (Đồng ý/Từ chối)
     @Override
-    public synchronized void respondChallenge(String from, String to, boolean accept) throws RemoteException {
+    public void respondChallenge(String from, String to, boolean accept) throws RemoteException {
         // from: Người nhận lời mời (vừa bấm nút)
         // to: Người gửi lời mời ban đầu
         
@@ -917,12 +1319,21 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
     // ============================================================
     // Internal helpers
     // ============================================================
+    // caller phải giữ synchronized (room)
     private void resetDeadline(Room room) {
-        if (room.timed) {
-            room.turnDeadlineMillis = System.currentTimeMillis() + room.timeLimitSeconds * 1000L;
-        } else {
-            room.turnDeadlineMillis = 0L;
+        if (!room.timed) {
+            cancelDeadline(room);
+            return;
         }
+        room.turnDeadlineMillis = System.currentTimeMillis() + room.timeLimitSeconds * 1000L;
+        TurnTimer.Timeout old = turnTimeouts.put(room.id, turnTimer.arm(room.id, room.turnDeadlineMillis));
+        turnTimer.cancel(old);
+    }
+
+    // caller phải giữ synchronized (room)
+    private void cancelDeadline(Room room) {
+        room.turnDeadlineMillis = 0L;
+        turnTimer.cancel(turnTimeouts.remove(room.id));
     }
 
     private void resetBoardAndSwap(Room room) {
@@ -932,6 +1343,7 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
 
         room.turn = room.playerX;
         room.moveNo = 0;
+        room.gameStartMillis = System.currentTimeMillis();
         room.status = RoomStatus.PLAYING;
 
         clearBoard(room);
@@ -951,18 +1363,21 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
     }
 
    private void endGame(Room room, String winner, GameEndReason reason) throws RemoteException {
+    long start = System.nanoTime();
     try {
         postGameChoices.remove(room.id);
 
         // stop timer
-        room.turnDeadlineMillis = 0L;
+        cancelDeadline(room);
 
         GameEnd end = new GameEnd(room.id, winner, reason);
         for (String u : new ArrayList<>(room.players)) safeCallback(u, cb -> cb.onGameEnded(end));
 
         String x = room.playerX;
         String o = room.playerO;
-        state.matchDao.insertMatch(room.id, x, o, winner, reason.name());
+        // không gọi DB ở đây: MatchResultWriter ghi sau, ngoài khóa phòng
+        state.results.recordMatch(new MatchDao.MatchRow(room.id, x, o, winner, reason.name(), Instant.now(),
+                gameRecord(room).encode()));
 
         if (reason == GameEndReason.WIN || reason == GameEndReason.RESIGN) {
             String loser = (winner == null) ? null : (winner.equals(x) ? o : x);
@@ -977,34 +1392,50 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
         room.turn = null;
 
         broadcastSnapshot(room);
-        broadcastLeaderboard();
+        journalRoom(room);
     } catch (SQLException e) {
         throw new RemoteException("DB error (endGame): " + e.getMessage(), e);
+    } finally {
+        endGameTimer.recordNanos(System.nanoTime() - start);
     }
 }
 
 
+    // caller phải giữ synchronized (room). Lịch sử nước còn lại sau undo, cũ -> mới
+    private GameRecord gameRecord(Room room) {
+        Deque<MoveRecord> hist = moveHistory.getOrDefault(room.id, new ArrayDeque<>());
+        int[] cells = new int[hist.size()];
+        int[] think = new int[hist.size()];
+        long prev = room.gameStartMillis;
+        int i = 0;
+        for (Iterator<MoveRecord> it = hist.descendingIterator(); it.hasNext(); i++) {
+            MoveRecord m = it.next();
+            cells[i] = m.row * room.boardSize + m.col;
+            think[i] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, m.atMillis - prev));
+            prev = m.atMillis;
+        }
+        return new GameRecord(room.boardSize, cells, think);
+    }
+
     private void applyEloAndStats(String a, String b, boolean draw) throws SQLException {
         if (a == null || b == null) return;
 
-        var ra = state.userDao.find(a).orElseThrow();
-        var rb = state.userDao.find(b).orElseThrow();
-
-        int aw = ra.wins, al = ra.losses, ad = ra.draws, ae = ra.elo;
-        int bw = rb.wins, bl = rb.losses, bd = rb.draws, be = rb.elo;
-
+        // cập nhật chỉ số trong RAM, DB được ghi sau bởi MatchResultWriter
         if (draw) {
-            ad++;
-            bd++;
+            state.results.updateStats(a, s -> new MatchDao.StatsRow(a, s.wins, s.losses, s.draws + 1, s.elo));
+            state.results.updateStats(b, s -> new MatchDao.StatsRow(b, s.wins, s.losses, s.draws + 1, s.elo));
         } else {
-            aw++;
-            bl++;
-            ae += 20;
-            be = Math.max(100, be - 20);
+            state.results.updateStats(a, s -> new MatchDao.StatsRow(a, s.wins + 1, s.losses, s.draws, s.elo + 20));
+            state.results.updateStats(b, s -> new MatchDao.StatsRow(b, s.wins, s.losses + 1, s.draws, Math.max(100, s.elo - 20)));
         }
+    }
 
-        state.userDao.updateStats(a, aw, al, ad, ae);
-        state.userDao.updateStats(b, bw, bl, bd, be);
+    // caller phải giữ synchronized (room). Đánh dấu CLOSED để thread nào đang cầm
+    // tham chiếu cũ (joinRoom, quickPlay...) thấy phòng đã bị xóa.
+    private void removeRoom(Room room) {
+        room.status = RoomStatus.CLOSED;
+        cleanupRoom(room.id);
+        state.rooms.remove(room.id, room);
     }
 
     private void cleanupRoom(String roomId) {
@@ -1015,18 +1446,24 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
 
         moveHistory.remove(roomId);
         redoStack.remove(roomId);
+
+        turnTimer.cancel(turnTimeouts.remove(roomId));
     }
 
     private void requireOnline(String username) throws RemoteException {
         if (!state.online.containsKey(username)) throw new RemoteException("Chưa đăng nhập.");
     }
 
-    private Room mustPlayingRoom(String roomId) throws RemoteException {
+    private Room mustRoom(String roomId) throws RemoteException {
         Room room = state.rooms.get(roomId);
         if (room == null) throw new RemoteException("Room không tồn tại.");
+        return room;
+    }
+
+    // caller phải giữ synchronized (room)
+    private void requirePlaying(Room room) throws RemoteException {
         if (room.status != RoomStatus.PLAYING)
             throw new RemoteException("Room không ở trạng thái PLAYING.");
-        return room;
     }
     private void requirePostGamePlayer(Room room, String user) throws RemoteException {
     if (user == null || user.trim().isEmpty()) throw new RemoteException("User không hợp lệ.");
@@ -1039,6 +1476,7 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
 
     if (wasParticipant && room.status == RoomStatus.WAITING && room.players.size() < 2) {
         room.players.add(user); // re-attach để xử lý rematch hậu ván
+        syncPresence(room);
         return;
     }
 
@@ -1061,40 +1499,9 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
         return r >= 0 && c >= 0 && r < room.boardSize && c < room.boardSize;
     }
 
+    // blockTwoEnds=true: cần ít nhất 1 đầu "mở"; biên được coi là mở (GameRules.checkWin5)
     private boolean isWin(Room room, int row, int col, Mark mark) {
-        return checkWin5(room, row, col, mark, room.blockTwoEnds);
-    }
-
-    // blockTwoEnds=true: cần ít nhất 1 đầu "mở"; biên được coi là mở
-    private boolean checkWin5(Room room, int row, int col, Mark mark, boolean blockTwoEnds) {
-        int[][] dirs = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-        for (int[] d : dirs) {
-            int count = 1;
-            int openEnds = 0;
-
-            int r = row + d[0], c = col + d[1];
-            while (inBounds(room, r, c) && room.board[r][c] == mark) {
-                count++;
-                r += d[0];
-                c += d[1];
-            }
-            if (!inBounds(room, r, c) || room.board[r][c] == Mark.EMPTY) openEnds++;
-
-            r = row - d[0];
-            c = col - d[1];
-            while (inBounds(room, r, c) && room.board[r][c] == mark) {
-                count++;
-                r -= d[0];
-                c -= d[1];
-            }
-            if (!inBounds(room, r, c) || room.board[r][c] == Mark.EMPTY) openEnds++;
-
-            if (count >= 5) {
-                if (!blockTwoEnds) return true;
-                return openEnds >= 1;
-            }
-        }
-        return false;
+        return GameRules.checkWin5(room.board, room.boardSize, row, col, mark, room.blockTwoEnds);
     }
 
     private void pushGameStart(Room room, String user, Mark mark, boolean yourTurn) {
@@ -1123,55 +1530,84 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
         );
     }
 
-    private List<RoomInfo> allRoomsInfo() {
-        return state.rooms.values().stream()
-                .filter(r -> r.status != RoomStatus.CLOSED)
-                .map(this::toInfo)
-                .sorted(Comparator.comparing(RoomInfo::getCreatedAt).reversed())
-                .collect(Collectors.toList());
-    }
-
     private List<String> sortedOnlineUsers() {
         List<String> users = new ArrayList<>(state.onlineUsers());
         users.sort(String::compareToIgnoreCase);
         return users;
     }
 
-    private void broadcastRooms() {
-        List<RoomInfo> rooms = allRoomsInfo();
-        for (String u : sortedOnlineUsers()) safeCallback(u, cb -> cb.onRoomListUpdated(rooms));
+    // Chỉ gửi delta của phòng vừa đổi (nếu RoomInfo thực sự đổi).
+    // Giữ khóa room để đọc RoomInfo nhất quán; dưới khóa roomList chỉ gán version + xếp hàng (thứ tự hàng = thứ tự version),
+    // fan-out cho mọi session chạy trên thread "room-list" sau khi đã nhả cả 2 khóa.
+    private void broadcastRoom(Room room) {
+        synchronized (room) {
+            syncPresence(room);
+            RoomInfo info = (room.status == RoomStatus.CLOSED) ? null : toInfo(room);
+            synchronized (roomList) {
+                RoomListDelta delta = roomList.update(room.id, info);
+                if (delta != null) roomListOut.submit(delta);
+            }
+        }
+    }
+
+    // caller phải giữ synchronized (room)
+    private void syncPresence(Room room) {
+        boolean closed = room.status == RoomStatus.CLOSED;
+        List<String> changed = state.presence.syncRoom(room.id, closed ? null : room.players,
+                room.status == RoomStatus.PLAYING);
+        for (String u : changed) notifyFriends(u);
+    }
+
+    private UserStatus statusOf(String username) {
+        if (!state.online.containsKey(username)) return UserStatus.OFFLINE;
+        return state.presence.isPlaying(username) ? UserStatus.PLAYING : UserStatus.ONLINE;
+    }
+
+    // báo trạng thái hiện tại của user cho bạn bè đang online (chỉ bản mới nhất)
+    private void notifyFriends(String username) {
+        Set<String> friends = friendsOf.get(username);
+        if (friends == null) return;
+        FriendInfo info = new FriendInfo(username, statusOf(username));
+        for (String f : friends) {
+            safeCallbackLatest(f, "friend:" + username, cb -> cb.onFriendStatusChanged(info));
+        }
     }
 
     private void broadcastOnlineUsers() {
         List<String> online = sortedOnlineUsers();
-        for (String u : online) safeCallback(u, cb -> cb.onOnlineUsersUpdated(online));
+        for (String u : online) safeCallbackLatest(u, "online", cb -> cb.onOnlineUsersUpdated(online));
     }
 
     private void broadcastLeaderboard() {
-        try {
-            List<UserProfile> lb = state.userDao.topElo(50);
-            for (String u : sortedOnlineUsers()) safeCallback(u, cb -> cb.onLeaderboardUpdated(lb));
-        } catch (SQLException ignored) {
-        }
+        List<UserProfile> lb = state.leaderboard.top(LEADERBOARD_TOP);
+        for (String u : sortedOnlineUsers()) safeCallbackLatest(u, "leaderboard", cb -> cb.onLeaderboardUpdated(lb));
     }
 
 
 
 //KHONG DUOC SUA HAM QUYET DINH CO BI DUNG TRONG ROOM GAME HAY KHONGGGGGGGGGG===============================================
-    private void safeCallback(String user, CallbackCall call) {
+    private void safeCallback(String user, Mailbox.Call call) {
         var s = state.online.get(user);
         if (s == null || s.callback == null) return;
 
-        // FIX: Đưa việc gọi Client vào executor để chạy bất đồng bộ
+        // FIX: Đưa việc gọi Client vào mailbox của session để chạy bất đồng bộ
         // Server sẽ không chờ Client trả lời nữa -> Tránh Deadlock
-        callbackExecutor.submit(() -> {
-            try {
-                call.run(s.callback);
-            } catch (Exception e) {
-                System.err.println("[Callback error] user=" + user + " - " + e.getMessage());
-                // Tùy chọn: Nếu lỗi kết nối quá nhiều, có thể xem xét remove user khỏi online
-            }
-        });
+        // Mailbox giữ đúng thứ tự event của từng user, có giới hạn; client không theo kịp bị ngắt
+        state.callbacks.send(s, call);
+    }
+
+    // snapshot / room list / online / leaderboard: client chỉ cần bản mới nhất
+    private void safeCallbackLatest(String user, String key, Mailbox.Call call) {
+        var s = state.online.get(user);
+        if (s == null || s.callback == null) return;
+        state.callbacks.sendLatest(s, key, call);
+    }
+
+    // chat: mailbox đầy thì bỏ tin chat cũ thay vì ngắt client
+    private void safeCallbackDroppable(String user, Mailbox.Call call) {
+        var s = state.online.get(user);
+        if (s == null || s.callback == null) return;
+        state.callbacks.sendDroppable(s, call);
     }
 
     // ============================================================
@@ -1185,9 +1621,11 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
         return b;
     }
 
-    private void broadcastSnapshot(Room room) {
+    // caller phải giữ synchronized (room)
+    private GameSnapshot buildSnapshot(Room room) {
         GameSnapshot snap = new GameSnapshot();
         snap.setRoomId(room.id);
+        snap.setSeq(room.seq);
         snap.setBoardSize(room.boardSize);
         snap.setBoard(copyBoard(room));
         snap.setMoveNo(room.moveNo);
@@ -1196,9 +1634,17 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
         snap.setTimed(room.timed);
         snap.setTimeLimitSeconds(room.timeLimitSeconds);
         snap.setTurnDeadlineMillis(room.timed ? room.turnDeadlineMillis : 0L);
+        return snap;
+    }
+
+    // Full snapshot: chỉ dùng khi bắt đầu ván / undo / kết thúc ván (không gửi sau mỗi nước nữa).
+    // caller phải giữ synchronized (room)
+    private void broadcastSnapshot(Room room) {
+        room.seq++; // snapshot mới "nuốt" mọi GameUpdate trước nó
+        GameSnapshot snap = buildSnapshot(room);
 
         for (String u : new ArrayList<>(room.players)) {
-            safeCallback(u, cb -> cb.onBoardReset(snap));
+            safeCallbackLatest(u, "snapshot:" + room.id, cb -> cb.onBoardReset(snap));
         }
     }
 
@@ -1265,11 +1711,6 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
     // ============================================================
     // Types
     // ============================================================
-    @FunctionalInterface
-    private interface CallbackCall {
-        void run(ClientCallback cb) throws Exception;
-    }
-
     private static class PendingDecision {
         final String from;
         final String to;
@@ -1286,13 +1727,15 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
         final Mark mark;
         final String by;
         final int moveNo;
+        final long atMillis;
 
-        MoveRecord(int row, int col, Mark mark, String by, int moveNo) {
+        MoveRecord(int row, int col, Mark mark, String by, int moveNo, long atMillis) {
             this.row = row;
             this.col = col;
             this.mark = mark;
             this.by = by;
             this.moveNo = moveNo;
+            this.atMillis = atMillis;
         }
     }
 
@@ -1317,7 +1760,7 @@ safeCallback(to, cb -> cb.onFriendListUpdated(friendsOfTo));
     }
 
 @Override
-public synchronized UserPublicProfile getUserPublicProfile(String requester, String target) throws RemoteException {
+public UserPublicProfile getUserPublicProfile(String requester, String target) throws RemoteException {
     if (requester == null || requester.isBlank()) throw new RemoteException("Requester invalid");
     if (target == null || target.isBlank()) throw new RemoteException("Target invalid");
 
@@ -1329,6 +1772,10 @@ public synchronized UserPublicProfile getUserPublicProfile(String requester, Str
         if (u == null) throw new RemoteException("User không tồn tại: " + target);
 
         int wins = u.wins, losses = u.losses, draws = u.draws, elo = u.elo;
+        var live = state.results.statsOf(u.username); // RAM mới hơn DB nếu chưa flush
+        if (live != null) {
+            wins = live.wins; losses = live.losses; draws = live.draws; elo = live.elo;
+        }
         int games = wins + losses + draws;
         double wr = (games == 0) ? 0.0 : (wins * 100.0 / games);
 
@@ -1355,7 +1802,7 @@ public synchronized UserPublicProfile getUserPublicProfile(String requester, Str
 
 
 @Override
-public synchronized boolean sendFriendRequestByName(String from, String to) throws RemoteException {
+public boolean sendFriendRequestByName(String from, String to) throws RemoteException {
     if (from == null || from.isBlank()) throw new RemoteException("From invalid");
     if (to == null || to.isBlank()) throw new RemoteException("To invalid");
 
@@ -1395,8 +1842,9 @@ public synchronized boolean sendFriendRequestByName(String from, String to) thro
     }
 }
 
-private int computeRankByElo(int elo, String username) throws SQLException {
-    int higher = state.userDao.countUsersHigherElo(elo);
+private int computeRankByElo(int elo, String username) {
+    // đồng elo đồng hạng (giống COUNT(*) WHERE elo > ? trước đây) nhưng O(log n) trên index RAM
+    int higher = state.leaderboard.countEloGreater(elo);
     return higher + 1;
 }
 
@@ -0,0 +1,386 @@
+package vn.edu.demo.caro.server.service;
+
+import vn.edu.demo.caro.server.dao.MatchDao;
+import vn.edu.demo.caro.server.dao.MatchDao.MatchRow;
+import vn.edu.demo.caro.server.dao.MatchDao.StatsRow;
+import vn.edu.demo.caro.server.dao.UserDao;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Write-behind cho kết quả ván + wins/losses/draws/elo.
+ *
+ * - endGame chỉ ghi vào RAM (không gọi DB khi đang giữ khóa phòng).
+ * - Thread "match-writer" gom sự kiện trong ~{@code LINGER_MS} rồi ghi 1 transaction
+ *   (MatchDao.recordResults); chỉ số của 1 user chỉ ghi bản mới nhất.
+ * - Lỗi tạm thời (mất kết nối, timeout...) => retry với backoff; lỗi khác retry
+ *   {@code MAX_ATTEMPTS} lần rồi ghi lại lô đầu hàng từng dòng một: chỉ dòng vẫn lỗi bị bỏ (có log + đếm).
+ * - Chỉ số trong RAM là bản đúng cho tới khi flush xong (login / profile đọc từ đây trước);
+ *   user không còn online và chỉ số đã ghi xong thì bỏ khỏi RAM => DB lại là bản đúng.
+ */
+public class MatchResultWriter {
+
+    private static final long LINGER_MS = 50;
+    private static final int MAX_BATCH = 200;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long MAX_BACKOFF_MS = 5_000;
+    private static final long SHUTDOWN_FLUSH_MS = Long.getLong("caro.results.shutdownFlushMs", 10_000L);
+
+    private final UserDao userDao;
+    private final MatchDao matchDao;
+
+    // ===== guarded by this =====
+    private final Map<String, StatsRow> stats = new HashMap<>();
+    private List<MatchRow> pendingMatches = new ArrayList<>();
+    private Map<String, StatsRow> pendingStats = new LinkedHashMap<>();
+    private Map<String, StatsRow> writing = Map.of(); // chỉ số của lô đang ghi
+    private boolean running = true;
+
+    private final Object flushLock = new Object();
+    private volatile Runnable flushListener = () -> {};
+    private volatile Consumer<StatsRow> statsListener = s -> {};
+    private volatile Predicate<String> pinned = u -> false;
+
+    // ===== Metrics =====
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong flushedMatches = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong droppedMatches = new AtomicLong();
+    private final AtomicLong droppedStats = new AtomicLong();
+    private volatile long lastFlushMillis = 0;
+    private volatile String lastError = null;
+
+    private final Thread writer;
+
+    public MatchResultWriter(UserDao userDao, MatchDao matchDao) {
+        this.userDao = userDao;
+        this.matchDao = matchDao;
+
+        writer = new Thread(this::runLoop, "match-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Được gọi trên thread writer sau mỗi lần ghi DB thành công. */
+    public void setFlushListener(Runnable listener) {
+        this.flushListener = listener;
+    }
+
+    /**
+     * Được gọi mỗi khi chỉ số trong RAM đổi, trên thread gọi updateStats, sau khi đã nhả khóa writer.
+     * Thứ tự theo từng user vẫn đúng: chỉ số 1 user chỉ đổi trong endGame, dưới khóa phòng duy nhất của user đó.
+     */
+    public void setStatsListener(Consumer<StatsRow> listener) {
+        this.statsListener = listener;
+    }
+
+    /** User được giữ chỉ số trong RAM kể cả khi đã ghi xong (user đang online). */
+    public void setPinned(Predicate<String> pinned) {
+        this.pinned = pinned;
+    }
+
+    // ============================================================
+    // In-memory stats
+    // ============================================================
+
+    /** Nạp chỉ số từ DB nếu RAM chưa có; trả về bản đang đúng. */
+    public StatsRow seed(UserDao.UserRecord rec) {
+        synchronized (this) {
+            return stats.computeIfAbsent(rec.username,
+                    k -> new StatsRow(rec.username, rec.wins, rec.losses, rec.draws, rec.elo));
+        }
+    }
+
+    /** null nếu user chưa từng được nạp vào RAM (khi đó DB là bản đúng). */
+    public synchronized StatsRow statsOf(String username) {
+        return stats.get(username);
+    }
+
+    /** Cập nhật chỉ số trong RAM và xếp hàng ghi DB. */
+    public void updateStats(String username, UnaryOperator<StatsRow> f) throws SQLException {
+        StatsRow next;
+        while (true) {
+            if (statsOf(username) == null) {
+                // user offline (chưa nạp / đã bỏ khỏi RAM) => đọc DB 1 lần
+                var rec = userDao.find(username).orElseThrow(() -> new SQLException("User không tồn tại: " + username));
+                seed(rec);
+            }
+            synchronized (this) {
+                StatsRow cur = stats.get(username);
+                if (cur == null) continue; // vừa bị release giữa 2 bước => nạp lại
+                next = f.apply(cur);
+                stats.put(username, next);
+                pendingStats.put(username, next);
+                notifyAll();
+                break;
+            }
+        }
+        // listener (bảng xếp hạng + fan-out) chạy ngoài khóa: không chặn writer / endGame của phòng khác
+        statsListener.accept(next);
+    }
+
+    /** User vừa offline: bỏ chỉ số khỏi RAM nếu đã ghi xong (còn chờ ghi thì bỏ sau lần flush ghi được nó). */
+    public synchronized void release(String username) {
+        if (!pinned.test(username)) evictIfClean(username);
+    }
+
+    public synchronized void recordMatch(MatchRow match) {
+        pendingMatches.add(match);
+        notifyAll();
+    }
+
+    // ============================================================
+    // Writer
+    // ============================================================
+    private void runLoop() {
+        long backoff = 100;
+        int attempts = 0;
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (running && pendingMatches.isEmpty() && pendingStats.isEmpty()) wait();
+                }
+                if (!pause(LINGER_MS)) return; // gom thêm sự kiện vào cùng transaction
+
+                SQLException err = flushOnce();
+                if (err == null) {
+                    backoff = 100;
+                    attempts = 0;
+                    continue;
+                }
+
+                attempts++;
+                if (!isTransient(err) && attempts >= MAX_ATTEMPTS) {
+                    err = isolateHead();
+                    attempts = 0;
+                    if (err == null) {
+                        backoff = 100;
+                        continue;
+                    }
+                }
+                if (!pause(backoff)) return;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // chờ millis (shutdown đánh thức sớm); false = đang tắt, phần còn lại do shutdown ghi
+    private synchronized boolean pause(long millis) throws InterruptedException {
+        long until = System.currentTimeMillis() + millis;
+        for (long left = millis; running && left > 0; left = until - System.currentTimeMillis()) wait(left);
+        return running;
+    }
+
+    /**
+     * Tắt server: dừng thread writer (chờ lô đang ghi xong) rồi ghi nốt mọi thứ còn chờ trên thread gọi,
+     * tối đa {@code caro.results.shutdownFlushMs}. Gọi sau khi không còn ván nào kết thúc thêm, trước khi đóng DB / store.
+     * Trả về false nếu còn dữ liệu chưa ghi được.
+     */
+    public boolean shutdown() {
+        long deadline = System.currentTimeMillis() + SHUTDOWN_FLUSH_MS;
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            writer.join(SHUTDOWN_FLUSH_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            // lô đang ghi vẫn kẹt: không ghi chồng lên, store / DB sắp đóng thì lô đó coi như lỗi
+            System.err.println("[MatchWriter] thread writer chưa dừng sau " + SHUTDOWN_FLUSH_MS + "ms");
+            return false;
+        }
+        return flushAll(Math.max(0, deadline - System.currentTimeMillis()));
+    }
+
+    /**
+     * Ghi hết ván + chỉ số đang chờ (nhiều lô {@code MAX_BATCH}), lỗi thì thử lại tới khi quá {@code timeoutMillis}.
+     * Trả về false nếu hết giờ mà vẫn còn dữ liệu chưa ghi (có log số lượng).
+     */
+    public boolean flushAll(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long backoff = 50;
+        while (true) {
+            SQLException err = flushOnce();
+            synchronized (this) {
+                if (pendingMatches.isEmpty() && pendingStats.isEmpty()) return true;
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) break;
+            if (err != null) {
+                try {
+                    Thread.sleep(Math.min(backoff, left));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, 1_000);
+            }
+        }
+        System.err.println("[MatchWriter] hết " + timeoutMillis + "ms, chưa ghi được "
+                + getPendingMatches() + " ván, " + getPendingStats() + " chỉ số");
+        return false;
+    }
+
+    // null = thành công (hoặc không có gì để ghi)
+    private SQLException flushOnce() {
+        synchronized (flushLock) {
+            List<MatchRow> matches = new ArrayList<>();
+            Map<String, StatsRow> st = takeHead(matches);
+            if (st == null) return null;
+
+            long t0 = System.nanoTime();
+            try {
+                matchDao.recordResults(matches, st.values());
+            } catch (SQLException e) {
+                failedFlushes.incrementAndGet();
+                lastError = e.getMessage();
+                System.err.println("[MatchWriter] flush lỗi (" + matches.size() + " ván) - " + e.getMessage());
+                putBack(matches, st);
+                return e;
+            }
+
+            userDao.cacheStats(st.values());
+            written(st);
+            lastFlushMillis = (System.nanoTime() - t0) / 1_000_000;
+            flushedBatches.incrementAndGet();
+            flushedMatches.addAndGet(matches.size());
+            lastError = null;
+        }
+        notifyFlushed();
+        return null;
+    }
+
+    /**
+     * Lỗi không phải tạm thời, đã retry đủ: ghi lô đầu hàng từng dòng (mỗi ván, mỗi chỉ số 1 transaction)
+     * => chỉ dòng thực sự lỗi bị bỏ + đếm, không kéo theo cả lô. Gặp lỗi tạm thời giữa chừng thì trả phần
+     * chưa ghi về đầu hàng và trả về lỗi đó (retry như thường).
+     */
+    private SQLException isolateHead() {
+        synchronized (flushLock) {
+            List<MatchRow> matches = new ArrayList<>();
+            Map<String, StatsRow> st = takeHead(matches);
+            if (st == null) return null;
+
+            for (int i = 0; i < matches.size(); i++) {
+                MatchRow m = matches.get(i);
+                try {
+                    matchDao.recordResults(List.of(m), List.of());
+                    flushedMatches.incrementAndGet();
+                } catch (SQLException e) {
+                    if (isTransient(e)) {
+                        putBack(new ArrayList<>(matches.subList(i, matches.size())), st);
+                        return e;
+                    }
+                    System.err.println("[MatchWriter] bỏ ván room=" + m.roomId + " " + m.playerX + " vs " + m.playerO
+                            + " - " + e.getMessage());
+                    droppedMatches.incrementAndGet();
+                }
+            }
+
+            Map<String, StatsRow> done = new LinkedHashMap<>();
+            for (var en : st.entrySet()) {
+                StatsRow row = en.getValue();
+                try {
+                    matchDao.recordResults(List.of(), List.of(row));
+                    userDao.cacheStats(List.of(row));
+                } catch (SQLException e) {
+                    if (isTransient(e)) {
+                        Map<String, StatsRow> rest = new LinkedHashMap<>(st);
+                        rest.keySet().removeAll(done.keySet());
+                        written(done);
+                        putBack(new ArrayList<>(), rest);
+                        return e;
+                    }
+                    // RAM giữ bản không ghi được tới khi user offline, sau đó DB lại là bản đúng
+                    System.err.println("[MatchWriter] bỏ chỉ số user=" + row.username + " - " + e.getMessage());
+                    droppedStats.incrementAndGet();
+                }
+                done.put(en.getKey(), row);
+            }
+            written(done);
+            lastError = null;
+        }
+        notifyFlushed();
+        return null;
+    }
+
+    // lấy lô đầu hàng (tối đa MAX_BATCH ván + mọi chỉ số đang chờ) vào matches; null = không có gì
+    private synchronized Map<String, StatsRow> takeHead(List<MatchRow> matches) {
+        if (pendingMatches.isEmpty() && pendingStats.isEmpty()) return null;
+
+        int n = Math.min(MAX_BATCH, pendingMatches.size());
+        matches.addAll(pendingMatches.subList(0, n));
+        pendingMatches = new ArrayList<>(pendingMatches.subList(n, pendingMatches.size()));
+        Map<String, StatsRow> st = pendingStats;
+        pendingStats = new LinkedHashMap<>();
+        writing = st;
+        return st;
+    }
+
+    // trả lô lỗi về đầu hàng; chỉ số mới hơn (nếu vừa có) được giữ
+    private synchronized void putBack(List<MatchRow> matches, Map<String, StatsRow> st) {
+        matches.addAll(pendingMatches);
+        pendingMatches = matches;
+        for (var en : st.entrySet()) pendingStats.putIfAbsent(en.getKey(), en.getValue());
+        writing = Map.of();
+    }
+
+    // chỉ số đã ghi (hoặc đã bỏ): user không còn online thì DB lại là bản đúng
+    private synchronized void written(Map<String, StatsRow> st) {
+        writing = Map.of();
+        Predicate<String> p = pinned;
+        for (String u : st.keySet()) {
+            if (!p.test(u)) evictIfClean(u);
+        }
+    }
+
+    // guarded by this
+    private void evictIfClean(String username) {
+        if (!pendingStats.containsKey(username) && !writing.containsKey(username)) stats.remove(username);
+    }
+
+    private void notifyFlushed() {
+        try {
+            flushListener.run();
+        } catch (Exception e) {
+            System.err.println("[MatchWriter] flushListener - " + e.getMessage());
+        }
+    }
+
+    private static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) return true;
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("08") || state.startsWith("40")); // connection / rollback (deadlock)
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public synchronized int getPendingMatches() { return pendingMatches.size(); }
+    public synchronized int getPendingStats() { return pendingStats.size(); }
+    public long getFlushedBatches() { return flushedBatches.get(); }
+    public long getFlushedMatches() { return flushedMatches.get(); }
+    public long getFailedFlushes() { return failedFlushes.get(); }
+    public long getDroppedMatches() { return droppedMatches.get(); }
+    public long getDroppedStats() { return droppedStats.get(); }
+    public synchronized int getCachedStats() { return stats.size(); }
+    public long getLastFlushMillis() { return lastFlushMillis; }
+    public String getLastError() { return lastError; }
+}
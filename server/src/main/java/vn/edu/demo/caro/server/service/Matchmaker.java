@@ -0,0 +1,267 @@
+package vn.edu.demo.caro.server.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Hàng chờ QuickPlay theo Elo + luật chơi (thay cho duyệt mọi phòng WAITING).
+ *
+ * - Mỗi bộ luật (boardSize, timed, blockTwoEnds) là 1 pool riêng; trong pool chia bucket {@link #BUCKET_ELO} elo.
+ * - Thread "matchmaker" mỗi {@code tickMillis} ghép 1 lượt: người chờ lâu nhất được xét trước,
+ *   tìm đối thủ gần elo nhất trong cửa sổ ±{@link #window}; cửa sổ nới rộng theo thời gian chờ.
+ * - Ghép xong gọi {@link MatchHandler} ngoài khóa (LobbyServiceImpl tạo phòng).
+ * - Thống kê thời gian chờ (p50/p90/p99) trên {@link #WAIT_SAMPLES} lần ghép gần nhất.
+ */
+public class Matchmaker {
+
+    public static final int BUCKET_ELO = 50;
+    private static final int BASE_WINDOW = 100;
+    private static final int WIDEN_PER_SEC = 25;
+    private static final int MAX_WINDOW = 1000;
+    private static final int SCAN_PER_BUCKET = 16; // bucket rất đông => chỉ xét vài người chờ lâu nhất
+    private static final int WAIT_SAMPLES = 4096; // lũy thừa 2: chỉ số vòng = waitCount & (WAIT_SAMPLES - 1)
+
+    public static final class Prefs {
+        public final int boardSize;
+        public final boolean timed;
+        public final boolean blockTwoEnds;
+
+        public Prefs(int boardSize, boolean timed, boolean blockTwoEnds) {
+            this.boardSize = boardSize;
+            this.timed = timed;
+            this.blockTwoEnds = blockTwoEnds;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Prefs)) return false;
+            Prefs p = (Prefs) o;
+            return boardSize == p.boardSize && timed == p.timed && blockTwoEnds == p.blockTwoEnds;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(boardSize, timed, blockTwoEnds);
+        }
+
+        @Override
+        public String toString() {
+            return boardSize + "x" + boardSize + (timed ? ", timed" : "") + (blockTwoEnds ? ", chặn 2 đầu" : "");
+        }
+    }
+
+    public static final class Ticket {
+        public final String username;
+        public final int elo;
+        public final Prefs prefs;
+        public final long enqueuedAt;
+
+        public Ticket(String username, int elo, Prefs prefs, long enqueuedAt) {
+            this.username = username;
+            this.elo = elo;
+            this.prefs = prefs;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    public interface MatchHandler {
+        void onMatched(Ticket a, Ticket b);
+    }
+
+    private final long tickMillis;
+    private volatile MatchHandler handler = (a, b) -> {};
+
+    // ===== guarded by this =====
+    private final LinkedHashMap<String, Ticket> queue = new LinkedHashMap<>(); // thứ tự vào hàng
+    private final Map<Prefs, Map<Integer, LinkedHashSet<Ticket>>> pools = new HashMap<>();
+    private final long[] waits = new long[WAIT_SAMPLES];
+    private long waitCount = 0; // long: int sẽ tràn âm sau 2^31 lần ghép
+    private long matched = 0;
+    private long lastTickMicros = 0;
+    private boolean running = true;
+
+    public Matchmaker(long tickMillis) {
+        this.tickMillis = tickMillis;
+
+        Thread t = new Thread(this::runLoop, "matchmaker");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void setMatchHandler(MatchHandler handler) {
+        this.handler = handler;
+    }
+
+    // ============================================================
+    // Queue
+    // ============================================================
+
+    /** Vào hàng (đã trong hàng thì thay luật / elo nhưng giữ thời điểm vào hàng). */
+    public synchronized void enqueue(String username, int elo, Prefs prefs) {
+        Ticket old = queue.get(username);
+        long since = old == null ? System.currentTimeMillis() : old.enqueuedAt;
+        if (old != null) remove(old);
+        add(new Ticket(username, elo, prefs, since));
+    }
+
+    /** Trả 1 vé về hàng (ghép xong nhưng đối thủ không còn hợp lệ), giữ nguyên thời gian chờ. */
+    public synchronized void requeue(Ticket t) {
+        if (!queue.containsKey(t.username)) add(t);
+    }
+
+    public synchronized boolean cancel(String username) {
+        Ticket t = queue.get(username);
+        if (t == null) return false;
+        remove(t);
+        return true;
+    }
+
+    public synchronized boolean isQueued(String username) {
+        return queue.containsKey(username);
+    }
+
+    private void add(Ticket t) {
+        queue.put(t.username, t);
+        pools.computeIfAbsent(t.prefs, k -> new HashMap<>())
+                .computeIfAbsent(bucket(t.elo), k -> new LinkedHashSet<>())
+                .add(t);
+    }
+
+    private void remove(Ticket t) {
+        queue.remove(t.username);
+        Map<Integer, LinkedHashSet<Ticket>> pool = pools.get(t.prefs);
+        if (pool == null) return;
+        LinkedHashSet<Ticket> set = pool.get(bucket(t.elo));
+        if (set == null) return;
+        set.remove(t);
+        if (set.isEmpty()) pool.remove(bucket(t.elo));
+        if (pool.isEmpty()) pools.remove(t.prefs);
+    }
+
+    private static int bucket(int elo) {
+        return Math.floorDiv(elo, BUCKET_ELO);
+    }
+
+    /** Độ lệch elo chấp nhận được sau {@code waitedMillis} chờ. */
+    public static int window(long waitedMillis) {
+        long w = BASE_WINDOW + waitedMillis / 1000 * WIDEN_PER_SEC;
+        return (int) Math.min(MAX_WINDOW, w);
+    }
+
+    // ============================================================
+    // Pairing
+    // ============================================================
+
+    /** 1 lượt ghép; public để bench gọi trực tiếp không cần thread. */
+    public synchronized List<Ticket[]> tick(long now) {
+        long t0 = System.nanoTime();
+        List<Ticket[]> out = new ArrayList<>();
+        for (Ticket t : new ArrayList<>(queue.values())) {
+            if (queue.get(t.username) != t) continue; // đã được ghép trong lượt này
+
+            Ticket o = findOpponent(t, window(now - t.enqueuedAt));
+            if (o == null) continue;
+
+            remove(t);
+            remove(o);
+            recordWait(now - t.enqueuedAt);
+            recordWait(now - o.enqueuedAt);
+            matched++;
+            out.add(new Ticket[]{t, o});
+        }
+        lastTickMicros = (System.nanoTime() - t0) / 1_000;
+        return out;
+    }
+
+    // bucket của mình trước, rồi nới dần 2 phía; dừng khi bucket xa hơn chắc chắn không tốt hơn
+    private Ticket findOpponent(Ticket t, int window) {
+        Map<Integer, LinkedHashSet<Ticket>> pool = pools.get(t.prefs);
+        if (pool == null) return null;
+
+        int b = bucket(t.elo);
+        int span = window / BUCKET_ELO + 1;
+        Ticket best = null;
+        int bestDiff = Integer.MAX_VALUE;
+
+        for (int d = 0; d <= span; d++) {
+            if (best != null && (d - 1) * BUCKET_ELO >= bestDiff) break;
+            for (int k = -1; k <= 1; k += 2) {
+                if (d == 0 && k > 0) break;
+                LinkedHashSet<Ticket> set = pool.get(b + d * k);
+                if (set == null) continue;
+                int scanned = 0;
+                for (Ticket o : set) {
+                    if (o == t) continue;
+                    if (++scanned > SCAN_PER_BUCKET) break;
+                    int diff = Math.abs(o.elo - t.elo);
+                    if (diff <= window && diff < bestDiff) {
+                        best = o;
+                        bestDiff = diff;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        notifyAll();
+    }
+
+    private void runLoop() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    if (running) wait(tickMillis);
+                    if (!running) return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            List<Ticket[]> pairs = tick(System.currentTimeMillis());
+            for (Ticket[] p : pairs) {
+                try {
+                    handler.onMatched(p[0], p[1]);
+                } catch (Exception e) {
+                    System.err.println("[Matchmaker] " + p[0].username + " vs " + p[1].username + " - " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void recordWait(long millis) {
+        waits[(int) (waitCount & (WAIT_SAMPLES - 1))] = Math.max(0, millis);
+        waitCount++;
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public synchronized int getQueued() { return queue.size(); }
+    public synchronized long getMatched() { return matched; }
+    public synchronized long getLastTickMicros() { return lastTickMicros; }
+
+    /** Thời gian chờ (ms) ở phân vị {@code p} (0..100) trên các lần ghép gần nhất, 0 nếu chưa có. */
+    public synchronized long waitPercentile(double p) {
+        int n = (int) Math.min(waitCount, WAIT_SAMPLES);
+        if (n == 0) return 0;
+        long[] sorted = Arrays.copyOf(waits, n);
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(p / 100.0 * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, idx))];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("queued=%d, matched=%d, wait p50=%dms, p90=%dms, p99=%dms, last tick=%dus",
+                queue.size(), matched, waitPercentile(50), waitPercentile(90), waitPercentile(99), lastTickMicros);
+    }
+}
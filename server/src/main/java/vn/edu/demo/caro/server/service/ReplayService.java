@@ -0,0 +1,118 @@
+package vn.edu.demo.caro.server.service;
+
+import vn.edu.demo.caro.common.model.GameRecord;
+import vn.edu.demo.caro.common.model.MatchSummary;
+import vn.edu.demo.caro.common.model.PackedBoard;
+import vn.edu.demo.caro.common.model.ReplayChunk;
+import vn.edu.demo.caro.server.dao.MatchDao;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Xem lại ván đã lưu: client kéo từng đoạn nước đi ({@link ReplayChunk}) kèm keyframe thay vì 1 GameSnapshot / nước.
+ *
+ * - Chỉ đọc MatchDao, không đụng ServerState.rooms / khóa phòng => không ảnh hưởng ván đang chơi.
+ * - Ván đã xong không đổi nữa => keyframe tính 1 lần khi nạp (1 lượt qua các nước, đặt bit trực tiếp trên
+ *   mảng pack) rồi giữ trong cache LRU {@code CACHE_SIZE} ván; mỗi đoạn chỉ cắt mảng có sẵn.
+ */
+public class ReplayService {
+
+    /** Keyframe mỗi 16 nước: seek = unpack 1 keyframe + tối đa 15 nước. */
+    public static final int KEYFRAME_INTERVAL = 16;
+    public static final int MAX_CHUNK_MOVES = 256;
+    public static final int MAX_RECENT = 50;
+    private static final int CACHE_SIZE = 256;
+
+    private final MatchDao matchDao;
+
+    // ===== guarded by this =====
+    private final LinkedHashMap<Long, Replay> cache = new LinkedHashMap<>(64, 0.75f, true) { // access-order
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Replay> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private long hits, misses;
+
+    public ReplayService(MatchDao matchDao) {
+        this.matchDao = matchDao;
+    }
+
+    public List<MatchSummary> recentMatches(String username, int limit) throws SQLException {
+        return matchDao.recentMatches(username, Math.max(1, Math.min(limit, MAX_RECENT)));
+    }
+
+    /** Đoạn [fromMove, fromMove + maxMoves) (fromMove làm tròn xuống bội số keyframe); null nếu không có ván. */
+    public ReplayChunk chunk(long matchId, int fromMove, int maxMoves) throws SQLException {
+        Replay r = load(matchId);
+        if (r == null) return null;
+
+        int total = r.game.getMoveCount();
+        int from = Math.max(0, Math.min(fromMove, total));
+        from -= from % KEYFRAME_INTERVAL;
+        int to = Math.min(total, from + Math.max(1, Math.min(maxMoves, MAX_CHUNK_MOVES)));
+
+        int[] cells = new int[to - from];
+        int[] think = new int[to - from];
+        for (int i = from; i < to; i++) {
+            cells[i - from] = r.game.getCell(i);
+            think[i - from] = r.game.getThinkMillis(i);
+        }
+        // keyframe ở from, from + 16, ... < to (luôn có keyframe ở from)
+        int k0 = from / KEYFRAME_INTERVAL;
+        int k1 = Math.max(k0 + 1, (to + KEYFRAME_INTERVAL - 1) / KEYFRAME_INTERVAL);
+        long[][] keyframes = Arrays.copyOfRange(r.keyframes, k0, k1);
+        return new ReplayChunk(matchId, r.game.getBoardSize(), total, KEYFRAME_INTERVAL, from, cells, think, keyframes);
+    }
+
+    private Replay load(long matchId) throws SQLException {
+        synchronized (this) {
+            Replay r = cache.get(matchId);
+            if (r != null) {
+                hits++;
+                return r;
+            }
+            misses++;
+        }
+        // đọc DB ngoài khóa; 2 client cùng nạp 1 ván thì tính 2 lần, kết quả như nhau
+        GameRecord game = matchDao.getMatchMoves(matchId);
+        if (game == null) return null;
+        Replay r = new Replay(game);
+        synchronized (this) {
+            cache.put(matchId, r);
+        }
+        return r;
+    }
+
+    public synchronized int getCached() {
+        return cache.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class Replay {
+        final GameRecord game;
+        final long[][] keyframes; // [k] = bàn cờ sau k * KEYFRAME_INTERVAL nước
+
+        Replay(GameRecord game) {
+            this.game = game;
+            int n = game.getMoveCount();
+            this.keyframes = new long[n / KEYFRAME_INTERVAL + 1][];
+            long[] words = PackedBoard.empty(game.getBoardSize());
+            for (int i = 0; i <= n; i++) {
+                if (i % KEYFRAME_INTERVAL == 0) keyframes[i / KEYFRAME_INTERVAL] = words.clone();
+                if (i < n) PackedBoard.place(words, game.getCell(i), game.getMark(i));
+            }
+        }
+    }
+}
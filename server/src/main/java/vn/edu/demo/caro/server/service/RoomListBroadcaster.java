@@ -0,0 +1,114 @@
+package vn.edu.demo.caro.server.service;
+
+import vn.edu.demo.caro.common.model.RoomInfo;
+import vn.edu.demo.caro.common.model.RoomListDelta;
+import vn.edu.demo.caro.server.state.OnlineSession;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi delta danh sách phòng cho mọi session, ngoài khóa phòng / khóa roomList.
+ *
+ * - broadcastRoom chỉ gán version (dưới khóa roomList) rồi {@link #submit} => thứ tự trong hàng = thứ tự version.
+ * - Thread "room-list": lấy hết các delta đang chờ, gộp thành 1 delta [from đầu, to cuối]
+ *   (mỗi phòng chỉ giữ trạng thái cuối), fan-out 1 lần cho mọi session => tải nặng thì số callback
+ *   theo số lô chứ không theo số thay đổi.
+ * - 1 thread duy nhất => mỗi client nhận delta đúng thứ tự version; delta bị bỏ (mailbox đầy)
+ *   thì client thấy hở version và tự resync như trước.
+ */
+public class RoomListBroadcaster {
+
+    private final CallbackDispatcher callbacks;
+    private final Iterable<OnlineSession> recipients;
+
+    // ===== guarded by this =====
+    private List<RoomListDelta> pending = new ArrayList<>();
+    private boolean running = true;
+
+    // ===== Metrics =====
+    private final AtomicLong deltas = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong deliveries = new AtomicLong();
+
+    public RoomListBroadcaster(CallbackDispatcher callbacks, Iterable<OnlineSession> recipients) {
+        this.callbacks = callbacks;
+        this.recipients = recipients;
+
+        Thread t = new Thread(this::runLoop, "room-list");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Gọi theo đúng thứ tự version (đang giữ khóa roomList). */
+    public synchronized void submit(RoomListDelta delta) {
+        pending.add(delta);
+        deltas.incrementAndGet();
+        notifyAll();
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        notifyAll();
+    }
+
+    private void runLoop() {
+        while (true) {
+            try {
+                List<RoomListDelta> all;
+                synchronized (this) {
+                    while (running && pending.isEmpty()) wait();
+                    if (!running) return;
+                    all = pending;
+                    pending = new ArrayList<>();
+                }
+                RoomListDelta delta = merge(all);
+                long n = 0;
+                for (OnlineSession s : recipients) {
+                    if (s.callback == null) continue;
+                    callbacks.sendDroppable(s, cb -> cb.onRoomListDelta(delta));
+                    n++;
+                }
+                batches.incrementAndGet();
+                deliveries.addAndGet(n);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("[RoomList] " + e.getMessage());
+            }
+        }
+    }
+
+    // các delta liên tiếp => 1 delta; id phòng không dùng lại nên "xóa" luôn là trạng thái cuối của phòng đó
+    static RoomListDelta merge(List<RoomListDelta> all) {
+        if (all.size() == 1) return all.get(0);
+        Map<String, RoomInfo> upserts = new LinkedHashMap<>();
+        Set<String> removed = new LinkedHashSet<>();
+        for (RoomListDelta d : all) {
+            for (String id : d.getRemovedIds()) {
+                upserts.remove(id);
+                removed.add(id);
+            }
+            for (RoomInfo r : d.getUpserts()) {
+                removed.remove(r.getId());
+                upserts.put(r.getId(), r);
+            }
+        }
+        return new RoomListDelta(all.get(0).getFromVersion(), all.get(all.size() - 1).getToVersion(), false,
+                new ArrayList<>(upserts.values()), new ArrayList<>(removed));
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public synchronized int getPending() { return pending.size(); }
+    public long getDeltas() { return deltas.get(); }
+    public long getBatches() { return batches.get(); }
+    public long getDeliveries() { return deliveries.get(); }
+}
@@ -0,0 +1,53 @@
+package vn.edu.demo.caro.server.service;
+
+import vn.edu.demo.caro.common.model.RoomInfo;
+import vn.edu.demo.caro.common.model.RoomListDelta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bản danh sách phòng đã gửi cho client + số version.
+ *
+ * Mỗi thay đổi nhìn thấy được của 1 phòng tăng version lên 1 và sinh ra 1 delta;
+ * thay đổi không ảnh hưởng RoomInfo (vd. nước đi) không sinh gì cả.
+ * Client thấy hở version thì gọi {@link #full()} (qua LobbyService.fetchRoomList) để resync.
+ */
+public class RoomListTracker {
+
+    private final Map<String, RoomInfo> published = new HashMap<>();
+    private long version = 0;
+
+    /**
+     * @param info null = phòng đã bị xóa
+     * @return delta cần gửi, hoặc null nếu client không thấy gì thay đổi
+     */
+    public synchronized RoomListDelta update(String roomId, RoomInfo info) {
+        if (info == null) {
+            if (published.remove(roomId) == null) return null;
+            return next(List.of(), List.of(roomId));
+        }
+
+        RoomInfo old = published.get(roomId);
+        if (Objects.equals(old, info)) return null;
+
+        published.put(roomId, info);
+        return next(List.of(info), List.of());
+    }
+
+    public synchronized RoomListDelta full() {
+        return new RoomListDelta(version, version, true, new ArrayList<>(published.values()), List.of());
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    private RoomListDelta next(List<RoomInfo> upserts, List<String> removedIds) {
+        long from = version++;
+        return new RoomListDelta(from, version, false, upserts, removedIds);
+    }
+}
@@ -0,0 +1,177 @@
+package vn.edu.demo.caro.server.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel cho deadline từng lượt đi.
+ *
+ * - arm / cancel đều O(1): mỗi slot là 1 danh sách liên kết đôi.
+ * - 1 thread tick mỗi {@code tickMillis}, chỉ xử lý đúng slot hiện tại
+ *   => không còn quét toàn bộ phòng mỗi 300ms.
+ * - Deadline xa hơn 1 vòng wheel được đếm bằng {@code rounds} (kiểu Netty),
+ *   nên không cần wheel nhiều tầng với giới hạn 15s..300s/lượt.
+ * - Không bao giờ fire sớm; trễ tối đa ~1 tick.
+ */
+public class TurnTimer {
+
+    @FunctionalInterface
+    public interface ExpiryHandler {
+        void onExpired(Timeout timeout);
+    }
+
+    public static final class Timeout {
+        public final String roomId;
+        public final long deadlineMillis;
+
+        // guarded by TurnTimer.this
+        private long rounds;
+        private int slot = -1; // -1 = không còn nằm trong wheel (đã fire / đã hủy)
+        private Timeout prev, next;
+
+        private Timeout(String roomId, long deadlineMillis) {
+            this.roomId = roomId;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+
+    private final long tickMillis;
+    private final Timeout[] slots;
+    private final int mask;
+    private final long startMillis;
+    private final ExpiryHandler handler;
+
+    private long tick = 0;   // tick kế tiếp sẽ xử lý (guarded by this)
+    private int pending = 0; // guarded by this
+    private volatile boolean running = true;
+
+    // ===== Metrics =====
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+    private final AtomicLong totalLateMillis = new AtomicLong();
+    private final AtomicLong maxLateMillis = new AtomicLong();
+
+    public TurnTimer(long tickMillis, int wheelSize, ExpiryHandler handler) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis");
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1)
+            throw new IllegalArgumentException("wheelSize phải là lũy thừa của 2");
+
+        this.tickMillis = tickMillis;
+        this.slots = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+        this.handler = handler;
+        this.startMillis = System.currentTimeMillis();
+
+        Thread worker = new Thread(this::runLoop, "turn-timer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Đặt hẹn giờ cho phòng; trả về handle để hủy. */
+    public synchronized Timeout arm(String roomId, long deadlineMillis) {
+        Timeout t = new Timeout(roomId, deadlineMillis);
+
+        // tick T được xử lý sớm nhất lúc start + T*tick => ceil để không fire sớm
+        long target = (deadlineMillis - startMillis + tickMillis - 1) / tickMillis;
+        if (target < tick) target = tick;
+
+        t.rounds = (target - tick) / slots.length;
+        t.slot = (int) (target & mask);
+
+        t.next = slots[t.slot];
+        if (t.next != null) t.next.prev = t;
+        slots[t.slot] = t;
+        pending++;
+        return t;
+    }
+
+    /** Hủy hẹn giờ. Trả về false nếu đã fire hoặc đã hủy trước đó. */
+    public synchronized boolean cancel(Timeout t) {
+        if (t == null || t.slot < 0) return false;
+        unlink(t);
+        cancelledCount.incrementAndGet();
+        return true;
+    }
+
+    public void shutdown() {
+        running = false;
+    }
+
+    // ============================================================
+    // Worker
+    // ============================================================
+    private void runLoop() {
+        while (running) {
+            try {
+                long due;
+                synchronized (this) {
+                    due = startMillis + tick * tickMillis;
+                }
+                long sleep = due - System.currentTimeMillis();
+                if (sleep > 0) Thread.sleep(sleep);
+
+                for (Timeout t : advance()) {
+                    long late = System.currentTimeMillis() - t.deadlineMillis;
+                    recordFired(late);
+                    try {
+                        handler.onExpired(t);
+                    } catch (Exception e) {
+                        System.err.println("[TurnTimer] room=" + t.roomId + " - " + e.getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // xử lý 1 slot, gọi handler NGOÀI khóa
+    private synchronized List<Timeout> advance() {
+        List<Timeout> expired = new ArrayList<>(0);
+        int idx = (int) (tick & mask);
+
+        Timeout t = slots[idx];
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.rounds > 0) {
+                t.rounds--;
+            } else {
+                unlink(t);
+                expired.add(t);
+            }
+            t = next;
+        }
+        tick++;
+        return expired;
+    }
+
+    private void unlink(Timeout t) {
+        if (t.prev != null) t.prev.next = t.next;
+        else slots[t.slot] = t.next;
+        if (t.next != null) t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.slot = -1;
+        pending--;
+    }
+
+    private void recordFired(long lateMillis) {
+        firedCount.incrementAndGet();
+        totalLateMillis.addAndGet(Math.max(0, lateMillis));
+        maxLateMillis.accumulateAndGet(lateMillis, Math::max);
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public synchronized int getPending() { return pending; }
+    public long getFiredCount() { return firedCount.get(); }
+    public long getCancelledCount() { return cancelledCount.get(); }
+    public long getMaxLateMillis() { return maxLateMillis.get(); }
+
+    public double getAvgLateMillis() {
+        long n = firedCount.get();
+        return n == 0 ? 0.0 : (double) totalLateMillis.get() / n;
+    }
+}
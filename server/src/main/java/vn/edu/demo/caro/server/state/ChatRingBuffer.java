@@ -0,0 +1,62 @@
+package vn.edu.demo.caro.server.state;
+
+import vn.edu.demo.caro.common.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lịch sử chat global: ring buffer cố định, không khóa.
+ *
+ * - append: lấy seq bằng AtomicLong rồi ghi vào ô (seq & mask) => bộ nhớ không tăng theo thời gian.
+ * - before(beforeSeq, limit): phân trang kiểu keyset (seq < beforeSeq), mới nhất trước rồi đảo lại.
+ *   Ô nào mang seq khác seq đang tìm thì: seq lớn hơn = đã bị ghi đè (dừng), nhỏ hơn / null = đang ghi dở (bỏ qua).
+ */
+public class ChatRingBuffer {
+
+    private final AtomicReferenceArray<ChatMessage> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong(1); // seq bắt đầu từ 1
+
+    public ChatRingBuffer(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1; // làm tròn lên lũy thừa 2
+        this.slots = new AtomicReferenceArray<>(cap);
+        this.mask = cap - 1;
+    }
+
+    /** Gán seq và lưu; trả về bản đã có seq (để gửi cho client). */
+    public ChatMessage append(ChatMessage msg) {
+        long seq = next.getAndIncrement();
+        ChatMessage m = msg.withSeq(seq);
+        slots.set((int) (seq & mask), m);
+        return m;
+    }
+
+    /** Tối đa {@code limit} tin có seq < {@code beforeSeq}, thứ tự cũ -> mới. */
+    public List<ChatMessage> before(long beforeSeq, int limit) {
+        long hi = Math.min(beforeSeq, next.get()) - 1;
+        long lo = Math.max(1, hi - mask); // chỉ 1 vòng buffer
+        List<ChatMessage> out = new ArrayList<>(Math.max(0, Math.min(limit, (int) (hi - lo + 1))));
+
+        for (long s = hi; s >= lo && out.size() < limit; s--) {
+            ChatMessage m = slots.get((int) (s & mask));
+            if (m == null || m.getSeq() < s) continue; // writer đã lấy seq nhưng chưa ghi xong
+            if (m.getSeq() > s) break;                 // đã bị vòng sau ghi đè => cũ hơn cũng mất
+            out.add(m);
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    /** seq của tin mới nhất (0 nếu chưa có). */
+    public long lastSeq() {
+        return next.get() - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
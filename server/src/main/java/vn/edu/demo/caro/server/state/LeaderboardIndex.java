@@ -0,0 +1,220 @@
+package vn.edu.demo.caro.server.state;
+
+import vn.edu.demo.caro.common.model.UserProfile;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bảng xếp hạng trong RAM: treap có đếm size (order-statistic tree).
+ *
+ * Thứ tự: elo giảm dần, cùng elo thì username tăng dần.
+ * - top(n): O(log N + n)
+ * - rankOf / countEloGreater / select: O(log N)
+ * - put (user mới hoặc đổi chỉ số): O(log N)
+ *
+ * Nạp toàn bộ user lúc khởi động, sau đó cập nhật mỗi khi chỉ số đổi
+ * => không còn ORDER BY elo / COUNT(*) trên bảng users.
+ */
+public class LeaderboardIndex {
+
+    private static final class Node {
+        final UserProfile p;
+        final int prio = ThreadLocalRandom.current().nextInt();
+        int size = 1;
+        Node left, right;
+
+        Node(UserProfile p) {
+            this.p = p;
+        }
+    }
+
+    // guarded by this
+    private Node root;
+    private final Map<String, UserProfile> byName = new HashMap<>();
+
+    public synchronized void reload(Collection<UserProfile> all) {
+        root = null;
+        byName.clear();
+        for (UserProfile p : all) put(p, 0);
+    }
+
+    /**
+     * Thêm / cập nhật 1 user.
+     * @return true nếu user nằm trong top {@code watchTopN} trước hoặc sau khi cập nhật
+     *         (tức là top-N mà client nhìn thấy đã đổi)
+     */
+    public synchronized boolean put(UserProfile p, int watchTopN) {
+        UserProfile old = byName.put(p.getUsername(), p);
+        boolean visible = false;
+        if (old != null) {
+            visible = countLess(old.getElo(), old.getUsername()) < watchTopN;
+            root = erase(root, old);
+        }
+        root = insert(root, new Node(p));
+        return visible || countLess(p.getElo(), p.getUsername()) < watchTopN;
+    }
+
+    /** Chỉ thêm nếu chưa có (user mới đăng ký / đăng nhập lần đầu). */
+    public synchronized boolean putIfAbsent(UserProfile p, int watchTopN) {
+        if (byName.containsKey(p.getUsername())) return false;
+        return put(p, watchTopN);
+    }
+
+    public synchronized UserProfile get(String username) {
+        return byName.get(username);
+    }
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    public synchronized List<UserProfile> top(int n) {
+        List<UserProfile> out = new ArrayList<>(Math.max(0, Math.min(n, size(root))));
+        // duyệt in-order, dừng sau n phần tử
+        Deque<Node> stack = new ArrayDeque<>();
+        Node t = root;
+        while ((t != null || !stack.isEmpty()) && out.size() < n) {
+            while (t != null) {
+                stack.push(t);
+                t = t.left;
+            }
+            t = stack.pop();
+            out.add(t.p);
+            t = t.right;
+        }
+        return out;
+    }
+
+    /** Số user có elo lớn hơn {@code elo} (rank kiểu "đồng hạng" = kết quả + 1). */
+    public synchronized int countEloGreater(int elo) {
+        return countLess(elo, "");
+    }
+
+    /** Rank 1-based theo elo (đồng elo đồng hạng), 0 nếu không có user. */
+    public synchronized int rankOf(String username) {
+        UserProfile p = byName.get(username);
+        return p == null ? 0 : countLess(p.getElo(), "") + 1;
+    }
+
+    /** Các user đứng quanh {@code username} (radius người mỗi phía), theo thứ tự bảng xếp hạng. */
+    public synchronized List<UserProfile> around(String username, int radius) {
+        UserProfile p = byName.get(username);
+        if (p == null) return List.of();
+        int pos = countLess(p.getElo(), p.getUsername());
+        int from = Math.max(0, pos - radius);
+        int to = Math.min(size(root) - 1, pos + radius);
+        List<UserProfile> out = new ArrayList<>(to - from + 1);
+        for (int i = from; i <= to; i++) out.add(select(i));
+        return out;
+    }
+
+    // ============================================================
+    // Treap
+    // ============================================================
+    private static int compare(int eloA, String nameA, int eloB, String nameB) {
+        if (eloA != eloB) return eloA > eloB ? -1 : 1;
+        return nameA.compareTo(nameB);
+    }
+
+    private static int compare(UserProfile a, UserProfile b) {
+        return compare(a.getElo(), a.getUsername(), b.getElo(), b.getUsername());
+    }
+
+    private static int size(Node t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private static Node fix(Node t) {
+        t.size = 1 + size(t.left) + size(t.right);
+        return t;
+    }
+
+    private static Node rotateRight(Node t) {
+        Node l = t.left;
+        t.left = l.right;
+        l.right = fix(t);
+        return fix(l);
+    }
+
+    private static Node rotateLeft(Node t) {
+        Node r = t.right;
+        t.right = r.left;
+        r.left = fix(t);
+        return fix(r);
+    }
+
+    private static Node insert(Node t, Node n) {
+        if (t == null) return n;
+        if (compare(n.p, t.p) < 0) {
+            t.left = insert(t.left, n);
+            if (t.left.prio > t.prio) return rotateRight(t);
+        } else {
+            t.right = insert(t.right, n);
+            if (t.right.prio > t.prio) return rotateLeft(t);
+        }
+        return fix(t);
+    }
+
+    private static Node erase(Node t, UserProfile p) {
+        if (t == null) return null;
+        int c = compare(p, t.p);
+        if (c < 0) {
+            t.left = erase(t.left, p);
+        } else if (c > 0) {
+            t.right = erase(t.right, p);
+        } else {
+            return merge(t.left, t.right);
+        }
+        return fix(t);
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.prio > b.prio) {
+            a.right = merge(a.right, b);
+            return fix(a);
+        }
+        b.left = merge(a, b.left);
+        return fix(b);
+    }
+
+    // số node đứng trước khóa (elo, name)
+    private int countLess(int elo, String name) {
+        int n = 0;
+        Node t = root;
+        while (t != null) {
+            if (compare(t.p.getElo(), t.p.getUsername(), elo, name) < 0) {
+                n += size(t.left) + 1;
+                t = t.right;
+            } else {
+                t = t.left;
+            }
+        }
+        return n;
+    }
+
+    // phần tử thứ k (0-based)
+    private UserProfile select(int k) {
+        Node t = root;
+        while (t != null) {
+            int ls = size(t.left);
+            if (k < ls) {
+                t = t.left;
+            } else if (k == ls) {
+                return t.p;
+            } else {
+                k -= ls + 1;
+                t = t.right;
+            }
+        }
+        return null;
+    }
+}
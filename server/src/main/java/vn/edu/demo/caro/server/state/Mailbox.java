@@ -0,0 +1,144 @@
+package vn.edu.demo.caro.server.state;
+
+import vn.edu.demo.caro.common.rmi.ClientCallback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hàng đợi callback gửi ra 1 client (mỗi OnlineSession có 1 cái).
+ *
+ * - Có giới hạn {@code capacity}; thứ tự gửi = thứ tự offer.
+ * - LATEST: chỉ giữ bản mới nhất theo key (snapshot, room list...), bản cũ chưa gửi bị bỏ.
+ * - DROPPABLE: chat; khi đầy thì bỏ chat cũ nhất (hoặc chính tin mới) thay vì chặn.
+ * - NORMAL đầy mà không còn gì để bỏ => client coi như chết, mailbox bị đóng.
+ *
+ * Việc lên lịch drain do CallbackDispatcher làm; class này chỉ giữ dữ liệu (guarded by this).
+ */
+public class Mailbox {
+
+    public enum Kind { NORMAL, LATEST, DROPPABLE }
+
+    public enum Offer {
+        SCHEDULE,   // đã vào hàng, mailbox đang rảnh => caller phải lên lịch drain
+        QUEUED,     // đã vào hàng, đang có worker drain
+        COALESCED,  // thay thế bản cũ cùng key
+        DROPPED,    // bỏ 1 tin chat (tin mới hoặc tin cũ nhất)
+        OVERFLOW,   // đầy, không bỏ được gì => mailbox vừa bị đóng
+        CLOSED
+    }
+
+    @FunctionalInterface
+    public interface Call {
+        void run(ClientCallback cb) throws Exception;
+    }
+
+    public static final class Envelope {
+        public final Kind kind;
+        public final String key;
+        public final Call call;
+        public final long enqueuedNanos = System.nanoTime();
+
+        public Envelope(Kind kind, String key, Call call) {
+            this.kind = kind;
+            this.key = key;
+            this.call = call;
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Envelope> queue = new ArrayDeque<>();
+    private final Map<String, Envelope> latest = new HashMap<>();
+    private boolean scheduled = false;
+    private boolean closed = false;
+    private int highWater = 0;
+    private int discarded = 0; // tin còn trong hàng lúc close
+
+    // chỉ worker đang drain đọc/ghi (mỗi lúc tối đa 1 worker)
+    public int consecutiveFailures = 0;
+
+    public Mailbox(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized Offer offer(Envelope e) {
+        if (closed) return Offer.CLOSED;
+
+        if (e.kind == Kind.LATEST) {
+            Envelope old = latest.put(e.key, e);
+            // bản cũ còn trong hàng => bỏ nó, đưa bản mới xuống cuối để không vượt mặt các event sau nó
+            if (old != null && queue.removeFirstOccurrence(old)) {
+                queue.addLast(e);
+                return Offer.COALESCED;
+            }
+        }
+
+        boolean dropped = false;
+        if (queue.size() >= capacity) {
+            if (e.kind == Kind.DROPPABLE) return Offer.DROPPED;
+            if (!dropOldestChat()) {
+                close();
+                return Offer.OVERFLOW;
+            }
+            dropped = true;
+        }
+
+        queue.addLast(e);
+        highWater = Math.max(highWater, queue.size());
+
+        if (!scheduled) {
+            scheduled = true;
+            return Offer.SCHEDULE;
+        }
+        return dropped ? Offer.DROPPED : Offer.QUEUED;
+    }
+
+    /** Lấy tối đa {@code max} tin; trả về rỗng (và nhả cờ scheduled) nếu hết. */
+    public synchronized List<Envelope> pollBatch(int max) {
+        if (queue.isEmpty()) {
+            scheduled = false;
+            return List.of();
+        }
+        List<Envelope> batch = new ArrayList<>(Math.min(max, queue.size()));
+        while (batch.size() < max && !queue.isEmpty()) {
+            Envelope e = queue.pollFirst();
+            if (e.kind == Kind.LATEST) latest.remove(e.key, e);
+            batch.add(e);
+        }
+        return batch;
+    }
+
+    /**
+     * Đóng mailbox, bỏ hết tin chưa gửi (đếm vào {@link #getDiscarded}) và nhả cờ scheduled
+     * (offer sau đó trả CLOSED nên không ai lên lịch drain nữa). Trả về true nếu đây là lần đóng đầu tiên.
+     */
+    public synchronized boolean close() {
+        if (closed) return false;
+        closed = true;
+        scheduled = false;
+        discarded += queue.size();
+        queue.clear();
+        latest.clear();
+        return true;
+    }
+
+    public synchronized boolean isClosed() { return closed; }
+    public synchronized int size() { return queue.size(); }
+    public synchronized int getHighWater() { return highWater; }
+    public synchronized int getDiscarded() { return discarded; }
+
+    private boolean dropOldestChat() {
+        Iterator<Envelope> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().kind == Kind.DROPPABLE) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+}
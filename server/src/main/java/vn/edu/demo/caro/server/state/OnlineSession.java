@@ -1,10 +1,15 @@
 package vn.edu.demo.caro.server.state;
 
 import vn.edu.demo.caro.common.rmi.ClientCallback;
+import vn.edu.demo.caro.server.service.CallbackDispatcher;
 
 public class OnlineSession {
     public final String username;
     public volatile ClientCallback callback;
+    // hàng đợi callback ra client này, drain bởi CallbackDispatcher
+    public final Mailbox mailbox = new Mailbox(CallbackDispatcher.MAILBOX_CAPACITY);
+    // lần gần nhất 1 callback tới client thành công (LivenessMonitor dựa vào đây để phát hiện client chết)
+    public volatile long lastDeliveryMillis = System.currentTimeMillis();
 
     public OnlineSession(String username, ClientCallback callback) {
         this.username = username;
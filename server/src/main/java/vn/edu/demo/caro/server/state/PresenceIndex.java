@@ -0,0 +1,134 @@
+package vn.edu.demo.caro.server.state;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chỉ mục "user đang ở phòng nào / có đang đánh không" (thay cho việc duyệt mọi Room + players.contains).
+ *
+ * - Cập nhật theo phòng: {@link #syncRoom} nhận danh sách người chơi + trạng thái hiện tại của 1 phòng
+ *   (gọi dưới khóa phòng, cùng chỗ với broadcast danh sách phòng), tự tính ai vào / ai ra.
+ * - Đọc {@link #get} không khóa (ConcurrentHashMap), O(1).
+ * - Online / offline không lưu ở đây: vẫn là state.online.
+ */
+public class PresenceIndex {
+
+    public static final class Presence {
+        public final String roomId;   // phòng vào gần nhất
+        public final boolean playing; // có phòng nào đang PLAYING
+
+        Presence(String roomId, boolean playing) {
+            this.roomId = roomId;
+            this.playing = playing;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Presence)) return false;
+            Presence p = (Presence) o;
+            return playing == p.playing && Objects.equals(roomId, p.roomId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(roomId, playing);
+        }
+    }
+
+    private final Map<String, Presence> byUser = new ConcurrentHashMap<>();
+
+    // ===== guarded by this =====
+    private final Map<String, Set<String>> membersOf = new HashMap<>();
+    private final Set<String> playingRooms = new HashSet<>();
+    private final Map<String, LinkedHashSet<String>> roomsOf = new HashMap<>(); // thường chỉ 1 phòng
+
+    /** null = user không ở phòng nào. */
+    public Presence get(String username) {
+        return byUser.get(username);
+    }
+
+    public String roomOf(String username) {
+        Presence p = byUser.get(username);
+        return p == null ? null : p.roomId;
+    }
+
+    public boolean isPlaying(String username) {
+        Presence p = byUser.get(username);
+        return p != null && p.playing;
+    }
+
+    /** Mọi phòng user đang có mặt (logout / evict rời hết). */
+    public synchronized List<String> roomsOf(String username) {
+        Set<String> rs = roomsOf.get(username);
+        return rs == null ? List.of() : new ArrayList<>(rs);
+    }
+
+    /**
+     * Đồng bộ 1 phòng.
+     * @param players null = phòng đã bị xóa
+     * @return các user có Presence vừa đổi (để báo cho bạn bè)
+     */
+    public synchronized List<String> syncRoom(String roomId, Collection<String> players, boolean playing) {
+        Set<String> before = membersOf.remove(roomId);
+        if (before == null) before = Set.of();
+        Set<String> after = players == null ? Set.of() : new LinkedHashSet<>(players);
+
+        if (!after.isEmpty()) membersOf.put(roomId, after);
+        boolean nowPlaying = playing && !after.isEmpty();
+        boolean wasPlaying = playingRooms.contains(roomId);
+        if (nowPlaying) playingRooms.add(roomId);
+        else playingRooms.remove(roomId);
+
+        Set<String> touched = new LinkedHashSet<>();
+        for (String u : before) {
+            if (after.contains(u)) {
+                if (wasPlaying != nowPlaying) touched.add(u);
+                continue;
+            }
+            LinkedHashSet<String> rs = roomsOf.get(u);
+            if (rs != null) {
+                rs.remove(roomId);
+                if (rs.isEmpty()) roomsOf.remove(u);
+            }
+            touched.add(u);
+        }
+        for (String u : after) {
+            if (before.contains(u)) continue;
+            roomsOf.computeIfAbsent(u, k -> new LinkedHashSet<>()).add(roomId);
+            touched.add(u);
+        }
+
+        List<String> changed = new ArrayList<>();
+        for (String u : touched) {
+            Presence next = compute(u);
+            Presence prev = next == null ? byUser.remove(u) : byUser.put(u, next);
+            if (!Objects.equals(prev, next)) changed.add(u);
+        }
+        return changed;
+    }
+
+    private Presence compute(String username) {
+        LinkedHashSet<String> rs = roomsOf.get(username);
+        if (rs == null || rs.isEmpty()) return null;
+        String last = null;
+        boolean playing = false;
+        for (String r : rs) {
+            last = r;
+            playing |= playingRooms.contains(r);
+        }
+        return new Presence(last, playing);
+    }
+
+    public int size() {
+        return byUser.size();
+    }
+}
@@ -11,13 +11,21 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Trạng thái 1 phòng trên server.
+ * Mọi thay đổi phải thực hiện khi giữ synchronized (room) - đây là khóa theo phòng,
+ * các phòng khác nhau chạy song song. Các field volatile + players (copy-on-write)
+ * cho phép đọc nhanh không khóa (room list, friends status...).
+ */
 public class Room {
     public final String id;
     public final String name;
 public String owner;
-    public final Instant createdAt = Instant.now();
+    public final Instant createdAt;
     public volatile RoomStatus status = RoomStatus.WAITING;
-    public final List<String> players = new ArrayList<>(2);
+    public final List<String> players = new CopyOnWriteArrayList<>();
 
     public int boardSize;
     public boolean blockTwoEnds;
@@ -34,6 +42,10 @@ public String owner;
     public volatile String playerO;
     public volatile String turn;
     public volatile int moveNo = 0;
+    // lúc bắt đầu ván hiện tại (mốc thời gian nghĩ của nước đầu trong GameRecord)
+    public long gameStartMillis;
+    // seq cho GameUpdate / GameSnapshot, chỉ tăng (guarded by synchronized (room))
+    public long seq = 0;
 
 
     public String getOwner() { return owner; }
@@ -78,7 +90,13 @@ public synchronized void resetGameKeepSettings(boolean swapFirstTurn) {
 
 
     public Room(String id, String owner, RoomCreateRequest req) {
+        this(id, owner, req, Instant.now());
+    }
+
+    // createdAt cũ: phòng dựng lại từ journal sau khi restart
+    public Room(String id, String owner, RoomCreateRequest req, Instant createdAt) {
         this.id = id;
+        this.createdAt = createdAt;
         this.owner = owner;
         this.name = req.getRoomName();
 
@@ -1,29 +1,167 @@
 package vn.edu.demo.caro.server.state;
 
+import vn.edu.demo.caro.common.model.Enums.RoomStatus;
+import vn.edu.demo.caro.common.net.NetStats;
 import vn.edu.demo.caro.server.dao.FriendDao;
 import vn.edu.demo.caro.server.dao.MatchDao;
 import vn.edu.demo.caro.server.dao.UserDao;
+import vn.edu.demo.caro.server.db.Db;
+import vn.edu.demo.caro.server.metrics.Metrics;
+import vn.edu.demo.caro.server.metrics.MetricsMBean;
+import vn.edu.demo.caro.server.service.CallbackDispatcher;
+import vn.edu.demo.caro.server.service.ChatBatcher;
+import vn.edu.demo.caro.server.service.LivenessMonitor;
+import vn.edu.demo.caro.server.service.Matchmaker;
+import vn.edu.demo.caro.server.service.MatchResultWriter;
+import vn.edu.demo.caro.server.service.ReplayService;
 
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ServerState {
+    // Histogram độ trễ + gauge của mọi component (admin "stats", JMX)
+    public final Metrics metrics = new Metrics();
+
     // RAM Storage
     public final Map<String, OnlineSession> online = new ConcurrentHashMap<>();
     public final Map<String, Room> rooms = new ConcurrentHashMap<>();
 
+    // Callback ra client: mỗi session 1 mailbox, số worker cố định
+    public final CallbackDispatcher callbacks =
+            new CallbackDispatcher(Integer.getInteger("caro.callback.threads", 8));
+
+    // Client im lặng quá lâu: gửi heartbeat, quá timeout thì ngắt (như logout)
+    public final LivenessMonitor liveness = new LivenessMonitor(callbacks, online.values(),
+            Long.getLong("caro.heartbeat.intervalMs", 10_000L), Long.getLong("caro.heartbeat.timeoutMs", 30_000L));
+
+    // Chat global: gom tin theo cửa sổ ngắn, mỗi client nhận 1 lô
+    public final ChatBatcher chat =
+            new ChatBatcher(callbacks, online.values(), Long.getLong("caro.chat.batchMs", 50L));
+
+    // Db (pool) - null nếu dùng constructor cũ
+    public final Db db;
+
     // DAO (Database Access Objects)
     public final UserDao userDao;
     public final FriendDao friendDao;
     public final MatchDao matchDao;
 
+    // Kết quả ván + chỉ số: ghi RAM ngay, DB ghi sau (write-behind)
+    public final MatchResultWriter results;
+
+    // Xem lại ván đã lưu (chỉ đọc MatchDao, không đụng phòng đang chơi)
+    public final ReplayService replays;
+
+    // Bảng xếp hạng trong RAM (top-N / rank không cần query DB)
+    public final LeaderboardIndex leaderboard = new LeaderboardIndex();
+
+    // user -> phòng đang ở + có đang đánh không (cập nhật khi vào/ra phòng, bắt đầu/kết thúc ván)
+    public final PresenceIndex presence = new PresenceIndex();
+
+    // Hàng chờ QuickPlay theo elo + luật (LobbyServiceImpl gắn handler tạo phòng)
+    public final Matchmaker matchmaker = new Matchmaker(Long.getLong("caro.matchmaker.tickMs", 200L));
+
     // Constructor: Bắt buộc truyền DAO đã khởi tạo (có kết nối DB) vào đây
     public ServerState(UserDao userDao, MatchDao matchDao, FriendDao friendDao) {
+        this(null, userDao, matchDao, friendDao);
+    }
+
+    public ServerState(Db db, UserDao userDao, MatchDao matchDao, FriendDao friendDao) {
+        this.db = db;
         this.userDao = userDao;
         this.matchDao = matchDao;
         this.friendDao = friendDao;
+        // user đang online luôn nằm trong cache UserRecord
+        if (userDao.getCache() != null) userDao.getCache().setPinned(online::containsKey);
+        this.results = new MatchResultWriter(userDao, matchDao);
+        // user online giữ chỉ số trong RAM; offline + đã ghi xong thì DB là bản đúng
+        results.setPinned(online::containsKey);
+        this.replays = new ReplayService(matchDao);
+        if (db != null) db.setMetrics(metrics);
+        registerGauges();
+        MetricsMBean.register(metrics);
+
+        try {
+            leaderboard.reload(userDao.allProfiles());
+        } catch (Exception e) {
+            // DB chưa sẵn sàng: index sẽ được bổ sung dần khi user đăng nhập
+            System.err.println("[Leaderboard] Không nạp được bảng xếp hạng: " + e.getMessage());
+        }
     }
 
     public Set<String> onlineUsers() { return online.keySet(); }
+
+    /**
+     * Tắt server, bước 2 (sau LobbyServiceImpl.shutdown, không còn lời gọi mới): dừng ghép trận, chat,
+     * liveness, ghi nốt kết quả ván rồi dừng callback. Chưa đóng DB / store (bên mở đóng sau bước này).
+     * Trả về false nếu còn kết quả ván chưa ghi được.
+     */
+    public boolean shutdown() {
+        matchmaker.shutdown();
+        chat.shutdown();
+        liveness.shutdown();
+        boolean flushed = results.shutdown();
+        callbacks.shutdown();
+        metrics.shutdown();
+        return flushed;
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    private void registerGauges() {
+        metrics.gauge("online.users", online::size);
+        metrics.gauge("rooms.total", rooms::size);
+        metrics.gauge("rooms.playing", () -> rooms.values().stream().filter(r -> r.status == RoomStatus.PLAYING).count());
+
+        metrics.gauge("callback.queued", () -> CallbackDispatcher.queuedTotal(online.values()));
+        metrics.gauge("callback.delivered", callbacks::getDelivered);
+        metrics.gauge("callback.failed", callbacks::getFailed);
+        metrics.gauge("callback.coalesced", callbacks::getCoalesced);
+        metrics.gauge("callback.dropped", callbacks::getDropped);
+        metrics.gauge("callback.discarded", callbacks::getDiscarded);
+        metrics.gauge("callback.evicted", callbacks::getEvicted);
+        metrics.gauge("callback.maxDeadDetectMillis", callbacks::getMaxDeadDetectMillis);
+
+        metrics.gauge("liveness.heartbeats", liveness::getHeartbeats);
+        metrics.gauge("liveness.timeouts", liveness::getTimeouts);
+
+        metrics.gauge("chat.pending", chat::getPending);
+        metrics.gauge("chat.batches", chat::getBatches);
+
+        metrics.gauge("matchmaker.queued", matchmaker::getQueued);
+        metrics.gauge("matchmaker.matched", matchmaker::getMatched);
+        metrics.gauge("matchmaker.lastTickMicros", matchmaker::getLastTickMicros);
+
+        metrics.gauge("results.pendingMatches", results::getPendingMatches);
+        metrics.gauge("results.pendingStats", results::getPendingStats);
+        metrics.gauge("results.failedFlushes", results::getFailedFlushes);
+        metrics.gauge("results.droppedMatches", results::getDroppedMatches);
+        metrics.gauge("results.droppedStats", results::getDroppedStats);
+        metrics.gauge("results.cachedStats", results::getCachedStats);
+
+        metrics.gauge("replay.cached", replays::getCached);
+        metrics.gauge("replay.cacheHits", replays::getHits);
+        metrics.gauge("replay.cacheMisses", replays::getMisses);
+
+        var cache = userDao.getCache();
+        if (cache != null) {
+            metrics.gauge("userCache.size", cache::size);
+            metrics.gauge("userCache.hits", cache::getHits);
+            metrics.gauge("userCache.misses", cache::getMisses);
+        }
+
+        if (db != null) {
+            var pool = db.getPool();
+            metrics.gauge("db.pool.active", pool::getActive);
+            metrics.gauge("db.pool.waiting", pool::getWaiting);
+            metrics.gauge("db.pool.timeouts", pool::getTimeouts);
+            metrics.gauge("db.pool.leaks", pool::getLeaks);
+        }
+
+        metrics.gauge("net.wireBytesOut", NetStats::getWireBytesOut);
+        metrics.gauge("net.rawBytesOut", NetStats::getRawBytesOut);
+        metrics.gauge("net.wireBytesIn", NetStats::getWireBytesIn);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package vn.edu.demo.caro.server.store;
+
+import vn.edu.demo.caro.server.dao.FriendDao;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * FriendDao trên {@link EmbeddedStore}: bạn bè (2 chiều) và lời mời đang chờ (theo người nhận) trong RAM.
+ * Lời mời đã xử lý không giữ lại (bản MySQL chỉ đọc lời mời PENDING).
+ */
+public final class EmbeddedFriendDao implements FriendDao {
+
+    private final LogStore log;
+    private final Map<String, Set<String>> friends = new ConcurrentHashMap<>();  // user -> bạn
+    private final Map<String, Set<String>> incoming = new ConcurrentHashMap<>(); // người nhận -> người gửi
+
+    EmbeddedFriendDao(LogStore log) {
+        this.log = log;
+    }
+
+    @Override
+    public List<String> listFriends(String user) {
+        return new ArrayList<>(friends.getOrDefault(user, Collections.emptySet()));
+    }
+
+    @Override
+    public boolean areFriends(String u1, String u2) {
+        return friends.getOrDefault(u1, Collections.emptySet()).contains(u2);
+    }
+
+    @Override
+    public void createFriendRequest(String from, String to) throws SQLException {
+        synchronized (log) {
+            if (hasPendingRequest(from, to)) return;
+            EmbeddedStore.append(log, EmbeddedStore.FRIEND_REQUEST, encode(from, to, null));
+            addRequest(from, to);
+        }
+    }
+
+    @Override
+    public boolean hasPendingRequest(String from, String to) {
+        return incoming.getOrDefault(to, Collections.emptySet()).contains(from);
+    }
+
+    @Override
+    public List<String> getIncomingRequests(String username) {
+        return new ArrayList<>(incoming.getOrDefault(username, Collections.emptySet()));
+    }
+
+    @Override
+    public void resolveLatestPending(String fromUser, String toUser, boolean accept) throws SQLException {
+        synchronized (log) {
+            EmbeddedStore.append(log, EmbeddedStore.REQUEST_RESOLVED, encode(fromUser, toUser, accept));
+            resolve(fromUser, toUser, accept);
+        }
+    }
+
+    @Override
+    public void addFriendPair(String u1, String u2) throws SQLException {
+        synchronized (log) {
+            if (areFriends(u1, u2)) return;
+            EmbeddedStore.append(log, EmbeddedStore.FRIEND_PAIR, encode(u1, u2, null));
+            addPair(u1, u2);
+        }
+    }
+
+    // ============================================================
+    // Log (gọi khi đang giữ khóa log)
+    // ============================================================
+    void apply(int type, DataInputStream in) throws IOException {
+        String a = in.readUTF();
+        String b = in.readUTF();
+        switch (type) {
+            case EmbeddedStore.FRIEND_PAIR: addPair(a, b); break;
+            case EmbeddedStore.FRIEND_REQUEST: addRequest(a, b); break;
+            default: resolve(a, b, in.readBoolean()); break;
+        }
+    }
+
+    // gọi khi không giữ khóa: cặp bạn chỉ thêm không bớt; lời mời kiểm tra lại lúc chép (có thể vừa được xử lý)
+    void snapshot(LogStore l) throws IOException {
+        List<String[]> pairs = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> e : friends.entrySet()) {
+            for (String f : e.getValue()) {
+                if (e.getKey().compareTo(f) < 0) pairs.add(new String[]{e.getKey(), f});
+            }
+        }
+        l.batched(pairs.size(), i -> l.append(EmbeddedStore.FRIEND_PAIR, encode(pairs.get(i)[0], pairs.get(i)[1], null)));
+
+        List<String[]> requests = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> e : incoming.entrySet()) {
+            for (String from : e.getValue()) requests.add(new String[]{from, e.getKey()});
+        }
+        l.batched(requests.size(), i -> {
+            String[] r = requests.get(i);
+            if (hasPendingRequest(r[0], r[1])) l.append(EmbeddedStore.FRIEND_REQUEST, encode(r[0], r[1], null));
+        });
+    }
+
+    private void addPair(String u1, String u2) {
+        friends.computeIfAbsent(u1, k -> ConcurrentHashMap.newKeySet()).add(u2);
+        friends.computeIfAbsent(u2, k -> ConcurrentHashMap.newKeySet()).add(u1);
+    }
+
+    private void addRequest(String from, String to) {
+        incoming.computeIfAbsent(to, k -> ConcurrentHashMap.newKeySet()).add(from);
+    }
+
+    private void resolve(String from, String to, boolean accept) {
+        Set<String> s = incoming.get(to);
+        if (s != null) {
+            s.remove(from);
+            if (s.isEmpty()) incoming.remove(to);
+        }
+        if (accept) addPair(from, to);
+    }
+
+    private static byte[] encode(String a, String b, Boolean accept) {
+        return EmbeddedStore.encode(out -> {
+            out.writeUTF(a);
+            out.writeUTF(b);
+            if (accept != null) out.writeBoolean(accept);
+        });
+    }
+}
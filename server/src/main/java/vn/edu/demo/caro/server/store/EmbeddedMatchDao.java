@@ -0,0 +1,169 @@
+package vn.edu.demo.caro.server.store;
+
+import vn.edu.demo.caro.common.model.GameRecord;
+import vn.edu.demo.caro.common.model.MatchSummary;
+import vn.edu.demo.caro.server.dao.MatchDao;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MatchDao trên {@link EmbeddedStore}.
+ *
+ * Ván (kèm nước đi đã mã hóa) không giữ trong RAM: index chỉ là mảng id -> địa chỉ bản ghi trong log
+ * (8 byte / ván), đủ để compact chép lại và đọc 1 ván khi cần. Chỉ số người chơi ghi qua {@link EmbeddedUserDao}.
+ * Lịch sử theo người chơi chỉ giữ id của {@value #RECENT_PER_USER} ván gần nhất mỗi user (vòng tròn).
+ */
+public final class EmbeddedMatchDao implements MatchDao {
+
+    static final int RECENT_PER_USER = 32;
+
+    private final LogStore log;
+    private final EmbeddedUserDao users;
+
+    // ===== guarded by log =====
+    private long[] addresses = new long[1024]; // [id - 1]
+    private volatile int count = 0;
+    private final Map<String, int[]> recent = new HashMap<>(); // user -> [0] = số ván, [1..] = vòng id
+
+    EmbeddedMatchDao(LogStore log, EmbeddedUserDao users) {
+        this.log = log;
+        this.users = users;
+    }
+
+    @Override
+    public void insertMatch(String roomId, String playerX, String playerO, String winner, String reason) throws SQLException {
+        recordResults(List.of(new MatchRow(roomId, playerX, playerO, winner, reason, Instant.now())), List.of());
+    }
+
+    /** Mỗi bản ghi tự có checksum; 1 lô không phải transaction (crash giữa lô => mất phần đuôi lô). */
+    @Override
+    public void recordResults(Collection<MatchRow> matches, Collection<StatsRow> stats) throws SQLException {
+        synchronized (log) {
+            for (MatchRow m : matches) {
+                int id = count + 1;
+                index(id, EmbeddedStore.append(log, EmbeddedStore.MATCH, encode(id, m)));
+                remember(m.playerX, id);
+                remember(m.playerO, id);
+            }
+            for (StatsRow s : stats) users.applyStats(s);
+        }
+    }
+
+    /** Đọc lại 1 ván theo id (1..size), null nếu không có. */
+    public MatchRow find(long id) throws SQLException {
+        synchronized (log) {
+            if (id < 1 || id > count) return null;
+            try {
+                DataInputStream in = EmbeddedStore.decode(log.read(addresses[(int) id - 1]));
+                in.readLong();
+                return decode(in);
+            } catch (IOException e) {
+                throw new SQLException("Store: không đọc được ván " + id + " - " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public GameRecord getMatchMoves(long matchId) throws SQLException {
+        MatchRow m = find(matchId);
+        if (m == null || m.moves == null) return null;
+        try {
+            return GameRecord.decode(m.moves);
+        } catch (IOException e) {
+            throw new SQLException("Nước đi của ván " + matchId + " bị hỏng: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<MatchSummary> recentMatches(String username, int limit) throws SQLException {
+        List<MatchSummary> out = new ArrayList<>();
+        synchronized (log) {
+            int[] ring = recent.get(username);
+            if (ring == null) return out;
+            int n = Math.min(Math.min(limit, ring[0]), RECENT_PER_USER);
+            for (int i = 0; i < n; i++) {
+                int id = ring[1 + Math.floorMod(ring[0] - 1 - i, RECENT_PER_USER)];
+                MatchRow m = find(id);
+                if (m != null) out.add(new MatchSummary(id, m.playerX, m.playerO, m.winner, m.reason, m.endedAt));
+            }
+        }
+        return out;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // ============================================================
+    // Log (gọi khi đang giữ khóa log)
+    // ============================================================
+    void apply(long address, DataInputStream in) throws IOException {
+        int id = (int) in.readLong();
+        // replay sau crash giữa lúc compaction: bản chép MATCH đọc lần 2 => chỉ cập nhật địa chỉ, không nhớ trùng id
+        boolean seen = id <= addresses.length && addresses[id - 1] != 0;
+        index(id, address);
+        if (seen) return;
+        in.readUTF(); // roomId
+        remember(in.readUTF(), id);
+        remember(in.readUTF(), id);
+    }
+
+    // gọi khi không giữ khóa: ván ghi sau roll đã nằm ở segment mới, bản ghi ván không bao giờ đổi
+    void snapshot(LogStore l) throws IOException {
+        l.batched(count, i -> {
+            if (addresses[i] != 0 && l.isOld(addresses[i])) addresses[i] = l.copy(addresses[i]);
+        });
+    }
+
+    private void index(int id, long address) {
+        if (id > addresses.length) addresses = Arrays.copyOf(addresses, Math.max(id, addresses.length * 2));
+        addresses[id - 1] = address;
+        if (id > count) count = id;
+    }
+
+    private void remember(String user, int id) {
+        int[] ring = recent.computeIfAbsent(user, k -> new int[1 + RECENT_PER_USER]);
+        ring[1 + ring[0] % RECENT_PER_USER] = id;
+        ring[0]++;
+    }
+
+    private static byte[] encode(long id, MatchRow m) {
+        return EmbeddedStore.encode(out -> {
+            out.writeLong(id);
+            out.writeUTF(m.roomId);
+            out.writeUTF(m.playerX);
+            out.writeUTF(m.playerO);
+            EmbeddedStore.writeNullable(out, m.winner);
+            out.writeUTF(m.reason);
+            out.writeLong(m.endedAt.toEpochMilli());
+            // có từ khi lưu nước đi; bản ghi cũ dừng ở endedAt
+            out.writeInt(m.moves == null ? -1 : m.moves.length);
+            if (m.moves != null) out.write(m.moves);
+        });
+    }
+
+    private static MatchRow decode(DataInputStream in) throws IOException {
+        String roomId = in.readUTF(), x = in.readUTF(), o = in.readUTF();
+        String winner = EmbeddedStore.readNullable(in);
+        String reason = in.readUTF();
+        Instant endedAt = Instant.ofEpochMilli(in.readLong());
+        byte[] moves = null;
+        if (in.available() > 0) {
+            int n = in.readInt();
+            if (n >= 0) {
+                moves = new byte[n];
+                in.readFully(moves);
+            }
+        }
+        return new MatchRow(roomId, x, o, winner, reason, endedAt, moves);
+    }
+}
@@ -0,0 +1,185 @@
+package vn.edu.demo.caro.server.store;
+
+import vn.edu.demo.caro.server.metrics.Metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Engine lưu trữ nhúng (không cần MySQL): 1 {@link LogStore} + index trong RAM cho 3 DAO.
+ *
+ * - Mở: replay toàn bộ log dựng lại index (user -> UserRecord, bạn bè, lời mời, địa chỉ từng ván).
+ * - Ghi: khóa log, append 1 bản ghi rồi mới sửa index => thứ tự trong log = thứ tự trong RAM,
+ *   compact (chép theo lô, mỗi lô giữ khóa log) không chen được vào giữa.
+ * - Đọc: chỉ đụng index RAM (ConcurrentHashMap), không khóa, không I/O.
+ * - Thread "store-sync": force xuống đĩa mỗi {@code caro.store.syncMs}, compact khi log lớn gấp đôi
+ *   kích thước sau lần compact trước (và > {@code caro.store.compactMinMB}).
+ *
+ * Bật bằng -Dcaro.store=embedded (thư mục: -Dcaro.store.dir, mặc định "caro-data").
+ */
+public final class EmbeddedStore implements Closeable {
+
+    // ===== Loại bản ghi =====
+    static final int USER = 1;             // UserRecord đầy đủ (ghi đè theo username)
+    static final int FRIEND_PAIR = 2;      // u1, u2
+    static final int FRIEND_REQUEST = 3;   // from, to (đang chờ)
+    static final int REQUEST_RESOLVED = 4; // from, to, accept
+    static final int MATCH = 5;            // id, MatchRow
+
+    final LogStore log;
+    public final EmbeddedUserDao users;
+    public final EmbeddedFriendDao friends;
+    public final EmbeddedMatchDao matches;
+
+    private final long syncMillis;
+    private final long compactMinBytes;
+    private volatile boolean running = true;
+    private final Thread syncThread;
+    private final Object wakeup = new Object(); // close() đánh thức thread sync
+
+    public static EmbeddedStore open(Path dir) throws IOException {
+        return new EmbeddedStore(dir,
+                Integer.getInteger("caro.store.segmentMB", 64) << 20,
+                Long.getLong("caro.store.syncMs", 1000L),
+                Long.getLong("caro.store.compactMinMB", 16L) << 20);
+    }
+
+    public EmbeddedStore(Path dir, int segmentBytes, long syncMillis, long compactMinBytes) throws IOException {
+        this.log = new LogStore(dir, segmentBytes);
+        this.users = new EmbeddedUserDao(log);
+        this.friends = new EmbeddedFriendDao(log);
+        this.matches = new EmbeddedMatchDao(log, users);
+        this.syncMillis = syncMillis;
+        this.compactMinBytes = compactMinBytes;
+
+        long start = System.nanoTime();
+        log.replay(this::apply);
+        System.out.printf("[Store] %s: %d user, %d ván, nạp trong %d ms%n", dir, users.size(), matches.size(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        syncThread = new Thread(this::runLoop, "store-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    private void apply(long address, int type, ByteBuffer payload) throws IOException {
+        DataInputStream in = decode(payload);
+        switch (type) {
+            case USER: users.apply(in); break;
+            case FRIEND_PAIR:
+            case FRIEND_REQUEST:
+            case REQUEST_RESOLVED: friends.apply(type, in); break;
+            case MATCH: matches.apply(address, in); break;
+            default: System.err.println("[Store] bỏ qua bản ghi loại " + type);
+        }
+    }
+
+    /** Ghi lại trạng thái hiện tại thành log mới, bỏ các bản ghi đã bị ghi đè. */
+    public void compact() throws IOException {
+        log.compact(l -> {
+            users.snapshot(l);
+            friends.snapshot(l);
+            matches.snapshot(l);
+        });
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                // không interrupt thread này: đang map segment mà bị interrupt thì FileChannel bị đóng
+                synchronized (wakeup) {
+                    if (running) wakeup.wait(syncMillis);
+                }
+                if (!running) return;
+                log.sync();
+                if (log.needsCompaction(compactMinBytes)) compact();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("[Store] " + e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        synchronized (wakeup) {
+            wakeup.notifyAll();
+        }
+        // chờ lần sync / compact đang chạy xong rồi mới đóng file
+        try {
+            syncThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    public long getBytes() {
+        return log.totalBytes();
+    }
+
+    public void registerGauges(Metrics metrics) {
+        metrics.gauge("store.bytes", log::totalBytes);
+        metrics.gauge("store.segments", log::getSegments);
+        metrics.gauge("store.appends", log::getAppends);
+        metrics.gauge("store.compactions", log::getCompactions);
+        metrics.gauge("store.lastCompactMillis", log::getLastCompactMillis);
+        metrics.gauge("store.users", users::size);
+        metrics.gauge("store.matches", matches::size);
+    }
+
+    @Override
+    public String toString() {
+        return log + ", users=" + users.size() + ", matches=" + matches.size();
+    }
+
+    // ============================================================
+    // Mã hóa payload (DataOutput, chuỗi null được đánh dấu)
+    // ============================================================
+    interface Encoder {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    static byte[] encode(Encoder e) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            e.write(out);
+        } catch (IOException impossible) {
+            throw new IllegalStateException(impossible);
+        }
+        return bytes.toByteArray();
+    }
+
+    static DataInputStream decode(ByteBuffer payload) {
+        byte[] b = new byte[payload.remaining()];
+        payload.get(b);
+        return new DataInputStream(new ByteArrayInputStream(b));
+    }
+
+    static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /** Ghi 1 bản ghi; lỗi I/O đổi thành SQLException như DAO MySQL. Gọi khi đang giữ khóa log. */
+    static long append(LogStore log, int type, byte[] payload) throws SQLException {
+        try {
+            return log.append(type, payload);
+        } catch (IOException e) {
+            throw new SQLException("Store: không ghi được - " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package vn.edu.demo.caro.server.store;
+
+import vn.edu.demo.caro.common.model.UserProfile;
+import vn.edu.demo.caro.server.dao.MatchDao;
+import vn.edu.demo.caro.server.dao.UserDao;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * UserDao trên {@link EmbeddedStore}: mọi UserRecord nằm trong RAM, mỗi thay đổi ghi 1 bản ghi USER
+ * (bản đầy đủ, bản sau đè bản trước) => không cần cache riêng.
+ */
+public final class EmbeddedUserDao implements UserDao {
+
+    private final LogStore log;
+    private final Map<String, UserRecord> users = new ConcurrentHashMap<>();
+
+    EmbeddedUserDao(LogStore log) {
+        this.log = log;
+    }
+
+    @Override
+    public void ensureUser(String username, String password) throws SQLException {
+        if (users.containsKey(username)) return;
+        synchronized (log) {
+            if (!users.containsKey(username)) put(new UserRecord(username, password, 0, 0, 0, 1000, null, null));
+        }
+    }
+
+    @Override
+    public Optional<UserRecord> find(String username) {
+        return Optional.ofNullable(users.get(username));
+    }
+
+    @Override
+    public boolean exists(String username) {
+        return users.containsKey(username);
+    }
+
+    @Override
+    public void create(String username, String password) throws SQLException {
+        synchronized (log) {
+            if (users.containsKey(username)) throw new SQLException("User đã tồn tại: " + username);
+            put(new UserRecord(username, password, 0, 0, 0, 1000, null, null));
+        }
+    }
+
+    @Override
+    public void updateStats(String username, int wins, int losses, int draws, int elo) throws SQLException {
+        synchronized (log) {
+            UserRecord r = users.get(username);
+            if (r != null) put(new UserRecord(r.username, r.password, wins, losses, draws, elo, r.bannedUntil, r.banReason));
+        }
+    }
+
+    // EmbeddedMatchDao.recordResults đã ghi chỉ số vào đây
+    @Override
+    public void cacheStats(Collection<MatchDao.StatsRow> rows) {
+    }
+
+    @Override
+    public List<UserProfile> topElo(int top) {
+        return users.values().stream()
+                .sorted(Comparator.comparingInt((UserRecord r) -> r.elo).reversed())
+                .limit(Math.max(1, top))
+                .map(EmbeddedUserDao::profile)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UserProfile> allProfiles() {
+        return users.values().stream().map(EmbeddedUserDao::profile).collect(Collectors.toList());
+    }
+
+    @Override
+    public int countUsersHigherElo(int elo) {
+        return (int) users.values().stream().filter(r -> r.elo > elo).count();
+    }
+
+    @Override
+    public void banUser(String username, String reason, int minutes) throws SQLException {
+        Instant until = Instant.now().plusSeconds(minutes * 60L);
+        synchronized (log) {
+            UserRecord r = users.get(username);
+            if (r != null) put(new UserRecord(r.username, r.password, r.wins, r.losses, r.draws, r.elo, until, reason));
+        }
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    // ============================================================
+    // Log (gọi khi đang giữ khóa log)
+    // ============================================================
+    void applyStats(MatchDao.StatsRow s) throws SQLException {
+        updateStats(s.username, s.wins, s.losses, s.draws, s.elo);
+    }
+
+    private void put(UserRecord r) throws SQLException {
+        EmbeddedStore.append(log, EmbeddedStore.USER, encode(r));
+        users.put(r.username, r);
+    }
+
+    void apply(DataInputStream in) throws IOException {
+        String username = in.readUTF();
+        String password = in.readUTF();
+        int wins = in.readInt(), losses = in.readInt(), draws = in.readInt(), elo = in.readInt();
+        long bannedUntil = in.readLong();
+        String banReason = EmbeddedStore.readNullable(in);
+        users.put(username, new UserRecord(username, password, wins, losses, draws, elo,
+                bannedUntil < 0 ? null : Instant.ofEpochMilli(bannedUntil), banReason));
+    }
+
+    // gọi khi không giữ khóa: ghi lại bản hiện tại (lúc chép) của từng user => luôn mới hơn mọi bản trước đó
+    void snapshot(LogStore l) throws IOException {
+        List<String> names = new ArrayList<>(users.keySet());
+        l.batched(names.size(), i -> l.append(EmbeddedStore.USER, encode(users.get(names.get(i)))));
+    }
+
+    private static byte[] encode(UserRecord r) {
+        return EmbeddedStore.encode(out -> {
+            out.writeUTF(r.username);
+            out.writeUTF(r.password);
+            out.writeInt(r.wins);
+            out.writeInt(r.losses);
+            out.writeInt(r.draws);
+            out.writeInt(r.elo);
+            out.writeLong(r.bannedUntil == null ? -1 : r.bannedUntil.toEpochMilli());
+            EmbeddedStore.writeNullable(out, r.banReason);
+        });
+    }
+
+    private static UserProfile profile(UserRecord r) {
+        return new UserProfile(r.username, r.wins, r.losses, r.draws, r.elo);
+    }
+}
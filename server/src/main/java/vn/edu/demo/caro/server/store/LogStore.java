@@ -0,0 +1,370 @@
+package vn.edu.demo.caro.server.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Log chỉ ghi thêm (append-only) trên các file segment ánh xạ bộ nhớ (mmap).
+ *
+ * Bản ghi: [len:int][crc:int][type:byte][payload]  - len = 1 + độ dài payload, crc = CRC32C(type + payload).
+ * - Segment "NNNNNNNN.log" cỡ cố định, map toàn bộ; hết chỗ thì mở segment kế tiếp.
+ * - {@link #replay}: đọc lần lượt tới len = 0 (chưa ghi) hoặc bản ghi hỏng (ghi dở lúc crash);
+ *   phần đuôi hỏng bị xóa trắng, segment cuối ghi tiếp từ đó.
+ * - Địa chỉ bản ghi = (id segment << 32) | offset => tầng trên giữ làm index trong RAM.
+ * - {@link #compact}: chép trạng thái còn sống sang segment mới rồi xóa các segment cũ.
+ *   Bản ghi phải là "ghi đè theo khóa" (đọc lại 2 lần vẫn ra cùng kết quả) để crash giữa lúc compact
+ *   vẫn khôi phục đúng (segment cũ + bản chép dở cùng được đọc lại).
+ * - Ghi vào mmap = ghi vào page cache (process chết vẫn còn); {@link #sync} force xuống đĩa, ngoài khóa.
+ *
+ * Method đọc / ghi synchronized; tầng trên khóa chính object này khi cần "sửa RAM + ghi log" nguyên tử.
+ * {@link #compact} và {@link #sync} không giữ khóa trong lúc chép nhiều / force => đường ghi không bị chặn lâu.
+ */
+public final class LogStore implements Closeable {
+
+    static final int HEADER = 9; // len + crc + type
+
+    /** Số bước chép (mặc định) trong 1 lần giữ khóa của {@link #batched}. */
+    public static final int COPY_BATCH = 256;
+
+    /** Nhận từng bản ghi khi replay (payload chỉ hợp lệ trong lời gọi). */
+    public interface Visitor {
+        void record(long address, int type, ByteBuffer payload) throws IOException;
+    }
+
+    /**
+     * Ghi lại trạng thái còn sống khi compact. Gọi khi KHÔNG giữ khóa: liệt kê khóa / địa chỉ rồi chép
+     * qua {@link #batched}, mỗi bước kiểm tra lại trạng thái (đường ghi vẫn chạy xen giữa các lô).
+     */
+    public interface Snapshot {
+        void writeTo(LogStore log) throws IOException;
+    }
+
+    /** Bước thứ i của {@link #batched} (đang giữ khóa). */
+    public interface Step {
+        void copy(int i) throws IOException;
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final RandomAccessFile file;
+        final MappedByteBuffer map;
+        int end; // vị trí ghi tiếp theo
+
+        Segment(int id, Path path, RandomAccessFile file, MappedByteBuffer map) {
+            this.id = id;
+            this.path = path;
+            this.file = file;
+            this.map = map;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private final List<Segment> unsynced = new ArrayList<>(); // segment đã roll, chưa force (guarded by this)
+    private int compactFrom = 0; // đang compact: segment < compactFrom là segment cũ (guarded by this)
+    private final Object compactLock = new Object(); // 1 compact mỗi lúc
+    private boolean closed = false;
+
+    // ===== Metrics (guarded by this) =====
+    private long appends = 0;
+    private long compactions = 0;
+    private long truncatedBytes = 0;
+    private long bytesAfterCompact = 0;
+    private long lastCompactMillis = 0;
+
+    public LogStore(Path dir, int segmentBytes) throws IOException {
+        if (segmentBytes < 4096) throw new IllegalArgumentException("segmentBytes quá nhỏ: " + segmentBytes);
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.log")) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                int id;
+                try {
+                    id = Integer.parseInt(name.substring(0, name.length() - 4));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                segments.put(id, map(id, p, 0));
+            }
+        }
+        active = segments.isEmpty() ? newSegment(1) : segments.lastEntry().getValue();
+    }
+
+    /** Đọc lại toàn bộ log theo thứ tự ghi; gọi 1 lần ngay sau khi mở. */
+    public synchronized void replay(Visitor visitor) throws IOException {
+        for (Segment s : segments.values()) {
+            ByteBuffer m = s.map;
+            int cap = m.capacity();
+            int pos = 0;
+            boolean torn = false;
+            while (pos + HEADER <= cap) {
+                int len = m.getInt(pos);
+                if (len == 0) break;
+                if (len < 1 || pos + 8 + len > cap || crc(m, pos + 8, len) != m.getInt(pos + 4)) {
+                    torn = true;
+                    break;
+                }
+                visitor.record(address(s.id, pos), m.get(pos + 8), slice(m, pos + HEADER, len - 1));
+                pos += 8 + len;
+            }
+            s.end = pos;
+            if (torn) {
+                int zeroed = zeroTail(s);
+                truncatedBytes += zeroed;
+                System.err.println("[Store] " + s.path.getFileName() + ": bỏ " + zeroed + "B hỏng từ offset " + pos);
+            }
+        }
+    }
+
+    /** Ghi 1 bản ghi, trả về địa chỉ. */
+    public synchronized long append(int type, byte[] payload) throws IOException {
+        return append(type, ByteBuffer.wrap(payload));
+    }
+
+    /** Chép nguyên bản ghi ở {@code address} (thường nằm ở segment cũ) ra cuối log, map sang map không qua byte[]. */
+    public synchronized long copy(long address) throws IOException {
+        Segment s = segment(address);
+        int pos = (int) address;
+        int len = s.map.getInt(pos);
+        return append(s.map.get(pos + 8), slice(s.map, pos + HEADER, len - 1));
+    }
+
+    /** Payload (chỉ đọc) của bản ghi ở {@code address}. */
+    public synchronized ByteBuffer read(long address) throws IOException {
+        Segment s = segment(address);
+        int pos = (int) address;
+        return slice(s.map, pos + HEADER, s.map.getInt(pos) - 1).asReadOnlyBuffer();
+    }
+
+    /**
+     * Force xuống đĩa các segment đã roll từ lần sync trước và segment đang ghi. msync chạy ngoài khóa
+     * (có thể mất vài ms) => append không phải chờ; roll chỉ xếp segment cũ vào hàng chờ force ở đây.
+     */
+    public void sync() {
+        List<Segment> pending;
+        MappedByteBuffer m;
+        synchronized (this) {
+            if (closed) return;
+            pending = new ArrayList<>(unsynced);
+            unsynced.clear();
+            m = active.map;
+        }
+        for (Segment s : pending) s.map.force();
+        m.force();
+    }
+
+    /** Bản ghi ở {@code address} nằm trong segment cũ của lần compact đang chạy (=> cần chép). */
+    public synchronized boolean isOld(long address) {
+        return (int) (address >>> 32) < compactFrom;
+    }
+
+    /**
+     * Gọi {@code step.copy(0..n-1)}, mỗi lô {@value #COPY_BATCH} bước trong 1 lần giữ khóa;
+     * giữa 2 lô nhả khóa cho đường ghi.
+     */
+    public void batched(int n, Step step) throws IOException {
+        batched(n, COPY_BATCH, step);
+    }
+
+    /** Như {@link #batched(int, Step)} với cỡ lô riêng (bước chép nhiều bản ghi => lô nhỏ hơn). */
+    public void batched(int n, int batch, Step step) throws IOException {
+        for (int from = 0; from < n; from += batch) {
+            synchronized (this) {
+                for (int i = from, end = Math.min(n, from + batch); i < end; i++) step.copy(i);
+            }
+        }
+    }
+
+    /** Log đã lớn gấp đôi kích thước sau lần compact trước (và > {@code minBytes}). */
+    public synchronized boolean needsCompaction(long minBytes) {
+        long total = totalBytes();
+        return total > minBytes && total > 2 * bytesAfterCompact;
+    }
+
+    /**
+     * Mở segment mới, để {@code snapshot} chép trạng thái còn sống vào đó (theo lô, xen với ghi mới),
+     * force xuống đĩa rồi xóa mọi segment cũ hơn. Chỉ giữ khóa lúc roll, từng lô chép và lúc xóa segment.
+     */
+    public void compact(Snapshot snapshot) throws IOException {
+        synchronized (compactLock) {
+            long start = System.nanoTime();
+            int firstNew;
+            synchronized (this) {
+                firstNew = active.id + 1;
+                roll();
+                compactFrom = firstNew;
+            }
+            try {
+                snapshot.writeTo(this);
+                // bản chép xuống đĩa trước khi bỏ bản gốc (segment cũ sắp xóa, không cần force)
+                List<Segment> fresh;
+                synchronized (this) {
+                    if (closed) return;
+                    unsynced.removeIf(s -> s.id < firstNew);
+                    fresh = new ArrayList<>(segments.tailMap(firstNew).values());
+                }
+                for (Segment s : fresh) s.map.force();
+            } finally {
+                synchronized (this) {
+                    compactFrom = 0;
+                }
+            }
+
+            synchronized (this) {
+                if (closed) return;
+                Iterator<Map.Entry<Integer, Segment>> it = segments.headMap(firstNew).entrySet().iterator();
+                while (it.hasNext()) {
+                    Segment s = it.next().getValue();
+                    it.remove();
+                    s.file.close();
+                    try {
+                        Files.delete(s.path);
+                    } catch (IOException e) {
+                        // Windows không cho xóa file còn đang map: đọc lại lần sau vẫn đúng (ghi đè theo khóa),
+                        // lần compact sau sẽ xóa tiếp
+                        System.err.println("[Store] chưa xóa được " + s.path.getFileName() + ": " + e);
+                        s.path.toFile().deleteOnExit();
+                    }
+                }
+                compactions++;
+                bytesAfterCompact = totalBytes();
+                lastCompactMillis = (System.nanoTime() - start) / 1_000_000;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        sync();
+        closed = true;
+        for (Segment s : segments.values()) s.file.close();
+    }
+
+    // ============================================================
+    // Nội bộ
+    // ============================================================
+    private long append(int type, ByteBuffer payload) throws IOException {
+        if (closed) throw new IOException("Store đã đóng");
+        int n = payload.remaining();
+        int len = 1 + n;
+        if (8 + len > segmentBytes) throw new IOException("Bản ghi quá lớn: " + (8 + len) + "B");
+        if (active.end + 8 + len > active.map.capacity()) roll();
+
+        ByteBuffer m = active.map;
+        int pos = active.end;
+        m.put(pos + 8, (byte) type);
+        slice(m, pos + HEADER, n).put(payload);
+        m.putInt(pos + 4, crc(m, pos + 8, len));
+        m.putInt(pos, len); // len ghi cuối: đọc trong cùng process không bao giờ thấy bản ghi dở
+        active.end = pos + 8 + len;
+        appends++;
+        return address(active.id, pos);
+    }
+
+    // segment cũ chờ sync() force (ngoài khóa)
+    private void roll() throws IOException {
+        unsynced.add(active);
+        active = newSegment(active.id + 1);
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Segment s = map(id, dir.resolve(String.format("%08d.log", id)), segmentBytes);
+        segments.put(id, s);
+        return s;
+    }
+
+    // minBytes > 0: file mới (sparse) được nới tới cỡ segment
+    private static Segment map(int id, Path path, int minBytes) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(path.toFile(), "rw");
+        try {
+            if (f.length() < minBytes) f.setLength(minBytes);
+            MappedByteBuffer m = f.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, f.length());
+            return new Segment(id, path, f, m);
+        } catch (IOException e) {
+            f.close();
+            throw e;
+        }
+    }
+
+    private Segment segment(long address) throws IOException {
+        Segment s = segments.get((int) (address >>> 32));
+        if (s == null) throw new IOException("Không còn segment cho địa chỉ " + Long.toHexString(address));
+        return s;
+    }
+
+    private static int zeroTail(Segment s) {
+        ByteBuffer m = s.map;
+        int pos = s.end;
+        int end = pos;
+        // xóa tới hết vùng có dữ liệu (phần sau đó vốn là 0 của file sparse)
+        for (int i = m.capacity() - 1; i >= pos; i--) {
+            if (m.get(i) != 0) {
+                end = i + 1;
+                break;
+            }
+        }
+        for (int i = pos; i < end; i++) m.put(i, (byte) 0);
+        return end - pos;
+    }
+
+    private static long address(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static ByteBuffer slice(ByteBuffer m, int pos, int len) {
+        ByteBuffer b = m.duplicate();
+        b.limit(pos + len).position(pos);
+        return b.slice();
+    }
+
+    private static int crc(ByteBuffer m, int pos, int len) {
+        CRC32C c = new CRC32C();
+        c.update(slice(m, pos, len));
+        return (int) c.getValue();
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public synchronized long totalBytes() {
+        long n = 0;
+        for (Segment s : segments.values()) n += s.end;
+        return n;
+    }
+
+    public synchronized int getSegments() { return segments.size(); }
+    public synchronized long getAppends() { return appends; }
+    public synchronized long getCompactions() { return compactions; }
+    public synchronized long getTruncatedBytes() { return truncatedBytes; }
+    public synchronized long getLastCompactMillis() { return lastCompactMillis; }
+
+    @Override
+    public synchronized String toString() {
+        return "dir=" + dir
+                + ", segments=" + segments.size()
+                + ", bytes=" + totalBytes()
+                + ", appends=" + appends
+                + ", compactions=" + compactions + " (last " + lastCompactMillis + "ms)"
+                + ", truncated=" + truncatedBytes + "B";
+    }
+}
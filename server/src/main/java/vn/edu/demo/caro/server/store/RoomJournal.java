@@ -0,0 +1,465 @@
+package vn.edu.demo.caro.server.store;
+
+import vn.edu.demo.caro.common.model.Enums.PostGameChoice;
+import vn.edu.demo.caro.common.model.Enums.RoomStatus;
+import vn.edu.demo.caro.server.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal các phòng đang sống (ServerState.rooms + lịch sử nước, deadline, lời đề nghị undo/hòa đang chờ)
+ * trên 1 {@link LogStore} riêng => restart server không mất ván đang đánh.
+ *
+ * Bản ghi:
+ * - ROOM: ảnh đầy đủ 1 phòng ({@link RoomImage}, kèm toàn bộ nước đã đi) - chỉ ghi khi tạo / vào / rời phòng,
+ *   bắt đầu / kết thúc ván, undo, đề nghị undo / hòa... (hiếm).
+ * - MOVE: 1 nước đi (ô, thời điểm, deadline lượt mới) - áp lên ảnh ROOM gần nhất của phòng đó.
+ *   Cỡ cố định {@value #MOVE_BYTES} byte (+ header): phòng được gọi bằng số slot gán lúc ghi ảnh đầu tiên
+ *   thay vì roomId (UUID 36 ký tự).
+ * - REMOVE: phòng đã bị xóa.
+ *
+ * Mỗi bản ghi mang số thứ tự (lsn) tăng dần; replay bỏ qua bản ghi có lsn <= lsn đã áp cho phòng đó
+ * => đọc lại cả segment cũ lẫn bản chép dở lúc compact (crash giữa chừng) vẫn ra đúng trạng thái.
+ *
+ * Index RAM: phòng -> địa chỉ [ROOM, MOVE...] từ ảnh gần nhất. Checkpoint = {@link LogStore#compact} chỉ
+ * chép các địa chỉ đó (không khóa phòng nào => không ngược thứ tự khóa "phòng -> log" của đường ghi),
+ * theo lô {@value #CHECKPOINT_BATCH} phòng => nước đi mới chỉ chờ 1 lô chứ không chờ cả checkpoint.
+ *
+ * Thread "rooms-journal": force xuống đĩa mỗi {@code caro.rooms.syncMs}, checkpoint mỗi
+ * {@code caro.rooms.checkpointMs} (nếu có ghi mới) hoặc khi log lớn gấp đôi sau lần checkpoint trước.
+ *
+ * Bật bằng -Dcaro.rooms.journal=&lt;thư mục&gt; (độc lập với caro.store: dùng được cả với MySQL).
+ */
+public final class RoomJournal implements Closeable {
+
+    // ===== Loại bản ghi =====
+    static final int ROOM = 1;   // lsn, slot, RoomImage
+    static final int MOVE = 2;   // lsn, slot, ô, thời điểm, deadline (tương đối, -1 = không tính giờ)
+    static final int REMOVE = 3; // lsn, slot
+
+    static final int MOVE_BYTES = 8 + 4 + 2 + 8 + 4;
+
+    // số phòng chép trong 1 lần giữ khóa lúc checkpoint (mỗi phòng = 1 ROOM + tới boardSize^2 MOVE)
+    static final int CHECKPOINT_BATCH = 16;
+
+    private final LogStore log;
+    private final long syncMillis;
+    private final long checkpointMillis;
+    private final long compactMinBytes;
+    private volatile boolean running = true;
+    private final Thread syncThread;
+    private final Object wakeup = new Object(); // close() đánh thức thread sync
+
+    // ===== guarded by log =====
+    private final Map<String, Chain> chains = new HashMap<>();
+    private long lastLsn = 0;
+    private int lastSlot = 0;
+    private long appendsAtCheckpoint = 0;
+    private long lastCheckpointAt = System.currentTimeMillis();
+    private Map<String, RoomImage> recovered = new LinkedHashMap<>();
+    private Map<Integer, RoomImage> recoveredSlots = new HashMap<>();
+
+    // ===== Metrics =====
+    private volatile long recoveryMillis = 0;
+    private volatile int recoveredRooms = 0;
+    private volatile long moveAppends = 0;
+
+    public static RoomJournal open(Path dir) throws IOException {
+        return new RoomJournal(dir,
+                Integer.getInteger("caro.rooms.segmentMB", 16) << 20,
+                Long.getLong("caro.rooms.syncMs", 1000L),
+                Long.getLong("caro.rooms.checkpointMs", 60_000L),
+                Long.getLong("caro.rooms.compactMinMB", 4L) << 20);
+    }
+
+    public RoomJournal(Path dir, int segmentBytes, long syncMillis, long checkpointMillis, long compactMinBytes) throws IOException {
+        this.log = new LogStore(dir, segmentBytes);
+        this.syncMillis = syncMillis;
+        this.checkpointMillis = checkpointMillis;
+        this.compactMinBytes = compactMinBytes;
+
+        long start = System.nanoTime();
+        log.replay(this::apply);
+        recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+        recoveredRooms = recovered.size();
+        System.out.printf("[Rooms] %s: %d phòng, nạp trong %d ms%n", dir, recoveredRooms, recoveryMillis);
+
+        syncThread = new Thread(this::runLoop, "rooms-journal");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    /** Các phòng dựng lại lúc mở (theo thứ tự tạo); chỉ lấy được 1 lần. */
+    public List<RoomImage> takeRecovered() {
+        synchronized (log) {
+            List<RoomImage> out = new ArrayList<>(recovered.values());
+            recovered = null;
+            recoveredSlots = null;
+            return out;
+        }
+    }
+
+    // ============================================================
+    // Ghi (gọi khi đang giữ synchronized (room))
+    // ============================================================
+
+    /** Ghi đè toàn bộ trạng thái 1 phòng; các MOVE trước đó của phòng không còn cần nữa. */
+    public void saveRoom(RoomImage img) throws IOException {
+        byte[] payload = EmbeddedStore.encode(out -> {
+            out.writeLong(0L); // lsn + slot, điền lúc append
+            out.writeInt(0);
+            img.write(out);
+        });
+        synchronized (log) {
+            Chain c = chains.computeIfAbsent(img.id, k -> new Chain(++lastSlot));
+            ByteBuffer.wrap(payload).putLong(0, ++lastLsn).putInt(8, c.slot);
+            long address = log.append(ROOM, payload);
+            c.n = 0;
+            c.add(address);
+        }
+    }
+
+    /** 1 nước đi mới của phòng đã có ảnh ({@code deadlineMillis} = 0 nếu không tính giờ). */
+    public void appendMove(String roomId, int cell, long atMillis, long deadlineMillis) throws IOException {
+        byte[] payload = new byte[MOVE_BYTES];
+        synchronized (log) {
+            Chain c = chains.get(roomId);
+            if (c == null) return; // chưa từng ghi ảnh phòng (journal bật giữa chừng)
+            ByteBuffer.wrap(payload)
+                    .putLong(++lastLsn)
+                    .putInt(c.slot)
+                    .putShort((short) cell)
+                    .putLong(atMillis)
+                    .putInt(deadlineMillis == 0 ? -1 : (int) Math.max(0, deadlineMillis - atMillis));
+            c.add(log.append(MOVE, payload));
+            moveAppends++;
+        }
+    }
+
+    public void removeRoom(String roomId) throws IOException {
+        synchronized (log) {
+            Chain c = chains.remove(roomId);
+            if (c == null) return;
+            byte[] payload = new byte[12];
+            ByteBuffer.wrap(payload).putLong(++lastLsn).putInt(c.slot);
+            log.append(REMOVE, payload);
+        }
+    }
+
+    /**
+     * Chép ảnh + nước đi của các phòng còn sống sang segment mới, xóa segment cũ.
+     * Giữa 2 lô phòng có thể bị xóa / ghi ảnh mới / thêm nước: chỉ chép chuỗi còn bắt đầu ở segment cũ,
+     * chép cả chuỗi theo thứ tự (kể cả nước đã ghi sau roll) => ROOM luôn đứng trước MOVE của nó.
+     */
+    public void checkpoint() throws IOException {
+        log.compact(l -> {
+            List<String> ids;
+            synchronized (log) {
+                ids = new ArrayList<>(chains.keySet());
+            }
+            l.batched(ids.size(), CHECKPOINT_BATCH, i -> {
+                Chain c = chains.get(ids.get(i));
+                if (c == null || !l.isOld(c.addresses[0])) return; // đã xóa / ảnh mới ghi sau roll
+                for (int k = 0; k < c.n; k++) c.addresses[k] = l.copy(c.addresses[k]);
+            });
+        });
+        synchronized (log) {
+            appendsAtCheckpoint = log.getAppends();
+            lastCheckpointAt = System.currentTimeMillis();
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                // không interrupt thread này: đang map segment mà bị interrupt thì FileChannel bị đóng
+                synchronized (wakeup) {
+                    if (running) wakeup.wait(syncMillis);
+                }
+                if (!running) return;
+                log.sync();
+                boolean due;
+                synchronized (log) {
+                    due = log.getAppends() > appendsAtCheckpoint
+                            && System.currentTimeMillis() - lastCheckpointAt >= checkpointMillis;
+                }
+                if (due || log.needsCompaction(compactMinBytes)) checkpoint();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("[Rooms] " + e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        synchronized (wakeup) {
+            wakeup.notifyAll();
+        }
+        // chờ lần sync / compact đang chạy xong rồi mới đóng file
+        try {
+            syncThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    // ============================================================
+    // Replay (khi mở, đang giữ khóa log)
+    // ============================================================
+    private void apply(long address, int type, ByteBuffer payload) throws IOException {
+        long lsn = payload.getLong();
+        int slot = payload.getInt();
+        lastLsn = Math.max(lastLsn, lsn);
+        lastSlot = Math.max(lastSlot, slot);
+        switch (type) {
+            case ROOM: {
+                RoomImage cur = recoveredSlots.get(slot);
+                if (cur != null && cur.lsn >= lsn) return; // bản chép lúc compact của ảnh đã áp
+                RoomImage img = RoomImage.read(EmbeddedStore.decode(payload));
+                img.lsn = lsn;
+                recovered.put(img.id, img);
+                recoveredSlots.put(slot, img);
+                Chain c = chains.computeIfAbsent(img.id, k -> new Chain(slot));
+                c.n = 0;
+                c.add(address);
+                break;
+            }
+            case MOVE: {
+                RoomImage img = recoveredSlots.get(slot);
+                if (img == null || img.lsn >= lsn) return;
+                int cell = payload.getShort() & 0xFFFF;
+                long at = payload.getLong();
+                int deadline = payload.getInt();
+                img.applyMove(cell, at, deadline < 0 ? 0L : at + deadline);
+                img.lsn = lsn;
+                chains.get(img.id).add(address);
+                break;
+            }
+            case REMOVE: {
+                RoomImage img = recoveredSlots.remove(slot);
+                if (img != null) {
+                    recovered.remove(img.id);
+                    chains.remove(img.id);
+                }
+                break;
+            }
+            default:
+                System.err.println("[Rooms] bỏ qua bản ghi loại " + type);
+        }
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+    public int size() {
+        synchronized (log) {
+            return chains.size();
+        }
+    }
+
+    public long getBytes() {
+        return log.totalBytes();
+    }
+
+    public long getRecoveryMillis() {
+        return recoveryMillis;
+    }
+
+    public void registerGauges(Metrics metrics) {
+        metrics.gauge("rooms.journal.rooms", this::size);
+        metrics.gauge("rooms.journal.bytes", log::totalBytes);
+        metrics.gauge("rooms.journal.segments", log::getSegments);
+        metrics.gauge("rooms.journal.appends", log::getAppends);
+        metrics.gauge("rooms.journal.moves", () -> moveAppends);
+        metrics.gauge("rooms.journal.checkpoints", log::getCompactions);
+        metrics.gauge("rooms.journal.lastCheckpointMillis", log::getLastCompactMillis);
+        metrics.gauge("rooms.journal.recoveredRooms", () -> recoveredRooms);
+        metrics.gauge("rooms.journal.recoveryMillis", () -> recoveryMillis);
+    }
+
+    @Override
+    public String toString() {
+        return log + ", rooms=" + size();
+    }
+
+    // Địa chỉ ảnh ROOM gần nhất + các MOVE sau nó của 1 phòng
+    private static final class Chain {
+        final int slot;
+        long[] addresses = new long[4];
+        int n;
+
+        Chain(int slot) {
+            this.slot = slot;
+        }
+
+        void add(long address) {
+            if (n == addresses.length) addresses = Arrays.copyOf(addresses, n * 2);
+            addresses[n++] = address;
+        }
+    }
+
+    // ============================================================
+    // Ảnh 1 phòng
+    // ============================================================
+    /**
+     * Trạng thái đầy đủ 1 phòng (Room + phần LobbyServiceImpl giữ theo roomId).
+     * Nước đi lưu cũ -> mới; quân của nước i là X nếu i chẵn (X luôn đi trước, undo chỉ bỏ nước cuối).
+     */
+    public static final class RoomImage {
+        public String id;
+        public String name;
+        public String owner;
+        public long createdAtMillis;
+        public RoomStatus status;
+        public List<String> players = new ArrayList<>(2);
+
+        public int boardSize;
+        public boolean blockTwoEnds;
+        public boolean hasPassword;
+        public String password;
+        public boolean timed;
+        public int timeLimitSeconds;
+        public long turnDeadlineMillis;
+
+        public String playerX;
+        public String playerO;
+        public String turn;
+        public long gameStartMillis;
+        public long seq;
+
+        public int moveCount;
+        public int[] cells = new int[0];      // [i] = row * boardSize + col
+        public long[] moveMillis = new long[0];
+
+        // đề nghị đang chờ (null = không có)
+        public String undoFrom, undoTo;
+        public String drawFrom, drawTo;
+        public Map<String, PostGameChoice> postGameChoices = new HashMap<>();
+
+        long lsn; // chỉ dùng khi replay
+
+        public void addMove(int cell, long atMillis) {
+            if (moveCount == cells.length) {
+                int cap = Math.max(16, moveCount * 2);
+                cells = Arrays.copyOf(cells, cap);
+                moveMillis = Arrays.copyOf(moveMillis, cap);
+            }
+            cells[moveCount] = cell;
+            moveMillis[moveCount] = atMillis;
+            moveCount++;
+        }
+
+        // giống makeMove: đặt quân, đổi lượt, deadline mới, hủy đề nghị undo / hòa đang chờ
+        void applyMove(int cell, long atMillis, long deadlineMillis) {
+            addMove(cell, atMillis);
+            turn = (turn != null && turn.equals(playerX)) ? playerO : playerX;
+            turnDeadlineMillis = deadlineMillis;
+            seq++;
+            undoFrom = undoTo = drawFrom = drawTo = null;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(id);
+            out.writeUTF(name);
+            EmbeddedStore.writeNullable(out, owner);
+            out.writeLong(createdAtMillis);
+            out.writeByte(status.ordinal());
+            out.writeByte(players.size());
+            for (String p : players) out.writeUTF(p);
+
+            out.writeByte(boardSize);
+            out.writeBoolean(blockTwoEnds);
+            out.writeBoolean(hasPassword);
+            EmbeddedStore.writeNullable(out, password);
+            out.writeBoolean(timed);
+            out.writeInt(timeLimitSeconds);
+            out.writeLong(turnDeadlineMillis);
+
+            EmbeddedStore.writeNullable(out, playerX);
+            EmbeddedStore.writeNullable(out, playerO);
+            EmbeddedStore.writeNullable(out, turn);
+            out.writeLong(gameStartMillis);
+            out.writeLong(seq);
+
+            out.writeShort(moveCount);
+            long prev = gameStartMillis;
+            for (int i = 0; i < moveCount; i++) {
+                out.writeShort(cells[i]);
+                out.writeInt((int) (moveMillis[i] - prev)); // thời gian nghĩ
+                prev = moveMillis[i];
+            }
+
+            EmbeddedStore.writeNullable(out, undoFrom);
+            EmbeddedStore.writeNullable(out, undoTo);
+            EmbeddedStore.writeNullable(out, drawFrom);
+            EmbeddedStore.writeNullable(out, drawTo);
+            out.writeByte(postGameChoices.size());
+            for (Map.Entry<String, PostGameChoice> e : postGameChoices.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeByte(e.getValue().ordinal());
+            }
+        }
+
+        static RoomImage read(DataInputStream in) throws IOException {
+            RoomImage img = new RoomImage();
+            img.id = in.readUTF();
+            img.name = in.readUTF();
+            img.owner = EmbeddedStore.readNullable(in);
+            img.createdAtMillis = in.readLong();
+            img.status = RoomStatus.values()[in.readUnsignedByte()];
+            int players = in.readUnsignedByte();
+            for (int i = 0; i < players; i++) img.players.add(in.readUTF());
+
+            img.boardSize = in.readUnsignedByte();
+            img.blockTwoEnds = in.readBoolean();
+            img.hasPassword = in.readBoolean();
+            img.password = EmbeddedStore.readNullable(in);
+            img.timed = in.readBoolean();
+            img.timeLimitSeconds = in.readInt();
+            img.turnDeadlineMillis = in.readLong();
+
+            img.playerX = EmbeddedStore.readNullable(in);
+            img.playerO = EmbeddedStore.readNullable(in);
+            img.turn = EmbeddedStore.readNullable(in);
+            img.gameStartMillis = in.readLong();
+            img.seq = in.readLong();
+
+            int moves = in.readUnsignedShort();
+            if (moves > img.boardSize * img.boardSize) throw new IOException("Phòng " + img.id + ": số nước không hợp lệ " + moves);
+            img.cells = new int[moves];
+            img.moveMillis = new long[moves];
+            long prev = img.gameStartMillis;
+            for (int i = 0; i < moves; i++) {
+                img.cells[i] = in.readUnsignedShort();
+                prev += in.readInt();
+                img.moveMillis[i] = prev;
+            }
+            img.moveCount = moves;
+
+            img.undoFrom = EmbeddedStore.readNullable(in);
+            img.undoTo = EmbeddedStore.readNullable(in);
+            img.drawFrom = EmbeddedStore.readNullable(in);
+            img.drawTo = EmbeddedStore.readNullable(in);
+            int choices = in.readUnsignedByte();
+            for (int i = 0; i < choices; i++) {
+                img.postGameChoices.put(in.readUTF(), PostGameChoice.values()[in.readUnsignedByte()]);
+            }
+            return img;
+        }
+    }
+}
@@ -11,7 +11,8 @@ CREATE TABLE IF NOT EXISTS users (
   elo INT NOT NULL DEFAULT 1000,
   banned_until DATETIME NULL,
   ban_reason VARCHAR(255) NULL,
-  created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP
+  created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_users_elo (elo)
 );
 
 CREATE TABLE IF NOT EXISTS friends (
@@ -41,5 +42,15 @@ CREATE TABLE IF NOT EXISTS matches (
   player_o VARCHAR(50) NOT NULL,
   winner VARCHAR(50) NULL,
   reason VARCHAR(20) NOT NULL,
-  created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP
+  created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  -- lịch sử ván theo người chơi (listRecentMatches); DB cũ: ALTER TABLE matches ADD INDEX ... bằng tay
+  INDEX idx_matches_x (player_x, id),
+  INDEX idx_matches_o (player_o, id)
+);
+
+-- Nước đi của từng ván (GameRecord: ~2-3 byte / nước), tách bảng để DB cũ chỉ cần chạy lại file này
+CREATE TABLE IF NOT EXISTS match_moves (
+  match_id BIGINT PRIMARY KEY,
+  moves BLOB NOT NULL,
+  CONSTRAINT fk_mm_match FOREIGN KEY (match_id) REFERENCES matches(id) ON DELETE CASCADE
 );